@@ -13,6 +13,7 @@ import java.util.Vector;
 import ch.ethz.ssh2.auth.AuthenticationManager;
 import ch.ethz.ssh2.channel.ChannelManager;
 import ch.ethz.ssh2.crypto.CryptoWishList;
+import ch.ethz.ssh2.compression.CompressionFactory;
 import ch.ethz.ssh2.crypto.cipher.BlockCipherFactory;
 import ch.ethz.ssh2.crypto.digest.MAC;
 import ch.ethz.ssh2.packets.PacketIgnore;
@@ -1146,6 +1147,19 @@ import ch.ethz.ssh2.util.TimeoutService.TimeoutToken;
 		cryptoWishList.c2s_enc_algos = ciphers;
 	}
 
+	/**
+	 * Enable the delayed zlib compression (zlib@openssh.com), if the server
+	 * supports it. The compression starts after the authentication. It must be
+	 * called before the connection is established.
+	 * 
+	 * @param enabled
+	 */
+	public synchronized void setCompression(boolean enabled)
+	{
+		cryptoWishList.c2s_comp_algos = CompressionFactory.getClient2ServerCompressorList(enabled);
+		cryptoWishList.s2c_comp_algos = CompressionFactory.getServer2ClientCompressorList(enabled);
+	}
+
 	/**
 	 * Unless you know what you are doing, you will never need this.
 	 * 
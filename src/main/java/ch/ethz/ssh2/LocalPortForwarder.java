@@ -50,6 +50,17 @@ import ch.ethz.ssh2.channel.LocalAcceptThread;
 		lat.start();
 	}
 
+	/**
+	 * Return the local port on which the forwarder listens. This is useful,
+	 * if it was bound to port 0.
+	 * 
+	 * @return the local port
+	 */
+	public int getLocalPort()
+	{
+		return lat.getLocalPort();
+	}
+
 	/**
 	 * Stop TCP/IP forwarding of newly arriving connections.
 	 * 
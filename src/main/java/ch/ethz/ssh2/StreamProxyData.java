@@ -0,0 +1,33 @@
+
+package ch.ethz.ssh2;
+
+/**
+ * A <code>StreamProxyData</code> object is used to run a connection over the
+ * direct-tcpip channel of another connection, instead of a socket. No local
+ * port is opened for it, so no other process can use the tunnel.
+ *
+ * @see Connection#setProxyData(ProxyData)
+ * @see Connection#createLocalStreamForwarder(String, int)
+ *
+ * @author Christian Plattner, Rasto Levrinc
+ * @version 2.50, 03/15/10
+ */
+
+public class StreamProxyData implements ProxyData
+{
+	public final LocalStreamForwarder forwarder;
+
+	/**
+	 * The connection will use the streams of the forwarder. The forwarder is
+	 * closed, when the connection is closed.
+	 *
+	 * @param forwarder the forwarder to the ssh server of the connection.
+	 */
+	public StreamProxyData(LocalStreamForwarder forwarder)
+	{
+		if (forwarder == null)
+			throw new IllegalArgumentException("forwarder must be non-null");
+
+		this.forwarder = forwarder;
+	}
+}
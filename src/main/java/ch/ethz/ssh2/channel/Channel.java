@@ -42,6 +42,15 @@ public class Channel
 
 	static final int CHANNEL_BUFFER_SIZE = 30000;
 
+	/*
+	 * The local window starts at CHANNEL_BUFFER_SIZE and is doubled, every
+	 * time the window is adjusted and the reader has read all received data,
+	 * i.e. the transfer is limited by the window and not by the reader. The
+	 * buffers grow on demand, so a big window costs memory only if the reader
+	 * is slow.
+	 */
+	static final int MAX_CHANNEL_WINDOW_SIZE = 4 * 1024 * 1024;
+
 	/*
 	 * To achieve correctness, the following rules have to be respected when
 	 * accessing this object:
@@ -112,13 +121,14 @@ public class Channel
 	int failedCounter = 0;
 
 	int localWindow = 0; /* locally, we use a small window, < 2^31 */
+	int localWindowSize = 0; /* current size of the adaptive window */
 	long remoteWindow = 0; /* long for readable  2^32 - 1 window support */
 
 	int localMaxPacketSize = -1;
 	int remoteMaxPacketSize = -1;
 
-	final byte[] stdoutBuffer = new byte[CHANNEL_BUFFER_SIZE];
-	final byte[] stderrBuffer = new byte[CHANNEL_BUFFER_SIZE];
+	byte[] stdoutBuffer = new byte[CHANNEL_BUFFER_SIZE];
+	byte[] stderrBuffer = new byte[CHANNEL_BUFFER_SIZE];
 
 	int stdoutReadpos = 0;
 	int stdoutWritepos = 0;
@@ -148,6 +158,7 @@ public class Channel
 		this.cm = cm;
 
 		this.localWindow = CHANNEL_BUFFER_SIZE;
+		this.localWindowSize = CHANNEL_BUFFER_SIZE;
 		this.localMaxPacketSize = 35000 - 1024; // leave enough slack
 
 		this.stdinStream = new ChannelOutputStream(this);
@@ -155,6 +166,24 @@ public class Channel
 		this.stderrStream = new ChannelInputStream(this, true);
 	}
 
+	/**
+	 * Returns a buffer with the unread data moved to the beginning and with
+	 * space for len more bytes. The buffer grows, if there is not enough
+	 * space. May only be called while holding the lock on the channel, the
+	 * caller has to update the read and write positions.
+	 */
+	static byte[] makeSpace(byte[] buffer, int readpos, int writepos, int len)
+	{
+		int unread = writepos - readpos;
+		byte[] newBuffer = buffer;
+
+		if (unread + len > buffer.length)
+			newBuffer = new byte[Math.max(buffer.length * 2, unread + len)];
+
+		System.arraycopy(buffer, readpos, newBuffer, 0, unread);
+		return newBuffer;
+	}
+
 	/* Methods to allow access from classes outside of this package */
 
 	public ChannelInputStream getStderrStream()
@@ -777,6 +777,13 @@ import ch.ethz.ssh2.transport.TransportManager;
 
 			c.localWindow -= len;
 
+			if (c.stderrWritepos + len > c.stderrBuffer.length)
+			{
+				c.stderrBuffer = Channel.makeSpace(c.stderrBuffer, c.stderrReadpos, c.stderrWritepos, len);
+				c.stderrWritepos -= c.stderrReadpos;
+				c.stderrReadpos = 0;
+			}
+
 			System.arraycopy(msg, 13, c.stderrBuffer, c.stderrWritepos, len);
 			c.stderrWritepos += len;
 
@@ -928,13 +935,13 @@ import ch.ethz.ssh2.transport.TransportManager;
 				System.arraycopy(c.stdoutBuffer, c.stdoutReadpos, target, off, copylen);
 				c.stdoutReadpos += copylen;
 
-				if (c.stdoutReadpos != c.stdoutWritepos)
-
-					System.arraycopy(c.stdoutBuffer, c.stdoutReadpos, c.stdoutBuffer, 0, c.stdoutWritepos
-							- c.stdoutReadpos);
+				/* the unread data are moved only when the space is needed */
 
-				c.stdoutWritepos -= c.stdoutReadpos;
-				c.stdoutReadpos = 0;
+				if (c.stdoutReadpos == c.stdoutWritepos)
+				{
+					c.stdoutWritepos = 0;
+					c.stdoutReadpos = 0;
+				}
 			}
 			else
 			{
@@ -942,25 +949,32 @@ import ch.ethz.ssh2.transport.TransportManager;
 				System.arraycopy(c.stderrBuffer, c.stderrReadpos, target, off, copylen);
 				c.stderrReadpos += copylen;
 
-				if (c.stderrReadpos != c.stderrWritepos)
-
-					System.arraycopy(c.stderrBuffer, c.stderrReadpos, c.stderrBuffer, 0, c.stderrWritepos
-							- c.stderrReadpos);
-
-				c.stderrWritepos -= c.stderrReadpos;
-				c.stderrReadpos = 0;
+				if (c.stderrReadpos == c.stderrWritepos)
+				{
+					c.stderrWritepos = 0;
+					c.stderrReadpos = 0;
+				}
 			}
 
 			if (c.state != Channel.STATE_OPEN)
 				return copylen;
 
-			if (c.localWindow < ((Channel.CHANNEL_BUFFER_SIZE + 1) / 2))
+			if (c.localWindow < ((c.localWindowSize + 1) / 2))
 			{
-				int minFreeSpace = Math.min(Channel.CHANNEL_BUFFER_SIZE - c.stdoutWritepos, Channel.CHANNEL_BUFFER_SIZE
-						- c.stderrWritepos);
+				int unread = (c.stdoutWritepos - c.stdoutReadpos) + (c.stderrWritepos - c.stderrReadpos);
+
+				/* the reader keeps up, so the window is what limits the transfer */
 
-				increment = minFreeSpace - c.localWindow;
-				c.localWindow = minFreeSpace;
+				if ((unread == 0) && (c.localWindowSize < Channel.MAX_CHANNEL_WINDOW_SIZE))
+					c.localWindowSize = Math.min(c.localWindowSize * 2, Channel.MAX_CHANNEL_WINDOW_SIZE);
+
+				int newWindow = c.localWindowSize - unread;
+
+				if (newWindow > c.localWindow)
+				{
+					increment = newWindow - c.localWindow;
+					c.localWindow = newWindow;
+				}
 			}
 
 			remoteID = c.remoteID; /* read while holding the lock */
@@ -1033,6 +1047,13 @@ import ch.ethz.ssh2.transport.TransportManager;
 
 			c.localWindow -= len;
 
+			if (c.stdoutWritepos + len > c.stdoutBuffer.length)
+			{
+				c.stdoutBuffer = Channel.makeSpace(c.stdoutBuffer, c.stdoutReadpos, c.stdoutWritepos, len);
+				c.stdoutWritepos -= c.stdoutReadpos;
+				c.stdoutReadpos = 0;
+			}
+
 			System.arraycopy(msg, 9, c.stdoutBuffer, c.stdoutWritepos, len);
 			c.stdoutWritepos += len;
 
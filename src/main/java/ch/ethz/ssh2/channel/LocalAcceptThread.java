@@ -121,6 +121,11 @@ public class LocalAcceptThread extends Thread implements IChannelWorkerThread
 		}
 	}
 
+	public int getLocalPort()
+	{
+		return ss.getLocalPort();
+	}
+
 	public void stopWorking()
 	{
 		try
@@ -0,0 +1,72 @@
+package ch.ethz.ssh2.compression;
+
+/**
+ * CompressionFactory. Only the delayed zlib compression (zlib@openssh.com) is
+ * supported, where the compression starts after the user was authenticated.
+ *
+ * @author Christian Plattner, Rasto Levrinc
+ * @version 2.50, 03/15/10
+ */
+public class CompressionFactory
+{
+	public static final String NONE = "none";
+
+	public static final String ZLIB_DELAYED = "zlib@openssh.com";
+
+	public static String[] getDefaultCompressorList()
+	{
+		return new String[] { NONE };
+	}
+
+	/**
+	 * Returns the compression algorithms for client to server. The zlib
+	 * compression is offered only if the JRE can flush the deflater.
+	 */
+	public static String[] getClient2ServerCompressorList(boolean enabled)
+	{
+		if (enabled && Compressor.isSupported())
+			return new String[] { ZLIB_DELAYED, NONE };
+		return getDefaultCompressorList();
+	}
+
+	/**
+	 * Returns the compression algorithms for server to client.
+	 */
+	public static String[] getServer2ClientCompressorList(boolean enabled)
+	{
+		if (enabled)
+			return new String[] { ZLIB_DELAYED, NONE };
+		return getDefaultCompressorList();
+	}
+
+	public static void checkCompressorList(String[] compressorCandidates)
+	{
+		for (int i = 0; i < compressorCandidates.length; i++)
+		{
+			if (!NONE.equals(compressorCandidates[i]) && !ZLIB_DELAYED.equals(compressorCandidates[i]))
+				throw new IllegalArgumentException("Unknown compression algorithm " + compressorCandidates[i]);
+		}
+	}
+
+	/**
+	 * Returns the compressor or null for no compression.
+	 */
+	public static Compressor createCompressor(String type)
+	{
+		checkCompressorList(new String[] { type });
+		if (ZLIB_DELAYED.equals(type))
+			return new Compressor();
+		return null;
+	}
+
+	/**
+	 * Returns the decompressor or null for no compression.
+	 */
+	public static Decompressor createDecompressor(String type)
+	{
+		checkCompressorList(new String[] { type });
+		if (ZLIB_DELAYED.equals(type))
+			return new Decompressor();
+		return null;
+	}
+}
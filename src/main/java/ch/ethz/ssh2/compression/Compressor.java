@@ -0,0 +1,97 @@
+package ch.ethz.ssh2.compression;
+
+import java.lang.reflect.Method;
+import java.util.zip.Deflater;
+
+/**
+ * Compressor. Compresses the payloads of the packets with one zlib stream,
+ * every payload is flushed with a sync flush. The deflater and the output
+ * buffer are reused for all packets. The sync flush is available since Java
+ * 7, so it is called by reflection, in older JREs the compression is not
+ * supported.
+ *
+ * @author Christian Plattner, Rasto Levrinc
+ * @version 2.50, 03/15/10
+ */
+public class Compressor
+{
+	/* Deflater.SYNC_FLUSH */
+	private static final int SYNC_FLUSH = 2;
+
+	private static final Method DEFLATE_WITH_FLUSH = getDeflateWithFlush();
+
+	private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+
+	private byte[] buffer = new byte[4096];
+
+	Compressor()
+	{
+	}
+
+	private static Method getDeflateWithFlush()
+	{
+		try
+		{
+			return Deflater.class.getMethod("deflate", new Class<?>[] { byte[].class, int.class, int.class, int.class });
+		}
+		catch (NoSuchMethodException e)
+		{
+			return null;
+		}
+	}
+
+	/**
+	 * Returns whether the JRE can flush the deflater.
+	 */
+	public static boolean isSupported()
+	{
+		return DEFLATE_WITH_FLUSH != null;
+	}
+
+	private int deflate(int off) throws Exception
+	{
+		Integer len = (Integer) DEFLATE_WITH_FLUSH.invoke(deflater, new Object[] { buffer, Integer.valueOf(off),
+				Integer.valueOf(buffer.length - off), Integer.valueOf(SYNC_FLUSH) });
+		return len.intValue();
+	}
+
+	/**
+	 * Compresses the data. The result is in the buffer returned by
+	 * getBuffer().
+	 *
+	 * @return length of the compressed data
+	 */
+	public int compress(byte[] src, int off, int len)
+	{
+		deflater.setInput(src, off, len);
+		int pos = 0;
+		try
+		{
+			while (true)
+			{
+				pos += deflate(pos);
+				/* the output is complete, when the buffer was not filled */
+				if (pos < buffer.length)
+					break;
+				byte[] newBuffer = new byte[buffer.length * 2];
+				System.arraycopy(buffer, 0, newBuffer, 0, pos);
+				buffer = newBuffer;
+			}
+		}
+		catch (Exception e)
+		{
+			throw new IllegalStateException("Compression failed: " + e.getMessage());
+		}
+		return pos;
+	}
+
+	public byte[] getBuffer()
+	{
+		return buffer;
+	}
+
+	public void end()
+	{
+		deflater.end();
+	}
+}
@@ -0,0 +1,64 @@
+package ch.ethz.ssh2.compression;
+
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Decompressor. Decompresses the payloads of the packets, that are parts of
+ * one zlib stream. The inflater and the output buffer are reused for all
+ * packets.
+ *
+ * @author Christian Plattner, Rasto Levrinc
+ * @version 2.50, 03/15/10
+ */
+public class Decompressor
+{
+	private final Inflater inflater = new Inflater();
+
+	private byte[] buffer = new byte[8192];
+
+	Decompressor()
+	{
+	}
+
+	/**
+	 * Decompresses the data. The result is in the buffer returned by
+	 * getBuffer().
+	 *
+	 * @return length of the decompressed data
+	 */
+	public int uncompress(byte[] src, int off, int len) throws IOException
+	{
+		inflater.setInput(src, off, len);
+		int pos = 0;
+		try
+		{
+			while (true)
+			{
+				pos += inflater.inflate(buffer, pos, buffer.length - pos);
+				/* the output is complete, when the buffer was not filled */
+				if (pos < buffer.length)
+					break;
+				byte[] newBuffer = new byte[buffer.length * 2];
+				System.arraycopy(buffer, 0, newBuffer, 0, pos);
+				buffer = newBuffer;
+			}
+		}
+		catch (DataFormatException e)
+		{
+			throw (IOException) new IOException("Decompression failed.").initCause(e);
+		}
+		return pos;
+	}
+
+	public byte[] getBuffer()
+	{
+		return buffer;
+	}
+
+	public void end()
+	{
+		inflater.end();
+	}
+}
@@ -1,8 +1,11 @@
 
 package ch.ethz.ssh2.crypto.cipher;
 
+import java.security.GeneralSecurityException;
 import java.util.Vector;
 
+import ch.ethz.ssh2.log.Logger;
+
 /**
  * BlockCipherFactory.
  * 
@@ -11,19 +14,29 @@ import java.util.Vector;
  */
 @SuppressWarnings({"unchecked", "deprecation", "serial"}) public class BlockCipherFactory
 {
+	private static final Logger log = Logger.getLogger(BlockCipherFactory.class);
+
 	static class CipherEntry
 	{
 		String type;
 		int blocksize;
 		int keysize;
 		String cipherClass;
+		/* JCE algorithm that is preferred to the cipherClass, or null */
+		String jceAlgorithm;
 
 		public CipherEntry(String type, int blockSize, int keySize, String cipherClass)
+		{
+			this(type, blockSize, keySize, cipherClass, null);
+		}
+
+		public CipherEntry(String type, int blockSize, int keySize, String cipherClass, String jceAlgorithm)
 		{
 			this.type = type;
 			this.blocksize = blockSize;
 			this.keysize = keySize;
 			this.cipherClass = cipherClass;
+			this.jceAlgorithm = jceAlgorithm;
 		}
 	}
 
@@ -33,14 +46,14 @@ import java.util.Vector;
 	{
 		/* Higher Priority First */
 
-		ciphers.addElement(new CipherEntry("aes256-ctr", 16, 32, "ch.ethz.ssh2.crypto.cipher.AES"));
-		ciphers.addElement(new CipherEntry("aes192-ctr", 16, 24, "ch.ethz.ssh2.crypto.cipher.AES"));
-		ciphers.addElement(new CipherEntry("aes128-ctr", 16, 16, "ch.ethz.ssh2.crypto.cipher.AES"));
+		ciphers.addElement(new CipherEntry("aes256-ctr", 16, 32, "ch.ethz.ssh2.crypto.cipher.AES", "AES"));
+		ciphers.addElement(new CipherEntry("aes192-ctr", 16, 24, "ch.ethz.ssh2.crypto.cipher.AES", "AES"));
+		ciphers.addElement(new CipherEntry("aes128-ctr", 16, 16, "ch.ethz.ssh2.crypto.cipher.AES", "AES"));
 		ciphers.addElement(new CipherEntry("blowfish-ctr", 8, 16, "ch.ethz.ssh2.crypto.cipher.BlowFish"));
 
-		ciphers.addElement(new CipherEntry("aes256-cbc", 16, 32, "ch.ethz.ssh2.crypto.cipher.AES"));
-		ciphers.addElement(new CipherEntry("aes192-cbc", 16, 24, "ch.ethz.ssh2.crypto.cipher.AES"));
-		ciphers.addElement(new CipherEntry("aes128-cbc", 16, 16, "ch.ethz.ssh2.crypto.cipher.AES"));
+		ciphers.addElement(new CipherEntry("aes256-cbc", 16, 32, "ch.ethz.ssh2.crypto.cipher.AES", "AES"));
+		ciphers.addElement(new CipherEntry("aes192-cbc", 16, 24, "ch.ethz.ssh2.crypto.cipher.AES", "AES"));
+		ciphers.addElement(new CipherEntry("aes128-cbc", 16, 16, "ch.ethz.ssh2.crypto.cipher.AES", "AES"));
 		ciphers.addElement(new CipherEntry("blowfish-cbc", 8, 16, "ch.ethz.ssh2.crypto.cipher.BlowFish"));
 		
 		ciphers.addElement(new CipherEntry("3des-ctr", 8, 24, "ch.ethz.ssh2.crypto.cipher.DESede"));
@@ -69,6 +82,12 @@ import java.util.Vector;
 		try
 		{
 			CipherEntry ce = getEntry(type);
+			if (ce.jceAlgorithm != null)
+			{
+				BlockCipher jce = createJCECipher(ce, encrypt, key, iv);
+				if (jce != null)
+					return jce;
+			}
 			Class cc = Class.forName(ce.cipherClass);
 			BlockCipher bc = (BlockCipher) cc.newInstance();
 
@@ -90,6 +109,26 @@ import java.util.Vector;
 		}
 	}
 
+	/**
+	 * Returns the JCE cipher or null, if it is not available, e.g. if the key
+	 * size is not allowed by the JCE policy.
+	 */
+	private static BlockCipher createJCECipher(CipherEntry ce, boolean encrypt, byte[] key, byte[] iv)
+	{
+		String mode = ce.type.endsWith("-ctr") ? "CTR" : "CBC";
+		try
+		{
+			return new JCEBlockCipher(ce.jceAlgorithm + "/" + mode + "/NoPadding", ce.jceAlgorithm, ce.blocksize,
+					encrypt, key, iv);
+		}
+		catch (GeneralSecurityException e)
+		{
+			if (log.isEnabled())
+				log.log(20, "JCE " + ce.type + " not available, using " + ce.cipherClass + ": " + e.getMessage());
+			return null;
+		}
+	}
+
 	private static CipherEntry getEntry(String type)
 	{
 		for (int i = 0; i < ciphers.size(); i++)
@@ -13,6 +13,8 @@ import java.io.InputStream;
 public class CipherInputStream
 {
 	BlockCipher currentCipher;
+	/* set, if the current cipher can transform many blocks at once */
+	JCEBlockCipher bulkCipher;
 	InputStream bi;
 	byte[] buffer;
 	byte[] enc;
@@ -65,6 +67,7 @@ public class CipherInputStream
 	public void changeCipher(BlockCipher bc)
 	{
 		this.currentCipher = bc;
+		bulkCipher = (bc instanceof JCEBlockCipher) ? (JCEBlockCipher) bc : null;
 		blockSize = bc.getBlockSize();
 		buffer = new byte[blockSize];
 		enc = new byte[blockSize];
@@ -93,6 +96,29 @@ public class CipherInputStream
 		pos = 0;
 	}
 
+	private int readBlocks(byte[] dst, int off, int len) throws IOException
+	{
+		int want = len - (len % blockSize);
+		int n = 0;
+		while (n < want)
+		{
+			int cnt = internal_read(dst, off + n, want - n);
+			if (cnt < 0)
+				throw new IOException("Cannot read full block, EOF reached.");
+			n += cnt;
+		}
+
+		try
+		{
+			bulkCipher.transformBlocks(dst, off, dst, off, want);
+		}
+		catch (Exception e)
+		{
+			throw new IOException("Error while decrypting blocks.");
+		}
+		return want;
+	}
+
 	public int read(byte[] dst) throws IOException
 	{
 		return read(dst, 0, dst.length);
@@ -104,6 +130,15 @@ public class CipherInputStream
 
 		while (len > 0)
 		{
+			if (bulkCipher != null && pos >= blockSize && len >= blockSize)
+			{
+				int copy = readBlocks(dst, off, len);
+				off += copy;
+				len -= copy;
+				count += copy;
+				continue;
+			}
+
 			if (pos >= blockSize)
 				getBlock();
 
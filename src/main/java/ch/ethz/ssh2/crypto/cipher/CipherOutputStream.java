@@ -13,6 +13,8 @@ import java.io.OutputStream;
 public class CipherOutputStream
 {
 	BlockCipher currentCipher;
+	/* set, if the current cipher can transform many blocks at once */
+	JCEBlockCipher bulkCipher;
 	OutputStream bo;
 	byte[] buffer;
 	byte[] enc;
@@ -81,6 +83,7 @@ public class CipherOutputStream
 	public void changeCipher(BlockCipher bc)
 	{
 		this.currentCipher = bc;
+		bulkCipher = (bc instanceof JCEBlockCipher) ? (JCEBlockCipher) bc : null;
 		blockSize = bc.getBlockSize();
 		buffer = new byte[blockSize];
 		enc = new byte[blockSize];
@@ -102,10 +105,47 @@ public class CipherOutputStream
 		pos = 0;
 	}
 
+	private int writeBlocks(byte[] src, int off, int len) throws IOException
+	{
+		if (BUFF_SIZE - out_buffer_pos < blockSize)
+		{
+			bo.write(out_buffer, 0, out_buffer_pos);
+			out_buffer_pos = 0;
+		}
+		int space = BUFF_SIZE - out_buffer_pos;
+		int copy = Math.min(space, len);
+		copy -= copy % blockSize;
+
+		try
+		{
+			bulkCipher.transformBlocks(src, off, out_buffer, out_buffer_pos, copy);
+		}
+		catch (Exception e)
+		{
+			throw (IOException) new IOException("Error while encrypting blocks.").initCause(e);
+		}
+
+		out_buffer_pos += copy;
+		if (out_buffer_pos >= BUFF_SIZE)
+		{
+			bo.write(out_buffer, 0, BUFF_SIZE);
+			out_buffer_pos = 0;
+		}
+		return copy;
+	}
+
 	public void write(byte[] src, int off, int len) throws IOException
 	{
 		while (len > 0)
 		{
+			if (bulkCipher != null && pos == 0 && len >= blockSize)
+			{
+				int copy = writeBlocks(src, off, len);
+				off += copy;
+				len -= copy;
+				continue;
+			}
+
 			int avail = blockSize - pos;
 			int copy = Math.min(avail, len);
 
@@ -0,0 +1,67 @@
+package ch.ethz.ssh2.crypto.cipher;
+
+import java.security.GeneralSecurityException;
+
+import javax.crypto.Cipher;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * JCEBlockCipher. A block cipher including its mode (CTR or CBC), that is
+ * provided by the JCE. The JCE implementations can use the AES instructions of
+ * the CPU. Since the mode is done by the JCE too, many blocks can be
+ * transformed with one call.
+ *
+ * @author Christian Plattner, Rasto Levrinc
+ * @version 2.50, 03/15/10
+ */
+public class JCEBlockCipher implements BlockCipher
+{
+	private final Cipher cipher;
+
+	private final int blockSize;
+
+	public JCEBlockCipher(String transformation, String algorithm, int blockSize, boolean encrypt, byte[] key,
+			byte[] iv) throws GeneralSecurityException
+	{
+		this.blockSize = blockSize;
+		cipher = Cipher.getInstance(transformation);
+		cipher.init(encrypt ? Cipher.ENCRYPT_MODE : Cipher.DECRYPT_MODE, new SecretKeySpec(key, algorithm),
+				new IvParameterSpec(iv, 0, blockSize));
+	}
+
+	public void init(boolean forEncryption, byte[] key)
+	{
+		throw new IllegalStateException("JCEBlockCipher is initialized in the constructor");
+	}
+
+	public int getBlockSize()
+	{
+		return blockSize;
+	}
+
+	public void transformBlock(byte[] src, int srcoff, byte[] dst, int dstoff)
+	{
+		transformBlocks(src, srcoff, dst, dstoff, blockSize);
+	}
+
+	/**
+	 * Transform several blocks at once.
+	 *
+	 * @param len
+	 *            must be a multiple of the block size
+	 */
+	public void transformBlocks(byte[] src, int srcoff, byte[] dst, int dstoff, int len)
+	{
+		try
+		{
+			if (cipher.update(src, srcoff, len, dst, dstoff) != len)
+				throw new IllegalStateException("JCE cipher did not transform all blocks");
+		}
+		catch (ShortBufferException e)
+		{
+			throw new IllegalArgumentException(e.getMessage());
+		}
+	}
+}
@@ -1,22 +1,32 @@
 
 package ch.ethz.ssh2.crypto.digest;
 
+import java.security.GeneralSecurityException;
+
+import javax.crypto.Mac;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.SecretKeySpec;
+
 /**
- * MAC.
+ * MAC. The HMACs are computed by the JCE.
  * 
  * @author Christian Plattner
  * @version 2.50, 03/15/10
  */
 public final class MAC
 {
-	Digest mac;
+	Mac mac;
 	int size;
+	/* the whole mac, if it is truncated, otherwise null */
+	byte[] full_mac;
+	final byte[] seq_buffer = new byte[4];
 
 	public final static String[] getMacList()
 	{
 		/* Higher Priority First */
 
-		return new String[] { "hmac-sha1-96", "hmac-sha1", "hmac-md5-96", "hmac-md5" };
+		return new String[] { "hmac-sha2-256", "hmac-sha2-512", "hmac-sha1-96", "hmac-sha1", "hmac-md5-96",
+				"hmac-md5" };
 	}
 
 	public final static void checkMacList(String[] macs)
@@ -27,6 +37,10 @@ public final class MAC
 
 	public final static int getKeyLen(String type)
 	{
+		if (type.equals("hmac-sha2-256"))
+			return 32;
+		if (type.equals("hmac-sha2-512"))
+			return 64;
 		if (type.equals("hmac-sha1"))
 			return 20;
 		if (type.equals("hmac-sha1-96"))
@@ -40,35 +54,63 @@ public final class MAC
 
 	public MAC(String type, byte[] key)
 	{
-		if (type.equals("hmac-sha1"))
+		String algorithm;
+
+		if (type.equals("hmac-sha2-256"))
 		{
-			mac = new HMAC(new SHA1(), key, 20);
+			algorithm = "HmacSHA256";
+			size = 32;
+		}
+		else if (type.equals("hmac-sha2-512"))
+		{
+			algorithm = "HmacSHA512";
+			size = 64;
+		}
+		else if (type.equals("hmac-sha1"))
+		{
+			algorithm = "HmacSHA1";
+			size = 20;
 		}
 		else if (type.equals("hmac-sha1-96"))
 		{
-			mac = new HMAC(new SHA1(), key, 12);
+			algorithm = "HmacSHA1";
+			size = 12;
 		}
 		else if (type.equals("hmac-md5"))
 		{
-			mac = new HMAC(new MD5(), key, 16);
+			algorithm = "HmacMD5";
+			size = 16;
 		}
 		else if (type.equals("hmac-md5-96"))
 		{
-			mac = new HMAC(new MD5(), key, 12);
+			algorithm = "HmacMD5";
+			size = 12;
 		}
 		else
 			throw new IllegalArgumentException("Unkown algorithm " + type);
 
-		size = mac.getDigestLength();
+		try
+		{
+			mac = Mac.getInstance(algorithm);
+			mac.init(new SecretKeySpec(key, algorithm));
+		}
+		catch (GeneralSecurityException e)
+		{
+			throw new IllegalArgumentException("Cannot instantiate " + type);
+		}
+
+		if (size < mac.getMacLength())
+			full_mac = new byte[mac.getMacLength()];
 	}
 
 	public final void initMac(int seq)
 	{
 		mac.reset();
-		mac.update((byte) (seq >> 24));
-		mac.update((byte) (seq >> 16));
-		mac.update((byte) (seq >> 8));
-		mac.update((byte) (seq));
+		seq_buffer[0] = (byte) (seq >> 24);
+		seq_buffer[1] = (byte) (seq >> 16);
+		seq_buffer[2] = (byte) (seq >> 8);
+		seq_buffer[3] = (byte) (seq);
+		mac.update(seq_buffer);
 	}
 
 	public final void update(byte[] packetdata, int off, int len)
@@ -78,7 +120,22 @@ public final class MAC
 
 	public final void getMac(byte[] out, int off)
 	{
-		mac.digest(out, off);
+		try
+		{
+			if (full_mac == null)
+			{
+				mac.doFinal(out, off);
+			}
+			else
+			{
+				mac.doFinal(full_mac, 0);
+				System.arraycopy(full_mac, 0, out, off, size);
+			}
+		}
+		catch (ShortBufferException e)
+		{
+			throw new IllegalArgumentException(e.getMessage());
+		}
 	}
 
 	public final int size()
@@ -7,6 +7,7 @@ import java.security.SecureRandom;
 import ch.ethz.ssh2.ConnectionInfo;
 import ch.ethz.ssh2.DHGexParameters;
 import ch.ethz.ssh2.ServerHostKeyVerifier;
+import ch.ethz.ssh2.compression.CompressionFactory;
 import ch.ethz.ssh2.crypto.CryptoWishList;
 import ch.ethz.ssh2.crypto.KeyMaterial;
 import ch.ethz.ssh2.crypto.cipher.BlockCipher;
@@ -298,6 +299,15 @@ public class KexManager
 		}
 
 		tm.changeSendCipher(cbc, mac);
+
+		try
+		{
+			tm.changeSendCompression(CompressionFactory.createCompressor(kxs.np.comp_algo_client_to_server));
+		}
+		catch (IllegalArgumentException e1)
+		{
+			throw new IOException("Fatal error during compression startup!");
+		}
 		tm.kexFinished();
 	}
 
@@ -480,6 +490,15 @@ public class KexManager
 
 			tm.changeRecvCipher(cbc, mac);
 
+			try
+			{
+				tm.changeRecvCompression(CompressionFactory.createDecompressor(kxs.np.comp_algo_server_to_client));
+			}
+			catch (IllegalArgumentException e1)
+			{
+				throw new IOException("Fatal error during compression startup!");
+			}
+
 			ConnectionInfo sci = new ConnectionInfo();
 
 			kexCount++;
@@ -6,6 +6,8 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.security.SecureRandom;
 
+import ch.ethz.ssh2.compression.Compressor;
+import ch.ethz.ssh2.compression.Decompressor;
 import ch.ethz.ssh2.crypto.cipher.BlockCipher;
 import ch.ethz.ssh2.crypto.cipher.CipherInputStream;
 import ch.ethz.ssh2.crypto.cipher.CipherOutputStream;
@@ -50,6 +52,16 @@ public class TransportConnection
 
 	int recv_padd_blocksize = 8;
 
+	/* Depends on current compression, null for none */
+
+	Compressor send_comp;
+
+	Decompressor recv_comp;
+
+	/* The delayed compression starts after the user authentication */
+
+	volatile boolean authenticated = false;
+
 	/* won't change */
 
 	final byte[] send_padding_buffer = new byte[256];
@@ -101,6 +113,34 @@ public class TransportConnection
 			send_padd_blocksize = 8;
 	}
 
+	public void changeRecvCompression(Decompressor comp)
+	{
+		if (comp == null)
+		{
+			if (recv_comp != null)
+				recv_comp.end();
+			recv_comp = null;
+		}
+		else if (recv_comp == null)
+			recv_comp = comp;
+		else
+			comp.end(); /* the zlib stream continues after the key re-exchange */
+	}
+
+	public void changeSendCompression(Compressor comp)
+	{
+		if (comp == null)
+		{
+			if (send_comp != null)
+				send_comp.end();
+			send_comp = null;
+		}
+		else if (send_comp == null)
+			send_comp = comp;
+		else
+			comp.end(); /* the zlib stream continues after the key re-exchange */
+	}
+
 	public void sendMessage(byte[] message) throws IOException
 	{
 		sendMessage(message, 0, message.length, 0);
@@ -119,6 +159,15 @@ public class TransportConnection
 
 	public void sendMessage(byte[] message, int off, int len, int padd) throws IOException
 	{
+		int type = message[off] & 0xff;
+
+		if (send_comp != null && authenticated)
+		{
+			len = send_comp.compress(message, off, len);
+			message = send_comp.getBuffer();
+			off = 0;
+		}
+
 		if (padd < 4)
 			padd = 4;
 		else if (padd > 64)
@@ -193,7 +242,7 @@ public class TransportConnection
 
 		if (log.isEnabled())
 		{
-			log.log(90, "Sent " + Packets.getMessageName(message[off] & 0xff) + " " + len + " bytes payload");
+			log.log(90, "Sent " + Packets.getMessageName(type) + " " + len + " bytes payload");
 		}
 
 		send_seq_number++;
@@ -272,6 +321,20 @@ public class TransportConnection
 
 		recv_seq_number++;
 
+		if (recv_comp != null && authenticated)
+		{
+			int uncompressed_length = recv_comp.uncompress(buffer, off, payload_length);
+
+			if (uncompressed_length >= len)
+				throw new IOException("Receive buffer too small (" + len + ", need " + uncompressed_length + ")");
+
+			System.arraycopy(recv_comp.getBuffer(), 0, buffer, off, uncompressed_length);
+			payload_length = uncompressed_length;
+		}
+
+		if (!authenticated && payload_length > 0 && (buffer[off] & 0xff) == Packets.SSH_MSG_USERAUTH_SUCCESS)
+			authenticated = true;
+
 		if (log.isEnabled())
 		{
 			log.log(90, "Received " + Packets.getMessageName(buffer[off] & 0xff) + " " + payload_length
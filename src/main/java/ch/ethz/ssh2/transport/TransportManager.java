@@ -18,6 +18,9 @@ import ch.ethz.ssh2.HTTPProxyData;
 import ch.ethz.ssh2.HTTPProxyException;
 import ch.ethz.ssh2.ProxyData;
 import ch.ethz.ssh2.ServerHostKeyVerifier;
+import ch.ethz.ssh2.StreamProxyData;
+import ch.ethz.ssh2.compression.Compressor;
+import ch.ethz.ssh2.compression.Decompressor;
 import ch.ethz.ssh2.crypto.Base64;
 import ch.ethz.ssh2.crypto.CryptoWishList;
 import ch.ethz.ssh2.crypto.cipher.BlockCipher;
@@ -127,6 +130,11 @@ import ch.ethz.ssh2.util.Tokenizer;
 	int port;
 	final Socket sock = new Socket();
 
+	/* The connection goes over a forwarded channel instead of the socket */
+	StreamProxyData streamProxy = null;
+	InputStream sockIn;
+	OutputStream sockOut;
+
 	Object connectionSemaphore = new Object();
 
 	boolean flagKexOngoing = false;
@@ -218,12 +226,22 @@ import ch.ethz.ssh2.util.Tokenizer;
 
 	public void setTcpNoDelay(boolean state) throws IOException
 	{
-		sock.setTcpNoDelay(state);
+		if (streamProxy == null)
+			sock.setTcpNoDelay(state);
 	}
 
 	public void setSoTimeout(int timeout) throws IOException
 	{
-		sock.setSoTimeout(timeout);
+		if (streamProxy == null)
+			sock.setSoTimeout(timeout);
+	}
+
+	private void closeSocket() throws IOException
+	{
+		if (streamProxy == null)
+			sock.close();
+		else
+			streamProxy.forwarder.close();
 	}
 
 	public ConnectionInfo getConnectionInfo(int kexNumber) throws IOException
@@ -254,7 +272,7 @@ import ch.ethz.ssh2.util.Tokenizer;
 
 			try
 			{
-				sock.close();
+				closeSocket();
 			}
 			catch (IOException ignore)
 			{
@@ -285,7 +303,7 @@ import ch.ethz.ssh2.util.Tokenizer;
 
 					try
 					{
-						sock.close();
+						closeSocket();
 					}
 					catch (IOException ignore)
 					{
@@ -344,6 +362,14 @@ import ch.ethz.ssh2.util.Tokenizer;
 			return;
 		}
 
+		if (proxyData instanceof StreamProxyData)
+		{
+			/* The channel is already open, there is nothing to connect */
+
+			streamProxy = (StreamProxyData) proxyData;
+			return;
+		}
+
 		if (proxyData instanceof HTTPProxyData)
 		{
 			HTTPProxyData pd = (HTTPProxyData) proxyData;
@@ -449,14 +475,25 @@ import ch.ethz.ssh2.util.Tokenizer;
 
 		establishConnection(proxyData, connectTimeout);
 
+		if (streamProxy == null)
+		{
+			sockIn = sock.getInputStream();
+			sockOut = sock.getOutputStream();
+		}
+		else
+		{
+			sockIn = streamProxy.forwarder.getInputStream();
+			sockOut = streamProxy.forwarder.getOutputStream();
+		}
+
 		/* Parse the server line and say hello - important: this information is later needed for the
 		 * key exchange (to stop man-in-the-middle attacks) - that is why we wrap it into an object
 		 * for later use.
 		 */
 
-		ClientServerHello csh = new ClientServerHello(sock.getInputStream(), sock.getOutputStream());
+		ClientServerHello csh = new ClientServerHello(sockIn, sockOut);
 
-		tc = new TransportConnection(sock.getInputStream(), sock.getOutputStream(), rnd);
+		tc = new TransportConnection(sockIn, sockOut, rnd);
 
 		km = new KexManager(this, csh, cwl, hostname, port, verifier, rnd);
 		km.initiateKEX(cwl, dhgex);
@@ -587,6 +624,16 @@ import ch.ethz.ssh2.util.Tokenizer;
 		tc.changeSendCipher(bc, mac);
 	}
 
+	public void changeRecvCompression(Decompressor comp)
+	{
+		tc.changeRecvCompression(comp);
+	}
+
+	public void changeSendCompression(Compressor comp)
+	{
+		tc.changeSendCompression(comp);
+	}
+
 	public void sendAsynchronousMessage(byte[] msg) throws IOException
 	{
 		synchronized (asynchronousQueue)
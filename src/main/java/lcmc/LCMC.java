@@ -128,6 +128,8 @@ public final class LCMC extends JPanel {
     private static final String OUT_OP = "out";
     /** The --debug option. */
     private static final String DEBUG_OP = "debug";
+    /** The --debug-class option. */
+    private static final String DEBUG_CLASS_OP = "debug-class";
     /** The --cluster option. */
     private static final String CLUSTER_OP = "cluster";
     /** The --host option. */
@@ -138,6 +140,8 @@ public final class LCMC extends JPanel {
     private static final String SUDO_OP = "sudo";
     /** The --port option. */
     private static final String PORT_OP = "port";
+    /** The --compression option. */
+    private static final String COMPRESSION_OP = "compression";
     /** The --advanced option. */
     private static final String ADVANCED_OP = "advanced";
     /** The --one-host-cluster option. */
@@ -403,6 +407,12 @@ public final class LCMC extends JPanel {
                      DEBUG_OP,
                      true,
                      "debug level, 0 - none, 3 - all");
+        options.addOption(
+                     null,
+                     DEBUG_CLASS_OP,
+                     true,
+                     "debug level for classes or packages, e.g. "
+                     + "lcmc.utilities.SSH:2,lcmc.data:1");
         options.addOption("c",
                           CLUSTER_OP,
                           true,
@@ -426,6 +436,11 @@ public final class LCMC extends JPanel {
                           PORT_OP,
                           true,
                           "ssh port, used with --cluster option");
+        options.addOption(null,
+                          COMPRESSION_OP,
+                          false,
+                          "whether to use ssh compression, used with --cluster"
+                          + " option");
         options.addOption(null,
                           ADVANCED_OP,
                           false,
@@ -458,6 +473,19 @@ public final class LCMC extends JPanel {
                                         "cannot parse debug level: " + level);
                 }
             }
+            if (cmd.hasOption(DEBUG_CLASS_OP)) {
+                final String classLevels =
+                                        cmd.getOptionValue(DEBUG_CLASS_OP);
+                for (final String classLevel : classLevels.split(",")) {
+                    final String[] cl = classLevel.split(":");
+                    if (cl.length != 2 || !Tools.isNumber(cl[1])) {
+                        throw new ParseException(
+                                  "cannot parse debug class level: "
+                                  + classLevel);
+                    }
+                    Tools.setDebugLevel(cl[0], Integer.parseInt(cl[1]));
+                }
+            }
             boolean tightvnc = cmd.hasOption(TIGHTVNC_OP);
             boolean ultravnc = cmd.hasOption(ULTRAVNC_OP);
             final boolean realvnc = cmd.hasOption(REALVNC_OP);
@@ -626,6 +654,14 @@ public final class LCMC extends JPanel {
                 for (final HostOptions ho : hostsOptions) {
                     ho.setSudo(true);
                 }
+            } else if (COMPRESSION_OP.equals(op)) {
+                if (hostsOptions == null) {
+                    throw new ParseException(
+                         COMPRESSION_OP + " must be defined after " + HOST_OP);
+                }
+                for (final HostOptions ho : hostsOptions) {
+                    ho.setCompression(true);
+                }
             } else if (USER_OP.equals(op)) {
                 if (hostsOptions == null) {
                     throw new ParseException(
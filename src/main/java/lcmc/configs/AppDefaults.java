@@ -94,6 +94,7 @@ public final class AppDefaults extends java.util.ListResourceBundle {
 
         {"ClusterBrowser.DrbdResLabelWidth",     150},
         {"ClusterBrowser.DrbdResFieldWidth",     150},
+        {"ClusterBrowser.DrbdEventsDelay",       200},
         {"HostBrowser.DrbdDevLabelWidth",        150},
         {"HostBrowser.DrbdDevFieldWidth",        150},
 
@@ -102,6 +103,8 @@ public final class AppDefaults extends java.util.ListResourceBundle {
         {"Browser.InfoPanelMinimalWidth",        440},
         {"Browser.LabelFieldHeight",             25},
         {"Browser.FieldHeight",                  30},
+        {"EditableInfo.CheckDelay",              100},
+        {"EditableInfo.CheckThreads",            4},
 
         {"Dialog.DrbdConfig.Resource.LabelWidth", 150},
         {"Dialog.DrbdConfig.Resource.FieldWidth", 150},
@@ -119,6 +122,9 @@ public final class AppDefaults extends java.util.ListResourceBundle {
         {"MainMenu.DrbdGuiFiles.Old",       System.getProperty("user.home")
                                                 + "/"
                                                 + "drbd-gui.drbdg"},
+        {"CRMXML.MetaDataCacheDir",         System.getProperty("user.home")
+                                                + "/"
+                                                + ".lcmc/ra-metadata"},
 
         /*
          * Colors
@@ -411,9 +417,16 @@ public final class AppDefaults extends java.util.ListResourceBundle {
         {"SSH.KexTimeout",           0}, /* milliseconds, 0 no timeout */
         {"SSH.Command.Timeout.Long", 0},     /* milliseconds, 0 no timeout */
         {"SSH.Command.Timeout",      180000}, /* milliseconds */
+        {"SSH.Command.Threads",      256}, /* for all hosts */
+        {"SSH.Command.MaxPerHost",   16}, /* without status commands */
+        {"SSH.Connect.Threads",      8}, /* hosts connected at startup */
         {"ProgressBar.Sleep",        100},   /* milliseconds */
         {"ProgressBar.Delay",        50},    /* milliseconds */
 
+        /* crm */
+        {"CRM.PtestCache.Size",      32}, /* cached simulations */
+        {"CRM.PtestPrefetch.Delay",  500}, /* milliseconds */
+
         /* score */
         {"Score.Infinity",                    100000},
         {"Score.MinusInfinity",               -100000},
@@ -163,7 +163,8 @@ public final class DistResource extends java.util.ListResourceBundle {
         {"installGuiHelper", "installGuiHelper"}, // is treated specially by ssh class.
 
         {"GetHostAllInfo", SUDO + "@GUI-HELPER@ all"},
-        {"HostHWInfoDaemon", SUDO + "@GUI-HELPER@ hw-info-daemon"},
+        {"HostHWInfoDaemon", SUDO + "@GUI-HELPER@ hw-info-daemon framed gzip"},
+        {"HostStatusMux", SUDO + "@GUI-HELPER@ status-mux"},
         {"GetHostHWInfo", SUDO + "@GUI-HELPER@ hw-info"},
         {"GetHostHWInfoLazy", "nice -n 19 " + SUDO + "@GUI-HELPER@ hw-info-lazy"},
         {"GetNetInfo",  SUDO + "@GUI-HELPER@ get-net-info"},
@@ -216,6 +217,9 @@ public final class DistResource extends java.util.ListResourceBundle {
         {"Heartbeat.getOCFParameters",
          SUDO + "@GUI-HELPER@ get-resource-agents;"},
 
+        {"Heartbeat.getOCFParametersChanged",
+         SUDO + "@GUI-HELPER@ get-resource-agents changed @AGENTS@;"},
+
         /* vmxpath env is needed so that vmware meta-data does not hang */
         {"Heartbeat.getClusterMetadata",
          SUDO + "@GUI-HELPER@ get-cluster-metadata"},
@@ -233,6 +233,9 @@ public final class TextResource extends java.util.ListResourceBundle {
         {"Dialog.Host.NewHost.UseSudo",
          "Use sudo:"},
 
+        {"Dialog.Host.NewHost.Compression",
+         "SSH compression:"},
+
         {"Dialog.Host.NewHost.EnterPassword",
          "Password:"},
 
@@ -2124,6 +2127,9 @@ public final class TextResource extends java.util.ListResourceBundle {
         {"CIB.ExecutingCommand",
          "Executing CRM command..."},
 
+        {"CIB.TransactionFailed",
+         "CRM command failed"},
+
         {"Openais.ExecutingCommand",
          "Executing OpenAIS command..."},
 
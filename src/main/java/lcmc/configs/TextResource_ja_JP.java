@@ -213,6 +213,9 @@ public final class TextResource_ja_JP extends java.util.ListResourceBundle {
         {"Dialog.Host.NewHost.UseSudo",
          "sudoの利用:"},
 
+        {"Dialog.Host.NewHost.Compression",
+         "SSH圧縮:"},
+
         {"Dialog.Host.NewHost.EnterPassword",
          "パスワード:"},
 
@@ -32,6 +32,10 @@ import org.w3c.dom.Document;
 import org.w3c.dom.NodeList;
 import org.w3c.dom.Node;
 
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
 import java.util.Map;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
@@ -185,6 +189,12 @@ public final class CRMXML extends XML {
     private boolean drbddiskPresent;
     /** Whether linbit::drbd ra is present. */
     private boolean linbitDrbdPresent;
+    /** Checksums of the OCF agent files, "provider/file" is the key. */
+    private final Map<String, String> ocfChecksums =
+                                          new LinkedHashMap<String, String>();
+    /** On disk cache of the OCF agents meta-data. */
+    private final ResourceAgentCache raCache = new ResourceAgentCache(
+                              Tools.getDefault("CRMXML.MetaDataCacheDir"));
     /** Choices for combo box in stonith hostlists. */
     private final List<String> hostlistChoices = new ArrayList<String>();
     /** Parameters of some RAs that are not advanced. */
@@ -209,6 +219,15 @@ public final class CRMXML extends XML {
     private static final String PARAM_TYPE_TIME = "time";
     /** Fail count prefix. */
     private static final String FAIL_COUNT_PREFIX = "fail-count-";
+    /** Resource id of a clone instance, e.g. "res:1". */
+    private static final Pattern CLONE_INSTANCE_PATTERN =
+                                             Pattern.compile("(.*):(\\d+)$");
+    /** Index of the id in the parsed nvpair. */
+    private static final int NVPAIR_ID = 0;
+    /** Index of the name in the parsed nvpair. */
+    private static final int NVPAIR_NAME = 1;
+    /** Index of the value in the parsed nvpair. */
+    private static final int NVPAIR_VALUE = 2;
     /** Attribute roles. */
     private static final String[] ATTRIBUTE_ROLES = {null,
                                                      "Stopped",
@@ -553,10 +572,22 @@ public final class CRMXML extends XML {
                              Tools.getString("CRMXML.OtherOptions"));
     }
 
-    /** Prepares a new <code>CRMXML</code> object. */
-    public CRMXML(final Host host, final ServicesInfo ssi) {
+    /**
+     * Prepares a new <code>CRMXML</code> object, that can parse the cib, but
+     * has no resource agents and parameters loaded.
+     */
+    CRMXML(final Host host) {
         super();
         this.host = host;
+        pcmkClone = new ResourceAgent(ConfigData.PM_CLONE_SET_NAME,
+                                      "",
+                                      "clone");
+        pcmkClone.setMetaDataLoaded(true);
+    }
+
+    /** Prepares a new <code>CRMXML</code> object. */
+    public CRMXML(final Host host, final ServicesInfo ssi) {
+        this(host);
         final String[] booleanValues = PCMK_BOOLEAN_VALUES;
         final String hbBooleanTrue = booleanValues[0];
         final String hbBooleanFalse = booleanValues[1];
@@ -570,10 +601,6 @@ public final class CRMXML extends XML {
             }
         }
         /* clones */
-        pcmkClone = new ResourceAgent(ConfigData.PM_CLONE_SET_NAME,
-                                      "",
-                                      "clone");
-        pcmkClone.setMetaDataLoaded(true);
         addMetaAttribute(pcmkClone, MASTER_MAX_META_ATTR,      null, true);
         addMetaAttribute(pcmkClone, MASTER_NODE_MAX_META_ATTR, null, true);
         addMetaAttribute(pcmkClone, CLONE_MAX_META_ATTR,       null, false);
@@ -943,11 +970,15 @@ public final class CRMXML extends XML {
         final Pattern cp = Pattern.compile("^class:\\s*(.*?)\\s*$");
         final Pattern pp = Pattern.compile("^provider:\\s*(.*?)\\s*$");
         final Pattern sp = Pattern.compile("^ra:\\s*(.*?)\\s*$");
+        final Pattern csp =
+           Pattern.compile("^checksum:\\s*([\\w.+-]+)\\s+([0-9a-f]+)\\s*$");
         final StringBuilder xml = new StringBuilder("");
         String resourceClass = null;
         String provider = null;
         String serviceName = null;
         boolean masterSlave = false; /* is probably m/s ...*/
+        ocfChecksums.clear();
+        int ocfCount = 0;
         for (int i = 0; i < lines.length; i++) {
             final Matcher cm = cp.matcher(lines[i]);
             if (cm.matches()) {
@@ -959,6 +990,14 @@ public final class CRMXML extends XML {
                 provider = pm.group(1);
                 continue;
             }
+            final Matcher csm = csp.matcher(lines[i]);
+            if (csm.matches()) {
+                if (ResourceAgent.OCF_CLASS.equals(resourceClass)) {
+                    ocfChecksums.put(provider + "/" + csm.group(1),
+                                     csm.group(2));
+                }
+                continue;
+            }
             final Matcher sm = sp.matcher(lines[i]);
             if (sm.matches()) {
                 serviceName = sm.group(1);
@@ -966,6 +1005,9 @@ public final class CRMXML extends XML {
             if (serviceName != null) {
                 xml.append(lines[i]);
                 xml.append('\n');
+                if (ResourceAgent.OCF_CLASS.equals(resourceClass)) {
+                    ocfCount++;
+                }
                 if ("drbddisk".equals(serviceName)) {
                     drbddiskPresent0 = true;
                 } else if ("drbd".equals(serviceName)
@@ -1011,6 +1053,10 @@ public final class CRMXML extends XML {
                 xml.delete(0, xml.length());
             }
         }
+        if (ocfChecksums.size() != ocfCount) {
+            /* all agents will be fetched, if some checksums are missing */
+            ocfChecksums.clear();
+        }
         drbddiskPresent = drbddiskPresent0;
         linbitDrbdPresent = linbitDrbdPresent0;
     }
@@ -1025,10 +1071,45 @@ public final class CRMXML extends XML {
                                         (ConvertCmdCallback) null));
     }
 
-    /** Initialize resource agents with their meta data. */
+    /**
+     * Initialize resource agents with their meta data. OCF agents, that
+     * didn't change since they were cached, are loaded from the cache and
+     * only the changed ones are fetched from the host.
+     */
     private void initOCFMetaDataAll() {
-        initOCFMetaData(host.getDistCommand("Heartbeat.getOCFParameters",
-                                            (ConvertCmdCallback) null));
+        if (ocfChecksums.isEmpty()) {
+            /* old helper or no ocf agents */
+            initOCFMetaData(host.getDistCommand("Heartbeat.getOCFParameters",
+                                                (ConvertCmdCallback) null));
+            return;
+        }
+        final StringBuilder cached = new StringBuilder();
+        final StringBuilder changed = new StringBuilder();
+        int cachedCount = 0;
+        for (final Map.Entry<String, String> entry
+                                                : ocfChecksums.entrySet()) {
+            final String[] providerFile = entry.getKey().split("/", 2);
+            final String metaData = raCache.get(providerFile[0],
+                                                providerFile[1],
+                                                entry.getValue());
+            if (metaData == null) {
+                changed.append(' ');
+                changed.append(entry.getKey());
+            } else {
+                cachedCount++;
+                cached.append("provider:");
+                cached.append(providerFile[0]);
+                cached.append('\n');
+                cached.append(metaData);
+            }
+        }
+        Tools.debug(this, "RAs from cache: " + cachedCount, 1);
+        parseOCFMetaData(cached.toString());
+        final Map<String, String> replaceHash = new HashMap<String, String>();
+        replaceHash.put("@AGENTS@", changed.toString());
+        initOCFMetaData(
+                  host.getDistCommand("Heartbeat.getOCFParametersChanged",
+                                      replaceHash));
     }
 
     /** Initialize resource agents with their meta data. */
@@ -1045,15 +1126,31 @@ public final class CRMXML extends XML {
         if (output == null) {
             return;
         }
+        parseOCFMetaData(output);
+        if (!drbddiskPresent) {
+            Tools.appWarning("drbddisk heartbeat script is not present");
+        }
+    }
+
+    /**
+     * Parses meta data of the resource agents. Meta data of the OCF agents
+     * that come with a checksum are stored in the cache.
+     */
+    private void parseOCFMetaData(final String output) {
         final String[] lines = output.split("\\r?\\n");
         final Pattern pp = Pattern.compile("^provider:\\s*(.*?)\\s*$");
         final Pattern mp = Pattern.compile("^master:\\s*(.*?)\\s*$");
+        final Pattern fp =
+                     Pattern.compile("^file:\\s*(\\S+)\\s+([0-9a-f]+)\\s*$");
         final Pattern bp = Pattern.compile("<resource-agent.*\\s+name=\"(.*?)\".*");
         final Pattern ep = Pattern.compile("</resource-agent>");
         final StringBuilder xml = new StringBuilder("");
         String provider = null;
         String serviceName = null;
         boolean masterSlave = false; /* is probably m/s ...*/
+        String master = "";
+        String file = null;
+        String checksum = null;
         for (int i = 0; i < lines.length; i++) {
             /*
             <resource-agent name="AudibleAlarm">
@@ -1063,11 +1160,19 @@ public final class CRMXML extends XML {
             final Matcher pm = pp.matcher(lines[i]);
             if (pm.matches()) {
                 provider = pm.group(1);
+                file = null;
+                continue;
+            }
+            final Matcher fm = fp.matcher(lines[i]);
+            if (fm.matches()) {
+                file = fm.group(1);
+                checksum = fm.group(2);
                 continue;
             }
             final Matcher mm = mp.matcher(lines[i]);
             if (mm.matches()) {
-                if ("".equals(mm.group(1))) {
+                master = mm.group(1);
+                if ("".equals(master)) {
                     masterSlave = false;
                 } else {
                     masterSlave = true;
@@ -1087,14 +1192,18 @@ public final class CRMXML extends XML {
                                   provider,
                                   xml.toString(),
                                   masterSlave);
+                    if (file != null) {
+                        raCache.put(provider,
+                                    file,
+                                    checksum,
+                                    "master:" + master + "\n" + xml);
+                        file = null;
+                    }
                     serviceName = null;
                     xml.delete(0, xml.length());
                 }
             }
         }
-        if (!drbddiskPresent) {
-            Tools.appWarning("drbddisk heartbeat script is not present");
-        }
     }
 
     /** Returns choices for check box. (True, False). */
@@ -2160,344 +2269,6 @@ public final class CRMXML extends XML {
         return pcmkClone;
     }
 
-    /** Parse resource defaults. */
-    String parseRscDefaults(
-                       final Node rscDefaultsNode,
-                       final Map<String, String> rscDefaultsParams,
-                       final Map<String, String> rscDefaultsParamsNvpairIds) {
-
-        final Map<String, String> nvpairIds =
-                                        new HashMap<String, String>();
-        /* <meta_attributtes> */
-        final Node metaAttrsNode = getChildNode(rscDefaultsNode,
-                                                "meta_attributes");
-        String rscDefaultsId = null;
-        if (metaAttrsNode != null) {
-            rscDefaultsId = getAttribute(metaAttrsNode, "id");
-            NodeList nvpairsMA;
-            if (Tools.versionBeforePacemaker(host)) {
-                /* <attributtes> only til 2.1.4 */
-                final Node attrsNode =
-                                  getChildNode(metaAttrsNode, "attributes");
-                nvpairsMA = attrsNode.getChildNodes();
-            } else {
-                nvpairsMA = metaAttrsNode.getChildNodes();
-            }
-            /* <nvpair...> */
-            /* target-role and is-managed */
-            for (int l = 0; l < nvpairsMA.getLength(); l++) {
-                final Node maNode = nvpairsMA.item(l);
-                if (maNode.getNodeName().equals("nvpair")) {
-                    final String nvpairId = getAttribute(maNode, "id");
-                    final String name = getAttribute(maNode, "name");
-                    String value = getAttribute(maNode, "value");
-                    if (TARGET_ROLE_META_ATTR.equals(name)) {
-                        value = value.toLowerCase(Locale.US);
-                    }
-                    rscDefaultsParams.put(name, value);
-                    rscDefaultsParamsNvpairIds.put(name, nvpairId);
-                }
-            }
-        }
-        return rscDefaultsId;
-    }
-
-    /** Parse op defaults. */
-    void parseOpDefaults(final Node opDefaultsNode,
-                         final Map<String, String> opDefaultsParams) {
-
-        final Map<String, String> nvpairIds =
-                                        new HashMap<String, String>();
-        /* <meta_attributtes> */
-        final Node metaAttrsNode = getChildNode(opDefaultsNode,
-                                                "meta_attributes");
-        if (metaAttrsNode != null) {
-            /* <attributtes> only til 2.1.4 */
-            NodeList nvpairsMA;
-            if (Tools.versionBeforePacemaker(host)) {
-                final Node attrsNode =
-                                  getChildNode(metaAttrsNode, "attributes");
-                nvpairsMA = attrsNode.getChildNodes();
-            } else {
-                nvpairsMA = metaAttrsNode.getChildNodes();
-            }
-            /* <nvpair...> */
-            for (int l = 0; l < nvpairsMA.getLength(); l++) {
-                final Node maNode = nvpairsMA.item(l);
-                if (maNode.getNodeName().equals("nvpair")) {
-                    final String name = getAttribute(maNode, "name");
-                    final String value = getAttribute(maNode, "value");
-                    opDefaultsParams.put(name, value);
-                }
-            }
-        }
-    }
-
-    /** Parses attributes, operations etc. from primitives and clones. */
-    private void parseAttributes(
-              final Node resourceNode,
-              final String crmId,
-              final Map<String, Map<String, String>> parametersMap,
-              final Map<String, Map<String, String>> parametersNvpairsIdsMap,
-              final Map<String, String> resourceInstanceAttrIdMap,
-              final MultiKeyMap<String, String> operationsMap,
-              final Map<String, String> metaAttrsIdMap,
-              final Map<String, String> operationsIdMap,
-              final Map<String, Map<String, String>> resOpIdsMap,
-              final Map<String, String> operationsIdRefs,
-              final Map<String, String> operationsIdtoCRMId,
-              final Map<String, String> metaAttrsIdRefs,
-              final Map<String, String> metaAttrsIdToCRMId,
-              final boolean stonith) {
-        final Map<String, String> params = new HashMap<String, String>();
-        parametersMap.put(crmId, params);
-        final Map<String, String> nvpairIds = new HashMap<String, String>();
-        parametersNvpairsIdsMap.put(crmId, nvpairIds);
-        /* <instance_attributes> */
-        final Node instanceAttrNode = getChildNode(resourceNode,
-                                                   "instance_attributes");
-        /* <nvpair...> */
-        if (instanceAttrNode != null) {
-            final String iAId = getAttribute(instanceAttrNode, "id");
-            resourceInstanceAttrIdMap.put(crmId, iAId);
-            NodeList nvpairsRes;
-            if (Tools.versionBeforePacemaker(host)) {
-                /* <attributtes> only til 2.1.4 */
-                final Node attrNode = getChildNode(instanceAttrNode,
-                                                   "attributes");
-                nvpairsRes = attrNode.getChildNodes();
-            } else {
-                nvpairsRes = instanceAttrNode.getChildNodes();
-            }
-            for (int j = 0; j < nvpairsRes.getLength(); j++) {
-                final Node optionNode = nvpairsRes.item(j);
-                if (optionNode.getNodeName().equals("nvpair")) {
-                    final String nvpairId = getAttribute(optionNode, "id");
-                    String name = getAttribute(optionNode, "name");
-                    final String value = getAttribute(optionNode, "value");
-                    if (stonith && "priority".equals(name)) {
-                        /* so it does not clash with meta attr priority */
-                        name = STONITH_PRIORITY_INSTANCE_ATTR;
-                    }
-                    params.put(name, value);
-                    nvpairIds.put(name, nvpairId);
-                }
-            }
-        }
-
-        /* <operations> */
-        final Node operationsNode = getChildNode(resourceNode, "operations");
-        if (operationsNode != null) {
-            final String operationsIdRef = getAttribute(operationsNode,
-                                                        "id-ref");
-            if (operationsIdRef == null) {
-                final String operationsId = getAttribute(operationsNode, "id");
-                operationsIdMap.put(crmId, operationsId);
-                operationsIdtoCRMId.put(operationsId, crmId);
-                final Map<String, String> opIds = new HashMap<String, String>();
-                resOpIdsMap.put(crmId, opIds);
-                /* <op> */
-                final NodeList ops = operationsNode.getChildNodes();
-                for (int k = 0; k < ops.getLength(); k++) {
-                    final Node opNode = ops.item(k);
-                    if (opNode.getNodeName().equals("op")) {
-                        final String opId = getAttribute(opNode, "id");
-                        final String name = getAttribute(opNode, "name");
-                        final String timeout = getAttribute(opNode, "timeout");
-                        final String interval = getAttribute(opNode,
-                                                             "interval");
-                        final String startDelay = getAttribute(opNode,
-                                                               "start-delay");
-                        operationsMap.put(crmId, name, "interval", interval);
-                        operationsMap.put(crmId, name, "timeout", timeout);
-                        operationsMap.put(crmId,
-                                          name,
-                                          "start-delay",
-                                          startDelay);
-                        opIds.put(name, opId);
-                    }
-                }
-            } else {
-                operationsIdRefs.put(crmId, operationsIdRef);
-            }
-        }
-
-        /* <meta_attributtes> */
-        final Node metaAttrsNode = getChildNode(resourceNode,
-                                                "meta_attributes");
-        if (metaAttrsNode != null) {
-            final String metaAttrsIdRef = getAttribute(metaAttrsNode, "id-ref");
-            if (metaAttrsIdRef == null) {
-                final String metaAttrsId = getAttribute(metaAttrsNode, "id");
-                metaAttrsIdMap.put(crmId, metaAttrsId);
-                metaAttrsIdToCRMId.put(metaAttrsId, crmId);
-                /* <attributtes> only til 2.1.4 */
-                NodeList nvpairsMA;
-                if (Tools.versionBeforePacemaker(host)) {
-                    final Node attrsNode =
-                                 getChildNode(metaAttrsNode, "attributes");
-                    nvpairsMA = attrsNode.getChildNodes();
-                } else {
-                    nvpairsMA = metaAttrsNode.getChildNodes();
-                }
-                /* <nvpair...> */
-                /* target-role and is-managed */
-                for (int l = 0; l < nvpairsMA.getLength(); l++) {
-                    final Node maNode = nvpairsMA.item(l);
-                    if (maNode.getNodeName().equals("nvpair")) {
-                        final String nvpairId = getAttribute(maNode, "id");
-                        final String name = getAttribute(maNode, "name");
-                        String value = getAttribute(maNode, "value");
-                        if (TARGET_ROLE_META_ATTR.equals(name)) {
-                            value = value.toLowerCase(Locale.US);
-                        }
-                        params.put(name, value);
-                        nvpairIds.put(name, nvpairId);
-                    }
-                }
-            } else {
-                metaAttrsIdRefs.put(crmId, metaAttrsIdRef);
-            }
-        }
-    }
-
-    /** Parses the "group" node. */
-    private void parseGroup(
-                final Node groupNode,
-                final List<String> resList,
-                final Map<String, List<String>> groupsToResourcesMap,
-                final Map<String, Map<String, String>> parametersMap,
-                final Map<String, ResourceAgent> resourceTypeMap,
-                final Map<String, Map<String, String>> parametersNvpairsIdsMap,
-                final Map<String, String> resourceInstanceAttrIdMap,
-                final MultiKeyMap<String, String> operationsMap,
-                final Map<String, String> metaAttrsIdMap,
-                final Map<String, String> operationsIdMap,
-                final Map<String, Map<String, String>> resOpIdsMap,
-                final Map<String, String> operationsIdRefs,
-                final Map<String, String> operationsIdtoCRMId,
-                final Map<String, String> metaAttrsIdRefs,
-                final Map<String, String> metaAttrsIdToCRMId) {
-        final NodeList primitives = groupNode.getChildNodes();
-        final String groupId = getAttribute(groupNode, "id");
-        final Map<String, String> params =
-                                        new HashMap<String, String>();
-        parametersMap.put(groupId, params);
-        final Map<String, String> nvpairIds =
-                                        new HashMap<String, String>();
-        parametersNvpairsIdsMap.put(groupId, nvpairIds);
-        if (resList != null) {
-            resList.add(groupId);
-        }
-        List<String> groupResList = groupsToResourcesMap.get(groupId);
-        if (groupResList == null) {
-            groupResList = new ArrayList<String>();
-            groupsToResourcesMap.put(groupId, groupResList);
-        }
-
-        for (int j = 0; j < primitives.getLength(); j++) {
-            final Node primitiveNode = primitives.item(j);
-            if (primitiveNode.getNodeName().equals("primitive")) {
-                parsePrimitive(primitiveNode,
-                               groupResList,
-                               resourceTypeMap,
-                               parametersMap,
-                               parametersNvpairsIdsMap,
-                               resourceInstanceAttrIdMap,
-                               operationsMap,
-                               metaAttrsIdMap,
-                               operationsIdMap,
-                               resOpIdsMap,
-                               operationsIdRefs,
-                               operationsIdtoCRMId,
-                               metaAttrsIdRefs,
-                               metaAttrsIdToCRMId);
-            }
-        }
-
-        /* <meta_attributtes> */
-        final Node metaAttrsNode = getChildNode(groupNode,
-                                                "meta_attributes");
-        if (metaAttrsNode != null) {
-            final String metaAttrsIdRef = getAttribute(metaAttrsNode, "id-ref");
-            if (metaAttrsIdRef == null) {
-                final String metaAttrsId = getAttribute(metaAttrsNode, "id");
-                metaAttrsIdMap.put(groupId, metaAttrsId);
-                metaAttrsIdToCRMId.put(metaAttrsId, groupId);
-                /* <attributtes> only til 2.1.4 */
-                NodeList nvpairsMA;
-                if (Tools.versionBeforePacemaker(host)) {
-                    final Node attrsNode =
-                                 getChildNode(metaAttrsNode, "attributes");
-                    nvpairsMA = attrsNode.getChildNodes();
-                } else {
-                    nvpairsMA = metaAttrsNode.getChildNodes();
-                }
-                /* <nvpair...> */
-                /* target-role and is-managed */
-                for (int l = 0; l < nvpairsMA.getLength(); l++) {
-                    final Node maNode = nvpairsMA.item(l);
-                    if (maNode.getNodeName().equals("nvpair")) {
-                        final String nvpairId = getAttribute(maNode, "id");
-                        String name = getAttribute(maNode, "name");
-                        String value = getAttribute(maNode, "value");
-                        if (TARGET_ROLE_META_ATTR.equals(name)) {
-                            value = value.toLowerCase(Locale.US);
-                        }
-                        if ("ordered".equals(name)) {
-                            name = GROUP_ORDERED_META_ATTR;
-                        }
-                        params.put(name, value);
-                        nvpairIds.put(name, nvpairId);
-                    }
-                }
-            } else {
-                metaAttrsIdRefs.put(groupId, metaAttrsIdRef);
-            }
-        }
-    }
-
-    /** Parses the "primitive" node. */
-    private void parsePrimitive(
-                final Node primitiveNode,
-                final List<String> groupResList,
-                final Map<String, ResourceAgent> resourceTypeMap,
-                final Map<String, Map<String, String>> parametersMap,
-                final Map<String, Map<String, String>> parametersNvpairsIdsMap,
-                final Map<String, String> resourceInstanceAttrIdMap,
-                final MultiKeyMap<String, String> operationsMap,
-                final Map<String, String> metaAttrsIdMap,
-                final Map<String, String> operationsIdMap,
-                final Map<String, Map<String, String>> resOpIdsMap,
-                final Map<String, String> operationsIdRefs,
-                final Map<String, String> operationsIdtoCRMId,
-                final Map<String, String> metaAttrsIdRefs,
-                final Map<String, String> metaAttrsIdToCRMId) {
-        final String raClass = getAttribute(primitiveNode, "class");
-        final String crmId = getAttribute(primitiveNode, "id");
-        String provider = getAttribute(primitiveNode, "provider");
-        if (provider == null) {
-            provider = ResourceAgent.HEARTBEAT_PROVIDER;
-        }
-        final String type = getAttribute(primitiveNode, "type");
-        resourceTypeMap.put(crmId, getResourceAgent(type, provider, raClass));
-        groupResList.add(crmId);
-        parseAttributes(primitiveNode,
-                        crmId,
-                        parametersMap,
-                        parametersNvpairsIdsMap,
-                        resourceInstanceAttrIdMap,
-                        operationsMap,
-                        metaAttrsIdMap,
-                        operationsIdMap,
-                        resOpIdsMap,
-                        operationsIdRefs,
-                        operationsIdtoCRMId,
-                        metaAttrsIdRefs,
-                        metaAttrsIdToCRMId,
-                        ResourceAgent.STONITH_CLASS.equals(raClass));
-    }
-
     /**
      * This class holds parsed status of resource, m/s set, or clone set.
      */
@@ -2545,28 +2316,33 @@ public final class CRMXML extends XML {
         }
     }
 
-    /** Returns a hash with resource information. (running_on) */
+    /**
+     * Returns a hash with resource information. (running_on)
+     * The status is parsed in one pass with streaming parser, without
+     * building the whole document.
+     */
     Map<String, ResStatus> parseResStatus(final String resStatus) {
-        final Map<String, ResStatus> resStatusMap =
-                                           new HashMap<String, ResStatus>();
-        final Document document = getXMLDocument(resStatus);
-        if (document == null) {
+        final XMLStreamReader reader = getXMLStreamReader(resStatus);
+        if (reader == null) {
             return null;
         }
-
-        /* get root <resource_status> */
-        final Node statusNode = getChildNode(document, "resource_status");
-        if (statusNode == null) {
-            return null;
-        }
-        /*      <resource...> */
-        final NodeList resources = statusNode.getChildNodes();
-        for (int i = 0; i < resources.getLength(); i++) {
-            final Node resourceNode = resources.item(i);
-            if (resourceNode.getNodeName().equals("resource")) {
-                final String id = getAttribute(resourceNode, "id");
-                final String isManaged = getAttribute(resourceNode, "managed");
-                final NodeList statusList = resourceNode.getChildNodes();
+        final Map<String, ResStatus> resStatusMap =
+                                           new HashMap<String, ResStatus>();
+        try {
+            /* get root <resource_status> */
+            if (reader.nextTag() != XMLStreamConstants.START_ELEMENT
+                || !"resource_status".equals(reader.getLocalName())) {
+                return null;
+            }
+            /*      <resource...> */
+            while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+                if (!"resource".equals(reader.getLocalName())) {
+                    skipElement(reader);
+                    continue;
+                }
+                final String id = reader.getAttributeValue(null, "id");
+                final String isManaged =
+                                   reader.getAttributeValue(null, "managed");
                 List<String> runningOnList = null;
                 List<String> masterOnList = null;
                 List<String> slaveOnList = null;
@@ -2574,29 +2350,28 @@ public final class CRMXML extends XML {
                 if ("managed".equals(isManaged)) {
                     managed = true;
                 }
-                for (int j = 0; j < statusList.getLength(); j++) {
-                    final Node setNode = statusList.item(j);
-                    if (TARGET_ROLE_STARTED.equalsIgnoreCase(
-                                                    setNode.getNodeName())) {
-                        final String node = getText(setNode);
+                while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+                    final String setNode = reader.getLocalName();
+                    if (TARGET_ROLE_STARTED.equalsIgnoreCase(setNode)) {
+                        final String node = reader.getElementText();
                         if (runningOnList == null) {
                             runningOnList = new ArrayList<String>();
                         }
                         runningOnList.add(node);
-                    } else if (TARGET_ROLE_MASTER.equalsIgnoreCase(
-                                                      setNode.getNodeName())) {
-                        final String node = getText(setNode);
+                    } else if (TARGET_ROLE_MASTER.equalsIgnoreCase(setNode)) {
+                        final String node = reader.getElementText();
                         if (masterOnList == null) {
                             masterOnList = new ArrayList<String>();
                         }
                         masterOnList.add(node);
-                    } else if (TARGET_ROLE_SLAVE.equalsIgnoreCase(
-                                                      setNode.getNodeName())) {
-                        final String node = getText(setNode);
+                    } else if (TARGET_ROLE_SLAVE.equalsIgnoreCase(setNode)) {
+                        final String node = reader.getElementText();
                         if (slaveOnList == null) {
                             slaveOnList = new ArrayList<String>();
                         }
                         slaveOnList.add(node);
+                    } else {
+                        skipElement(reader);
                     }
                 }
                 resStatusMap.put(id, new ResStatus(runningOnList,
@@ -2604,164 +2379,173 @@ public final class CRMXML extends XML {
                                                    slaveOnList,
                                                    managed));
             }
+        } catch (XMLStreamException xse) {
+            Tools.appWarning("could not parse: " + resStatus);
+            return null;
+        } finally {
+            try {
+                reader.close();
+            } catch (XMLStreamException xse) {
+                Tools.appWarning("could not close parser: " + xse);
+            }
         }
         return resStatusMap;
     }
 
-    /** Parses the transient attributes. */
+    /** Parses the transient attributes of the node. */
     private void parseTransientAttributes(
+                      final XMLStreamReader reader,
                       final String uname,
-                      final Node transientAttrNode,
                       final MultiKeyMap<String, String> failedMap,
                       final MultiKeyMap<String, Set<String>> failedClonesMap,
-                      final Map<String, String> pingCountMap) {
-        /* <instance_attributes> */
-        final Node instanceAttrNode = getChildNode(transientAttrNode,
-                                                   "instance_attributes");
-        /* <nvpair...> */
-        if (instanceAttrNode != null) {
-            NodeList nvpairsRes;
-            if (Tools.versionBeforePacemaker(host)) {
-                /* <attributtes> only til 2.1.4 */
-                final Node attrNode = getChildNode(instanceAttrNode,
-                                                   "attributes");
-                nvpairsRes = attrNode.getChildNodes();
-            } else {
-                nvpairsRes = instanceAttrNode.getChildNodes();
+                      final Map<String, String> pingCountMap)
+                                                throws XMLStreamException {
+        boolean instanceAttrs = false;
+        while (nextChildElement(reader)) {
+            /* <instance_attributes> */
+            if (instanceAttrs
+                || !"instance_attributes".equals(reader.getLocalName())) {
+                skipElement(reader);
+                continue;
             }
-            for (int j = 0; j < nvpairsRes.getLength(); j++) {
-                final Node optionNode = nvpairsRes.item(j);
-                if (optionNode.getNodeName().equals("nvpair")) {
-                    final String name = getAttribute(optionNode, "name");
-                    final String value = getAttribute(optionNode, "value");
-                    /* TODO: last-failure-" */
-                    if ("pingd".equals(name)) {
-                        pingCountMap.put(uname, value);
-                    } else if (name.indexOf(FAIL_COUNT_PREFIX) == 0) {
-                        final String resId =
-                                    name.substring(FAIL_COUNT_PREFIX.length());
-                        final String unameLowerCase =
-                                                uname.toLowerCase(Locale.US);
-                        failedMap.put(unameLowerCase, resId, value);
-                        final Pattern p = Pattern.compile("(.*):(\\d+)$");
-                        final Matcher m = p.matcher(resId);
-                        if (m.matches()) {
-                            final String crmId = m.group(1);
-                            Set<String> clones =
-                                    failedClonesMap.get(unameLowerCase, crmId);
-                            if (clones == null) {
-                                clones = new LinkedHashSet<String>();
-                                failedClonesMap.put(unameLowerCase,
-                                                    crmId,
-                                                    clones);
-                            }
-                            clones.add(m.group(2));
-                            failedMap.put(uname.toLowerCase(Locale.US),
-                                          crmId,
-                                          value);
+            instanceAttrs = true;
+            /* <nvpair...> */
+            for (final String[] nvpair : parseNvpairs(reader)) {
+                final String name = nvpair[NVPAIR_NAME];
+                final String value = nvpair[NVPAIR_VALUE];
+                /* TODO: last-failure-" */
+                if ("pingd".equals(name)) {
+                    pingCountMap.put(uname, value);
+                } else if (name.indexOf(FAIL_COUNT_PREFIX) == 0) {
+                    final String resId =
+                                name.substring(FAIL_COUNT_PREFIX.length());
+                    final String unameLowerCase =
+                                            uname.toLowerCase(Locale.US);
+                    failedMap.put(unameLowerCase, resId, value);
+                    final Matcher m = CLONE_INSTANCE_PATTERN.matcher(resId);
+                    if (m.matches()) {
+                        final String crmId = m.group(1);
+                        Set<String> clones =
+                                failedClonesMap.get(unameLowerCase, crmId);
+                        if (clones == null) {
+                            clones = new LinkedHashSet<String>();
+                            failedClonesMap.put(unameLowerCase,
+                                                crmId,
+                                                clones);
                         }
+                        clones.add(m.group(2));
+                        failedMap.put(unameLowerCase, crmId, value);
                     }
                 }
             }
         }
     }
 
-    /** Parses node, to get info like if it is in stand by. */
-    void parseNode(final String node,
-                   final Node nodeNode,
-                   final MultiKeyMap<String, String> nodeParametersMap) {
-        /* <instance_attributes> */
-        final Node instanceAttrNode = getChildNode(nodeNode,
-                                                   "instance_attributes");
-        /* <nvpair...> */
-        if (instanceAttrNode != null) {
-            NodeList nvpairsRes;
-            if (Tools.versionBeforePacemaker(host)) {
-                /* <attributtes> only til 2.1.4 */
-                final Node attrNode = getChildNode(instanceAttrNode,
-                                                   "attributes");
-                nvpairsRes = attrNode.getChildNodes();
+    /**
+     * Returns nvpairs of the element, at which start the reader is
+     * positioned, as {id, name, value} arrays. Until 2.1.4 the nvpairs are
+     * in the <attributes> element.
+     */
+    private List<String[]> parseNvpairs(final XMLStreamReader reader)
+                                                throws XMLStreamException {
+        final List<String[]> nvpairs = new ArrayList<String[]>();
+        final boolean inAttributes = Tools.versionBeforePacemaker(host);
+        boolean attributes = false;
+        while (nextChildElement(reader)) {
+            final String name = reader.getLocalName();
+            if (inAttributes) {
+                if (attributes || !"attributes".equals(name)) {
+                    skipElement(reader);
+                    continue;
+                }
+                attributes = true;
+                while (nextChildElement(reader)) {
+                    if ("nvpair".equals(reader.getLocalName())) {
+                        nvpairs.add(getNvpair(reader));
+                    }
+                    skipElement(reader);
+                }
             } else {
-                nvpairsRes = instanceAttrNode.getChildNodes();
-            }
-            for (int j = 0; j < nvpairsRes.getLength(); j++) {
-                final Node optionNode = nvpairsRes.item(j);
-                if (optionNode.getNodeName().equals("nvpair")) {
-                    final String name = getAttribute(optionNode, "name");
-                    final String value = getAttribute(optionNode, "value");
-                    nodeParametersMap.put(node.toLowerCase(Locale.US),
-                                          name,
-                                          value);
+                if ("nvpair".equals(name)) {
+                    nvpairs.add(getNvpair(reader));
                 }
+                skipElement(reader);
             }
         }
+        return nvpairs;
+    }
+
+    /** Returns id, name and value of the nvpair element. */
+    private String[] getNvpair(final XMLStreamReader reader) {
+        final String[] nvpair = new String[3];
+        nvpair[NVPAIR_ID] = getAttribute(reader, "id");
+        nvpair[NVPAIR_NAME] = getAttribute(reader, "name");
+        nvpair[NVPAIR_VALUE] = getAttribute(reader, "value");
+        return nvpair;
     }
 
     /** Parses resource sets. */
     private void parseRscSets(
-                        final Node node,
+                        final XMLStreamReader reader,
                         final String colId,
                         final String ordId,
                         final List<RscSet> rscSets,
-                        final List<RscSetConnectionData> rscSetConnections) {
-        final NodeList nodes = node.getChildNodes();
+                        final List<RscSetConnectionData> rscSetConnections)
+                                                throws XMLStreamException {
         RscSet prevRscSet = null;
         int rscSetCount = 0;
         int ordPos = 0;
         int colPos = 0;
-        for (int i = 0; i < nodes.getLength(); i++) {
-            final Node rscSetNode = nodes.item(i);
-            if (rscSetNode.getNodeName().equals("resource_set")) {
-                final String id = getAttribute(rscSetNode, "id");
-                final String sequential = getAttribute(rscSetNode,
-                                                       "sequential");
-                final String requireAll = getAttribute(rscSetNode,
-                                                       REQUIRE_ALL_ATTR);
-                final String orderAction = getAttribute(rscSetNode, "action");
-                final String colocationRole = getAttribute(rscSetNode, "role");
-                final NodeList rscNodes = rscSetNode.getChildNodes();
-                final List<String> rscIds = new ArrayList<String>();
-                for (int j = 0; j < rscNodes.getLength(); j++) {
-                    final Node rscRefNode = rscNodes.item(j);
-                    if (rscRefNode.getNodeName().equals("resource_ref")) {
-                        final String rscId = getAttribute(rscRefNode, "id");
-                        rscIds.add(rscId);
-                    }
+        while (nextChildElement(reader)) {
+            if (!"resource_set".equals(reader.getLocalName())) {
+                skipElement(reader);
+                continue;
+            }
+            final String id = getAttribute(reader, "id");
+            final String sequential = getAttribute(reader, "sequential");
+            final String requireAll = getAttribute(reader, REQUIRE_ALL_ATTR);
+            final String orderAction = getAttribute(reader, "action");
+            final String colocationRole = getAttribute(reader, "role");
+            final List<String> rscIds = new ArrayList<String>();
+            while (nextChildElement(reader)) {
+                if ("resource_ref".equals(reader.getLocalName())) {
+                    rscIds.add(getAttribute(reader, "id"));
                 }
-                final RscSet rscSet = new RscSet(id,
-                                                 rscIds,
-                                                 sequential,
-                                                 requireAll,
-                                                 orderAction,
-                                                 colocationRole);
-                rscSets.add(rscSet);
-                if (prevRscSet != null) {
-                    RscSetConnectionData rscSetConnectionData;
-                    if (colId == null) {
-                        /* order */
-                        rscSetConnectionData =
-                                    new RscSetConnectionData(prevRscSet,
-                                                             rscSet,
-                                                             ordId,
-                                                             ordPos,
-                                                             false);
-                        ordPos++;
-                        rscSetConnections.add(0, rscSetConnectionData);
-                    } else {
-                        /* colocation */
-                        rscSetConnectionData =
-                                    new RscSetConnectionData(rscSet,
-                                                             prevRscSet,
-                                                             colId,
-                                                             colPos,
-                                                             true);
-                        colPos++;
-                        rscSetConnections.add(rscSetConnectionData);
-                    }
+                skipElement(reader);
+            }
+            final RscSet rscSet = new RscSet(id,
+                                             rscIds,
+                                             sequential,
+                                             requireAll,
+                                             orderAction,
+                                             colocationRole);
+            rscSets.add(rscSet);
+            if (prevRscSet != null) {
+                RscSetConnectionData rscSetConnectionData;
+                if (colId == null) {
+                    /* order */
+                    rscSetConnectionData =
+                                new RscSetConnectionData(prevRscSet,
+                                                         rscSet,
+                                                         ordId,
+                                                         ordPos,
+                                                         false);
+                    ordPos++;
+                    rscSetConnections.add(0, rscSetConnectionData);
+                } else {
+                    /* colocation */
+                    rscSetConnectionData =
+                                new RscSetConnectionData(rscSet,
+                                                         prevRscSet,
+                                                         colId,
+                                                         colPos,
+                                                         true);
+                    colPos++;
+                    rscSetConnections.add(rscSetConnectionData);
                 }
-                prevRscSet = rscSet;
-                rscSetCount++;
             }
+            prevRscSet = rscSet;
+            rscSetCount++;
         }
         if (rscSetCount == 1) {
             /* just one, dangling */
@@ -2785,342 +2569,597 @@ public final class CRMXML extends XML {
         }
     }
 
-    /** Returns CibQuery object with information from the cib node. */
+    /**
+     * Returns CibQuery object with information from the cib node.
+     * The cib is parsed in one pass with streaming parser, without building
+     * the whole document.
+     */
     CibQuery parseCibQuery(final String query) {
-        final Document document = getXMLDocument(query);
-        final CibQuery cibQueryData = new CibQuery();
-        if (document == null) {
+        final XMLStreamReader reader = getXMLStreamReader(query);
+        if (reader == null) {
             Tools.appWarning("cib error: " + query);
-            return cibQueryData;
+            return new CibQuery();
         }
-        /* get root <pacemaker> */
-        final Node pcmkNode = getChildNode(document, "pcmk");
-        if (pcmkNode == null) {
-            Tools.appWarning("there is no pcmk node");
-            return cibQueryData;
+        final CibParser cibParser = new CibParser();
+        try {
+            /* get root <pacemaker> */
+            if (!nextChildElement(reader)
+                || !"pcmk".equals(reader.getLocalName())) {
+                Tools.appWarning("there is no pcmk node");
+                return new CibQuery();
+            }
+            cibParser.parsePcmk(reader);
+        } catch (XMLStreamException xse) {
+            Tools.appWarning("could not parse: " + query);
+            Tools.appWarning("cib error: " + query);
+            return new CibQuery();
+        } finally {
+            try {
+                reader.close();
+            } catch (XMLStreamException xse) {
+                Tools.appWarning("could not close parser: " + xse);
+            }
         }
+        return cibParser.getCibQuery();
+    }
 
-        /* get fenced nodes */
-        final Set<String> fencedNodes = new HashSet<String>();
-        final Node fencedNode = getChildNode(pcmkNode, "fenced");
-        if (fencedNode != null) {
-            final NodeList nodes = fencedNode.getChildNodes();
-            for (int i = 0; i < nodes.getLength(); i++) {
-                final Node hostNode = nodes.item(i);
-                if (hostNode.getNodeName().equals("node")) {
-                    final String host = getText(hostNode);
-                    if (host != null) {
-                        fencedNodes.add(host.toLowerCase(Locale.US));
-                    }
+    /**
+     * Parses the cib query in one pass. The sections are parsed in the
+     * order, in which they come. The <status> comes after the
+     * <configuration> and uses the resources and nodes from it.
+     */
+    private final class CibParser {
+        /** Cib query, that is returned. */
+        private final CibQuery cibQueryData = new CibQuery();
+        /** Whether the <cib> node was found. */
+        private boolean cibFound = false;
+        /** Whether the <configuration> node was found. */
+        private boolean confFound = false;
+        /** Whether the <crm_config> node was found. */
+        private boolean crmConfFound = false;
+        /** Whether the <resources> node was found. */
+        private boolean resourcesFound = false;
+        /** Whether the <status> node was found. */
+        private boolean statusFound = false;
+        /** Cluster properties or null if there are none. */
+        private Map<String, String> crmConfMap = null;
+        /** Designated Co-ordinator uuid. */
+        private String dcUuid = null;
+        /** Designated Co-ordinator. */
+        private String dc = null;
+        /** Fenced nodes. */
+        private final Set<String> fencedNodes = new HashSet<String>();
+        /** Id of the resource defaults meta attributes. */
+        private String rscDefaultsId = null;
+        /** Resource defaults. */
+        private final Map<String, String> rscDefaultsParams =
+                                                new HashMap<String, String>();
+        /** Nvpair ids of the resource defaults. */
+        private final Map<String, String> rscDefaultsParamsNvpairIds =
+                                                new HashMap<String, String>();
+        /** Operation defaults. */
+        private final Map<String, String> opDefaultsParams =
+                                                new HashMap<String, String>();
+        /** Node parameters by node and parameter. */
+        private final MultiKeyMap<String, String> nodeParametersMap =
+                                            new MultiKeyMap<String, String>();
+        /** Whether the node is online, by node. */
+        private final Map<String, String> nodeOnline =
+                                                new HashMap<String, String>();
+        /** Node ids by node name. */
+        private final Map<String, String> nodeID =
+                                                new HashMap<String, String>();
+        /** Nodes that are pending. */
+        private final Set<String> nodePending = new HashSet<String>();
+        /** Parameters by resource. */
+        private final Map<String, Map<String, String>> parametersMap =
+                                    new HashMap<String, Map<String, String>>();
+        /** Nvpair ids of the parameters by resource. */
+        private final Map<String, Map<String, String>>
+                                                parametersNvpairsIdsMap =
+                                    new HashMap<String, Map<String, String>>();
+        /** Resource agents by resource. */
+        private final Map<String, ResourceAgent> resourceTypeMap =
+                                          new HashMap<String, ResourceAgent>();
+        /** Resources that were removed but are in LRM. */
+        private final Set<String> orphanedList = new HashSet<String>();
+        /** host -> inLRMList list. */
+        private final Map<String, Set<String>> inLRMList =
+                                            new HashMap<String, Set<String>>();
+        /** Instance attributes ids by resource. */
+        private final Map<String, String> resourceInstanceAttrIdMap =
+                                                new HashMap<String, String>();
+        /** Operations by resource, operation and attribute. */
+        private final MultiKeyMap<String, String> operationsMap =
+                                            new MultiKeyMap<String, String>();
+        /** Meta attributes ids by resource. */
+        private final Map<String, String> metaAttrsIdMap =
+                                                new HashMap<String, String>();
+        /** Operations ids by resource. */
+        private final Map<String, String> operationsIdMap =
+                                                new HashMap<String, String>();
+        /** Operation ids by resource and operation. */
+        private final Map<String, Map<String, String>> resOpIdsMap =
+                                    new HashMap<String, Map<String, String>>();
+        /** Must be linked, so that clone from group is before the group
+         * itself. */
+        private final Map<String, List<String>> groupsToResourcesMap =
+                                     new LinkedHashMap<String, List<String>>();
+        /** Resource in the clone, by clone. */
+        private final Map<String, String> cloneToResourceMap =
+                                                new HashMap<String, String>();
+        /** Master/slave resources. */
+        private final List<String> masterList = new ArrayList<String>();
+        /** Fail counts by node and resource. */
+        private final MultiKeyMap<String, String> failedMap =
+                                            new MultiKeyMap<String, String>();
+        /** Failed clone instances by node and resource. */
+        private final MultiKeyMap<String, Set<String>> failedClonesMap =
+                                        new MultiKeyMap<String, Set<String>>();
+        /** Ping counts by node. */
+        private final Map<String, String> pingCountMap =
+                                                new HashMap<String, String>();
+        /** Operations id-refs by resource. */
+        private final Map<String, String> operationsIdRefs =
+                                                new HashMap<String, String>();
+        /** Resources by operations id. */
+        private final Map<String, String> operationsIdtoCRMId =
+                                                new HashMap<String, String>();
+        /** Meta attributes id-refs by resource. */
+        private final Map<String, String> metaAttrsIdRefs =
+                                                new HashMap<String, String>();
+        /** Resources by meta attributes id. */
+        private final Map<String, String> metaAttrsIdToCRMId =
+                                                new HashMap<String, String>();
+        /** Colocations by id. */
+        private final Map<String, ColocationData> colocationIdMap =
+                                   new LinkedHashMap<String, ColocationData>();
+        /** Colocations by resource. */
+        private final Map<String, List<ColocationData>> colocationRscMap =
+                                   new HashMap<String, List<ColocationData>>();
+        /** Orders by id. */
+        private final Map<String, OrderData> orderIdMap =
+                                        new LinkedHashMap<String, OrderData>();
+        /** Resource sets by order id. */
+        private final Map<String, List<RscSet>> orderIdRscSetsMap =
+                                           new HashMap<String, List<RscSet>>();
+        /** Resource sets by colocation id. */
+        private final Map<String, List<RscSet>> colocationIdRscSetsMap =
+                                           new HashMap<String, List<RscSet>>();
+        /** Connections between resource sets. */
+        private final List<RscSetConnectionData> rscSetConnections =
+                                         new ArrayList<RscSetConnectionData>();
+        /** Orders by first resource. */
+        private final Map<String, List<OrderData>> orderRscMap =
+                                        new HashMap<String, List<OrderData>>();
+        /** Locations by resource and node. */
+        private final Map<String, Map<String, HostLocation>> locationMap =
+                              new HashMap<String, Map<String, HostLocation>>();
+        /** Ping locations by resource. */
+        private final Map<String, HostLocation> pingLocationMap =
+                                           new HashMap<String, HostLocation>();
+        /** Location ids by resource. */
+        private final Map<String, List<String>> locationsIdMap =
+                                           new HashMap<String, List<String>>();
+        /** Location ids by resource and node. */
+        private final MultiKeyMap<String, String> resHostToLocIdMap =
+                                             new MultiKeyMap<String, String>();
+        /** Ping location ids by resource. */
+        private final Map<String, String> resPingToLocIdMap =
+                                                new HashMap<String, String>();
+
+        /** Prepares a new <code>CibParser</code> object. */
+        CibParser() {
+            groupsToResourcesMap.put("none", new ArrayList<String>());
+        }
+
+        /** Parses the <pcmk> node. */
+        void parsePcmk(final XMLStreamReader reader)
+                                                throws XMLStreamException {
+            boolean fenced = false;
+            while (nextChildElement(reader)) {
+                final String name = reader.getLocalName();
+                if (!fenced && "fenced".equals(name)) {
+                    fenced = true;
+                    parseFenced(reader);
+                } else if (!cibFound && "cib".equals(name)) {
+                    cibFound = true;
+                    parseCib(reader);
+                } else {
+                    skipElement(reader);
                 }
             }
         }
 
-        /* get <cib> */
-        final Node cibNode = getChildNode(pcmkNode, "cib");
-        if (cibNode == null) {
-            Tools.appWarning("there is no cib node");
-            return cibQueryData;
+        /** Gets fenced nodes. */
+        private void parseFenced(final XMLStreamReader reader)
+                                                throws XMLStreamException {
+            while (nextChildElement(reader)) {
+                if ("node".equals(reader.getLocalName())) {
+                    final String host = reader.getElementText();
+                    fencedNodes.add(host.toLowerCase(Locale.US));
+                } else {
+                    skipElement(reader);
+                }
+            }
         }
-        /* Designated Co-ordinator */
-        final String dcUuid = getAttribute(cibNode, "dc-uuid");
-        //TODO: more attributes are here
 
-        /* <configuration> */
-        final Node confNode = getChildNode(cibNode, "configuration");
-        if (confNode == null) {
-            Tools.appWarning("there is no configuration node");
-            return cibQueryData;
+        /** Parses the <cib> node. */
+        private void parseCib(final XMLStreamReader reader)
+                                                throws XMLStreamException {
+            dcUuid = getAttribute(reader, "dc-uuid");
+            //TODO: more attributes are here
+            while (nextChildElement(reader)) {
+                final String name = reader.getLocalName();
+                if (!confFound && "configuration".equals(name)) {
+                    confFound = true;
+                    parseConfiguration(reader);
+                } else if (!statusFound && "status".equals(name)) {
+                    statusFound = true;
+                    parseStatus(reader);
+                } else {
+                    skipElement(reader);
+                }
+            }
         }
 
-        /* <rsc_defaults> */
-        final Node rscDefaultsNode = getChildNode(confNode, "rsc_defaults");
-        String rscDefaultsId = null;
-        final Map<String, String> rscDefaultsParams =
-                                                new HashMap<String, String>();
-        final Map<String, String> rscDefaultsParamsNvpairIds =
-                                                new HashMap<String, String>();
-        if (rscDefaultsNode != null) {
-            rscDefaultsId = parseRscDefaults(rscDefaultsNode,
-                                             rscDefaultsParams,
-                                             rscDefaultsParamsNvpairIds);
+        /** Parses the <configuration> node. */
+        private void parseConfiguration(final XMLStreamReader reader)
+                                                throws XMLStreamException {
+            boolean rscDefaults = false;
+            boolean opDefaults = false;
+            boolean nodes = false;
+            boolean constraints = false;
+            while (nextChildElement(reader)) {
+                final String name = reader.getLocalName();
+                if (!rscDefaults && "rsc_defaults".equals(name)) {
+                    rscDefaults = true;
+                    parseRscDefaults(reader);
+                } else if (!opDefaults && "op_defaults".equals(name)) {
+                    opDefaults = true;
+                    parseOpDefaults(reader);
+                } else if (!crmConfFound && "crm_config".equals(name)) {
+                    crmConfFound = true;
+                    parseCrmConfig(reader);
+                } else if (!nodes && "nodes".equals(name)) {
+                    nodes = true;
+                    parseNodes(reader);
+                } else if (!resourcesFound && "resources".equals(name)) {
+                    resourcesFound = true;
+                    parseResources(reader);
+                } else if (!constraints && "constraints".equals(name)) {
+                    constraints = true;
+                    parseConstraints(reader);
+                } else {
+                    skipElement(reader);
+                }
+            }
         }
 
-        /* <op_defaults> */
-        final Node opDefaultsNode = getChildNode(confNode, "op_defaults");
-        final Map<String, String> opDefaultsParams =
-                                                new HashMap<String, String>();
-        if (opDefaultsNode != null) {
-            parseOpDefaults(opDefaultsNode, opDefaultsParams);
+        /** Parses resource defaults. */
+        private void parseRscDefaults(final XMLStreamReader reader)
+                                                throws XMLStreamException {
+            boolean metaAttrs = false;
+            while (nextChildElement(reader)) {
+                /* <meta_attributtes> */
+                if (metaAttrs
+                    || !"meta_attributes".equals(reader.getLocalName())) {
+                    skipElement(reader);
+                    continue;
+                }
+                metaAttrs = true;
+                rscDefaultsId = getAttribute(reader, "id");
+                /* <nvpair...> */
+                for (final String[] nvpair : parseNvpairs(reader)) {
+                    final String name = nvpair[NVPAIR_NAME];
+                    String value = nvpair[NVPAIR_VALUE];
+                    if (TARGET_ROLE_META_ATTR.equals(name)) {
+                        value = value.toLowerCase(Locale.US);
+                    }
+                    rscDefaultsParams.put(name, value);
+                    rscDefaultsParamsNvpairIds.put(name, nvpair[NVPAIR_ID]);
+                }
+            }
         }
 
+        /** Parses op defaults. */
+        private void parseOpDefaults(final XMLStreamReader reader)
+                                                throws XMLStreamException {
+            boolean metaAttrs = false;
+            while (nextChildElement(reader)) {
+                /* <meta_attributtes> */
+                if (metaAttrs
+                    || !"meta_attributes".equals(reader.getLocalName())) {
+                    skipElement(reader);
+                    continue;
+                }
+                metaAttrs = true;
+                /* <nvpair...> */
+                for (final String[] nvpair : parseNvpairs(reader)) {
+                    opDefaultsParams.put(nvpair[NVPAIR_NAME],
+                                         nvpair[NVPAIR_VALUE]);
+                }
+            }
+        }
 
-        /* <crm_config> */
-        final Node crmConfNode = getChildNode(confNode, "crm_config");
-        if (crmConfNode == null) {
-            Tools.appWarning("there is no crm_config node");
-            return cibQueryData;
+        /** Parses the <crm_config> node. */
+        private void parseCrmConfig(final XMLStreamReader reader)
+                                                throws XMLStreamException {
+            while (nextChildElement(reader)) {
+                /* <cluster_property_set> */
+                if (crmConfMap != null || !"cluster_property_set".equals(
+                                                    reader.getLocalName())) {
+                    skipElement(reader);
+                    continue;
+                }
+                crmConfMap = new HashMap<String, String>();
+                /* <nvpair...> */
+                for (final String[] nvpair : parseNvpairs(reader)) {
+                    crmConfMap.put(nvpair[NVPAIR_NAME], nvpair[NVPAIR_VALUE]);
+                }
+            }
         }
 
-        /*      <cluster_property_set> */
-        final Node cpsNode = getChildNode(crmConfNode, "cluster_property_set");
-        if (cpsNode == null) {
-            Tools.appWarning("there is no cluster_property_set node");
-        } else {
-            NodeList nvpairs;
-            if (Tools.versionBeforePacemaker(host)) {
-                /* <attributtes> only til 2.1.4 */
-                final Node attrNode = getChildNode(cpsNode, "attributes");
-                nvpairs = attrNode.getChildNodes();
-            } else {
-                nvpairs = cpsNode.getChildNodes();
+        /**
+         * Parses the <nodes> node. xml node with cluster node make stupid
+         * variable names, but let's keep the convention.
+         */
+        private void parseNodes(final XMLStreamReader reader)
+                                                throws XMLStreamException {
+            while (nextChildElement(reader)) {
+                if (!"node".equals(reader.getLocalName())) {
+                    skipElement(reader);
+                    continue;
+                }
+                /* TODO: doing nothing with the info, just getting the dc,
+                 * for now.
+                 */
+                final String id = getAttribute(reader, "id");
+                final String uname = getAttribute(reader, "uname");
+                if (!nodeID.containsKey(uname)) {
+                    nodeID.put(uname, id);
+                }
+                if (dcUuid != null && dcUuid.equals(id)) {
+                    dc = uname;
+                }
+                parseNode(reader, uname);
+                if (!nodeOnline.containsKey(uname.toLowerCase(Locale.US))) {
+                    nodeOnline.put(uname.toLowerCase(Locale.US), "no");
+                }
             }
-            final Map<String, String> crmConfMap =
-                                                new HashMap<String, String>();
-            /*              <nvpair...> */
-            for (int i = 0; i < nvpairs.getLength(); i++) {
-                final Node optionNode = nvpairs.item(i);
-                if (optionNode.getNodeName().equals("nvpair")) {
-                    final String name = getAttribute(optionNode, "name");
-                    final String value = getAttribute(optionNode, "value");
-                    crmConfMap.put(name, value);
+        }
+
+        /** Parses node, to get info like if it is in stand by. */
+        private void parseNode(final XMLStreamReader reader,
+                               final String node) throws XMLStreamException {
+            boolean instanceAttrs = false;
+            while (nextChildElement(reader)) {
+                /* <instance_attributes> */
+                if (instanceAttrs || !"instance_attributes".equals(
+                                                    reader.getLocalName())) {
+                    skipElement(reader);
+                    continue;
+                }
+                instanceAttrs = true;
+                /* <nvpair...> */
+                for (final String[] nvpair : parseNvpairs(reader)) {
+                    nodeParametersMap.put(node.toLowerCase(Locale.US),
+                                          nvpair[NVPAIR_NAME],
+                                          nvpair[NVPAIR_VALUE]);
                 }
             }
-            cibQueryData.setCrmConfig(crmConfMap);
         }
 
-        /* <nodes> */
-        /* xml node with cluster node make stupid variable names, but let's
-         * keep the convention. */
-        String dc = null;
-        final MultiKeyMap<String, String> nodeParametersMap =
-                                            new MultiKeyMap<String, String>();
-        final Node nodesNode = getChildNode(confNode, "nodes");
-        final Map<String, String> nodeOnline = new HashMap<String, String>();
-        final Map<String, String> nodeID = new HashMap<String, String>();
-        if (nodesNode != null) {
-            final NodeList nodes = nodesNode.getChildNodes();
-            for (int i = 0; i < nodes.getLength(); i++) {
-                final Node nodeNode = nodes.item(i);
-                if (nodeNode.getNodeName().equals("node")) {
-                    /* TODO: doing nothing with the info, just getting the dc,
-                     * for now.
-                     */
-                    final String id = getAttribute(nodeNode, "id");
-                    final String uname = getAttribute(nodeNode, "uname");
-                    if (!nodeID.containsKey(uname)) {
-                        nodeID.put(uname, id);
-                    }
-                    if (dcUuid != null && dcUuid.equals(id)) {
-                        dc = uname;
+        /** Parses the <resources> node. */
+        private void parseResources(final XMLStreamReader reader)
+                                                throws XMLStreamException {
+            while (nextChildElement(reader)) {
+                final String nodeName = reader.getLocalName();
+                if ("primitive".equals(nodeName)) {
+                    parsePrimitive(reader, groupsToResourcesMap.get("none"));
+                } else if ("group".equals(nodeName)) {
+                    parseGroup(reader, null);
+                } else if ("master".equals(nodeName)
+                           || "master_slave".equals(nodeName)
+                           || "clone".equals(nodeName)) {
+                    final String cloneId = getAttribute(reader, "id");
+                    List<String> resList = groupsToResourcesMap.get(cloneId);
+                    if (resList == null) {
+                        resList = new ArrayList<String>();
+                        groupsToResourcesMap.put(cloneId, resList);
                     }
-                    parseNode(uname, nodeNode, nodeParametersMap);
-                    if (!nodeOnline.containsKey(uname.toLowerCase(Locale.US))) {
-                        nodeOnline.put(uname.toLowerCase(Locale.US), "no");
+                    parseAttributes(reader, cloneId, false, resList);
+                    if (!resList.isEmpty()) {
+                        cloneToResourceMap.put(cloneId, resList.get(0));
+                        if ("master".equals(nodeName)
+                            || "master_slave".equals(nodeName)) {
+                            masterList.add(cloneId);
+                        }
                     }
+                } else {
+                    skipElement(reader);
                 }
             }
         }
 
-        /* <resources> */
-        final Node resourcesNode = getChildNode(confNode, "resources");
-        if (resourcesNode == null) {
-            Tools.appWarning("there is no resources node");
-            return cibQueryData;
-        }
-        /*      <primitive> */
-        final Map<String, Map<String, String>> parametersMap =
-                                    new HashMap<String, Map<String, String>>();
-        final Map<String, Map<String, String>> parametersNvpairsIdsMap =
-                                    new HashMap<String, Map<String, String>>();
-        final Map<String, ResourceAgent> resourceTypeMap =
-                                      new HashMap<String, ResourceAgent>();
-        final Set<String> orphanedList = new HashSet<String>();
-        /* host -> inLRMList list */
-        final Map<String, Set<String>> inLRMList =
-                                        new HashMap<String, Set<String>>();
-        final Map<String, String> resourceInstanceAttrIdMap =
-                                      new HashMap<String, String>();
-        final MultiKeyMap<String, String> operationsMap =
-                                            new MultiKeyMap<String, String>();
-        final Map<String, String> metaAttrsIdMap =
+        /** Parses the "group" node. */
+        private void parseGroup(final XMLStreamReader reader,
+                                final List<String> resList)
+                                                throws XMLStreamException {
+            final String groupId = getAttribute(reader, "id");
+            final Map<String, String> params = new HashMap<String, String>();
+            parametersMap.put(groupId, params);
+            final Map<String, String> nvpairIds =
                                                 new HashMap<String, String>();
-        final Map<String, String> operationsIdMap =
-                                                new HashMap<String, String>();
-        final Map<String, Map<String, String>> resOpIdsMap =
-                                    new HashMap<String, Map<String, String>>();
-        /* must be linked, so that clone from group is before the group itself.
-         */
-        final Map<String, List<String>> groupsToResourcesMap =
-                                     new LinkedHashMap<String, List<String>>();
-        final Map<String, String> cloneToResourceMap =
-                                                 new HashMap<String, String>();
-        final List<String> masterList = new ArrayList<String>();
-        final MultiKeyMap<String, String> failedMap =
-                                            new MultiKeyMap<String, String>();
-        final MultiKeyMap<String, Set<String>> failedClonesMap =
-                                        new MultiKeyMap<String, Set<String>>();
-        final Map<String, String> pingCountMap = new HashMap<String, String>();
-        groupsToResourcesMap.put("none", new ArrayList<String>());
+            parametersNvpairsIdsMap.put(groupId, nvpairIds);
+            if (resList != null) {
+                resList.add(groupId);
+            }
+            List<String> groupResList = groupsToResourcesMap.get(groupId);
+            if (groupResList == null) {
+                groupResList = new ArrayList<String>();
+                groupsToResourcesMap.put(groupId, groupResList);
+            }
+            boolean metaAttrs = false;
+            while (nextChildElement(reader)) {
+                final String name = reader.getLocalName();
+                if ("primitive".equals(name)) {
+                    parsePrimitive(reader, groupResList);
+                } else if (!metaAttrs && "meta_attributes".equals(name)) {
+                    metaAttrs = true;
+                    parseMetaAttributes(reader,
+                                        groupId,
+                                        params,
+                                        nvpairIds,
+                                        true);
+                } else {
+                    skipElement(reader);
+                }
+            }
+        }
 
-        final NodeList primitivesGroups = resourcesNode.getChildNodes();
-        final Map<String, String> operationsIdRefs =
-                                                new HashMap<String, String>();
-        final Map<String, String> operationsIdtoCRMId =
-                                                new HashMap<String, String>();
-        final Map<String, String> metaAttrsIdRefs =
-                                                new HashMap<String, String>();
-        final Map<String, String> metaAttrsIdToCRMId =
+        /** Parses the "primitive" node. */
+        private void parsePrimitive(final XMLStreamReader reader,
+                                    final List<String> groupResList)
+                                                throws XMLStreamException {
+            final String raClass = getAttribute(reader, "class");
+            final String crmId = getAttribute(reader, "id");
+            String provider = getAttribute(reader, "provider");
+            if (provider == null) {
+                provider = ResourceAgent.HEARTBEAT_PROVIDER;
+            }
+            final String type = getAttribute(reader, "type");
+            resourceTypeMap.put(crmId,
+                                getResourceAgent(type, provider, raClass));
+            groupResList.add(crmId);
+            parseAttributes(reader,
+                            crmId,
+                            ResourceAgent.STONITH_CLASS.equals(raClass),
+                            null);
+        }
+
+        /**
+         * Parses attributes, operations etc. from primitives and clones. If
+         * cloneResList is not null, the primitives and groups in the clone
+         * are parsed and added to this list.
+         */
+        private void parseAttributes(final XMLStreamReader reader,
+                                     final String crmId,
+                                     final boolean stonith,
+                                     final List<String> cloneResList)
+                                                throws XMLStreamException {
+            final Map<String, String> params = new HashMap<String, String>();
+            parametersMap.put(crmId, params);
+            final Map<String, String> nvpairIds =
                                                 new HashMap<String, String>();
-        for (int i = 0; i < primitivesGroups.getLength(); i++) {
-            final Node primitiveGroupNode = primitivesGroups.item(i);
-            final String nodeName = primitiveGroupNode.getNodeName();
-            if ("primitive".equals(nodeName)) {
-                final List<String> resList =
-                                        groupsToResourcesMap.get("none");
-                parsePrimitive(primitiveGroupNode,
-                               resList,
-                               resourceTypeMap,
-                               parametersMap,
-                               parametersNvpairsIdsMap,
-                               resourceInstanceAttrIdMap,
-                               operationsMap,
-                               metaAttrsIdMap,
-                               operationsIdMap,
-                               resOpIdsMap,
-                               operationsIdRefs,
-                               operationsIdtoCRMId,
-                               metaAttrsIdRefs,
-                               metaAttrsIdToCRMId);
-            } else if ("group".equals(nodeName)) {
-                parseGroup(primitiveGroupNode,
-                           null,
-                           groupsToResourcesMap,
-                           parametersMap,
-                           resourceTypeMap,
-                           parametersNvpairsIdsMap,
-                           resourceInstanceAttrIdMap,
-                           operationsMap,
-                           metaAttrsIdMap,
-                           operationsIdMap,
-                           resOpIdsMap,
-                           operationsIdRefs,
-                           operationsIdtoCRMId,
-                           metaAttrsIdRefs,
-                           metaAttrsIdToCRMId);
-            } else if ("master".equals(nodeName)
-                       || "master_slave".equals(nodeName)
-                       || "clone".equals(nodeName)) {
-                final NodeList primitives = primitiveGroupNode.getChildNodes();
-                final String cloneId = getAttribute(primitiveGroupNode, "id");
-                List<String> resList = groupsToResourcesMap.get(cloneId);
-                if (resList == null) {
-                    resList = new ArrayList<String>();
-                    groupsToResourcesMap.put(cloneId, resList);
-                }
-                parseAttributes(primitiveGroupNode,
-                                cloneId,
-                                parametersMap,
-                                parametersNvpairsIdsMap,
-                                resourceInstanceAttrIdMap,
-                                operationsMap,
-                                metaAttrsIdMap,
-                                operationsIdMap,
-                                resOpIdsMap,
-                                operationsIdRefs,
-                                operationsIdtoCRMId,
-                                metaAttrsIdRefs,
-                                metaAttrsIdToCRMId,
-                                false);
-                for (int j = 0; j < primitives.getLength(); j++) {
-                    final Node primitiveNode = primitives.item(j);
-                    if (primitiveNode.getNodeName().equals("primitive")) {
-                        parsePrimitive(primitiveNode,
-                                       resList,
-                                       resourceTypeMap,
-                                       parametersMap,
-                                       parametersNvpairsIdsMap,
-                                       resourceInstanceAttrIdMap,
-                                       operationsMap,
-                                       metaAttrsIdMap,
-                                       operationsIdMap,
-                                       resOpIdsMap,
-                                       operationsIdRefs,
-                                       operationsIdtoCRMId,
-                                       metaAttrsIdRefs,
-                                       metaAttrsIdToCRMId);
-                    } else if (primitiveNode.getNodeName().equals("group")) {
-                        parseGroup(primitiveNode,
-                                   resList,
-                                   groupsToResourcesMap,
-                                   parametersMap,
-                                   resourceTypeMap,
-                                   parametersNvpairsIdsMap,
-                                   resourceInstanceAttrIdMap,
-                                   operationsMap,
-                                   metaAttrsIdMap,
-                                   operationsIdMap,
-                                   resOpIdsMap,
-                                   operationsIdRefs,
-                                   operationsIdtoCRMId,
-                                   metaAttrsIdRefs,
-                                   metaAttrsIdToCRMId);
-                    }
-                }
-                if (!resList.isEmpty()) {
-                    cloneToResourceMap.put(cloneId, resList.get(0));
-                    if ("master".equals(nodeName)
-                        || "master_slave".equals(nodeName)) {
-                        masterList.add(cloneId);
+            parametersNvpairsIdsMap.put(crmId, nvpairIds);
+            boolean instanceAttrs = false;
+            boolean operations = false;
+            boolean metaAttrs = false;
+            while (nextChildElement(reader)) {
+                final String name = reader.getLocalName();
+                if (!instanceAttrs && "instance_attributes".equals(name)) {
+                    instanceAttrs = true;
+                    resourceInstanceAttrIdMap.put(crmId,
+                                                  getAttribute(reader, "id"));
+                    /* <nvpair...> */
+                    for (final String[] nvpair : parseNvpairs(reader)) {
+                        String param = nvpair[NVPAIR_NAME];
+                        if (stonith && "priority".equals(param)) {
+                            /* so it does not clash with meta attr priority */
+                            param = STONITH_PRIORITY_INSTANCE_ATTR;
+                        }
+                        params.put(param, nvpair[NVPAIR_VALUE]);
+                        nvpairIds.put(param, nvpair[NVPAIR_ID]);
                     }
+                } else if (!operations && "operations".equals(name)) {
+                    operations = true;
+                    parseOperations(reader, crmId);
+                } else if (!metaAttrs && "meta_attributes".equals(name)) {
+                    metaAttrs = true;
+                    parseMetaAttributes(reader,
+                                        crmId,
+                                        params,
+                                        nvpairIds,
+                                        false);
+                } else if (cloneResList != null && "primitive".equals(name)) {
+                    parsePrimitive(reader, cloneResList);
+                } else if (cloneResList != null && "group".equals(name)) {
+                    parseGroup(reader, cloneResList);
+                } else {
+                    skipElement(reader);
                 }
             }
         }
 
-        /* operationsRefs crm id -> crm id */
-        final Map<String, String> operationsRefs =
-                                                 new HashMap<String, String>();
-        for (final String crmId : operationsIdRefs.keySet()) {
-            final String idRef = operationsIdRefs.get(crmId);
-            operationsRefs.put(crmId, operationsIdtoCRMId.get(idRef));
+        /** Parses the <operations> node. */
+        private void parseOperations(final XMLStreamReader reader,
+                                     final String crmId)
+                                                throws XMLStreamException {
+            final String operationsIdRef = getAttribute(reader, "id-ref");
+            if (operationsIdRef != null) {
+                operationsIdRefs.put(crmId, operationsIdRef);
+                skipElement(reader);
+                return;
+            }
+            final String operationsId = getAttribute(reader, "id");
+            operationsIdMap.put(crmId, operationsId);
+            operationsIdtoCRMId.put(operationsId, crmId);
+            final Map<String, String> opIds = new HashMap<String, String>();
+            resOpIdsMap.put(crmId, opIds);
+            /* <op> */
+            while (nextChildElement(reader)) {
+                if ("op".equals(reader.getLocalName())) {
+                    final String opId = getAttribute(reader, "id");
+                    final String name = getAttribute(reader, "name");
+                    final String timeout = getAttribute(reader, "timeout");
+                    final String interval = getAttribute(reader, "interval");
+                    final String startDelay = getAttribute(reader,
+                                                           "start-delay");
+                    operationsMap.put(crmId, name, "interval", interval);
+                    operationsMap.put(crmId, name, "timeout", timeout);
+                    operationsMap.put(crmId, name, "start-delay", startDelay);
+                    opIds.put(name, opId);
+                }
+                skipElement(reader);
+            }
         }
 
-        /* mettaAttrsRefs crm id -> crm id */
-        final Map<String, String> metaAttrsRefs = new HashMap<String, String>();
-        for (final String crmId : metaAttrsIdRefs.keySet()) {
-            final String idRef = metaAttrsIdRefs.get(crmId);
-            metaAttrsRefs.put(crmId, metaAttrsIdToCRMId.get(idRef));
+        /** Parses the <meta_attributes> node of a resource. */
+        private void parseMetaAttributes(final XMLStreamReader reader,
+                                         final String crmId,
+                                         final Map<String, String> params,
+                                         final Map<String, String> nvpairIds,
+                                         final boolean group)
+                                                throws XMLStreamException {
+            final String metaAttrsIdRef = getAttribute(reader, "id-ref");
+            if (metaAttrsIdRef != null) {
+                metaAttrsIdRefs.put(crmId, metaAttrsIdRef);
+                skipElement(reader);
+                return;
+            }
+            final String metaAttrsId = getAttribute(reader, "id");
+            metaAttrsIdMap.put(crmId, metaAttrsId);
+            metaAttrsIdToCRMId.put(metaAttrsId, crmId);
+            /* <nvpair...> */
+            /* target-role and is-managed */
+            for (final String[] nvpair : parseNvpairs(reader)) {
+                String name = nvpair[NVPAIR_NAME];
+                String value = nvpair[NVPAIR_VALUE];
+                if (TARGET_ROLE_META_ATTR.equals(name)) {
+                    value = value.toLowerCase(Locale.US);
+                }
+                if (group && "ordered".equals(name)) {
+                    name = GROUP_ORDERED_META_ATTR;
+                }
+                params.put(name, value);
+                nvpairIds.put(name, nvpair[NVPAIR_ID]);
+            }
         }
 
-        /* <constraints> */
-        final Map<String, ColocationData> colocationIdMap =
-                                   new LinkedHashMap<String, ColocationData>();
-        final Map<String, List<ColocationData>> colocationRscMap =
-                                   new HashMap<String, List<ColocationData>>();
-        final Map<String, OrderData> orderIdMap =
-                                        new LinkedHashMap<String, OrderData>();
-        final Map<String, List<RscSet>> orderIdRscSetsMap =
-                                           new HashMap<String, List<RscSet>>();
-        final Map<String, List<RscSet>> colocationIdRscSetsMap =
-                                           new HashMap<String, List<RscSet>>();
-        final List<RscSetConnectionData> rscSetConnections =
-                                         new ArrayList<RscSetConnectionData>();
-        final Map<String, List<OrderData>> orderRscMap =
-                                        new HashMap<String, List<OrderData>>();
-        final Map<String, Map<String, HostLocation>> locationMap =
-                              new HashMap<String, Map<String, HostLocation>>();
-        final Map<String, HostLocation> pingLocationMap =
-                                           new HashMap<String, HostLocation>();
-        final Map<String, List<String>> locationsIdMap =
-                                           new HashMap<String, List<String>>();
-        final MultiKeyMap<String, String> resHostToLocIdMap =
-                                             new MultiKeyMap<String, String>();
-
-        final Map<String, String> resPingToLocIdMap =
-                                               new HashMap<String, String>();
-        final Node constraintsNode = getChildNode(confNode, "constraints");
-        if (constraintsNode != null) {
-            final NodeList constraints = constraintsNode.getChildNodes();
+        /** Parses the <constraints> node. */
+        private void parseConstraints(final XMLStreamReader reader)
+                                                throws XMLStreamException {
             String rscString         = "rsc";
             String rscRoleString     = "rsc-role";
             String withRscString     = "with-rsc";
@@ -3139,28 +3178,29 @@ public final class CRMXML extends XML {
                 firstActionString = "to_action";
                 thenActionString  = "action";
             }
-            for (int i = 0; i < constraints.getLength(); i++) {
-                final Node constraintNode = constraints.item(i);
-                if (constraintNode.getNodeName().equals("rsc_colocation")) {
-                    final String colId = getAttribute(constraintNode, "id");
-                    final String rsc = getAttribute(constraintNode, rscString);
-                    final String withRsc = getAttribute(constraintNode,
+            while (nextChildElement(reader)) {
+                final String nodeName = reader.getLocalName();
+                if ("rsc_colocation".equals(nodeName)) {
+                    final String colId = getAttribute(reader, "id");
+                    final String rsc = getAttribute(reader, rscString);
+                    final String withRsc = getAttribute(reader,
                                                         withRscString);
+                    final String rscRole = getAttribute(reader,
+                                                        rscRoleString);
+                    final String withRscRole = getAttribute(reader,
+                                                            withRscRoleString);
+                    final String score = getAttribute(reader, SCORE_STRING);
                     if (rsc == null || withRsc == null) {
                         final List<RscSet> rscSets = new ArrayList<RscSet>();
-                        parseRscSets(constraintNode,
+                        parseRscSets(reader,
                                      colId,
                                      null,
                                      rscSets,
                                      rscSetConnections);
                         colocationIdRscSetsMap.put(colId, rscSets);
+                    } else {
+                        skipElement(reader);
                     }
-                    final String rscRole = getAttribute(constraintNode,
-                                                            rscRoleString);
-                    final String withRscRole = getAttribute(constraintNode,
-                                                            withRscRoleString);
-                    final String score = getAttribute(constraintNode,
-                                                      SCORE_STRING);
                     final ColocationData colocationData =
                                                new ColocationData(colId,
                                                                   rsc,
@@ -3175,31 +3215,29 @@ public final class CRMXML extends XML {
                     }
                     withs.add(colocationData);
                     colocationRscMap.put(rsc, withs);
-                } else if (constraintNode.getNodeName().equals("rsc_order")) {
-                    String rscFirst = getAttribute(constraintNode,
-                                                   firstString);
-                    String rscThen = getAttribute(constraintNode,
-                                                  thenString);
-                    final String ordId = getAttribute(constraintNode, "id");
+                } else if ("rsc_order".equals(nodeName)) {
+                    String rscFirst = getAttribute(reader, firstString);
+                    String rscThen = getAttribute(reader, thenString);
+                    final String ordId = getAttribute(reader, "id");
+                    final String score = getAttribute(reader, SCORE_STRING);
+                    final String symmetrical = getAttribute(reader,
+                                                            "symmetrical");
+                    String firstAction = getAttribute(reader,
+                                                      firstActionString);
+                    String thenAction = getAttribute(reader,
+                                                     thenActionString);
+                    final String type = getAttribute(reader, "type");
                     if (rscFirst == null || rscThen == null) {
                         final List<RscSet> rscSets = new ArrayList<RscSet>();
-                        parseRscSets(constraintNode,
+                        parseRscSets(reader,
                                      null,
                                      ordId,
                                      rscSets,
                                      rscSetConnections);
                         orderIdRscSetsMap.put(ordId, rscSets);
+                    } else {
+                        skipElement(reader);
                     }
-                    final String score = getAttribute(constraintNode,
-                                                      SCORE_STRING);
-                    final String symmetrical = getAttribute(constraintNode,
-                                                            "symmetrical");
-                    String firstAction = getAttribute(constraintNode,
-                                                      firstActionString);
-                    String thenAction = getAttribute(constraintNode,
-                                                     thenActionString);
-                    final String type = getAttribute(constraintNode,
-                                                     "type");
                     if (type != null && "before".equals(type)) {
                         /* exchange resoruces */
                         final String rsc = rscFirst;
@@ -3223,194 +3261,295 @@ public final class CRMXML extends XML {
                     }
                     thens.add(orderData);
                     orderRscMap.put(rscFirst, thens);
-                } else if ("rsc_location".equals(
-                                              constraintNode.getNodeName())) {
-                    final String locId = getAttribute(constraintNode, "id");
-                    final String node  = getAttribute(constraintNode, "node");
-                    final String rsc   = getAttribute(constraintNode, "rsc");
-                    final String score = getAttribute(constraintNode,
-                                                      SCORE_STRING);
-                    final String role = null; // TODO
-
-                    List<String> locs = locationsIdMap.get(rsc);
-                    if (locs == null) {
-                        locs = new ArrayList<String>();
-                        locationsIdMap.put(rsc, locs);
-                    }
-                    Map<String, HostLocation> hostScoreMap =
-                                                          locationMap.get(rsc);
-                    if (hostScoreMap == null) {
-                        hostScoreMap = new HashMap<String, HostLocation>();
-                        locationMap.put(rsc, hostScoreMap);
-                    }
-                    if (node != null) {
-                        resHostToLocIdMap.put(rsc,
-                                              node.toLowerCase(Locale.US),
-                                              locId);
+                } else if ("rsc_location".equals(nodeName)) {
+                    parseLocation(reader);
+                } else {
+                    skipElement(reader);
+                }
+            }
+        }
+
+        /** Parses the <rsc_location> node. */
+        private void parseLocation(final XMLStreamReader reader)
+                                                throws XMLStreamException {
+            final String locId = getAttribute(reader, "id");
+            final String node  = getAttribute(reader, "node");
+            final String rsc   = getAttribute(reader, "rsc");
+            final String score = getAttribute(reader, SCORE_STRING);
+            final String role = null; // TODO
+
+            List<String> locs = locationsIdMap.get(rsc);
+            if (locs == null) {
+                locs = new ArrayList<String>();
+                locationsIdMap.put(rsc, locs);
+            }
+            Map<String, HostLocation> hostScoreMap = locationMap.get(rsc);
+            if (hostScoreMap == null) {
+                hostScoreMap = new HashMap<String, HostLocation>();
+                locationMap.put(rsc, hostScoreMap);
+            }
+            if (node != null) {
+                resHostToLocIdMap.put(rsc,
+                                      node.toLowerCase(Locale.US),
+                                      locId);
+            }
+            if (score != null) {
+                hostScoreMap.put(node.toLowerCase(Locale.US),
+                                 new HostLocation(score, "eq", null, role));
+            }
+            locs.add(locId);
+            boolean rule = false;
+            while (nextChildElement(reader)) {
+                if (rule || !"rule".equals(reader.getLocalName())) {
+                    skipElement(reader);
+                    continue;
+                }
+                rule = true;
+                final String score2 = getAttribute(reader, SCORE_STRING);
+                final String booleanOp = getAttribute(reader, "boolean-op");
+                // TODO: I know only "and", ignoring everything we
+                // don't know.
+                boolean expression = false;
+                while (nextChildElement(reader)) {
+                    if (expression
+                        || !"expression".equals(reader.getLocalName())) {
+                        skipElement(reader);
+                        continue;
                     }
-                    if (score != null) {
-                        hostScoreMap.put(node.toLowerCase(Locale.US),
-                                         new HostLocation(score,
-                                                          "eq",
+                    expression = true;
+                    final String attr = getAttribute(reader, "attribute");
+                    final String op = getAttribute(reader, "operation");
+                    final String value = getAttribute(reader, "value");
+                    skipElement(reader);
+                    if ((booleanOp == null || "and".equals(booleanOp))
+                        && "#uname".equals(attr)) {
+                        hostScoreMap.put(value.toLowerCase(Locale.US),
+                                         new HostLocation(score2,
+                                                          op,
                                                           null,
                                                           role));
-                    }
-                    locs.add(locId);
-                    final Node ruleNode = getChildNode(constraintNode,
-                                                       "rule");
-                    if (ruleNode != null) {
-                        final String score2 = getAttribute(ruleNode,
-                                                           SCORE_STRING);
-                        final String booleanOp = getAttribute(ruleNode,
-                                                              "boolean-op");
-                        // TODO: I know only "and", ignoring everything we
-                        // don't know.
-                        final Node expNode = getChildNode(ruleNode,
-                                                          "expression");
-                        if (expNode != null
-                            && "expression".equals(expNode.getNodeName())) {
-                            final String attr =
-                                     getAttribute(expNode, "attribute");
-                            final String op =
-                                     getAttribute(expNode, "operation");
-                            final String type =
-                                     getAttribute(expNode, "type");
-                            final String value =
-                                     getAttribute(expNode, "value");
-                            if ((booleanOp == null
-                                 || "and".equals(booleanOp))
-                                && "#uname".equals(attr)) {
-                                hostScoreMap.put(value.toLowerCase(Locale.US),
-                                                 new HostLocation(score2,
+                        resHostToLocIdMap.put(rsc,
+                                              value.toLowerCase(Locale.US),
+                                              locId);
+                    } else if ((booleanOp == null || "and".equals(booleanOp))
+                               && "pingd".equals(attr)) {
+                        pingLocationMap.put(rsc, new HostLocation(score2,
                                                                   op,
-                                                                  null,
-                                                                  role));
-                                resHostToLocIdMap.put(
-                                                  rsc,
-                                                  value.toLowerCase(Locale.US),
-                                                  locId);
-                            } else if ((booleanOp == null
-                                        || "and".equals(booleanOp))
-                                       && "pingd".equals(attr)) {
-                                pingLocationMap.put(rsc,
-                                                    new HostLocation(score2,
-                                                                     op,
-                                                                     value,
-                                                                     null));
-                                resPingToLocIdMap.put(rsc, locId);
-                            } else {
-                                Tools.appWarning(
-                                    "could not parse rsc_location: " + locId);
-                            }
-                        }
+                                                                  value,
+                                                                  null));
+                        resPingToLocIdMap.put(rsc, locId);
+                    } else {
+                        Tools.appWarning("could not parse rsc_location: "
+                                         + locId);
                     }
                 }
             }
         }
 
-        /* <status> */
-        final Node statusNode = getChildNode(cibNode, "status");
-        final Set<String> nodePending = new HashSet<String>();
-        if (statusNode != null) {
-            final String hbV = host.getHeartbeatVersion();
+        /** Parses the <status> node. */
+        private void parseStatus(final XMLStreamReader reader)
+                                                throws XMLStreamException {
             /* <node_state ...> */
-            final NodeList nodes = statusNode.getChildNodes();
-            for (int i = 0; i < nodes.getLength(); i++) {
-                final Node nodeStateNode = nodes.item(i);
-                if ("node_state".equals(nodeStateNode.getNodeName())) {
-                    final String uname = getAttribute(nodeStateNode, "uname");
-                    final String id = getAttribute(nodeStateNode, "id");
-                    if (!id.equals(nodeID.get(uname))) {
-                        Tools.appWarning("skipping " + uname + " " + id);
-                    }
-                    final String ha = getAttribute(nodeStateNode, "ha");
-                    final String join = getAttribute(nodeStateNode, "join");
-                    final String inCCM = getAttribute(nodeStateNode, "in_ccm");
-                    final String crmd = getAttribute(nodeStateNode, "crmd");
-                    if ("member".equals(join)
-                        && "true".equals(inCCM)
-                        && !"offline".equals(crmd)) {
-                        nodeOnline.put(uname.toLowerCase(Locale.US), "yes");
+            while (nextChildElement(reader)) {
+                if (!"node_state".equals(reader.getLocalName())) {
+                    skipElement(reader);
+                    continue;
+                }
+                final String uname = getAttribute(reader, "uname");
+                final String id = getAttribute(reader, "id");
+                if (!id.equals(nodeID.get(uname))) {
+                    Tools.appWarning("skipping " + uname + " " + id);
+                }
+                final String join = getAttribute(reader, "join");
+                final String inCCM = getAttribute(reader, "in_ccm");
+                final String crmd = getAttribute(reader, "crmd");
+                final String unameLowerCase = uname.toLowerCase(Locale.US);
+                if ("member".equals(join)
+                    && "true".equals(inCCM)
+                    && !"offline".equals(crmd)) {
+                    nodeOnline.put(unameLowerCase, "yes");
+                } else {
+                    nodeOnline.put(unameLowerCase, "no");
+                }
+                if ("pending".equals(join)) {
+                    nodePending.add(unameLowerCase);
+                }
+                /* the lrm resources are added after all the transient
+                   attributes of the node. */
+                final List<String[]> lrmResources = new ArrayList<String[]>();
+                while (nextChildElement(reader)) {
+                    final String name = reader.getLocalName();
+                    if ("transient_attributes".equals(name)) {
+                        parseTransientAttributes(reader,
+                                                 uname,
+                                                 failedMap,
+                                                 failedClonesMap,
+                                                 pingCountMap);
+                    } else if ("lrm".equals(name)) {
+                        parseLRM(reader, lrmResources);
                     } else {
-                        nodeOnline.put(uname.toLowerCase(Locale.US), "no");
+                        skipElement(reader);
                     }
-                    if ("pending".equals(join)) {
-                        nodePending.add(uname.toLowerCase(Locale.US));
+                }
+                addLRMResources(unameLowerCase, lrmResources);
+            }
+        }
+
+        /** Gets id, class, provider and type of the resources in LRM. */
+        private void parseLRM(final XMLStreamReader reader,
+                              final List<String[]> lrmResources)
+                                                throws XMLStreamException {
+            boolean lrmResourcesFound = false;
+            while (nextChildElement(reader)) {
+                if (lrmResourcesFound
+                    || !"lrm_resources".equals(reader.getLocalName())) {
+                    skipElement(reader);
+                    continue;
+                }
+                lrmResourcesFound = true;
+                while (nextChildElement(reader)) {
+                    if ("lrm_resource".equals(reader.getLocalName())) {
+                        lrmResources.add(new String[]{
+                                            getAttribute(reader, "id"),
+                                            getAttribute(reader, "class"),
+                                            getAttribute(reader, "provider"),
+                                            getAttribute(reader, "type")});
                     }
-                    final NodeList nodeStates = nodeStateNode.getChildNodes();
-                    /* transient attributes. */
-                    for (int j = 0; j < nodeStates.getLength(); j++) {
-                        final Node nodeStateChild = nodeStates.item(j);
-                        if ("transient_attributes".equals(
-                                               nodeStateChild.getNodeName())) {
-                            parseTransientAttributes(uname,
-                                                     nodeStateChild,
-                                                     failedMap,
-                                                     failedClonesMap,
-                                                     pingCountMap);
-                        }
+                    skipElement(reader);
+                }
+            }
+        }
+
+        /** Adds resources that were removed but are in LRM. */
+        private void addLRMResources(final String unameLowerCase,
+                                     final List<String[]> lrmResources) {
+            final List<String> resList = groupsToResourcesMap.get("none");
+            for (final String[] lrmResource : lrmResources) {
+                final String resId = lrmResource[0];
+                final Matcher m = CLONE_INSTANCE_PATTERN.matcher(resId);
+                String crmId;
+                if (m.matches()) {
+                    crmId = m.group(1);
+                    Set<String> clones = failedClonesMap.get(unameLowerCase,
+                                                             crmId);
+                    if (clones == null) {
+                        clones = new LinkedHashSet<String>();
+                        failedClonesMap.put(unameLowerCase, crmId, clones);
                     }
-                    final List<String> resList =
-                                  groupsToResourcesMap.get("none");
-                    for (int j = 0; j < nodeStates.getLength(); j++) {
-                        final Node nodeStateChild = nodeStates.item(j);
-                        if ("lrm".equals(nodeStateChild.getNodeName())) {
-                            parseLRM(uname.toLowerCase(Locale.US),
-                                     nodeStateChild,
-                                     resList,
-                                     resourceTypeMap,
-                                     parametersMap,
-                                     inLRMList,
-                                     orphanedList,
-                                     failedClonesMap);
-                        }
+                    clones.add(m.group(2));
+                } else {
+                    crmId = resId;
+                }
+                if (!resourceTypeMap.containsKey(crmId)) {
+                    final String raClass = lrmResource[1];
+                    String provider = lrmResource[2];
+                    if (provider == null) {
+                        provider = ResourceAgent.HEARTBEAT_PROVIDER;
                     }
+                    final String type = lrmResource[3];
+                    resourceTypeMap.put(crmId, getResourceAgent(type,
+                                                                provider,
+                                                                raClass));
+                    resList.add(crmId);
+                    parametersMap.put(crmId, new HashMap<String, String>());
+                    orphanedList.add(crmId);
+                }
+                /* it is in LRM */
+                Set<String> inLRMOnHost = inLRMList.get(unameLowerCase);
+                if (inLRMOnHost == null) {
+                    inLRMOnHost = new HashSet<String>();
+                    inLRMList.put(unameLowerCase, inLRMOnHost);
                 }
+                inLRMOnHost.add(crmId);
+            }
+        }
+
+        /**
+         * Returns the parsed cib query. The values are set only if all the
+         * required nodes were found.
+         */
+        CibQuery getCibQuery() {
+            if (!cibFound) {
+                Tools.appWarning("there is no cib node");
+                return cibQueryData;
+            }
+            if (!confFound) {
+                Tools.appWarning("there is no configuration node");
+                return cibQueryData;
+            }
+            if (!crmConfFound) {
+                Tools.appWarning("there is no crm_config node");
+                return cibQueryData;
+            }
+            if (crmConfMap == null) {
+                Tools.appWarning("there is no cluster_property_set node");
+            } else {
+                cibQueryData.setCrmConfig(crmConfMap);
             }
+            if (!resourcesFound) {
+                Tools.appWarning("there is no resources node");
+                return cibQueryData;
+            }
+            /* operationsRefs crm id -> crm id */
+            final Map<String, String> operationsRefs =
+                                                new HashMap<String, String>();
+            for (final String crmId : operationsIdRefs.keySet()) {
+                final String idRef = operationsIdRefs.get(crmId);
+                operationsRefs.put(crmId, operationsIdtoCRMId.get(idRef));
+            }
+
+            /* mettaAttrsRefs crm id -> crm id */
+            final Map<String, String> metaAttrsRefs =
+                                                new HashMap<String, String>();
+            for (final String crmId : metaAttrsIdRefs.keySet()) {
+                final String idRef = metaAttrsIdRefs.get(crmId);
+                metaAttrsRefs.put(crmId, metaAttrsIdToCRMId.get(idRef));
+            }
+            cibQueryData.setDC(dc);
+            cibQueryData.setNodeParameters(nodeParametersMap);
+            cibQueryData.setParameters(parametersMap);
+            cibQueryData.setParametersNvpairsIds(parametersNvpairsIdsMap);
+            cibQueryData.setResourceType(resourceTypeMap);
+            cibQueryData.setInLRM(inLRMList);
+            cibQueryData.setOrphaned(orphanedList);
+            cibQueryData.setResourceInstanceAttrId(resourceInstanceAttrIdMap);
+
+            cibQueryData.setColocationRsc(colocationRscMap);
+            cibQueryData.setColocationId(colocationIdMap);
+
+            cibQueryData.setOrderId(orderIdMap);
+            cibQueryData.setOrderIdRscSets(orderIdRscSetsMap);
+            cibQueryData.setColocationIdRscSets(colocationIdRscSetsMap);
+            cibQueryData.setRscSetConnections(rscSetConnections);
+            cibQueryData.setOrderRsc(orderRscMap);
+
+            cibQueryData.setLocation(locationMap);
+            cibQueryData.setPingLocation(pingLocationMap);
+            cibQueryData.setLocationsId(locationsIdMap);
+            cibQueryData.setResHostToLocId(resHostToLocIdMap);
+            cibQueryData.setResPingToLocId(resPingToLocIdMap);
+            cibQueryData.setOperations(operationsMap);
+            cibQueryData.setOperationsId(operationsIdMap);
+            cibQueryData.setOperationsRefs(operationsRefs);
+            cibQueryData.setMetaAttrsId(metaAttrsIdMap);
+            cibQueryData.setMetaAttrsRefs(metaAttrsRefs);
+            cibQueryData.setResOpIds(resOpIdsMap);
+            cibQueryData.setNodeOnline(nodeOnline);
+            cibQueryData.setNodePending(nodePending);
+            cibQueryData.setGroupsToResources(groupsToResourcesMap);
+            cibQueryData.setCloneToResource(cloneToResourceMap);
+            cibQueryData.setMasterList(masterList);
+            cibQueryData.setFailed(failedMap);
+            cibQueryData.setFailedClones(failedClonesMap);
+            cibQueryData.setPingCount(pingCountMap);
+            cibQueryData.setRscDefaultsId(rscDefaultsId);
+            cibQueryData.setRscDefaultsParams(rscDefaultsParams);
+            cibQueryData.setRscDefaultsParamsNvpairIds(
+                                                rscDefaultsParamsNvpairIds);
+            cibQueryData.setOpDefaultsParams(opDefaultsParams);
+            cibQueryData.setFencedNodes(fencedNodes);
+            return cibQueryData;
         }
-        cibQueryData.setDC(dc);
-        cibQueryData.setNodeParameters(nodeParametersMap);
-        cibQueryData.setParameters(parametersMap);
-        cibQueryData.setParametersNvpairsIds(parametersNvpairsIdsMap);
-        cibQueryData.setResourceType(resourceTypeMap);
-        cibQueryData.setInLRM(inLRMList);
-        cibQueryData.setOrphaned(orphanedList);
-        cibQueryData.setResourceInstanceAttrId(resourceInstanceAttrIdMap);
-
-        cibQueryData.setColocationRsc(colocationRscMap);
-        cibQueryData.setColocationId(colocationIdMap);
-
-        cibQueryData.setOrderId(orderIdMap);
-        cibQueryData.setOrderIdRscSets(orderIdRscSetsMap);
-        cibQueryData.setColocationIdRscSets(colocationIdRscSetsMap);
-        cibQueryData.setRscSetConnections(rscSetConnections);
-        cibQueryData.setOrderRsc(orderRscMap);
-
-        cibQueryData.setLocation(locationMap);
-        cibQueryData.setPingLocation(pingLocationMap);
-        cibQueryData.setLocationsId(locationsIdMap);
-        cibQueryData.setResHostToLocId(resHostToLocIdMap);
-        cibQueryData.setResPingToLocId(resPingToLocIdMap);
-        cibQueryData.setOperations(operationsMap);
-        cibQueryData.setOperationsId(operationsIdMap);
-        cibQueryData.setOperationsRefs(operationsRefs);
-        cibQueryData.setMetaAttrsId(metaAttrsIdMap);
-        cibQueryData.setMetaAttrsRefs(metaAttrsRefs);
-        cibQueryData.setResOpIds(resOpIdsMap);
-        cibQueryData.setNodeOnline(nodeOnline);
-        cibQueryData.setNodePending(nodePending);
-        cibQueryData.setGroupsToResources(groupsToResourcesMap);
-        cibQueryData.setCloneToResource(cloneToResourceMap);
-        cibQueryData.setMasterList(masterList);
-        cibQueryData.setFailed(failedMap);
-        cibQueryData.setFailedClones(failedClonesMap);
-        cibQueryData.setPingCount(pingCountMap);
-        cibQueryData.setRscDefaultsId(rscDefaultsId);
-        cibQueryData.setRscDefaultsParams(rscDefaultsParams);
-        cibQueryData.setRscDefaultsParamsNvpairIds(rscDefaultsParamsNvpairIds);
-        cibQueryData.setOpDefaultsParams(opDefaultsParams);
-        cibQueryData.setFencedNodes(fencedNodes);
-        return cibQueryData;
     }
 
     /** Returns order parameters. */
@@ -3721,61 +3860,6 @@ public final class CRMXML extends XML {
         return linbitDrbdPresent;
     }
 
-    /** Get resources that were removed but are in LRM. */
-    void parseLRM(final String unameLowerCase,
-                  final Node lrmNode,
-                  final List<String> resList,
-                  final Map<String, ResourceAgent> resourceTypeMap,
-                  final Map<String, Map<String, String>> parametersMap,
-                  final Map<String, Set<String>> inLRMList,
-                  final Set<String> orphanedList,
-                  final MultiKeyMap<String, Set<String>> failedClonesMap) {
-        final Node lrmResourcesNode = getChildNode(lrmNode, "lrm_resources");
-        final NodeList lrmResources = lrmResourcesNode.getChildNodes();
-        for (int j = 0; j < lrmResources.getLength(); j++) {
-            final Node rscNode = lrmResources.item(j);
-            if ("lrm_resource".equals(rscNode.getNodeName())) {
-                final String resId = getAttribute(rscNode, "id");
-                final Pattern p = Pattern.compile("(.*):(\\d+)$");
-                final Matcher m = p.matcher(resId);
-                String crmId;
-                if (m.matches()) {
-                    crmId = m.group(1);
-                    Set<String> clones = failedClonesMap.get(unameLowerCase,
-                                                             crmId);
-                    if (clones == null) {
-                        clones = new LinkedHashSet<String>();
-                        failedClonesMap.put(unameLowerCase, crmId, clones);
-                    }
-                    clones.add(m.group(2));
-                } else {
-                    crmId = resId;
-                }
-                if (!resourceTypeMap.containsKey(crmId)) {
-                    final String raClass = getAttribute(rscNode, "class");
-                    String provider = getAttribute(rscNode, "provider");
-                    if (provider == null) {
-                        provider = ResourceAgent.HEARTBEAT_PROVIDER;
-                    }
-                    final String type = getAttribute(rscNode, "type");
-                    resourceTypeMap.put(crmId, getResourceAgent(type,
-                                                                provider,
-                                                                raClass));
-                    resList.add(crmId);
-                    parametersMap.put(crmId, new HashMap<String, String>());
-                    orphanedList.add(crmId);
-                }
-                /* it is in LRM */
-                Set<String> inLRMOnHost = inLRMList.get(unameLowerCase);
-                if (inLRMOnHost == null) {
-                    inLRMOnHost = new HashSet<String>();
-                    inLRMList.put(unameLowerCase, inLRMOnHost);
-                }
-                inLRMOnHost.add(crmId);
-            }
-        }
-    }
-
     /** Class that holds colocation data. */
     public static final class ColocationData {
         /** Colocation id. */
@@ -34,6 +34,11 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import java.awt.Color;
 import java.awt.Window;
@@ -67,7 +72,21 @@ public final class Cluster {
                                  };
     /** Whether this cluster should be saved. */
     private boolean savable = true;
-
+    /** How long the idle connect threads are kept, in seconds. */
+    private static final long CONNECT_THREAD_KEEP_ALIVE = 60;
+    /**
+     * Executor, where the hosts of all clusters are connected. It limits how
+     * many hosts are connected at the same time.
+     */
+    private static final ThreadPoolExecutor CONNECT_EXECUTOR =
+        new ThreadPoolExecutor(Tools.getDefaultInt("SSH.Connect.Threads"),
+                               Tools.getDefaultInt("SSH.Connect.Threads"),
+                               CONNECT_THREAD_KEEP_ALIVE,
+                               TimeUnit.SECONDS,
+                               new LinkedBlockingQueue<Runnable>());
+    static {
+        CONNECT_EXECUTOR.allowCoreThreadTimeOut(true);
+    }
 
     /** Prepares a new <code>Cluster</code> object. */
     public Cluster() {
@@ -280,48 +299,98 @@ public final class Cluster {
         return null;
     }
 
-    /** Connect all hosts in the cluster. Returns false, if it was canceled. */
+    /**
+     * Connect all hosts in the cluster. The first host is connected first,
+     * one cluster at a time, and after it was authenticated the others are
+     * connected with its password/key at the same time. Returns false, if
+     * it was canceled.
+     */
     public boolean connect(final Window rootPane,
                            final boolean progressIndicator,
                            final int index) {
-        boolean first = true;
-        String dsaKey = null;
-        String rsaKey = null;
-        String pwd = null;
+        Host first = null;
+        final List<Host> others = new ArrayList<Host>();
         for (final Host host : getHosts()) {
             host.setIsLoading();
             if (host.isConnected()) {
                 host.setLoadingDone();
                 continue;
             }
-            if (!first) {
-                host.getSSH().setPasswords(dsaKey, rsaKey, pwd);
-            }
-            if (rootPane == null) {
-                host.connect(null, progressIndicator, index);
+            if (first == null) {
+                first = host;
             } else {
-                host.connect(new SSHGui(rootPane, host, null),
-                             progressIndicator,
-                             index);
+                others.add(host);
             }
-            host.getSSH().waitForConnection();
-            if (first) {
-                /* wait till it's connected and try the others with the
-                 * same password/key. */
-                if (host.getSSH().isConnectionCanceled()) {
-                    return false;
-                }
-                if (host.isConnected()) {
-                    dsaKey = host.getSSH().getLastDSAKey();
-                    rsaKey = host.getSSH().getLastRSAKey();
-                    pwd = host.getSSH().getLastPassword();
-                }
+        }
+        String dsaKey = null;
+        String rsaKey = null;
+        String pwd = null;
+        if (first != null) {
+            /* wait till it's connected and try the others with the
+             * same password/key. The dialogs of the first hosts of the
+             * clusters are shown one after the other by SSHGui. */
+            waitForConnect(connectInBackground(first,
+                                               rootPane,
+                                               progressIndicator,
+                                               index));
+            if (first.getSSH().isConnectionCanceled()) {
+                return false;
             }
-            first = false;
+            if (first.isConnected()) {
+                dsaKey = first.getSSH().getLastDSAKey();
+                rsaKey = first.getSSH().getLastRSAKey();
+                pwd = first.getSSH().getLastPassword();
+            }
+        }
+        final List<Future<?>> connects = new ArrayList<Future<?>>();
+        for (final Host host : others) {
+            host.getSSH().setPasswords(dsaKey, rsaKey, pwd);
+            connects.add(connectInBackground(host,
+                                             rootPane,
+                                             progressIndicator,
+                                             index));
+        }
+        for (final Future<?> connect : connects) {
+            waitForConnect(connect);
         }
         return true;
     }
 
+    /**
+     * Connects the host in the connect executor, that limits the number of
+     * hosts, that are connected at the same time.
+     */
+    private static Future<?> connectInBackground(
+                                         final Host host,
+                                         final Window rootPane,
+                                         final boolean progressIndicator,
+                                         final int index) {
+        return CONNECT_EXECUTOR.submit(new Runnable() {
+            @Override
+            public void run() {
+                if (rootPane == null) {
+                    host.connect(null, progressIndicator, index);
+                } else {
+                    host.connect(new SSHGui(rootPane, host, null),
+                                 progressIndicator,
+                                 index);
+                }
+                host.getSSH().waitForConnection();
+            }
+        });
+    }
+
+    /** Waits till the host is connected or the connection failed. */
+    private static void waitForConnect(final Future<?> connect) {
+        try {
+            connect.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            Tools.appWarning("connect failed: " + e.getMessage(), e);
+        }
+    }
+
     /**
      * Get the smallest libvirt version. Returns null, if it is not installed
      * anywhere.
@@ -25,16 +25,20 @@ package lcmc.data;
 import lcmc.utilities.Tools;
 import lcmc.utilities.ConvertCmdCallback;
 import lcmc.utilities.SSH;
+import lcmc.utilities.CRM;
 import lcmc.data.CRMXML.ResStatus;
 
 import java.util.Map;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Set;
+import java.util.HashSet;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Locale;
 import org.apache.commons.collections15.map.MultiKeyMap;
+import org.apache.commons.collections15.keyvalue.MultiKey;
 
 /**
  * This class parses pacemaker/heartbeat status, stores information
@@ -58,8 +62,19 @@ public final class ClusterStatus {
     private String oldStatus = null;
     /** Old cib in string. */
     private String oldCib = null;
+    /** Lines of the old cib, to which the cib diffs are applied. */
+    private List<String> oldCibLines = null;
+    /** Whether a cib diff could not be applied to the old cib. */
+    private boolean cibDiffFailed = false;
     /** Old advanced mode. */
     private boolean oldAdvancedMode = false;
+    /**
+     * Resources that were changed by the last status update, null if all of
+     * them have to be updated.
+     */
+    private volatile Set<String> changedResources = null;
+    /** Changed resources that are being collected during the parsing. */
+    private Set<String> newChangedResources = null;
     /** Host. */
     private final Host host;
 
@@ -588,19 +603,42 @@ public final class ClusterStatus {
                 final String status = Tools.join("\n", data.toArray(
                                                      new String[data.size()]));
                 if (!status.equals(oldStatus)) {
-                    Tools.debug(this, "status update: " + host.getName(), 1);
+                    Tools.debug(this, "status update: {}", 1, host.getName());
                     oldStatus = status;
                     parseResStatus(status);
                     return true;
                 }
-            } else if ("cibadmin".equals(cmd)) {
-                final String cib =
-                       Tools.join("\n", data.toArray(new String[data.size()]));
+            } else if ("cibadmin".equals(cmd)
+                       || "cibadmin_diff".equals(cmd)) {
+                List<String> cibLines = data;
+                if ("cibadmin_diff".equals(cmd)) {
+                    if (cibDiffFailed) {
+                        /* waiting for the whole cib */
+                        return false;
+                    }
+                    cibLines = applyCibDiff(oldCibLines, data);
+                    if (cibLines == null) {
+                        Tools.appWarning(host.getName()
+                                         + ": could not apply the cib diff");
+                        oldCibLines = null;
+                        cibDiffFailed = true;
+                        return false;
+                    }
+                } else {
+                    cibDiffFailed = false;
+                }
+                oldCibLines = cibLines;
+                final String cib = Tools.join(
+                              "\n",
+                              cibLines.toArray(new String[cibLines.size()]));
                 final boolean advancedMode =
                                         Tools.getConfigData().isAdvancedMode();
                 if (!cib.equals(oldCib) || oldAdvancedMode != advancedMode) {
-                    Tools.debug(this, "cib update: " + host.getName(), 1);
+                    Tools.debug(this, "cib update: {}", 1, host.getName());
                     oldCib = cib;
+                    if (oldAdvancedMode != advancedMode) {
+                        newChangedResources = null;
+                    }
                     oldAdvancedMode = advancedMode;
                     parseCibQuery(cib);
                     return true;
@@ -612,6 +650,72 @@ public final class ClusterStatus {
         return false;
     }
 
+    /**
+     * Returns whether a cib diff could not be applied, the cluster events
+     * must be restarted to get the whole cib again.
+     */
+    public boolean isCibDiffFailed() {
+        return cibDiffFailed;
+    }
+
+    /**
+     * Applies the cib diff from the lcmc-gui-helper to the lines of the old
+     * cib and returns the lines of the new cib. The first line of the diff
+     * is the md5 sum of the new cib. Every change is a line "@@ start
+     * oldCount newCount" followed by the new lines, that replace oldCount
+     * lines at the start line of the old cib. Returns null, if the diff
+     * doesn't fit the old cib.
+     */
+    static List<String> applyCibDiff(final List<String> oldLines,
+                                     final List<String> diff) {
+        if (oldLines == null || diff.isEmpty()) {
+            return null;
+        }
+        final String md5Line = diff.get(0);
+        if (!md5Line.startsWith("md5 ")) {
+            return null;
+        }
+        final List<String> newLines =
+                                new ArrayList<String>(oldLines.size() + 100);
+        int oldIndex = 0;
+        int i = 1;
+        while (i < diff.size()) {
+            final String[] change = diff.get(i).split(" ");
+            if (change.length != 4 || !"@@".equals(change[0])) {
+                return null;
+            }
+            final int start;
+            final int oldCount;
+            final int newCount;
+            try {
+                start = Integer.parseInt(change[1]);
+                oldCount = Integer.parseInt(change[2]);
+                newCount = Integer.parseInt(change[3]);
+            } catch (final NumberFormatException e) {
+                return null;
+            }
+            if (start < oldIndex
+                || oldCount < 0
+                || start + oldCount > oldLines.size()
+                || newCount < 0
+                || i + 1 + newCount > diff.size()) {
+                return null;
+            }
+            newLines.addAll(oldLines.subList(oldIndex, start));
+            newLines.addAll(diff.subList(i + 1, i + 1 + newCount));
+            oldIndex = start + oldCount;
+            i += 1 + newCount;
+        }
+        newLines.addAll(oldLines.subList(oldIndex, oldLines.size()));
+        final String md5 = Tools.getMD5(Tools.join(
+                               "\n",
+                               newLines.toArray(new String[newLines.size()])));
+        if (!md5.equals(md5Line.substring("md5 ".length()))) {
+            return null;
+        }
+        return newLines;
+    }
+
     /** Parses status. */
     public boolean parseStatus(final String status) {
         final String[] lines = status.split("\n");
@@ -622,6 +726,7 @@ public final class ClusterStatus {
 
         /* remove all hashes */
         boolean updated = false;
+        newChangedResources = new HashSet<String>();
         for (String line : lines) {
             line = line.trim();
             if ("---start---".equals(line)
@@ -663,17 +768,235 @@ public final class ClusterStatus {
                                  + status);
             }
         }
+        changedResources = newChangedResources;
+        if (updated) {
+            CRM.cibUpdated();
+        }
         return updated;
     }
 
+    /**
+     * Returns ids of resources, groups and clones that have changed in the
+     * last status update, or null if all of them have to be updated.
+     */
+    public Set<String> getChangedResources() {
+        return changedResources;
+    }
+
     /** Parses output from crm_mon. */
     private void parseResStatus(final String resStatus) {
-        resStateMap = crmXML.parseResStatus(resStatus);
+        final Map<String, ResStatus> newResStateMap =
+                                           crmXML.parseResStatus(resStatus);
+        addChangedResStatus(resStateMap, newResStateMap);
+        resStateMap = newResStateMap;
     }
 
     /** Parses output from cibadmin command. */
     private void parseCibQuery(final String query) {
-        cibQueryMap = crmXML.parseCibQuery(query);
+        final CibQuery newCibQueryMap = crmXML.parseCibQuery(query);
+        addChangedCibQuery(cibQueryMap, newCibQueryMap);
+        cibQueryMap = newCibQueryMap;
+    }
+
+    /** Marks all resources as changed. */
+    private void setAllChanged() {
+        newChangedResources = null;
+    }
+
+    /** Adds resources with different running status to the changed ones. */
+    private void addChangedResStatus(final Map<String, ResStatus> oldMap,
+                                     final Map<String, ResStatus> newMap) {
+        if (newChangedResources == null) {
+            return;
+        }
+        if (oldMap == null || newMap == null) {
+            setAllChanged();
+            return;
+        }
+        final Set<String> ids = new HashSet<String>(oldMap.keySet());
+        ids.addAll(newMap.keySet());
+        for (final String id : ids) {
+            final ResStatus o = oldMap.get(id);
+            final ResStatus n = newMap.get(id);
+            if (o == null || n == null
+                || o.isManaged() != n.isManaged()
+                || !Tools.areEqual(o.getRunningOnNodes(),
+                                   n.getRunningOnNodes())
+                || !Tools.areEqual(o.getMasterOnNodes(),
+                                   n.getMasterOnNodes())
+                || !Tools.areEqual(o.getSlaveOnNodes(),
+                                   n.getSlaveOnNodes())) {
+                newChangedResources.add(id);
+            }
+        }
+    }
+
+    /**
+     * Compares old and new cib query and adds resources, whose data differ,
+     * to the changed ones. If something that all resources depend on has
+     * changed, all resources are marked as changed.
+     */
+    private void addChangedCibQuery(final CibQuery o, final CibQuery n) {
+        if (newChangedResources == null) {
+            return;
+        }
+        if (!Tools.areEqual(o.getCrmConfig(), n.getCrmConfig())
+            || !Tools.areEqual(o.getNodeParameters(), n.getNodeParameters())
+            || !Tools.areEqual(o.getNodeOnline(), n.getNodeOnline())
+            || !Tools.areEqual(o.getNodePending(), n.getNodePending())
+            || !Tools.areEqual(o.getFencedNodes(), n.getFencedNodes())
+            || !Tools.areEqual(o.getDC(), n.getDC())
+            || !Tools.areEqual(o.getPingCount(), n.getPingCount())
+            || !Tools.areEqual(o.getRscDefaultsId(), n.getRscDefaultsId())
+            || !Tools.areEqual(o.getRscDefaultsParams(),
+                               n.getRscDefaultsParams())
+            || !Tools.areEqual(o.getOpDefaultsParams(),
+                               n.getOpDefaultsParams())) {
+            setAllChanged();
+            return;
+        }
+        final Set<String> changed = newChangedResources;
+        addChangedKeys(o.getParameters(), n.getParameters(), changed);
+        addChangedKeys(o.getParametersNvpairsIds(),
+                       n.getParametersNvpairsIds(),
+                       changed);
+        addChangedKeys(o.getResourceType(), n.getResourceType(), changed);
+        addChangedKeys(o.getResourceInstanceAttrId(),
+                       n.getResourceInstanceAttrId(),
+                       changed);
+        addChangedKeys(o.getLocation(), n.getLocation(), changed);
+        addChangedKeys(o.getPingLocation(), n.getPingLocation(), changed);
+        addChangedKeys(o.getLocationsId(), n.getLocationsId(), changed);
+        addChangedKeys(o.getResPingToLocId(), n.getResPingToLocId(), changed);
+        addChangedKeys(o.getOperationsRefs(), n.getOperationsRefs(), changed);
+        addChangedKeys(o.getMetaAttrsId(), n.getMetaAttrsId(), changed);
+        addChangedKeys(o.getMetaAttrsRefs(), n.getMetaAttrsRefs(), changed);
+        addChangedKeys(o.getOperationsId(), n.getOperationsId(), changed);
+        addChangedKeys(o.getResOpIds(), n.getResOpIds(), changed);
+        addChangedKeys(o.getCloneToResource(), n.getCloneToResource(),
+                       changed);
+        addChangedMultiKeys(o.getResHostToLocId(), n.getResHostToLocId(),
+                            0, changed);
+        addChangedMultiKeys(o.getOperations(), n.getOperations(), 0, changed);
+        addChangedMultiKeys(o.getFailed(), n.getFailed(), 1, changed);
+        addChangedMultiKeys(o.getFailedClones(), n.getFailedClones(),
+                            1, changed);
+        addChangedMembers(o.getOrphaned(), n.getOrphaned(), changed);
+        addChangedMembers(o.getMasterList(), n.getMasterList(), changed);
+        final Map<String, Set<String>> oldInLRM = o.getInLRM();
+        final Map<String, Set<String>> newInLRM = n.getInLRM();
+        if (oldInLRM != null && newInLRM != null) {
+            final Set<String> nodes = new HashSet<String>(oldInLRM.keySet());
+            nodes.addAll(newInLRM.keySet());
+            for (final String node : nodes) {
+                addChangedMembers(oldInLRM.get(node),
+                                  newInLRM.get(node),
+                                  changed);
+            }
+        } else if (oldInLRM != newInLRM) {
+            setAllChanged();
+            return;
+        }
+        /* group members change with their group */
+        final Map<String, List<String>> oldGroups = o.getGroupsToResources();
+        final Map<String, List<String>> newGroups = n.getGroupsToResources();
+        final Set<String> groups = new HashSet<String>(oldGroups.keySet());
+        groups.addAll(newGroups.keySet());
+        for (final String group : groups) {
+            final List<String> oldRscs = oldGroups.get(group);
+            final List<String> newRscs = newGroups.get(group);
+            if (!Tools.areEqual(oldRscs, newRscs)) {
+                changed.add(group);
+                if (oldRscs != null) {
+                    changed.addAll(oldRscs);
+                }
+                if (newRscs != null) {
+                    changed.addAll(newRscs);
+                }
+            }
+        }
+        /* resources that take meta attributes or operations from a changed
+           resource */
+        addReferringResources(n.getMetaAttrsRefs(), changed);
+        addReferringResources(n.getOperationsRefs(), changed);
+    }
+
+    /** Adds resources that refer to a changed resource. */
+    private static void addReferringResources(final Map<String, String> refs,
+                                              final Set<String> changed) {
+        for (final Map.Entry<String, String> ref : refs.entrySet()) {
+            if (changed.contains(ref.getValue())) {
+                changed.add(ref.getKey());
+            }
+        }
+    }
+
+    /** Adds keys whose values differ in the old and new map. */
+    private static <V> void addChangedKeys(final Map<String, V> oldMap,
+                                           final Map<String, V> newMap,
+                                           final Set<String> changed) {
+        final Map<String, V> o =
+                  oldMap == null ? Collections.<String, V>emptyMap() : oldMap;
+        final Map<String, V> n =
+                  newMap == null ? Collections.<String, V>emptyMap() : newMap;
+        for (final Map.Entry<String, V> entry : n.entrySet()) {
+            if (!Tools.areEqual(entry.getValue(), o.get(entry.getKey()))) {
+                changed.add(entry.getKey());
+            }
+        }
+        for (final String key : o.keySet()) {
+            if (!n.containsKey(key)) {
+                changed.add(key);
+            }
+        }
+    }
+
+    /**
+     * Adds resources from multi keys, whose values differ in the old and new
+     * map. The index is position of the resource id in the key.
+     */
+    @SuppressWarnings("unchecked")
+    private static <V> void addChangedMultiKeys(
+                                       final MultiKeyMap<String, V> oldMap,
+                                       final MultiKeyMap<String, V> newMap,
+                                       final int index,
+                                       final Set<String> changed) {
+        final MultiKeyMap<String, V> o =
+                       oldMap == null ? new MultiKeyMap<String, V>() : oldMap;
+        final MultiKeyMap<String, V> n =
+                       newMap == null ? new MultiKeyMap<String, V>() : newMap;
+        for (final Object k : n.keySet()) {
+            final MultiKey<String> key = (MultiKey<String>) k;
+            if (!Tools.areEqual(n.get(key), o.get(key))) {
+                changed.add(key.getKey(index));
+            }
+        }
+        for (final Object k : o.keySet()) {
+            final MultiKey<String> key = (MultiKey<String>) k;
+            if (!n.containsKey(key)) {
+                changed.add(key.getKey(index));
+            }
+        }
+    }
+
+    /** Adds ids that are only in one of the collections. */
+    private static void addChangedMembers(final Collection<String> oldIds,
+                                          final Collection<String> newIds,
+                                          final Set<String> changed) {
+        if (oldIds != null) {
+            for (final String id : oldIds) {
+                if (newIds == null || !newIds.contains(id)) {
+                    changed.add(id);
+                }
+            }
+        }
+        if (newIds != null) {
+            for (final String id : newIds) {
+                if (oldIds == null || !oldIds.contains(id)) {
+                    changed.add(id);
+                }
+            }
+        }
     }
 
     /** Sets data from ptest. */
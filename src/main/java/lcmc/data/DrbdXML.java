@@ -32,6 +32,7 @@ import lcmc.gui.resources.StringInfo;
 import org.w3c.dom.Document;
 import org.w3c.dom.NodeList;
 import org.w3c.dom.Node;
+import org.w3c.dom.NamedNodeMap;
 
 import java.util.Map;
 import java.util.HashMap;
@@ -39,6 +40,10 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Locale;
+import java.util.Collections;
+import java.util.TreeSet;
+import java.util.Set;
+import java.util.LinkedHashSet;
 import java.util.regex.Pattern;
 import java.util.regex.Matcher;
 
@@ -62,51 +67,39 @@ public final class DrbdXML extends XML {
     /** Drbd config filename. */
     private String configFile = "unknown";
     /** Map from parameter name to the default value. */
-    private final Map<String, String> paramDefaultMap =
-                                               new HashMap<String, String>();
+    private final Map<String, String> paramDefaultMap;
     /** Map from parameter name to its type. */
-    private final Map<String, String> paramTypeMap =
-                                                new HashMap<String, String>();
+    private final Map<String, String> paramTypeMap;
     /** Map from parameter name to its section. */
-    private final Map<String, String> paramSectionMap =
-                                            new LinkedHashMap<String, String>();
+    private final Map<String, String> paramSectionMap;
     /** Map from section to this section's parameters. */
-    private final Map<String, List<String>> sectionParamsMap =
-                                      new LinkedHashMap<String, List<String>>();
+    private final Map<String, List<String>> sectionParamsMap;
     /** Map from perameter name to its unit name (long). */
-    private final Map<String, String> paramUnitLongMap =
-                                           new LinkedHashMap<String, String>();
-
+    private final Map<String, String> paramUnitLongMap;
     /** Map from perameter name to its unit name. */
-    private final Map<String, String> paramDefaultUnitMap =
-                                           new LinkedHashMap<String, String>();
-
+    private final Map<String, String> paramDefaultUnitMap;
     /** Map from perameter name to its long description. */
-    private final Map<String, String> paramLongDescMap =
-                                                new HashMap<String, String>();
-
+    private final Map<String, String> paramLongDescMap;
     /** Map from perameter name to its minimum value. */
-    private final Map<String, BigInteger> paramMinMap =
-                                    new LinkedHashMap<String, BigInteger>();
-
+    private final Map<String, BigInteger> paramMinMap;
     /** Map from perameter name to its maximum value. */
-    private final Map<String, BigInteger> paramMaxMap =
-                                        new LinkedHashMap<String, BigInteger>();
-
-    /** Map from perameter name to its correct value. */
-    private final Map<String, Boolean> paramCorrectValueMap =
-                                                new HashMap<String, Boolean>();
-
+    private final Map<String, BigInteger> paramMaxMap;
     /** Map from perameter name to its items if there is a choice list. */
-    private final Map<String, List<Object>> paramItemsMap =
-                                    new LinkedHashMap<String, List<Object>>();
+    private final Map<String, List<Object>> paramItemsMap;
     /** List of all parameters. */
-    private final List<String> parametersList = new ArrayList<String>();
+    private final List<String> parametersList;
     /** List of all gloval parameters. */
-    private final List<String> globalParametersList = new ArrayList<String>();
+    private final List<String> globalParametersList;
     /** List of all required parameters. */
-    private final List<String> requiredParametersList =
-                                                    new ArrayList<String>();
+    private final List<String> requiredParametersList;
+    /** Map from perameter name to its correct value. */
+    private final Map<String, Boolean> paramCorrectValueMap =
+                                                new HashMap<String, Boolean>();
+    /** Parameter schema, that is shared with other objects. */
+    private final Schema schema;
+    /** Map from resource name to its parsed config, to find changes. */
+    private final Map<String, String> resourceConfigMap =
+                                                new HashMap<String, String>();
     /** Map from resource option to the value. */
     private final Map<String, Map<String, String>> optionsMap =
                                     new HashMap<String, Map<String, String>>();
@@ -149,6 +142,22 @@ public final class DrbdXML extends XML {
     boolean proxyDetected = false;
     /** Global section. */
     public static final String GLOBAL_SECTION = "global";
+    /** Drbd state event: 1 ST 0 { cs:Connected ro:Primary/Secondary ... }. */
+    private static final Pattern DRBD_ST_EVENT = Pattern.compile(
+                "^\\s*(\\d+)\\s+ST\\s+(\\S+)\\s+\\{\\s+cs:(\\S+)\\s+"
+                + "(?:st|ro):(\\S+)/(\\S+)\\s+ds:(\\S+)/(\\S+)\\s+(\\S+).*?",
+                Pattern.DOTALL);
+    /** Drbd sync progress event: 19 SP 0 16.9. */
+    private static final Pattern DRBD_SP_EVENT =
+         Pattern.compile("^\\s*(\\d+)\\s+SP\\s+(\\S+)\\s(\\d+\\.\\d+).*",
+                         Pattern.DOTALL);
+    /** Drbd user helper event: 19 UH 1 split-brain. */
+    private static final Pattern DRBD_UH_EVENT =
+           Pattern.compile("^\\s*(\\d+)\\s+UH\\s+(\\S+)\\s([a-z-]+).*",
+                           Pattern.DOTALL);
+    /** Device in the drbd events since 8.4: 0,r0[0]. */
+    private static final Pattern DRBD_EVENT_DEVICE =
+                              Pattern.compile("^(\\d+),(\\S+)\\[(\\d+)\\]$");
     /** DRBD protocol C, that is a default. */
     private static final String PROTOCOL_C = "C / Synchronous";
     /** DRBD communication protocols. */
@@ -202,13 +211,65 @@ public final class DrbdXML extends XML {
         HARDCODED_DEFAULTS.put("on-congestion", "block");
     }
 
-    /** Prepares a new <code>DrbdXML</code> object. */
+    /** How many parameter schemas are cached. */
+    private static final int SCHEMA_CACHE_SIZE = 8;
+    /**
+     * Parameter schemas by the drbdsetup output and the hosts. The least
+     * recently used are removed.
+     */
+    private static final Map<String, Schema> SCHEMA_CACHE =
+        new LinkedHashMap<String, Schema>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+            @Override
+            protected boolean removeEldestEntry(
+                                     final Map.Entry<String, Schema> eldest) {
+                return size() > SCHEMA_CACHE_SIZE;
+            }
+        };
+    /** Beginning of a command in the drbdsetup xml output. */
+    private static final Pattern COMMAND_START_PATTERN =
+                                Pattern.compile("^<command name=\"(.*?)\".*");
+    /** End of a command in the drbdsetup xml output. */
+    private static final Pattern COMMAND_END_PATTERN =
+                                                Pattern.compile("^</command>$");
+
+    /**
+     * Prepares a new <code>DrbdXML</code> object. The parameters are parsed
+     * only once for the same drbdsetup output and hosts, the objects share
+     * them.
+     */
     public DrbdXML(final Host[] hosts, final Map<Host, String> drbdParameters) {
         super();
-        addSpecialParameter("resource", "name", true);
+        schema = getSchema(hosts, drbdParameters);
+        paramDefaultMap = Collections.unmodifiableMap(schema.paramDefaultMap);
+        paramTypeMap = Collections.unmodifiableMap(schema.paramTypeMap);
+        paramSectionMap = Collections.unmodifiableMap(schema.paramSectionMap);
+        sectionParamsMap = Collections.unmodifiableMap(schema.sectionParamsMap);
+        paramUnitLongMap = Collections.unmodifiableMap(schema.paramUnitLongMap);
+        paramDefaultUnitMap =
+                        Collections.unmodifiableMap(schema.paramDefaultUnitMap);
+        paramLongDescMap = Collections.unmodifiableMap(schema.paramLongDescMap);
+        paramMinMap = Collections.unmodifiableMap(schema.paramMinMap);
+        paramMaxMap = Collections.unmodifiableMap(schema.paramMaxMap);
+        paramItemsMap = Collections.unmodifiableMap(schema.paramItemsMap);
+        parametersList = Collections.unmodifiableList(schema.parametersList);
+        globalParametersList =
+                      Collections.unmodifiableList(schema.globalParametersList);
+        requiredParametersList =
+                    Collections.unmodifiableList(schema.requiredParametersList);
+    }
+
+    /**
+     * Returns the parameter schema for the hosts. It is created only if it is
+     * not in the cache.
+     */
+    private static Schema getSchema(final Host[] hosts,
+                                    final Map<Host, String> drbdParameters) {
+        final List<String> outputs = new ArrayList<String>();
+        final StringBuilder key = new StringBuilder(100000);
         for (final Host host : hosts) {
-            String output = null;
-            if (drbdParameters.get(host) == null) {
+            String output = drbdParameters.get(host);
+            if (output == null) {
                 final String command =
                                 host.getDistCommand("Drbd.getParameters",
                                                     (ConvertCmdCallback) null);
@@ -219,50 +280,40 @@ public final class DrbdXML extends XML {
                                                 null,   /* ExecCallback */
                                                 false,  /* outputVisible */
                                                 SSH.DEFAULT_COMMAND_TIMEOUT);
-                if (ret.getExitCode() != 0) {
-                    return;
+                if (ret.getExitCode() != 0 || ret.getOutput() == null) {
+                    /* incomplete, not cached */
+                    return new Schema(hosts, outputs);
                 }
                 output = ret.getOutput();
-                if (output == null) {
-                    return;
-                }
                 drbdParameters.put(host, output);
-            } else {
-                output = drbdParameters.get(host);
             }
-            /* TODO: move this part somewhere else, it should be called
-               once per invocation or interactively. (drbd-get-xml) */
-            final String[] lines = output.split("\\r?\\n");
-            final Pattern bp = Pattern.compile("^<command name=\"(.*?)\".*");
-            final Pattern ep = Pattern.compile("^</command>$");
-            final StringBuilder xml = new StringBuilder();
-            String section = null;
-
-            for (final String line : lines) {
-                final Matcher m = bp.matcher(line);
-                if (m.matches()) {
-                    section = m.group(1);
-                }
-                if (section != null) {
-                    xml.append(line);
-                    xml.append('\n');
-                    final Matcher m2 = ep.matcher(line);
-                    if (m2.matches()) {
-                        parseSection(section, xml.toString(), host, hosts);
-                        section = null;
-                        xml.delete(0, xml.length());
-                    }
-                }
+            outputs.add(output);
+            /* everything that parseSection uses */
+            key.append(host.getName());
+            key.append('\n');
+            key.append(host.getArch());
+            key.append('\n');
+            if (!"".equals(host.getArch())) {
+                key.append(host.getHeartbeatLibPath());
             }
-            if (!parametersList.contains("protocol")) {
-                /* prior 8.4 */
-                addParameter("resource",
-                             "protocol",
-                             PROTOCOL_C,
-                             PROTOCOLS,
-                             true);
+            key.append('\n');
+            key.append(new TreeSet<String>(host.getCryptoModules()));
+            key.append('\n');
+            key.append(output);
+            key.append('\n');
+        }
+        final String k = key.toString();
+        synchronized (SCHEMA_CACHE) {
+            final Schema schema = SCHEMA_CACHE.get(k);
+            if (schema != null) {
+                return schema;
             }
         }
+        final Schema schema = new Schema(hosts, outputs);
+        synchronized (SCHEMA_CACHE) {
+            SCHEMA_CACHE.put(k, schema);
+        }
+        return schema;
     }
 
     /** Returns the filename of the drbd config file. */
@@ -479,69 +530,6 @@ public final class DrbdXML extends XML {
         return paramCorrectValueMap.get(param).booleanValue();
     }
 
-    /**
-     * Adds parameter to the specified section. This parameter will be not
-     * used in the generated config.
-     */
-    private void addSpecialParameter(final String section,
-                                     final String param,
-                                     final boolean required) {
-        if (!parametersList.contains(param)) {
-            parametersList.add(param);
-            if (required) {
-                requiredParametersList.add(param);
-            }
-
-            paramTypeMap.put(param, "string");
-            paramSectionMap.put(param, section);
-        }
-    }
-
-    /** Add paremeter with choice combo box. */
-    private void addParameter(final String section,
-                              final String param,
-                              final String defaultValue,
-                              final Object[] items,
-                              final boolean required) {
-        addParameter(section, param, defaultValue, required);
-        final List<Object> l = new ArrayList<Object>();
-        for (int i = 0; i < items.length; i++) {
-            if (!l.contains(items[i])) {
-                l.add(items[i]);
-            }
-        }
-        paramItemsMap.put(param, l);
-        paramTypeMap.put(param, "handler");
-    }
-
-    /** Adds parameter to the specified section. */
-    private void addParameter(final String section,
-                              final String param,
-                              final boolean required) {
-        addSpecialParameter(section, param, required);
-        sectionParamsMap.put(section, new ArrayList<String>());
-        sectionParamsMap.get(section).add(param);
-    }
-
-    /** Adds parameter with a default value to the specified section. */
-    private void addParameter(final String section,
-                              final String param,
-                              final String defaultValue,
-                              final boolean required) {
-        addParameter(section, param, required);
-        paramDefaultMap.put(param, defaultValue);
-    }
-
-    /** Adds parameter with the specified type. */
-    private void addParameter(final String section,
-                              final String param,
-                              final String defaultValue,
-                              final boolean required,
-                              final String type) {
-        addParameter(section, param, defaultValue, required);
-        paramTypeMap.put(param, type);
-    }
-
     /** Returns array with all the sections. */
     public String[] getSections() {
         return sectionParamsMap.keySet().toArray(
@@ -620,137 +608,6 @@ public final class DrbdXML extends XML {
     }
 
 
-    /** Parses command xml for parameters and fills up the hashes. */
-    private void parseSection(final String section,
-                              final String xml,
-                              final Host host,
-                              final Host[] hosts) {
-        final Document document = getXMLDocument(xml);
-
-        /* get root <command> */
-        final Node commandNode = getChildNode(document, "command");
-        if (commandNode == null) {
-            return;
-        }
-        final NodeList options = commandNode.getChildNodes();
-        for (int i = 0; i < options.getLength(); i++) {
-            final Node optionNode = options.item(i);
-
-            /* <option> */
-            if (optionNode.getNodeName().equals("option")) {
-                final String name = getAttribute(optionNode, "name");
-                final String type = getAttribute(optionNode, "type");
-                if ("flag".equals(type)) {
-                    /* ignore flags */
-                    continue;
-                }
-                if ("handler".equals(type)) {
-                    final List<Object> items = new ArrayList<Object>();
-                    items.add("");
-                    paramItemsMap.put(name, items);
-                    paramDefaultMap.put(name, HARDCODED_DEFAULTS.get(name));
-                } else if ("boolean".equals(type)) {
-                    final List<Object> l = new ArrayList<Object>();
-                    l.add(CONFIG_YES);
-                    l.add(CONFIG_NO);
-                    paramItemsMap.put(name, l);
-                    paramDefaultMap.put(name, CONFIG_NO);
-                }
-                if ("fence-peer".equals(name)) {
-                    final List<Object> l = new ArrayList<Object>();
-                    l.add("");
-                    if (!"".equals(host.getArch())) {
-                        l.add(host.getHeartbeatLibPath()
-                              + "/drbd-peer-outdater -t 5");
-                    }
-                    l.add("/usr/lib/drbd/crm-fence-peer.sh");
-                    paramItemsMap.put(name, l);
-                } else if ("after-resync-target".equals(name)) {
-                    final List<Object> l = new ArrayList<Object>();
-                    l.add("");
-                    l.add("/usr/lib/drbd/crm-unfence-peer.sh");
-                    paramItemsMap.put(name, l);
-                } else if ("split-brain".equals(name)) {
-                    final List<Object> l = new ArrayList<Object>();
-                    l.add("");
-                    l.add("/usr/lib/drbd/notify-split-brain.sh root");
-                    paramItemsMap.put(name, l);
-                } else if ("become-primary-on".equals(name)) {
-                    final List<Object> l = new ArrayList<Object>();
-                    l.add("");
-                    l.add("both");
-                    for (final Host h : hosts) {
-                        l.add(h.getName());
-                    }
-                    paramItemsMap.put(name, l);
-                } else if ("verify-alg".equals(name)
-                           || "csums-alg".equals(name)
-                           || "data-integrity-alg".equals(name)
-                           || "cram-hmac-alg".equals(name)) {
-                    final List<Object> l = new ArrayList<Object>();
-                    l.add("");
-                    for (final String cr : host.getCryptoModules()) {
-                        l.add(cr);
-                    }
-                    paramItemsMap.put(name, l);
-                }
-                final NodeList optionInfos = optionNode.getChildNodes();
-                for (int j = 0; j < optionInfos.getLength(); j++) {
-                    final Node optionInfo = optionInfos.item(j);
-                    final String tag = optionInfo.getNodeName();
-                    /* <min>, <max>, <handler>, <default> */
-                    if ("min".equals(tag)) {
-                        paramMinMap.put(name,
-                                        new BigInteger(getText(optionInfo)));
-                    } else if ("max".equals(tag)) {
-                        paramMaxMap.put(name,
-                                        new BigInteger(getText(optionInfo)));
-                    } else if ("handler".equals(tag)) {
-                        paramItemsMap.get(name).add(getText(optionInfo));
-                    } else if ("default".equals(tag)) {
-                        paramDefaultMap.put(name, getText(optionInfo));
-                    } else if ("unit".equals(tag)) {
-                        paramUnitLongMap.put(name, getText(optionInfo));
-                    } else if ("unit_prefix".equals(tag)) {
-                        if (!"after".equals(name)
-                            && !"resync-after".equals(name)) {
-                            String option = getText(optionInfo);
-                            if (!"s".equals(option)) {
-                                /* "s" is an exception */
-                                option = option.toUpperCase(Locale.US);
-                            }
-                            if ("1".equals(option)) {
-                                option = "";
-                            }
-                            paramDefaultUnitMap.put(name, option);
-                        }
-                    } else if ("desc".equals(tag)) {
-                        paramLongDescMap.put(name, getText(optionInfo));
-                    }
-                }
-                paramTypeMap.put(name, type);
-                if (!GLOBAL_SECTION.equals(section)
-                    && !parametersList.contains(name)) {
-                    parametersList.add(name);
-                }
-                if (!"resource".equals(section)
-                    && !globalParametersList.contains(name)
-                    && !("syncer".equals(section) && "after".equals(name))
-                    && !"resync-after".equals(name)) {
-                    globalParametersList.add(name);
-                }
-
-                paramSectionMap.put(name, section);
-                if (!sectionParamsMap.containsKey(section)) {
-                    sectionParamsMap.put(section, new ArrayList<String>());
-                }
-                if (!sectionParamsMap.get(section).contains(name)) {
-                    sectionParamsMap.get(section).add(name);
-                }
-            }
-        }
-    }
-
     /** Parses section node and creates map with option name value pairs. */
     private void parseConfigSectionNode(
                                     final Node sectionNode,
@@ -1044,10 +901,14 @@ public final class DrbdXML extends XML {
             /* <global> */
             if (resourceNode.getNodeName().equals(GLOBAL_SECTION)) {
                 parseConfigGlobalNode(resourceNode, globalNameValueMap);
+                resourceConfigMap.put(GLOBAL_SECTION,
+                                      getNodeConfig(resourceNode));
             }
             /* <common> */
             if (resourceNode.getNodeName().equals("common")) {
                 parseConfigResourceNode(resourceNode, "Section.Common");
+                resourceConfigMap.put("Section.Common",
+                                      getNodeConfig(resourceNode));
             }
             /* <resource> */
             if (resourceNode.getNodeName().equals("resource")) {
@@ -1056,8 +917,84 @@ public final class DrbdXML extends XML {
                     resourceList.add(resName);
                 }
                 parseConfigResourceNode(resourceNode, resName);
+                resourceConfigMap.put(resName, getNodeConfig(resourceNode));
+            }
+        }
+    }
+
+    /** Returns the node with its attributes and children as a string. */
+    private static String getNodeConfig(final Node node) {
+        final StringBuilder config = new StringBuilder(500);
+        appendNodeConfig(config, node);
+        return config.toString();
+    }
+
+    /** Appends the node with its attributes and children to the config. */
+    private static void appendNodeConfig(final StringBuilder config,
+                                         final Node node) {
+        if (node.getNodeType() == Node.TEXT_NODE) {
+            config.append(node.getNodeValue().trim());
+            return;
+        }
+        config.append('<');
+        config.append(node.getNodeName());
+        final NamedNodeMap attributes = node.getAttributes();
+        if (attributes != null) {
+            for (int i = 0; i < attributes.getLength(); i++) {
+                final Node attribute = attributes.item(i);
+                config.append(' ');
+                config.append(attribute.getNodeName());
+                config.append("=\"");
+                config.append(attribute.getNodeValue());
+                config.append('"');
             }
         }
+        config.append('>');
+        final NodeList children = node.getChildNodes();
+        for (int i = 0; i < children.getLength(); i++) {
+            appendNodeConfig(config, children.item(i));
+        }
+        config.append("</");
+        config.append(node.getNodeName());
+        config.append('>');
+    }
+
+    /**
+     * Returns names of the resources, that were added, removed or changed
+     * in comparison to the old config. The global and the common section
+     * are returned as GLOBAL_SECTION and "Section.Common", if they changed,
+     * all the resources are returned. If the parameter schema changed,
+     * GLOBAL_SECTION and all the resources are returned.
+     */
+    public Set<String> getChangedResources(final DrbdXML oldDrbdXML) {
+        Map<String, String> oldConfigMap;
+        boolean schemaChanged = false;
+        if (oldDrbdXML == null) {
+            oldConfigMap = new HashMap<String, String>();
+        } else {
+            oldConfigMap = oldDrbdXML.resourceConfigMap;
+            schemaChanged = oldDrbdXML.schema != schema;
+        }
+        final boolean all =
+            schemaChanged
+            || !Tools.areEqual(resourceConfigMap.get(GLOBAL_SECTION),
+                               oldConfigMap.get(GLOBAL_SECTION))
+            || !Tools.areEqual(resourceConfigMap.get("Section.Common"),
+                               oldConfigMap.get("Section.Common"));
+        final Set<String> names = new LinkedHashSet<String>();
+        if (schemaChanged) {
+            names.add(GLOBAL_SECTION);
+        }
+        names.addAll(resourceConfigMap.keySet());
+        names.addAll(oldConfigMap.keySet());
+        final Set<String> changed = new LinkedHashSet<String>();
+        for (final String name : names) {
+            if (all || !Tools.areEqual(resourceConfigMap.get(name),
+                                       oldConfigMap.get(name))) {
+                changed.add(name);
+            }
+        }
+        return changed;
     }
 
     /** Returns value from drbd global config identified by option name. */
@@ -1161,40 +1098,71 @@ public final class DrbdXML extends XML {
     }
 
     /**
-     * Parses events from drbd kernel module obtained via drbdsetup .. events
-     * command and stores the values in the BlockDevice object.
+     * Returns the position of the event type in the drbd event line, that
+     * starts with a counter, or -1 if it is not an event.
      */
-    public boolean parseDrbdEvent(final String hostName,
-                                  final DrbdGraph drbdGraph,
-                                  final String rawOutput) {
-        if (rawOutput == null || hostName == null) {
-            return false;
+    private static int getEventTypeIndex(final String event) {
+        final int len = event.length();
+        int i = 0;
+        while (i < len && Character.isWhitespace(event.charAt(i))) {
+            i++;
         }
+        final int counterStart = i;
+        while (i < len && Character.isDigit(event.charAt(i))) {
+            i++;
+        }
+        if (i == counterStart
+            || i == len
+            || !Character.isWhitespace(event.charAt(i))) {
+            return -1;
+        }
+        while (i < len && Character.isWhitespace(event.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
 
-        final String output = rawOutput.trim();
-        if ("".equals(output)) {
+    /**
+     * Parses events from drbd kernel module obtained via drbdsetup .. events
+     * command and stores the values in the BlockDevice object. The block
+     * devices, whose state changed, are added to changedBlockDevInfos, so
+     * that their info is updated only once for many events.
+     */
+    public boolean parseDrbdEvent(
+                               final String hostName,
+                               final DrbdGraph drbdGraph,
+                               final String output,
+                               final Set<BlockDevInfo> changedBlockDevInfos) {
+        if (output == null || hostName == null) {
             return false;
         }
-        if ("No response from the DRBD driver! Is the module loaded?".equals(
-                output)) {
-            if (hostDrbdLoadedMap.get(hostName)) {
-                hostDrbdLoadedMap.put(hostName, false);
-                return true;
-            } else {
+
+        final int typeIndex = getEventTypeIndex(output);
+        if (typeIndex < 0) {
+            final String line = output.trim();
+            if ("".equals(line)) {
                 return false;
             }
-        } else {
+            if ("No response from the DRBD driver! Is the module loaded?"
+                .equals(line)) {
+                if (hostDrbdLoadedMap.get(hostName)) {
+                    hostDrbdLoadedMap.put(hostName, false);
+                    return true;
+                } else {
+                    return false;
+                }
+            }
             hostDrbdLoadedMap.put(hostName, true);
+            return false;
         }
+        hostDrbdLoadedMap.put(hostName, true);
         /* since drbd 8.3 there is ro: instead of st: */
         /* since drbd 8.4 there is ro: instead of st: */
-        Pattern p =
-            Pattern.compile(
-                "^(\\d+)\\s+ST\\s+(\\S+)\\s+\\{\\s+cs:(\\S+)\\s+"
-                + "(?:st|ro):(\\S+)/(\\S+)\\s+ds:(\\S+)/(\\S+)\\s+(\\S+).*?");
-        Matcher m = p.matcher(output);
-        final Pattern pDev = Pattern.compile("^(\\d+),(\\S+)\\[(\\d+)\\]$");
-        if (m.matches()) {
+        if (output.startsWith("ST", typeIndex)) {
+            final Matcher m = DRBD_ST_EVENT.matcher(output);
+            if (!m.matches()) {
+                return false;
+            }
             /* String counter      = m.group(1); // not used */
             final String devNrString  = m.group(2);
             final String cs           = m.group(3);
@@ -1204,25 +1172,17 @@ public final class DrbdXML extends XML {
             final String ds2          = m.group(7);
             final String flags        = m.group(8);
 
-            final Matcher mDev = pDev.matcher(devNrString);
-            String devNr = devNrString;
-            String res = ""; // TODO: unused */
-            String volumeNr = "0";
-            if (mDev.matches()) { /* since 8.4 */
-                devNr = mDev.group(1);
-                res = mDev.group(2);
-                volumeNr = mDev.group(3);
-            }
             /* get blockdevice object from device */
-            final BlockDevInfo bdi =
-                                  getBlockDevInfo(devNr, hostName, drbdGraph);
+            final BlockDevInfo bdi = getBlockDevInfo(getEventDevNr(devNrString),
+                                                     hostName,
+                                                     drbdGraph);
             if (bdi != null) {
                 if (bdi.getBlockDevice().isDifferent(cs, ro1, ds1, flags)) {
                     bdi.getBlockDevice().setConnectionState(cs);
                     bdi.getBlockDevice().setNodeState(ro1);
                     bdi.getBlockDevice().setDiskState(ds1);
                     bdi.getBlockDevice().setDrbdFlags(flags);
-                    bdi.updateInfo();
+                    changedBlockDevInfos.add(bdi);
                     return true;
                 } else {
                     return false;
@@ -1231,53 +1191,40 @@ public final class DrbdXML extends XML {
             return false;
         }
         /* 19 SP 0 16.9 */
-        p = Pattern.compile("^(\\d+)\\s+SP\\s+(\\S+)\\s(\\d+\\.\\d+).*");
-        m = p.matcher(output);
-        if (m.matches()) {
+        if (output.startsWith("SP", typeIndex)) {
+            final Matcher m = DRBD_SP_EVENT.matcher(output);
+            if (!m.matches()) {
+                return false;
+            }
             /* String counter      = m.group(1); // not used */
             final String devNrString = m.group(2);
             final String synced = m.group(3);
 
-            final Matcher mDev = pDev.matcher(devNrString);
-            String devNr = devNrString;
-            String res = ""; // TODO: unused */
-            String volumeNr = "0";
-            if (mDev.matches()) { /* since 8.4 */
-                devNr = mDev.group(1);
-                res = mDev.group(2);
-                volumeNr = mDev.group(3);
-            }
-            final BlockDevInfo bdi =
-                                   getBlockDevInfo(devNr, hostName, drbdGraph);
+            final BlockDevInfo bdi = getBlockDevInfo(getEventDevNr(devNrString),
+                                                     hostName,
+                                                     drbdGraph);
             if (bdi != null && bdi.getBlockDevice().isDrbd()) {
                 if (Tools.areEqual(bdi.getBlockDevice().getSyncedProgress(),
                                    synced)) {
                     return false;
                 } else {
                     bdi.getBlockDevice().setSyncedProgress(synced);
-                    bdi.updateInfo();
+                    changedBlockDevInfos.add(bdi);
                     return true;
                 }
             }
             return false;
         }
         /* 19 UH 1 split-brain */
-        p = Pattern.compile("^(\\d+)\\s+UH\\s+(\\S+)\\s([a-z-]+).*");
-        m = p.matcher(output);
-        if (m.matches()) {
+        if (output.startsWith("UH", typeIndex)) {
+            final Matcher m = DRBD_UH_EVENT.matcher(output);
+            if (!m.matches()) {
+                return false;
+            }
             /* String counter      = m.group(1); // not used */
-            final String devNrString = m.group(2);
+            final String devNr = getEventDevNr(m.group(2));
             final String what = m.group(3);
-            final Matcher mDev = pDev.matcher(devNrString);
-            String devNr = devNrString;
-            String res = ""; // TODO: unused */
-            String volumeNr = "0";
-            if (mDev.matches()) { /* since 8.4 */
-                devNr = mDev.group(1);
-                res = mDev.group(2);
-                volumeNr = mDev.group(3);
-            }
-            Tools.debug(this, "drbd event: " + devNr + " - " + what);
+            Tools.debug(this, "drbd event: {} - {}", 0, devNr, what);
             if ("split-brain".equals(what)) {
                 final BlockDevInfo bdi = getBlockDevInfo(devNr,
                                                        hostName,
@@ -1288,7 +1235,7 @@ public final class DrbdXML extends XML {
                         return false;
                     } else {
                         bdi.getBlockDevice().setSplitBrain(true);
-                        bdi.updateInfo();
+                        changedBlockDevInfos.add(bdi);
                         return true;
                     }
                 }
@@ -1298,6 +1245,21 @@ public final class DrbdXML extends XML {
         return false;
     }
 
+    /**
+     * Returns the device number from the device in the event, that is
+     * either the number or since 8.4 "number,resource[volume]".
+     */
+    private static String getEventDevNr(final String devNrString) {
+        final int comma = devNrString.indexOf(',');
+        if (comma > 0 && devNrString.endsWith("]")) {
+            final Matcher mDev = DRBD_EVENT_DEVICE.matcher(devNrString);
+            if (mDev.matches()) { /* since 8.4 */
+                return mDev.group(1);
+            }
+        }
+        return devNrString;
+    }
+
     /** Removes the resource from resources, so that it does not reappear. */
     public void removeResource(final String res) {
         resourceList.remove(res);
@@ -1320,4 +1282,286 @@ public final class DrbdXML extends XML {
         return (unknownSections || proxyDetected)
                && !Tools.getConfigData().isAdvancedMode();
     }
+
+    /**
+     * Parameters of the drbd commands, that are parsed from the drbdsetup xml
+     * output. They don't change after the schema was created and are shared
+     * by the DrbdXML objects.
+     */
+    private static final class Schema extends XML {
+        /** Map from parameter name to the default value. */
+        private final Map<String, String> paramDefaultMap =
+                                                  new HashMap<String, String>();
+        /** Map from parameter name to its type. */
+        private final Map<String, String> paramTypeMap =
+                                                  new HashMap<String, String>();
+        /** Map from parameter name to its section. */
+        private final Map<String, String> paramSectionMap =
+                                            new LinkedHashMap<String, String>();
+        /** Map from section to this section's parameters. */
+        private final Map<String, List<String>> sectionParamsMap =
+                                      new LinkedHashMap<String, List<String>>();
+        /** Map from perameter name to its unit name (long). */
+        private final Map<String, String> paramUnitLongMap =
+                                            new LinkedHashMap<String, String>();
+
+        /** Map from perameter name to its unit name. */
+        private final Map<String, String> paramDefaultUnitMap =
+                                            new LinkedHashMap<String, String>();
+
+        /** Map from perameter name to its long description. */
+        private final Map<String, String> paramLongDescMap =
+                                                  new HashMap<String, String>();
+
+        /** Map from perameter name to its minimum value. */
+        private final Map<String, BigInteger> paramMinMap =
+                                        new LinkedHashMap<String, BigInteger>();
+
+        /** Map from perameter name to its maximum value. */
+        private final Map<String, BigInteger> paramMaxMap =
+                                        new LinkedHashMap<String, BigInteger>();
+
+        /** Map from perameter name to its items if there is a choice list. */
+        private final Map<String, List<Object>> paramItemsMap =
+                                      new LinkedHashMap<String, List<Object>>();
+        /** List of all parameters. */
+        private final List<String> parametersList = new ArrayList<String>();
+        /** List of all gloval parameters. */
+        private final List<String> globalParametersList =
+                                                        new ArrayList<String>();
+        /** List of all required parameters. */
+        private final List<String> requiredParametersList =
+                                                        new ArrayList<String>();
+
+        /** Prepares a new <code>Schema</code> object. */
+        Schema(final Host[] hosts, final List<String> outputs) {
+            super();
+            addSpecialParameter("resource", "name", true);
+            for (int i = 0; i < outputs.size(); i++) {
+                final Host host = hosts[i];
+                final String[] lines = outputs.get(i).split("\\r?\\n");
+                final StringBuilder xml = new StringBuilder();
+                String section = null;
+
+                for (final String line : lines) {
+                    final Matcher m = COMMAND_START_PATTERN.matcher(line);
+                    if (m.matches()) {
+                        section = m.group(1);
+                    }
+                    if (section != null) {
+                        xml.append(line);
+                        xml.append('\n');
+                        final Matcher m2 = COMMAND_END_PATTERN.matcher(line);
+                        if (m2.matches()) {
+                            parseSection(section, xml.toString(), host, hosts);
+                            section = null;
+                            xml.delete(0, xml.length());
+                        }
+                    }
+                }
+                if (!parametersList.contains("protocol")) {
+                    /* prior 8.4 */
+                    addParameter("resource",
+                                 "protocol",
+                                 PROTOCOL_C,
+                                 PROTOCOLS,
+                                 true);
+                }
+            }
+        }
+
+        /**
+         * Adds parameter to the specified section. This parameter will be not
+         * used in the generated config.
+         */
+        private void addSpecialParameter(final String section,
+                                         final String param,
+                                         final boolean required) {
+            if (!parametersList.contains(param)) {
+                parametersList.add(param);
+                if (required) {
+                    requiredParametersList.add(param);
+                }
+
+                paramTypeMap.put(param, "string");
+                paramSectionMap.put(param, section);
+            }
+        }
+
+        /** Add paremeter with choice combo box. */
+        private void addParameter(final String section,
+                                  final String param,
+                                  final String defaultValue,
+                                  final Object[] items,
+                                  final boolean required) {
+            addParameter(section, param, defaultValue, required);
+            final List<Object> l = new ArrayList<Object>();
+            for (int i = 0; i < items.length; i++) {
+                if (!l.contains(items[i])) {
+                    l.add(items[i]);
+                }
+            }
+            paramItemsMap.put(param, l);
+            paramTypeMap.put(param, "handler");
+        }
+
+        /** Adds parameter to the specified section. */
+        private void addParameter(final String section,
+                                  final String param,
+                                  final boolean required) {
+            addSpecialParameter(section, param, required);
+            sectionParamsMap.put(section, new ArrayList<String>());
+            sectionParamsMap.get(section).add(param);
+        }
+
+        /** Adds parameter with a default value to the specified section. */
+        private void addParameter(final String section,
+                                  final String param,
+                                  final String defaultValue,
+                                  final boolean required) {
+            addParameter(section, param, required);
+            paramDefaultMap.put(param, defaultValue);
+        }
+
+        /** Adds parameter with the specified type. */
+        private void addParameter(final String section,
+                                  final String param,
+                                  final String defaultValue,
+                                  final boolean required,
+                                  final String type) {
+            addParameter(section, param, defaultValue, required);
+            paramTypeMap.put(param, type);
+        }
+
+        /** Parses command xml for parameters and fills up the hashes. */
+        private void parseSection(final String section,
+                                  final String xml,
+                                  final Host host,
+                                  final Host[] hosts) {
+            final Document document = getXMLDocument(xml);
+
+            /* get root <command> */
+            final Node commandNode = getChildNode(document, "command");
+            if (commandNode == null) {
+                return;
+            }
+            final NodeList options = commandNode.getChildNodes();
+            for (int i = 0; i < options.getLength(); i++) {
+                final Node optionNode = options.item(i);
+
+                /* <option> */
+                if (optionNode.getNodeName().equals("option")) {
+                    final String name = getAttribute(optionNode, "name");
+                    final String type = getAttribute(optionNode, "type");
+                    if ("flag".equals(type)) {
+                        /* ignore flags */
+                        continue;
+                    }
+                    if ("handler".equals(type)) {
+                        final List<Object> items = new ArrayList<Object>();
+                        items.add("");
+                        paramItemsMap.put(name, items);
+                        paramDefaultMap.put(name, HARDCODED_DEFAULTS.get(name));
+                    } else if ("boolean".equals(type)) {
+                        final List<Object> l = new ArrayList<Object>();
+                        l.add(CONFIG_YES);
+                        l.add(CONFIG_NO);
+                        paramItemsMap.put(name, l);
+                        paramDefaultMap.put(name, CONFIG_NO);
+                    }
+                    if ("fence-peer".equals(name)) {
+                        final List<Object> l = new ArrayList<Object>();
+                        l.add("");
+                        if (!"".equals(host.getArch())) {
+                            l.add(host.getHeartbeatLibPath()
+                                  + "/drbd-peer-outdater -t 5");
+                        }
+                        l.add("/usr/lib/drbd/crm-fence-peer.sh");
+                        paramItemsMap.put(name, l);
+                    } else if ("after-resync-target".equals(name)) {
+                        final List<Object> l = new ArrayList<Object>();
+                        l.add("");
+                        l.add("/usr/lib/drbd/crm-unfence-peer.sh");
+                        paramItemsMap.put(name, l);
+                    } else if ("split-brain".equals(name)) {
+                        final List<Object> l = new ArrayList<Object>();
+                        l.add("");
+                        l.add("/usr/lib/drbd/notify-split-brain.sh root");
+                        paramItemsMap.put(name, l);
+                    } else if ("become-primary-on".equals(name)) {
+                        final List<Object> l = new ArrayList<Object>();
+                        l.add("");
+                        l.add("both");
+                        for (final Host h : hosts) {
+                            l.add(h.getName());
+                        }
+                        paramItemsMap.put(name, l);
+                    } else if ("verify-alg".equals(name)
+                               || "csums-alg".equals(name)
+                               || "data-integrity-alg".equals(name)
+                               || "cram-hmac-alg".equals(name)) {
+                        final List<Object> l = new ArrayList<Object>();
+                        l.add("");
+                        for (final String cr : host.getCryptoModules()) {
+                            l.add(cr);
+                        }
+                        paramItemsMap.put(name, l);
+                    }
+                    final NodeList optionInfos = optionNode.getChildNodes();
+                    for (int j = 0; j < optionInfos.getLength(); j++) {
+                        final Node optionInfo = optionInfos.item(j);
+                        final String tag = optionInfo.getNodeName();
+                        /* <min>, <max>, <handler>, <default> */
+                        if ("min".equals(tag)) {
+                            paramMinMap.put(name,
+                                           new BigInteger(getText(optionInfo)));
+                        } else if ("max".equals(tag)) {
+                            paramMaxMap.put(name,
+                                           new BigInteger(getText(optionInfo)));
+                        } else if ("handler".equals(tag)) {
+                            paramItemsMap.get(name).add(getText(optionInfo));
+                        } else if ("default".equals(tag)) {
+                            paramDefaultMap.put(name, getText(optionInfo));
+                        } else if ("unit".equals(tag)) {
+                            paramUnitLongMap.put(name, getText(optionInfo));
+                        } else if ("unit_prefix".equals(tag)) {
+                            if (!"after".equals(name)
+                                && !"resync-after".equals(name)) {
+                                String option = getText(optionInfo);
+                                if (!"s".equals(option)) {
+                                    /* "s" is an exception */
+                                    option = option.toUpperCase(Locale.US);
+                                }
+                                if ("1".equals(option)) {
+                                    option = "";
+                                }
+                                paramDefaultUnitMap.put(name, option);
+                            }
+                        } else if ("desc".equals(tag)) {
+                            paramLongDescMap.put(name, getText(optionInfo));
+                        }
+                    }
+                    paramTypeMap.put(name, type);
+                    if (!GLOBAL_SECTION.equals(section)
+                        && !parametersList.contains(name)) {
+                        parametersList.add(name);
+                    }
+                    if (!"resource".equals(section)
+                        && !globalParametersList.contains(name)
+                        && !("syncer".equals(section) && "after".equals(name))
+                        && !"resync-after".equals(name)) {
+                        globalParametersList.add(name);
+                    }
+
+                    paramSectionMap.put(name, section);
+                    if (!sectionParamsMap.containsKey(section)) {
+                        sectionParamsMap.put(section, new ArrayList<String>());
+                    }
+                    if (!sectionParamsMap.get(section).contains(name)) {
+                        sectionParamsMap.get(section).add(name);
+                    }
+                }
+            }
+        }
+    }
 }
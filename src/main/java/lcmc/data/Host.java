@@ -28,6 +28,8 @@ import lcmc.utilities.ExecCallback;
 import lcmc.utilities.ConvertCmdCallback;
 import lcmc.utilities.ConnectionCallback;
 import lcmc.utilities.NewOutputCallback;
+import lcmc.utilities.StatusFrameReader;
+import lcmc.utilities.StatusChannel;
 import lcmc.utilities.RoboTest;
 import lcmc.gui.ProgressBar;
 import lcmc.gui.TerminalPanel;
@@ -156,12 +158,14 @@ public final class Host {
     private Color savedColor;
     /** Thread where connection status command is running. */
     private ExecCommandThread connectionStatusThread = null;
-    /** Thread where drbd status command is running. */
-    private ExecCommandThread drbdStatusThread = null;
+    /** Subscription to the drbd status in the status channel. */
+    private StatusChannel.Subscription drbdStatusThread = null;
     /** Thread where hb status command is running. */
     private ExecCommandThread clStatusThread = null;
-    /** Thread where server status command is running. */
-    private ExecCommandThread serverStatusThread = null;
+    /** Subscription to the server status in the status channel. */
+    private StatusChannel.Subscription serverStatusThread = null;
+    /** Subscription to the ping in the status channel. */
+    private volatile StatusChannel.Subscription pingStatusThread = null;
     /** List of positions of the services.
      *  Question is this: the saved positions can be different on different
      *  hosts, but only one can be used in the hb graph.
@@ -226,6 +230,13 @@ public final class Host {
 
     /** SSH object of the connection to this host. */
     private final SSH ssh = new SSH();
+    /**
+     * Status channel, where the hw, drbd and ping status runs. The ping
+     * line keeps the channel alive, so a hung channel is killed after the
+     * ping timeout and started again by the ping loop.
+     */
+    private final StatusChannel statusChannel =
+                                new StatusChannel(ssh, PING_TIMEOUT);
     /** Terminal panel of this host. */
     private TerminalPanel terminalPanel = null;
     /** SSH port. */
@@ -234,6 +245,8 @@ public final class Host {
     private Boolean useSudo = null;
     /** Sudo password. */
     private String sudoPassword = "";
+    /** Whether to use ssh compression. */
+    private boolean compression = false;
     /** Browser panel (the one with menus and all the logic) of this host. */
     private HostBrowser browser;
     /** A gate that is used to synchronize the loading sequence. */
@@ -289,8 +302,7 @@ public final class Host {
     private final Map<String, Double> infoTimestamp =
                                                 new HashMap<String, Double>();
     /** Timeout after which the connection is considered to be dead. */
-    private final int PING_TIMEOUT           = 40000;
-    private final int DRBD_EVENTS_TIMEOUT    = 40000;
+    private static final int PING_TIMEOUT    = 40000;
     private final int CLUSTER_EVENTS_TIMEOUT = 40000;
     private final int HW_INFO_TIMEOUT        = 40000;
 
@@ -942,6 +954,7 @@ public final class Host {
 
     /** Disconnects this host. */
     public void disconnect() {
+        stopPing();
         if (ssh.isConnected()) {
             ssh.forceDisconnect();
         }
@@ -1135,27 +1148,31 @@ public final class Host {
                                commandTimeout);
     }
 
+    /** Returns the command that runs all status streams of this host. */
+    private String getStatusChannelCommand() {
+        return Tools.getDistCommand("HostStatusMux",
+                                    dist,
+                                    distVersionString,
+                                    arch,
+                                    null, /* ConvertCmdCallback */
+                                    false); /* in bash */
+    }
+
     /**
      * Executes get status command which runs in the background and updates the
      * block device object. The command is 'drbdsetup /dev/drbdX events'
-     * The session is stored, so that in can be stopped with 'stop' button.
+     * The events come through the status channel of this host. The
+     * subscription is stored, so that in can be stopped with 'stop' button.
      */
     public void execDrbdStatusCommand(final ExecCallback execCallback,
                                       final NewOutputCallback outputCallback) {
         if (drbdStatusThread == null) {
-            drbdStatusThread = ssh.execCommand(
-                                Tools.getDistCommand(
-                                                "DRBD.getDrbdStatus",
-                                                dist,
-                                                distVersionString,
-                                                arch,
-                                                null, /* ConvertCmdCallback */
-                                                false), /* in bash */
-                                    execCallback,
-                                    outputCallback,
-                                    false,
-                                    false,
-                                    DRBD_EVENTS_TIMEOUT);
+            drbdStatusThread = statusChannel.subscribe(
+                                                getStatusChannelCommand(),
+                                                "drbd",
+                                                true, /* initial state */
+                                                execCallback,
+                                                outputCallback);
         } else {
             Tools.appWarning("trying to start started drbd status");
         }
@@ -1271,6 +1288,23 @@ public final class Host {
         return usernames[0];
     }
 
+    /** Returns username in the specified hop, root is the default. */
+    public String getUsername(final int hop) {
+        final String[] usernames = username.split(",");
+        if (usernames.length < hop + 1) {
+            return ROOT_USER;
+        }
+        return usernames[hop];
+    }
+
+    /** Returns number of hops, 1 if the host is connected directly. */
+    public int getHops() {
+        if (ip == null) {
+            return 1;
+        }
+        return Tools.charCount(ip, ',') + 1;
+    }
+
     /** Gets hostname as entered by user. */
     public String getHostnameEntered() {
         return hostnameEntered;
@@ -1307,7 +1341,7 @@ public final class Host {
      * -A   -tt -l root x.x.x.x \\\"ls\\\"\""
      */
     public String getHoppedCommand(final String command) {
-        final int hops = Tools.charCount(ip, ',') + 1;
+        final int hops = getHops();
         final String[] usernames = username.split(",");
         final String[] ips = ip.split(",");
         final StringBuilder s = new StringBuilder(200);
@@ -1573,7 +1607,7 @@ public final class Host {
 
     /** Gets and stores info about the host. */
     void getAllInfo() {
-        final Thread t = execCommand("GetHostAllInfo",
+        final ExecCommandThread t = execCommand("GetHostAllInfo",
                          new ExecCallback() {
                              @Override
                              public void done(final String ans) {
@@ -1600,7 +1634,7 @@ public final class Host {
     /** Gets and stores hardware info about the host. */
     public void getHWInfo(final CategoryInfo[] infosToUpdate,
                           final ResourceGraph[] graphs) {
-        final Thread t = execCommand("GetHostHWInfo",
+        final ExecCommandThread t = execCommand("GetHostHWInfo",
                          new ExecCallback() {
                              @Override
                              public void done(final String ans) {
@@ -1634,6 +1668,25 @@ public final class Host {
         }
     }
 
+    /**
+     * Returns whether the info with this timestamp is newer than the last
+     * one of the same type and remembers the timestamp if it is.
+     */
+    private boolean isNewerInfo(final String type, final Double timestamp) {
+        mInfoTimestampLock.lock();
+        try {
+            if (!infoTimestamp.containsKey(type)
+                || (timestamp != null
+                    && timestamp >= infoTimestamp.get(type))) {
+                infoTimestamp.put(type, timestamp);
+                return true;
+            }
+            return false;
+        } finally {
+            mInfoTimestampLock.unlock();
+        }
+    }
+
     public String getOutput(final String type, final StringBuffer buffer) {
         final String infoStart = "--" + type + "-info-start--";
         final String infoEnd = "--" + type + "-info-end--";
@@ -1649,31 +1702,25 @@ public final class Host {
             try {
                 timestamp = Double.parseDouble(ts);
             }  catch (final NumberFormatException nfe) {
-                Tools.debug(this, "could not parse: " + ts + " " + nfe);
+                Tools.debug(this, "could not parse: {} {}", 0, ts, nfe);
             }
-            mInfoTimestampLock.lock();
-            if (!infoTimestamp.containsKey(type)
-                || (timestamp != null && timestamp >= infoTimestamp.get(type))) {
-                infoTimestamp.put(type, timestamp);
-                mInfoTimestampLock.unlock();
+            if (isNewerInfo(type, timestamp)) {
                 out = buffer.substring(s2 + 2, e);
-            } else {
-                mInfoTimestampLock.unlock();
             }
             buffer.delete(0, e + infoEndLength + 2);
         }
         return out;
     }
 
+    /**
+     * Subscribes to the ping and waits till the status channel finishes or
+     * the ping is stopped.
+     */
     public void startPing() {
-        final Thread t = ssh.execCommand(
-                                Tools.getDistCommand(
-                                                "PingCommand",
-                                                dist,
-                                                distVersionString,
-                                                arch,
-                                                null, /* ConvertCmdCallback */
-                                                true), /* in bash */
+        final StatusChannel.Subscription t = statusChannel.subscribe(
+                         getStatusChannelCommand(),
+                         "ping",
+                         false, /* initial state */
                          new ExecCallback() {
                              @Override
                              public void done(final String ans) {
@@ -1689,29 +1736,35 @@ public final class Host {
                              public void output(final String output) {
                                  ping.set(true);
                              }
-                         },
-                         false,
-                         false,
-                         PING_TIMEOUT);
+                         });
+        pingStatusThread = t;
         try {
             t.join();
         } catch (java.lang.InterruptedException e) {
             Thread.currentThread().interrupt();
         }
+        if (pingStatusThread == t) {
+            pingStatusThread = null;
+        }
+    }
+
+    /** Stops the ping, so that the status channel can stop. */
+    public void stopPing() {
+        final StatusChannel.Subscription t = pingStatusThread;
+        if (t != null) {
+            pingStatusThread = null;
+            t.cancel();
+        }
     }
 
     /** Gets and stores hardware info about the host. */
     public void startHWInfoDaemon(final CategoryInfo[] infosToUpdate,
                                   final ResourceGraph[] graphs) {
         final Host host = this;
-        serverStatusThread = ssh.execCommand(
-                                Tools.getDistCommand(
-                                                "HostHWInfoDaemon",
-                                                dist,
-                                                distVersionString,
-                                                arch,
-                                                null, /* ConvertCmdCallback */
-                                                false), /* in bash */
+        serverStatusThread = statusChannel.subscribe(
+                         getStatusChannelCommand(),
+                         "hw",
+                         true, /* initial state */
                          new ExecCallback() {
                              @Override
                              public void done(final String ans) {
@@ -1747,18 +1800,17 @@ public final class Host {
                          new NewOutputCallback() {
                              private StringBuffer outputBuffer =
                                                         new StringBuffer(300);
-                             @Override
-                             public void output(final String output) {
+                             private final StatusFrameReader frameReader =
+                                                    new StatusFrameReader();
+                             private String hwUpdate;
+                             private String vmUpdate;
+                             private String drbdUpdate;
+
+                             /** Parses the output of the old helper. */
+                             private void parseTextOutput(final String output) {
                                  outputBuffer.append(output);
-                                 final ClusterBrowser cb =
-                                              getBrowser().getClusterBrowser();
-                                 int i = 0;
                                  String hw, vm, drbdConfig;
-                                 String hwUpdate = null;
-                                 String vmUpdate = null;
-                                 String drbdUpdate = null;
                                  do {
-                                     i++;
                                      hw = getOutput("hw", outputBuffer); 
                                      if (hw != null) {
                                          hwUpdate = hw;
@@ -1781,6 +1833,45 @@ public final class Host {
                                           || drbdConfig != null);
 
                                  Tools.chomp(outputBuffer);
+                             }
+
+                             /** Parses the framed output. */
+                             private void parseFrames(final String output) {
+                                 for (final StatusFrameReader.Frame frame
+                                               : frameReader.read(output)) {
+                                     final String type = frame.getType();
+                                     if (!isNewerInfo(type,
+                                                      frame.getTimestamp())) {
+                                         continue;
+                                     }
+                                     if ("hw".equals(type)) {
+                                         hwUpdate = frame.getPayload();
+                                     } else if ("vm".equals(type)) {
+                                         vmUpdate = frame.getPayload();
+                                     } else if ("drbd".equals(type)) {
+                                         drbdUpdate = frame.getPayload();
+                                     }
+                                 }
+                                 if (frameReader.isTextProtocol()) {
+                                     Tools.debug(this, "no frames from: {}",
+                                                 1, getName());
+                                     parseTextOutput(
+                                          frameReader.getUnparsedOutput());
+                                 }
+                             }
+
+                             @Override
+                             public void output(final String output) {
+                                 final ClusterBrowser cb =
+                                              getBrowser().getClusterBrowser();
+                                 hwUpdate = null;
+                                 vmUpdate = null;
+                                 drbdUpdate = null;
+                                 if (frameReader.isTextProtocol()) {
+                                     parseTextOutput(output);
+                                 } else {
+                                     parseFrames(output);
+                                 }
                                  if (hwUpdate != null) {
                                      parseHostInfo(hwUpdate);
                                      for (final ResourceGraph g : graphs) {
@@ -1792,9 +1883,11 @@ public final class Host {
                                  if (vmUpdate != null) {
                                      final VMSXML newVMSXML =
                                                         new VMSXML(host);
-                                     if (newVMSXML.update(vmUpdate)) {
+                                     if (newVMSXML.update(vmUpdate,
+                                                          cb.getVMSXML(host))) {
                                          cb.vmsXMLPut(host, newVMSXML);
-                                         cb.updateVMS();
+                                         cb.updateVMS(
+                                            newVMSXML.getChangedDomains());
                                      }
                                  }
                                  if (drbdUpdate != null) {
@@ -1802,9 +1895,11 @@ public final class Host {
                                            new DrbdXML(cluster.getHostsArray(),
                                                        cb.getDrbdParameters());
                                      dxml.update(drbdUpdate);
-                                     cb.setDrbdXML(dxml);
-                                     cb.getDrbdGraph().getDrbdInfo().setParameters();
-                                     cb.updateDrbdResources();
+                                     if (cb.setDrbdXML(dxml)) {
+                                         cb.getDrbdGraph().getDrbdInfo()
+                                                          .setParameters();
+                                         cb.updateDrbdResources();
+                                     }
                                  }
                                  if (drbdUpdate != null
                                      || vmUpdate != null) {
@@ -1818,10 +1913,7 @@ public final class Host {
                                  }
                                  setLoadingDone();
                              }
-                         },
-                         false,
-                         false,
-                         HW_INFO_TIMEOUT);
+                         });
         try {
             serverStatusThread.join();
         } catch (java.lang.InterruptedException e) {
@@ -1836,14 +1928,13 @@ public final class Host {
             public void run() {
                 while (true) {
                     if (ping.get()) {
-                       Tools.debug(this, "connection ok on " + getName(),
-                                   2);
+                       Tools.debug(this, "connection ok on {}", 2,
+                                   getName());
                        setConnected();
                        ping.set(false);
                     } else {
-                       Tools.debug(this, "connection lost on "
-                                         + getName(),
-                                   2);
+                       Tools.debug(this, "connection lost on {}", 2,
+                                   getName());
                        getSSH().forceReconnect();
                        setConnected();
                     }
@@ -1970,7 +2061,7 @@ public final class Host {
 
     /** Parses the host info. */
     public void parseHostInfo(final String ans) {
-        Tools.debug(this, "updating host info: " + getName(), 1);
+        Tools.debug(this, "updating host info: {}", 1, getName());
         final String[] lines = ans.split("\\r?\\n");
         String type = "";
         final List<String> versionLines = new ArrayList<String>();
@@ -2036,32 +2127,34 @@ public final class Host {
                 continue;
             }
             if ("net-info".equals(type)) {
-                NetInterface netInterface = new NetInterface(line);
-                if (netInterfaces.containsKey(netInterface.getName())) {
-                    netInterface = netInterfaces.get(netInterface.getName());
+                NetInterface netInterface =
+                                     netInterfaces.get(getFirstToken(line));
+                if (netInterface == null) {
+                    netInterface = new NetInterface(line);
                 }
                 newNetInterfaces.put(netInterface.getName(), netInterface);
                 netInfo = true;
             } else if ("disk-info".equals(type)) {
-                BlockDevice blockDevice = new BlockDevice(line);
+                /* reuse the existing block device object, it is updated
+                   only if its line changed. */
+                final String bdName = getFirstToken(line);
+                BlockDevice blockDevice;
+                if (DRBDP.matcher(bdName).matches()) {
+                    blockDevice = drbdBlockDevices.get(bdName);
+                } else {
+                    blockDevice = blockDevices.get(bdName);
+                }
+                if (blockDevice == null) {
+                    blockDevice = new BlockDevice(line);
+                } else {
+                    blockDevice.update(line);
+                }
                 final String name = blockDevice.getName();
                 if (name != null) {
                     final Matcher drbdM = DRBDP.matcher(name);
                     if (drbdM.matches()) {
-                        if (drbdBlockDevices.containsKey(name)) {
-                            /* get the existing block device object,
-                               forget the new one. */
-                            blockDevice = drbdBlockDevices.get(name);
-                            blockDevice.update(line);
-                        }
                         newDrbdBlockDevices.put(name, blockDevice);
                     } else {
-                        if (blockDevices.containsKey(name)) {
-                            /* get the existing block device object,
-                               forget the new one. */
-                            blockDevice = blockDevices.get(name);
-                            blockDevice.update(line);
-                        }
                         newBlockDevices.put(name, blockDevice);
                         if (blockDevice.getVolumeGroup() == null
                             && name.length() > 5 && name.indexOf('/', 5) < 0) {
@@ -2178,9 +2271,20 @@ public final class Host {
             guiOptions = newGuiOptions;
         }
 
-        getBrowser().updateHWResources(getNetInterfaces(),
-                                       getBlockDevices(),
-                                       getFileSystems());
+        if (netInfo || diskInfo || filesystemsInfo) {
+            getBrowser().updateHWResources(getNetInterfaces(),
+                                           getBlockDevices(),
+                                           getFileSystems());
+        }
+    }
+
+    /** Returns the part of the line before the first space. */
+    private static String getFirstToken(final String line) {
+        final int i = line.indexOf(' ');
+        if (i < 0) {
+            return line;
+        }
+        return line.substring(0, i);
     }
 
     /** Parses the gui info, with drbd and heartbeat graph positions. */
@@ -2594,6 +2698,16 @@ public final class Host {
         this.useSudo = useSudo;
     }
 
+    /** Returns whether to use ssh compression. */
+    public boolean isCompression() {
+        return compression;
+    }
+
+    /** Sets whether to use ssh compression. */
+    public void setCompression(final boolean compression) {
+        this.compression = compression;
+    }
+
     /** Sets openais/pacemaker installation method index. */
     public void setPmInstallMethod(final String pmInstallMethod) {
         this.pmInstallMethod = pmInstallMethod;
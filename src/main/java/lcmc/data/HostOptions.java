@@ -31,6 +31,8 @@ public final class HostOptions {
     private String port = null;
     /** Whether to use sudo. */
     private boolean sudo = false;
+    /** Whether to use ssh compression. */
+    private boolean compression = false;
 
     /** Create new HostOptions object. */
     public HostOptions(final String host) {
@@ -71,4 +73,14 @@ public final class HostOptions {
     public void setSudo(final boolean sudo) {
         this.sudo = sudo;
     }
+
+    /** Return whether to use ssh compression. */
+    public boolean getCompression() {
+        return compression;
+    }
+
+    /** Set whether to use ssh compression. */
+    public void setCompression(final boolean compression) {
+        this.compression = compression;
+    }
 }
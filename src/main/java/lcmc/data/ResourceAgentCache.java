@@ -0,0 +1,213 @@
+/*
+ * This file is part of LCMC by Rasto Levrinc.
+ *
+ * Copyright (C) 2013, Rastislav Levrinc
+ *
+ * LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.data;
+
+import lcmc.utilities.Tools;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * This class stores meta-data of the OCF resource agents on the disk, so that
+ * they don't have to be fetched from the cluster every time. The meta-data
+ * are stored per provider and agent file and keyed by the md5 checksum of
+ * the agent, so the same cache can be used for all clusters. Several
+ * versions of every agent are kept, so that clusters with different agent
+ * versions don't evict each other, the least recently used are removed.
+ *
+ * @author Rasto Levrinc
+ * @version $Id$
+ *
+ */
+final class ResourceAgentCache {
+    /** Names that can be used as file names. */
+    private static final Pattern NAME_PATTERN =
+                                  Pattern.compile("^[\\w+-][\\w.+-]*$");
+    /** Checksum pattern. */
+    private static final Pattern CHECKSUM_PATTERN =
+                                  Pattern.compile("^[0-9a-f]+$");
+    /** Encoding of the cached files. */
+    private static final String ENCODING = "UTF-8";
+    /** How many versions of one agent are kept. */
+    static final int MAX_VERSIONS = 5;
+    /** Orders the files from the most recently used. */
+    private static final Comparator<File> RECENT_FIRST =
+                                                new Comparator<File>() {
+        @Override
+        public int compare(final File f1, final File f2) {
+            final long m1 = f1.lastModified();
+            final long m2 = f2.lastModified();
+            if (m1 == m2) {
+                return f1.getName().compareTo(f2.getName());
+            }
+            return m1 > m2 ? -1 : 1;
+        }
+    };
+    /** Directory with the cached meta-data. */
+    private final File cacheDir;
+
+    /** Prepares a new <code>ResourceAgentCache</code> object. */
+    ResourceAgentCache(final String cacheDir) {
+        this.cacheDir = new File(cacheDir);
+    }
+
+    /**
+     * Returns the file for the agent, or null if the names can't be
+     * used as a file names.
+     */
+    private File getFile(final String provider,
+                         final String file,
+                         final String checksum) {
+        if (provider == null
+            || file == null
+            || checksum == null
+            || !NAME_PATTERN.matcher(provider).matches()
+            || !NAME_PATTERN.matcher(file).matches()
+            || !CHECKSUM_PATTERN.matcher(checksum).matches()) {
+            return null;
+        }
+        return new File(new File(cacheDir, provider), file + "." + checksum);
+    }
+
+    /**
+     * Returns cached meta-data of the agent with the same checksum or null,
+     * if they are not in the cache.
+     */
+    String get(final String provider,
+               final String file,
+               final String checksum) {
+        final File f = getFile(provider, file, checksum);
+        if (f == null || !f.isFile()) {
+            return null;
+        }
+        /* the modification time is used for the LRU pruning */
+        f.setLastModified(System.currentTimeMillis());
+        BufferedReader in = null;
+        try {
+            in = new BufferedReader(
+                      new InputStreamReader(new FileInputStream(f), ENCODING));
+            final StringBuilder content = new StringBuilder();
+            String line;
+            while ((line = in.readLine()) != null) {
+                content.append(line);
+                content.append('\n');
+            }
+            return content.toString();
+        } catch (IOException e) {
+            Tools.appWarning("could not read: " + f + ": " + e.getMessage());
+            return null;
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    Tools.appWarning("could not close: " + f);
+                }
+            }
+        }
+    }
+
+    /**
+     * Stores meta-data of the agent and removes meta-data of the least
+     * recently used versions of this agent, if there are more than
+     * MAX_VERSIONS of them.
+     */
+    void put(final String provider,
+             final String file,
+             final String checksum,
+             final String metaData) {
+        final File f = getFile(provider, file, checksum);
+        if (f == null) {
+            return;
+        }
+        final File dir = f.getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            Tools.appWarning("could not create: " + dir);
+            return;
+        }
+        /* other clusters can write the same agent at the same time */
+        final File tmp = new File(dir,
+                                  f.getName() + "."
+                                  + Thread.currentThread().getId() + ".tmp");
+        Writer out = null;
+        try {
+            out = new OutputStreamWriter(new FileOutputStream(tmp), ENCODING);
+            out.write(metaData);
+        } catch (IOException e) {
+            Tools.appWarning("could not write: " + tmp + ": " + e.getMessage());
+            return;
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    Tools.appWarning("could not close: " + tmp);
+                }
+            }
+        }
+        if (!tmp.renameTo(f)) {
+            f.delete();
+            if (!tmp.renameTo(f)) {
+                Tools.appWarning("could not rename: " + tmp);
+                tmp.delete();
+                return;
+            }
+        }
+        prune(dir, file);
+    }
+
+    /** Removes the least recently used versions of the agent. */
+    private void prune(final File dir, final String file) {
+        final String prefix = file + ".";
+        final File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        final List<File> versions = new ArrayList<File>();
+        for (final File version : files) {
+            final String name = version.getName();
+            if (name.startsWith(prefix)
+                && CHECKSUM_PATTERN.matcher(
+                                name.substring(prefix.length())).matches()) {
+                versions.add(version);
+            }
+        }
+        if (versions.size() <= MAX_VERSIONS) {
+            return;
+        }
+        Collections.sort(versions, RECENT_FIRST);
+        for (final File old : versions.subList(MAX_VERSIONS,
+                                               versions.size())) {
+            old.delete();
+        }
+    }
+}
@@ -67,6 +67,8 @@ public final class UserConfig extends XML {
     private static final String HOST_COLOR_ATTR = "color";
     /** Host use sudo attribute string. */
     private static final String HOST_USESUDO_ATTR = "sudo";
+    /** Host ssh compression attribute string. */
+    private static final String HOST_COMPRESSION_ATTR = "compression";
     /** Cluster name attribute string. */
     private static final String CLUSTER_NAME_ATTR = "name";
     /** Name of the host node. */
@@ -124,6 +126,9 @@ public final class UserConfig extends XML {
             if (useSudo != null && useSudo) {
                 hostNode.setAttribute(HOST_USESUDO_ATTR, "true");
             }
+            if (host.isCompression()) {
+                hostNode.setAttribute(HOST_COMPRESSION_ATTR, "true");
+            }
             if (ip != null) {
                 final Node ipNode = (Element) hostNode.appendChild(
                                                        doc.createElement("ip"));
@@ -185,12 +190,16 @@ public final class UserConfig extends XML {
 
     /**
      * Starts specified clusters and connects to the hosts of this clusters.
+     * The clusters are connected at the same time and every cluster view is
+     * added, as soon as the hosts of this cluster are loaded. Returns after
+     * all clusters are connected.
      */
     public void startClusters(final List<Cluster> selectedClusters) {
         final Set<Cluster> clusters =
                         Tools.getConfigData().getClusters().getClusterSet();
         if (clusters != null) {
             /* clusters */
+            final List<Thread> connectThreads = new ArrayList<Thread>();
             for (final Cluster cluster : clusters) {
                 if (selectedClusters != null
                     && !selectedClusters.contains(cluster)) {
@@ -200,31 +209,51 @@ public final class UserConfig extends XML {
                 if (cluster.getHosts().isEmpty()) {
                     continue;
                 }
-                final boolean ok = cluster.connect(null, true, 1);
-                if (!ok) {
-                    Tools.getGUIData().getClustersPanel().removeTab(cluster);
-                    continue;
-                }
-                final Runnable runnable = new Runnable() {
+                final Thread connectThread = new Thread(new Runnable() {
                     @Override
                     public void run() {
-                        for (final Host host : cluster.getHosts()) {
-                            host.waitOnLoading();
+                        final boolean ok = cluster.connect(null, true, 1);
+                        if (!ok) {
+                            Tools.getGUIData().getClustersPanel().removeTab(
+                                                                     cluster);
+                            return;
                         }
-                        cluster.getClusterTab().addClusterView();
-                        SwingUtilities.invokeLater(new Runnable() {
-                            public void run() {
-                                cluster.getClusterTab().requestFocus();
-                            }
-                        });
+                        startClusterView(cluster);
                     }
-                };
-                final Thread thread = new Thread(runnable);
-                thread.start();
+                });
+                connectThread.start();
+                connectThreads.add(connectThread);
+            }
+            for (final Thread connectThread : connectThreads) {
+                try {
+                    connectThread.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
             }
         }
     }
 
+    /** Adds the cluster view after the hosts of the cluster are loaded. */
+    private void startClusterView(final Cluster cluster) {
+        final Runnable runnable = new Runnable() {
+            @Override
+            public void run() {
+                for (final Host host : cluster.getHosts()) {
+                    host.waitOnLoading();
+                }
+                cluster.getClusterTab().addClusterView();
+                SwingUtilities.invokeLater(new Runnable() {
+                    public void run() {
+                        cluster.getClusterTab().requestFocus();
+                    }
+                });
+            }
+        };
+        final Thread thread = new Thread(runnable);
+        thread.start();
+    }
+
     /**
      * Loads info from xml that is supplied as an argument to the internal
      * data objects.
@@ -268,6 +297,9 @@ public final class UserConfig extends XML {
                             final String useSudo =
                                                 getAttribute(hostNode,
                                                              HOST_USESUDO_ATTR);
+                            final String compression =
+                                            getAttribute(hostNode,
+                                                         HOST_COMPRESSION_ATTR);
                             final Node ipNode = getChildNode(hostNode, "ip");
                             String ip = null;
                             if (ipNode != null) {
@@ -283,6 +315,7 @@ public final class UserConfig extends XML {
                                     sshPort,
                                     color,
                                     "true".equals(useSudo),
+                                    "true".equals(compression),
                                     true);
                         }
                     }
@@ -319,6 +352,7 @@ public final class UserConfig extends XML {
                         String sshPort,
                         final String color,
                         final boolean sudo,
+                        final boolean compression,
                         final boolean savable) {
         Tools.getConfigData().setLastEnteredUser(username);
         final Host host = new Host();
@@ -334,6 +368,7 @@ public final class UserConfig extends XML {
         }
         host.setUseSudo(sudo);
         Tools.getConfigData().setLastEnteredUseSudo(sudo);
+        host.setCompression(compression);
         Tools.getConfigData().addHostToHosts(host);
 
         new TerminalPanel(host);
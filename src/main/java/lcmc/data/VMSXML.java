@@ -43,6 +43,7 @@ import java.util.HashMap;
 import java.util.regex.Pattern;
 import java.util.regex.Matcher;
 import org.apache.commons.collections15.map.MultiKeyMap;
+import org.apache.commons.collections15.keyvalue.MultiKey;
 import javax.xml.xpath.XPathFactory;
 import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPath;
@@ -130,6 +131,11 @@ public final class VMSXML extends XML {
                                     new LinkedHashMap<String, NetworkData>();
     /** Directories where are source files. */
     private final Set<String> sourceFileDirs = new TreeSet<String>();
+    /** Map from domain names to md5 checksums of their info. */
+    private final Map<String, String> domainMD5s =
+                                                new HashMap<String, String>();
+    /** Domains that changed since the previous update. */
+    private final Set<String> changedDomains = new TreeSet<String>();
     /** Pattern that maches display e.g. :4. */
     private static final Pattern DISPLAY_PATTERN =
                                                  Pattern.compile(".*:(\\d+)$");
@@ -1209,6 +1215,15 @@ public final class VMSXML extends XML {
     }
 
     public boolean update(final String output) {
+        return update(output, null);
+    }
+
+    /**
+     * Updates data from the output. The domains, whose md5 checksum didn't
+     * change since the previous update, are not parsed again, but copied
+     * from the old object. Returns whether anything changed.
+     */
+    public boolean update(final String output, final VMSXML oldVMSXML) {
         final Document document = getXMLDocument(output);
         mXMLDocumentWriteLock.lock();
         xmlDocument = document;
@@ -1228,14 +1243,93 @@ public final class VMSXML extends XML {
             if ("net".equals(node.getNodeName())) {
                 updateNetworks(node);
             } else if ("vm".equals(node.getNodeName())) {
-                updateVM(node);
+                final String domainName = getAttribute(node, VM_PARAM_NAME);
+                final String domainMD5 = getAttribute(node, "md5");
+                if (oldVMSXML != null
+                    && domainMD5 != null
+                    && domainMD5.equals(
+                                   oldVMSXML.domainMD5s.get(domainName))) {
+                    copyDomain(oldVMSXML, domainName);
+                } else {
+                    updateVM(node);
+                    changedDomains.add(domainName);
+                }
+                domainMD5s.put(domainName, domainMD5);
             } else if ("version".equals(node.getNodeName())) {
                 host.setLibvirtVersion(getText(node));
             }
         }
+        if (oldVMSXML != null) {
+            for (final String domainName : oldVMSXML.domainNames) {
+                if (!domainNames.contains(domainName)) {
+                    changedDomains.add(domainName);
+                }
+            }
+        }
         return true;
     }
 
+    /** Copies the parsed data of the unchanged domain from the old object. */
+    @SuppressWarnings("unchecked")
+    private void copyDomain(final VMSXML old, final String name) {
+        if (old.domainNames.contains(name) && !domainNames.contains(name)) {
+            domainNames.add(name);
+        }
+        for (final Object k : old.parameterValues.keySet()) {
+            final MultiKey<String> key = (MultiKey<String>) k;
+            if (name.equals(key.getKey(0))) {
+                parameterValues.put(name,
+                                    key.getKey(1),
+                                    old.parameterValues.get(key));
+            }
+        }
+        copyValue(old.remotePorts, remotePorts, name);
+        copyValue(old.autoports, autoports, name);
+        copyValue(old.runningMap, runningMap, name);
+        copyValue(old.suspendedMap, suspendedMap, name);
+        copyValue(old.disksMap, disksMap, name);
+        copyValue(old.filesystemsMap, filesystemsMap, name);
+        copyValue(old.interfacesMap, interfacesMap, name);
+        copyValue(old.inputDevsMap, inputDevsMap, name);
+        copyValue(old.graphicsDevsMap, graphicsDevsMap, name);
+        copyValue(old.soundsMap, soundsMap, name);
+        copyValue(old.serialsMap, serialsMap, name);
+        copyValue(old.parallelsMap, parallelsMap, name);
+        copyValue(old.videosMap, videosMap, name);
+        copyValue(old.namesConfigsMap, namesConfigsMap, name);
+        final String configName = old.namesConfigsMap.get(name);
+        if (old.configsMap.containsKey(configName)) {
+            configsMap.put(configName, name);
+        }
+        final Map<String, DiskData> disks = old.disksMap.get(name);
+        if (disks != null) {
+            for (final DiskData diskData : disks.values()) {
+                final String dir =
+                          Tools.getDirectoryPart(diskData.getSourceFile());
+                if (dir != null) {
+                    sourceFileDirs.add(dir);
+                }
+            }
+        }
+    }
+
+    /** Copies the value of the domain from the old map, if it's there. */
+    private static <V> void copyValue(final Map<String, V> oldMap,
+                                      final Map<String, V> newMap,
+                                      final String name) {
+        if (oldMap.containsKey(name)) {
+            newMap.put(name, oldMap.get(name));
+        }
+    }
+
+    /**
+     * Returns domains that were added, removed or changed in the last
+     * update, compared with the old object.
+     */
+    public Set<String> getChangedDomains() {
+        return changedDomains;
+    }
+
     /** Updates one network. */
     private void updateNetworks(final Node netNode) {
         /* one vm */
@@ -26,11 +26,16 @@ import lcmc.utilities.Tools;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
+import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.StringReader;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.NodeList;
@@ -44,6 +49,37 @@ import org.w3c.dom.Node;
  *
  */
 abstract class XML {
+    /** Document builder factory that is shared by all parsers. */
+    private static final DocumentBuilderFactory DOCUMENT_BUILDER_FACTORY =
+                                         DocumentBuilderFactory.newInstance();
+    /** Document builders are not thread safe, there is one per thread. */
+    private static final ThreadLocal<DocumentBuilder> DOCUMENT_BUILDER =
+        new ThreadLocal<DocumentBuilder>() {
+            @Override
+            protected DocumentBuilder initialValue() {
+                try {
+                    synchronized (DOCUMENT_BUILDER_FACTORY) {
+                        return DOCUMENT_BUILDER_FACTORY.newDocumentBuilder();
+                    }
+                } catch (ParserConfigurationException pce) {
+                    // Parser with specified options can't be built
+                    Tools.appError("could not create xml parser", pce);
+                    return null;
+                }
+            }
+        };
+    /**
+     * Streaming parser factories are not documented as thread safe, there is
+     * one per thread.
+     */
+    private static final ThreadLocal<XMLInputFactory> XML_INPUT_FACTORY =
+        new ThreadLocal<XMLInputFactory>() {
+            @Override
+            protected XMLInputFactory initialValue() {
+                return XMLInputFactory.newInstance();
+            }
+        };
+
     /** Returns child node of the node identified by the tag. */
     protected final Node getChildNode(final Node node, final String tag) {
         final NodeList nodeList = node.getChildNodes();
@@ -80,6 +116,11 @@ abstract class XML {
         return ch.getNodeValue();
     }
 
+    /** Returns whether there is nothing to parse in the xml string. */
+    private boolean isEmptyXML(final String xml) {
+        return xml.equals("") || xml.equals("no resources defined!");
+    }
+
     /**
      * Parses xml passed as a string and returns document object with
      * the tree.
@@ -89,17 +130,13 @@ abstract class XML {
             return null;
         }
         final String xml = xmlraw.trim();
-        final DocumentBuilderFactory factory =
-            DocumentBuilderFactory.newInstance();
-        if (factory == null
-            || xml.equals("")
-            || xml.equals("no resources defined!")) {
+        final DocumentBuilder builder = DOCUMENT_BUILDER.get();
+        if (builder == null || isEmptyXML(xml)) {
             return null;
         }
         Document document;
         try {
-            final DocumentBuilder builder = factory.newDocumentBuilder();
-            document = builder.parse(new ByteArrayInputStream(xml.getBytes()));
+            document = builder.parse(new InputSource(new StringReader(xml)));
         } catch (SAXException sxe) {
             // Error generated during parsing)
             Exception  x = sxe;
@@ -108,15 +145,78 @@ abstract class XML {
             }
             Tools.appWarning("could not parse: " + xml);
             return null;
-        } catch (ParserConfigurationException pce) {
-            // Parser with specified options can't be built
-            pce.printStackTrace();
-            return null;
         } catch (IOException ioe) {
             // I/O error
-            ioe.printStackTrace();
+            Tools.appError("could not parse xml", ioe);
             return null;
+        } finally {
+            builder.reset();
         }
         return document;
     }
+
+    /**
+     * Returns streaming reader for the xml passed as a string, that doesn't
+     * build the whole tree, or null if there is nothing to parse.
+     */
+    protected final XMLStreamReader getXMLStreamReader(final String xmlraw) {
+        if (xmlraw == null) {
+            return null;
+        }
+        final String xml = xmlraw.trim();
+        if (isEmptyXML(xml)) {
+            return null;
+        }
+        try {
+            return XML_INPUT_FACTORY.get().createXMLStreamReader(
+                                                     new StringReader(xml));
+        } catch (XMLStreamException xse) {
+            Tools.appWarning("could not parse: " + xml);
+            return null;
+        }
+    }
+
+    /**
+     * Moves the streaming reader to the start of the next child element and
+     * returns true, or returns false at the end of the current element.
+     * Text and comments are skipped.
+     */
+    protected final boolean nextChildElement(final XMLStreamReader reader)
+                                                throws XMLStreamException {
+        while (reader.hasNext()) {
+            final int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                return true;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns attribute value of the element, at which start the streaming
+     * reader is positioned, or null if there is no such attribute.
+     */
+    final String getAttribute(final XMLStreamReader reader,
+                              final String name) {
+        return reader.getAttributeValue(null, name);
+    }
+
+    /**
+     * Skips the element, at which start the streaming reader is positioned,
+     * including its children.
+     */
+    protected final void skipElement(final XMLStreamReader reader)
+                                                throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            final int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
 }
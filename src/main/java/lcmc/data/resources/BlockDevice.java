@@ -84,6 +84,11 @@ public final class BlockDevice extends Resource {
     private String logicalVolume = null;
     /** DRBD block device. */
     private BlockDevice drbdBlockDevice = null;
+    /** Line from which the block device was last updated. */
+    private String lastLine = null;
+    /** Pattern for the key:value tokens. */
+    private static final Pattern TOKEN_PATTERN =
+                                             Pattern.compile("([^:]+):(.*)");
     /** States that means that we are connected. */
     private static final Set<String> CONNECTED_STATES =
         Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(
@@ -119,9 +124,16 @@ public final class BlockDevice extends Resource {
         update(line);
     }
 
-    /** Updates the block device. */
+    /**
+     * Updates the block device. Nothing is done if the line didn't change
+     * since the last update, unless the fields were changed in the GUI in
+     * the meantime.
+     */
     public void update(final String line) {
-        final Pattern p = Pattern.compile("([^:]+):(.*)");
+        if (line.equals(lastLine)) {
+            return;
+        }
+        lastLine = line;
         final String[] cols = line.split(" ");
         if (cols.length < 2) {
             Tools.appWarning("cannot parse line: " + line);
@@ -130,7 +142,7 @@ public final class BlockDevice extends Resource {
             setName(device);
             final Map<String, String> tokens = new HashMap<String, String>();
             for (int i = 1; i < cols.length; i++) {
-                final Matcher m = p.matcher(cols[i]);
+                final Matcher m = TOKEN_PATTERN.matcher(cols[i]);
                 if (m.matches()) {
                     tokens.put(m.group(1), m.group(2));
                 } else {
@@ -561,6 +573,8 @@ public final class BlockDevice extends Resource {
     public void setVolumeGroupOnPhysicalVolume(
                                             final String vgOnPhysicalVolume) {
         this.vgOnPhysicalVolume = vgOnPhysicalVolume;
+        /* the next update must correct this, even if the line is the same */
+        lastLine = null;
     }
 
     /** Returns logical volume. */
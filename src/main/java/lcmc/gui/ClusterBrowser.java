@@ -85,6 +85,7 @@ import java.util.Enumeration;
 import java.util.TreeMap;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
@@ -206,6 +207,11 @@ public final class ClusterBrowser extends Browser {
                            new HashMap<ResourceAgent, AvailableServiceInfo>();
     /** Cluster hosts info object. */
     private ClusterHostsInfo clusterHostsInfo;
+    /** Block devices with drbd events, whose info was not updated yet. */
+    private final Set<BlockDevInfo> drbdEventBlockDevInfos =
+                                             new LinkedHashSet<BlockDevInfo>();
+    /** Whether the update after the drbd events is scheduled. */
+    private boolean drbdEventsUpdateScheduled = false;
     /** Services info object. */
     private ServicesInfo servicesInfo = null;
     /** Rsc defaults info object. */
@@ -820,7 +826,7 @@ public final class ClusterBrowser extends Browser {
             }
         });
         if (host.isServerStatusLatch()) {
-            Tools.debug(this, host.getName() + " loading done", 0);
+            Tools.debug(this, "{} loading done", 0, host.getName());
         }
         host.serverStatusLatchDone();
         clusterHostsInfo.updateTable(CategoryInfo.MAIN_TABLE);
@@ -964,8 +970,8 @@ public final class ClusterBrowser extends Browser {
                            if (!host.isDrbdStatus()) {
                                host.setDrbdStatus(true);
                                drbdGraph.repaint();
-                               Tools.debug(this, "drbd status update: "
-                                                     + host.getName(), 1);
+                               Tools.debug(this, "drbd status update: {}", 1,
+                                           host.getName());
                                clusterHostsInfo.updateTable(
                                                 ClusterHostsInfo.MAIN_TABLE);
                            }
@@ -975,19 +981,21 @@ public final class ClusterBrowser extends Browser {
                        public void doneError(final String ans,
                                              final int exitCode) {
                            firstTime.countDown();
-                           Tools.debug(this, "drbd status failed: "
-                                             + host.getName()
-                                             + " exit code: "
-                                             + exitCode,
-                                       1);
+                           Tools.debug(this,
+                                       "drbd status failed: {} exit code: {}",
+                                       1,
+                                       host.getName(),
+                                       exitCode);
                            if (exitCode != 143 && exitCode != 100) {
                                // TODO: exit code is null -> 100 all of the
                                // sudden
                                /* was killed intentionally */
                                if (host.isDrbdStatus()) {
                                    host.setDrbdStatus(false);
-                                   Tools.debug(this, "drbd status update: "
-                                                     + host.getName(), 1);
+                                   Tools.debug(this,
+                                               "drbd status update: {}",
+                                               1,
+                                               host.getName());
                                    drbdGraph.repaint();
                                    clusterHostsInfo.updateTable(
                                                 ClusterHostsInfo.MAIN_TABLE);
@@ -1012,8 +1020,10 @@ public final class ClusterBrowser extends Browser {
                        public void output(final String output) {
                            if ("--nm--".equals(output.trim())) {
                                if (host.isDrbdStatus()) {
-                                   Tools.debug(this, "drbd status update: "
-                                                 + host.getName(), 1);
+                                   Tools.debug(this,
+                                               "drbd status update: {}",
+                                               1,
+                                               host.getName());
                                    host.setDrbdStatus(false);
                                    drbdGraph.repaint();
                                    clusterHostsInfo.updateTable(
@@ -1024,8 +1034,8 @@ public final class ClusterBrowser extends Browser {
                            } 
                            firstTime.countDown();
                            if (!host.isDrbdStatus()) {
-                               Tools.debug(this, "drbd status update: "
-                                             + host.getName(), 1);
+                               Tools.debug(this, "drbd status update: {}", 1,
+                                           host.getName());
                                host.setDrbdStatus(true);
                                drbdGraph.repaint();
                                clusterHostsInfo.updateTable(
@@ -1035,6 +1045,8 @@ public final class ClusterBrowser extends Browser {
                            String drbdConfig, event;
                            boolean drbdUpdate = false;
                            boolean eventUpdate = false;
+                           final Set<BlockDevInfo> changedBlockDevInfos =
+                                             new LinkedHashSet<BlockDevInfo>();
                            do {
                                host.drbdStatusLock();
                                drbdConfig =
@@ -1044,16 +1056,19 @@ public final class ClusterBrowser extends Browser {
                                             new DrbdXML(cluster.getHostsArray(),
                                                         drbdParameters);
                                    newDrbdXML.update(drbdConfig);
-                                   drbdXML = newDrbdXML;
-                                   drbdUpdate = true;
+                                   if (setDrbdXML(newDrbdXML)) {
+                                       drbdUpdate = true;
+                                   }
                                    firstTime.countDown();
                                }
                                host.drbdStatusUnlock();
                                event = host.getOutput("event", outputBuffer); 
                                if (event != null) {
-                                   if (drbdXML.parseDrbdEvent(host.getName(),
-                                                              drbdGraph,
-                                                              event)) {
+                                   if (drbdXML.parseDrbdEvent(
+                                                       host.getName(),
+                                                       drbdGraph,
+                                                       event,
+                                                       changedBlockDevInfos)) {
                                        host.setDrbdStatus(true);
                                        eventUpdate = true;
                                    }
@@ -1065,29 +1080,10 @@ public final class ClusterBrowser extends Browser {
                                updateDrbdResources();
                            }
                            if (eventUpdate) {
-                               drbdGraph.repaint();
-                               Tools.debug(this, "drbd status update: "
-                                             + host.getName(), 1);
-                               clusterHostsInfo.updateTable(
-                                                ClusterHostsInfo.MAIN_TABLE);
+                               Tools.debug(this, "drbd status update: {}", 1,
+                                           host.getName());
                                firstTime.countDown();
-                               final Thread thread = new Thread(
-                                   new Runnable() {
-                                       @Override
-                                       public void run() {
-                                           repaintSplitPane();
-                                           drbdGraph.updatePopupMenus();
-                                           SwingUtilities.invokeLater(
-                                               new Runnable() {
-                                                   @Override
-                                                   public void run() {
-                                                       repaintTree();
-                                                   }
-                                               }
-                                           );
-                                       }
-                                   });
-                               thread.start();
+                               drbdEventsUpdate(changedBlockDevInfos);
                            }
                        }
                    });
@@ -1120,6 +1116,7 @@ public final class ClusterBrowser extends Browser {
         final Host[] hosts = cluster.getHostsArray();
         for (final Host host : hosts) {
             host.stopServerStatus();
+            host.stopPing();
         }
     }
 
@@ -1198,66 +1195,88 @@ public final class ClusterBrowser extends Browser {
                 clusterStatusOutput.delete(s, s + RESET_STRING_LEN);
                 s = clusterStatusOutput.indexOf(RESET_STRING);
             }
-            if (clusterStatusOutput.length() > 12) {
-                final String e = clusterStatusOutput.substring(
-                                           clusterStatusOutput.length() - 12);
-                if (e.trim().equals("---done---")) {
-                    final int i =
-                                clusterStatusOutput.lastIndexOf("---start---");
-                    if (i >= 0) {
-                        if (clusterStatusOutput.indexOf("is stopped") >= 0) {
-                            /* TODO: heartbeat's not running. */
-                        } else {
-                            final String status =
-                                              clusterStatusOutput.substring(i);
-                            clusterStatusOutput.delete(
-                                                 0,
-                                                 clusterStatusOutput.length());
-                            if (CLUSTER_STATUS_ERROR.equals(status)) {
-                                final boolean oldStatus = host.isClStatus();
-                                clStatus.setOnlineNode(host.getName(),
-                                                            "no");
-                                setClStatus(host, false);
-                                if (oldStatus) {
-                                   heartbeatGraph.repaint();
-                                }
-                            } else {
-                                if (clStatus.parseStatus(status)) {
-                                    Tools.debug(this,
-                                                "update cluster status: "
-                                                + host.getName(), 1);
-                                    final ServicesInfo ssi = servicesInfo;
-                                    rscDefaultsInfo.setParameters(
-                                      clStatus.getRscDefaultsValuePairs());
-                                    ssi.setGlobalConfig(clStatus);
-                                    ssi.setAllResources(clStatus, testOnly);
-                                    if (firstTime.getCount() == 1) {
-                                        /* one more time so that id-refs work.*/
-                                        ssi.setAllResources(clStatus, testOnly);
-                                    }
-                                    repaintTree();
-                                    clusterHostsInfo.updateTable(
-                                                ClusterHostsInfo.MAIN_TABLE);
-                                }
-                                final String online =
-                                    clStatus.isOnlineNode(host.getName());
-                                if ("yes".equals(online)) {
-                                    setClStatus(host, true);
-                                    setClStatus();
-                                } else {
-                                    setClStatus(host, false);
-                                }
-                            }
-                        }
-                        firstTime.countDown();
-                    }
+            /* all complete blocks in the order they came, the helper sends
+               only the changed parts, so none of them can be skipped. */
+            while (true) {
+                final int i = clusterStatusOutput.indexOf("---start---");
+                if (i < 0) {
+                    break;
+                }
+                final int d = clusterStatusOutput.indexOf("---done---", i);
+                if (d < 0) {
+                    clusterStatusOutput.delete(0, i);
+                    break;
+                }
+                int end = d + "---done---".length();
+                while (end < clusterStatusOutput.length()
+                       && (clusterStatusOutput.charAt(end) == '\r'
+                           || clusterStatusOutput.charAt(end) == '\n')) {
+                    end++;
                 }
+                final String status = clusterStatusOutput.substring(i, end);
+                clusterStatusOutput.delete(0, end);
+                if (status.indexOf("is stopped") >= 0) {
+                    /* TODO: heartbeat's not running. */
+                } else {
+                    processClusterStatus(status,
+                                         clStatus,
+                                         host,
+                                         firstTime,
+                                         testOnly);
+                }
+                firstTime.countDown();
             }
             Tools.chomp(clusterStatusOutput);
         }
         clStatusUnlock();
     }
 
+    /** Processes one complete status block from the cluster. */
+    private void processClusterStatus(final String status,
+                                      final ClusterStatus clStatus,
+                                      final Host host,
+                                      final CountDownLatch firstTime,
+                                      final boolean testOnly) {
+        if (CLUSTER_STATUS_ERROR.trim().equals(status.trim())) {
+            final boolean oldStatus = host.isClStatus();
+            clStatus.setOnlineNode(host.getName(), "no");
+            setClStatus(host, false);
+            if (oldStatus) {
+               heartbeatGraph.repaint();
+            }
+            return;
+        }
+        if (clStatus.parseStatus(status)) {
+            Tools.debug(this, "update cluster status: {}", 1, host.getName());
+            final ServicesInfo ssi = servicesInfo;
+            rscDefaultsInfo.setParameters(clStatus.getRscDefaultsValuePairs());
+            ssi.setGlobalConfig(clStatus);
+            if (testOnly) {
+                ssi.setAllResources(clStatus, testOnly);
+            } else {
+                ssi.setAllResources(clStatus,
+                                    clStatus.getChangedResources(),
+                                    testOnly);
+            }
+            if (firstTime.getCount() == 1) {
+                /* one more time so that id-refs work.*/
+                ssi.setAllResources(clStatus, testOnly);
+            }
+            repaintTree();
+            clusterHostsInfo.updateTable(ClusterHostsInfo.MAIN_TABLE);
+        } else if (clStatus.isCibDiffFailed()) {
+            /* the helper sends the whole cib, when it is started again */
+            host.stopClStatus();
+        }
+        final String online = clStatus.isOnlineNode(host.getName());
+        if ("yes".equals(online)) {
+            setClStatus(host, true);
+            setClStatus();
+        } else {
+            setClStatus(host, false);
+        }
+    }
+
     /** Starts hb status. */
     void startClStatus() {
         final CountDownLatch firstTime = new CountDownLatch(1);
@@ -1315,10 +1334,8 @@ public final class ClusterBrowser extends Browser {
                      public void doneError(final String ans,
                                            final int exitCode) {
                          if (firstTime.getCount() == 1) {
-                             Tools.debug(this, "hb status failed: "
-                                           + host.getName()
-                                           + ", ec: "
-                                           + exitCode, 2);
+                             Tools.debug(this, "hb status failed: {}, ec: {}",
+                                         2, host.getName(), exitCode);
                          }
                          clStatusLock();
                          clusterStatus.setOnlineNode(host.getName(), "no");
@@ -1444,6 +1461,14 @@ public final class ClusterBrowser extends Browser {
 
     /** Updates VM nodes. */
     public void updateVMS() {
+        updateVMS(null);
+    }
+
+    /**
+     * Updates VM nodes. Parameters are updated only in the nodes of the
+     * changed domains, or in all nodes if changedDomains is null.
+     */
+    public void updateVMS(final Set<String> changedDomains) {
         Tools.debug(this, "VM status update", 1);
         final Set<String> domainNames = new TreeSet<String>();
         for (final Host host : getClusterHosts()) {
@@ -1470,7 +1495,10 @@ public final class ClusterBrowser extends Browser {
                     /* keeping */
                     currentVMSVDIs.add(vmsvdi);
                     domainNames.remove(vmsvdi.toString());
-                    vmsvdi.updateParameters(); /* update old */
+                    if (changedDomains == null
+                        || changedDomains.contains(vmsvdi.toString())) {
+                        vmsvdi.updateParameters(); /* update old */
+                    }
                 } else {
                     if (!vmsvdi.getResource().isNew()) {
                         /* remove not existing vms */
@@ -2381,9 +2409,60 @@ public final class ClusterBrowser extends Browser {
         return drbdXML;
     }
 
-    /** Sets xml from drbd. */
-    public void setDrbdXML(final DrbdXML drbdXML) {
+    /**
+     * Updates the block devices and repaints the drbd graph after drbd
+     * events. The update is delayed, so that a burst of events, like the sync
+     * progress of many volumes, is shown at once.
+     */
+    private void drbdEventsUpdate(final Set<BlockDevInfo> changed) {
+        synchronized (drbdEventBlockDevInfos) {
+            drbdEventBlockDevInfos.addAll(changed);
+            if (drbdEventsUpdateScheduled) {
+                return;
+            }
+            drbdEventsUpdateScheduled = true;
+        }
+        final Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Tools.sleep(
+                         Tools.getDefaultInt("ClusterBrowser.DrbdEventsDelay"));
+                final List<BlockDevInfo> bdis;
+                synchronized (drbdEventBlockDevInfos) {
+                    bdis = new ArrayList<BlockDevInfo>(drbdEventBlockDevInfos);
+                    drbdEventBlockDevInfos.clear();
+                    drbdEventsUpdateScheduled = false;
+                }
+                for (final BlockDevInfo bdi : bdis) {
+                    bdi.updateInfo();
+                }
+                drbdGraph.repaint();
+                clusterHostsInfo.updateTable(ClusterHostsInfo.MAIN_TABLE);
+                repaintSplitPane();
+                drbdGraph.updatePopupMenus();
+                SwingUtilities.invokeLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        repaintTree();
+                    }
+                });
+            }
+        });
+        thread.start();
+    }
+
+    /**
+     * Sets xml from drbd. Returns whether some of the drbd resources were
+     * added, removed or changed.
+     */
+    public boolean setDrbdXML(final DrbdXML drbdXML) {
+        final Set<String> changed = drbdXML.getChangedResources(this.drbdXML);
         this.drbdXML = drbdXML;
+        if (changed.isEmpty()) {
+            return false;
+        }
+        Tools.debug(this, "drbd resources changed: {}", 2, changed);
+        return true;
     }
 
     /** Returns drbd node from the menu. */
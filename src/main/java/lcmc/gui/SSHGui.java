@@ -45,10 +45,13 @@ import java.awt.Font;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * An implementation of dialogs that are needed for establishing of a ssh
- * connection.
+ * connection. The hosts are connected at the same time, but their dialogs
+ * are shown one after the other.
  *
  * @author Rasto Levrinc
  * @version $Id$
@@ -63,6 +66,8 @@ public final class SSHGui {
     private final ProgressBar progressBar;
     /** Default length of fields. */
     private static final int DEFAULT_FIELD_LENGTH = 20;
+    /** Lock, so that only one host asks the user at a time. */
+    private static final Lock AUTH_DIALOG_LOCK = new ReentrantLock(true);
 
     /** Prepares a new <code>SSHGui</code> object. */
     public SSHGui(final Container rootPane,
@@ -76,7 +81,32 @@ public final class SSHGui {
     /** Displays Confirm Dialog whith Yes, No, Cancel options. */
     public int getConfirmDialogChoice(final String message) {
         Tools.debug(this, "get confirm dialog");
-        return JOptionPane.showConfirmDialog(rootPane, message);
+        final boolean locked = lockAuthDialog();
+        try {
+            return JOptionPane.showConfirmDialog(rootPane, message);
+        } finally {
+            unlockAuthDialog(locked);
+        }
+    }
+
+    /**
+     * Waits till the dialogs of other hosts are closed. The swing thread
+     * doesn't wait, the modal dialogs of the other hosts need it. Returns
+     * whether the lock was taken.
+     */
+    private static boolean lockAuthDialog() {
+        if (SwingUtilities.isEventDispatchThread()) {
+            return false;
+        }
+        AUTH_DIALOG_LOCK.lock();
+        return true;
+    }
+
+    /** Lets the other hosts show their dialogs. */
+    private static void unlockAuthDialog(final boolean locked) {
+        if (locked) {
+            AUTH_DIALOG_LOCK.unlock();
+        }
     }
 
     /** Checks if choice is yes option. */
@@ -95,21 +125,26 @@ public final class SSHGui {
                                        final String underText,
                                        final String defaultValue,
                                        final boolean isPassword) {
-        EnterSomethingDialog esd;
-        if (rootPane instanceof JDialog) {
-            esd = new EnterSomethingDialog((JDialog) rootPane, title,
-                    content, underText, defaultValue, isPassword);
-        } else if (rootPane instanceof JApplet) {
-            esd = new EnterSomethingDialog((JApplet) rootPane, title,
-                    content, underText, defaultValue, isPassword);
-        } else {
-            esd = new EnterSomethingDialog((Frame) rootPane, title,
-                    content, underText, defaultValue, isPassword);
-        }
+        final boolean locked = lockAuthDialog();
+        try {
+            EnterSomethingDialog esd;
+            if (rootPane instanceof JDialog) {
+                esd = new EnterSomethingDialog((JDialog) rootPane, title,
+                        content, underText, defaultValue, isPassword);
+            } else if (rootPane instanceof JApplet) {
+                esd = new EnterSomethingDialog((JApplet) rootPane, title,
+                        content, underText, defaultValue, isPassword);
+            } else {
+                esd = new EnterSomethingDialog((Frame) rootPane, title,
+                        content, underText, defaultValue, isPassword);
+            }
 
-        esd.setVisible(true);
+            esd.setVisible(true);
 
-        return esd.answer;
+            return esd.answer;
+        } finally {
+            unlockAuthDialog(locked);
+        }
     }
 
     /**
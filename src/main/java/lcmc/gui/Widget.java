@@ -1484,10 +1484,9 @@ public final class Widget extends JPanel {
         if (!Tools.areEqual(value, savedValue)
             || (savedLabel != null && !Tools.areEqual(labelText, savedLabel))) {
             if (label != null) {
-                Tools.debug(this, "changed label: " + labelText + " != "
-                                   + savedLabel, 1);
-                Tools.debug(this, "changed: " + value + " != "
-                                         + savedValue, 1);
+                Tools.debug(this, "changed label: {} != {}", 1,
+                            labelText, savedLabel);
+                Tools.debug(this, "changed: {} != {}", 1, value, savedValue);
                 /*
                    Tools.printStackTrace("changed: " + value + " != "
                                          + savedValue);
@@ -25,6 +25,7 @@ package lcmc.gui.dialog;
 import lcmc.utilities.Tools;
 import lcmc.data.Host;
 import lcmc.utilities.ExecCallback;
+import lcmc.utilities.SSH.ExecCommandThread;
 import lcmc.utilities.MyButton;
 import lcmc.gui.ProgressBar;
 import lcmc.gui.resources.Info;
@@ -162,7 +163,7 @@ class Logs extends ConfigDialog {
     protected final void refreshLogs() {
         enableAllComponents(false);
         final Host[] hosts = getHosts();
-        Thread[] threads = new Thread[hosts.length];
+        ExecCommandThread[] threads = new ExecCommandThread[hosts.length];
         final String[] texts = new String[hosts.length];
 
         final Map<String, String> replaceHash = new HashMap<String, String>();
@@ -198,7 +199,7 @@ class Logs extends ConfigDialog {
         }
         i = 0;
         final StringBuilder ans = new StringBuilder("");
-        for (Thread t : threads) {
+        for (ExecCommandThread t : threads) {
             try {
                 t.join();
             } catch (java.lang.InterruptedException e) {
@@ -60,6 +60,8 @@ public final class NewHost extends DialogHost {
     private Widget sshPortField;
     /** Whether sudo should be used. */
     private Widget useSudoField;
+    /** Whether ssh compression should be used. */
+    private Widget compressionField;
     /** Whether the fields are big (if more hops are being used). */
     private boolean bigFields = false;
     /** Normal widths of the fields. */
@@ -91,6 +93,8 @@ public final class NewHost extends DialogHost {
         getHost().setUseSudo("true".equals(useSudoString));
         Tools.getConfigData().setLastEnteredUseSudo(
                                                 "true".equals(useSudoString));
+        getHost().setCompression(
+                   "true".equals(compressionField.getStringValue().trim()));
         if (!Tools.getConfigData().existsHost(getHost())) {
             Tools.getConfigData().addHostToHosts(getHost());
             final TerminalPanel terminalPanel = new TerminalPanel(getHost());
@@ -378,7 +382,28 @@ public final class NewHost extends DialogHost {
                                    useSudo,
                                    true);
 
-        SpringUtilities.makeCompactGrid(inputPane, 2, 4,  // rows, cols
+        /* ssh compression */
+        final JLabel compressionLabel = new JLabel(
+                        Tools.getString("Dialog.Host.NewHost.Compression"));
+
+        inputPane.add(compressionLabel);
+        final Boolean compression = getHost().isCompression();
+        compressionField = new Widget(compression.toString(),
+                                      new String[]{"true", "false"},
+                                      null, /* units */
+                                      null, /* type */
+                                      null, /* regexp */
+                                      50,
+                                      null, /* abbrv */
+                                      new AccessMode(ConfigData.AccessType.RO,
+                                                     false)); /* only adv. */
+        compressionLabel.setLabelFor(compressionField);
+        inputPane.add(compressionField);
+        compressionField.setBackground(compression, compression, true);
+        inputPane.add(new JLabel(""));
+        inputPane.add(new JLabel(""));
+
+        SpringUtilities.makeCompactGrid(inputPane, 3, 4,  // rows, cols
                                                    1, 1,  // initX, initY
                                                    1, 1); // xPad, yPad
         p.add(inputPane, BorderLayout.SOUTH);
@@ -43,6 +43,7 @@ import java.util.Set;
 import java.util.Map;
 import java.util.List;
 import java.util.LinkedHashMap;
+import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.concurrent.CountDownLatch;
 import java.util.regex.Pattern;
@@ -67,6 +68,9 @@ public final class DrbdInfo extends DrbdGuiInfo {
     private BlockDevInfo selectedBD = null;
     /** Cache for the info panel. */
     private JComponent infoPanel = null;
+    /** Md5 checksums of the drbd config files, that are on the hosts. */
+    private final Map<Host, Map<String, String>> drbdConfigMD5s =
+                                  new HashMap<Host, Map<String, String>>();
     /** DRBD icon. */
     private static final ImageIcon DRBD_ICON = Tools.createImageIcon(
                              Tools.getDefault("ClusterBrowser.DRBDIconSmall"));
@@ -255,59 +259,154 @@ public final class DrbdInfo extends DrbdGuiInfo {
                                            preCommand,
                                            null);
             } else {
-                /* global */
-                host.getSSH().createConfig(globalConfig.toString()
-                                           + commonSectionConfig,
-                                           "global_common.conf",
-                                           dir + "drbd.d.temp/",
-                                           "0600",
-                                           false,
-                                           preCommand,
-                                           null);
-                /* *.res */
+                final Map<String, String> configs =
+                                           new LinkedHashMap<String, String>();
+                configs.put("global_common.conf",
+                            globalConfig.toString() + commonSectionConfig);
                 for (final String resConfigName : resConfigs.keySet()) {
-                    host.getSSH().createConfig(
-                                   resConfigs.get(resConfigName).toString(),
-                                   resConfigName + ".res",
-                                   dir + "drbd.d.temp/",
-                                   "0600",
-                                   false,
-                                   null,
-                                   null);
+                    configs.put(resConfigName + ".res",
+                                resConfigs.get(resConfigName));
                 }
-                /* drbd.conf */
-                final StringBuilder tempDRBDConf = new StringBuilder(200);
-                /* drbd.conf.temp -> drbd.d/ */
-                tempDRBDConf.append("## generated by drbd-gui\n\n");
-                tempDRBDConf.append("include \"drbd.d/global_common.conf\";\n");
-                tempDRBDConf.append("include \"drbd.d/*.res\";");
-                host.getSSH().createConfig(tempDRBDConf.toString(),
-                                           configName + ".temp",
+                if (!createSplitDrbdConfig(host,
+                                           configs,
                                            dir,
-                                           "0600",
-                                           false,
-                                           null,
-                                           null);
-                final StringBuilder drbdConf = new StringBuilder(200);
-                /* drbd.conf -> drbd.d.temp/ (new config) */
-                drbdConf.append("## generated by drbd-gui\n\n");
-                drbdConf.append(
-                            "include \"drbd.d.temp/global_common.conf\";\n");
-                drbdConf.append("include \"drbd.d.temp/*.res\";");
-                host.getSSH().createConfig(
-                               drbdConf.toString(),
-                               configName,
-                               dir,
-                               "0600",
-                               makeBackup,
-                               null,
-                               "rm -rf /etc/drbd.d 2>/dev/null; "
-                               + "cp -r /etc/drbd.d{.temp,} && "
-                               + "mv /etc/drbd.conf{.temp,} && "
-                               + "rm -rf /etc/drbd.d.temp/");
-                               /* all this is to stay atomic. */
+                                           configName,
+                                           makeBackup,
+                                           preCommand,
+                                           true)
+                    && !createSplitDrbdConfig(host,
+                                              configs,
+                                              dir,
+                                              configName,
+                                              makeBackup,
+                                              preCommand,
+                                              false)) {
+                    Tools.appWarning("could not create drbd config on "
+                                     + host.getName());
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates drbd config, that is split in the drbd.d directory, with one
+     * command. If incremental is true, only the files, that changed since
+     * the last time, are sent, the others are copied from the old drbd.d
+     * directory, after their md5 checksums are checked. The new directory is
+     * prepared in drbd.d.temp, drbd.conf points there, while drbd.d is
+     * replaced. Returns whether it succeeded.
+     */
+    private boolean createSplitDrbdConfig(final Host host,
+                                          final Map<String, String> configs,
+                                          final String dir,
+                                          final String configName,
+                                          final boolean makeBackup,
+                                          final String preCommand,
+                                          final boolean incremental) {
+        final String configDir = dir + "drbd.d/";
+        final String tempDir = dir + "drbd.d.temp/";
+        final String drbdConf = dir + configName;
+        Map<String, String> oldMD5s = null;
+        if (incremental) {
+            synchronized (drbdConfigMD5s) {
+                oldMD5s = drbdConfigMD5s.get(host);
+            }
+        }
+        final Map<String, String> md5s = new HashMap<String, String>();
+        final Map<String, String> changedConfigs =
+                                           new LinkedHashMap<String, String>();
+        final StringBuilder copy = new StringBuilder(100);
+        final StringBuilder check = new StringBuilder(100);
+        for (final Map.Entry<String, String> config : configs.entrySet()) {
+            final String fileName = config.getKey();
+            /* echo adds a new line */
+            final String md5 = Tools.getMD5(config.getValue() + '\n');
+            md5s.put(fileName, md5);
+            if (oldMD5s != null && md5.equals(oldMD5s.get(fileName))) {
+                copy.append(" '");
+                copy.append(configDir);
+                copy.append(fileName);
+                copy.append('\'');
+                check.append(" '");
+                check.append(md5);
+                check.append("  ");
+                check.append(tempDir);
+                check.append(fileName);
+                check.append('\'');
+            } else {
+                changedConfigs.put(tempDir + fileName, config.getValue());
+            }
+        }
+        Tools.debug(this, host.getName() + ": drbd configs: "
+                          + changedConfigs.size() + " changed, "
+                          + (configs.size() - changedConfigs.size())
+                          + " unchanged", 1);
+        final StringBuilder pre = new StringBuilder(300);
+        if (preCommand != null) {
+            pre.append(preCommand);
+            pre.append("; ");
+        }
+        if (makeBackup) {
+            pre.append("cp ");
+            pre.append(drbdConf);
+            pre.append("{,.bak} 2>/dev/null; ");
+        }
+        pre.append("rm -rf ");
+        pre.append(tempDir);
+        pre.append(" && mkdir -p ");
+        pre.append(tempDir);
+        if (copy.length() > 0) {
+            pre.append(" && cp -p");
+            pre.append(copy);
+            pre.append(' ');
+            pre.append(tempDir);
+            pre.append(" && printf '%s\\n'");
+            pre.append(check);
+            pre.append(" | md5sum -c --status");
+        }
+        /* drbd.conf.temp -> drbd.d/ */
+        changedConfigs.put(drbdConf + ".temp",
+                           "## generated by drbd-gui\n\n"
+                           + "include \"drbd.d/global_common.conf\";\n"
+                           + "include \"drbd.d/*.res\";");
+        /* drbd.conf -> drbd.d.temp/ (new config) */
+        changedConfigs.put(drbdConf,
+                           "## generated by drbd-gui\n\n"
+                           + "include \"drbd.d.temp/global_common.conf\";\n"
+                           + "include \"drbd.d.temp/*.res\";");
+        /* all this is to stay atomic. */
+        final StringBuilder post = new StringBuilder(300);
+        post.append("rm -rf ");
+        post.append(configDir);
+        post.append(" && cp -r ");
+        post.append(tempDir);
+        post.append(' ');
+        post.append(configDir);
+        post.append(" && mv ");
+        post.append(drbdConf);
+        post.append("{.temp,} && rm -rf ");
+        post.append(tempDir);
+        if (makeBackup) {
+            post.append(" && if ! diff ");
+            post.append(drbdConf);
+            post.append("{,.bak}>/dev/null 2>&1; then mv ");
+            post.append(drbdConf);
+            post.append("{.bak,.`date +'%s'`} 2>/dev/null;true; else rm -f ");
+            post.append(drbdConf);
+            post.append(".bak; fi");
+        }
+        final boolean ok = host.getSSH().createConfigs(changedConfigs,
+                                                       "0600",
+                                                       pre.toString(),
+                                                       post.toString());
+        synchronized (drbdConfigMD5s) {
+            if (ok) {
+                drbdConfigMD5s.put(host, md5s);
+            } else {
+                drbdConfigMD5s.remove(host);
             }
         }
+        return ok;
     }
 
     /** Returns lsit of all parameters as an array. */
@@ -44,6 +44,8 @@ import javax.swing.BoxLayout;
 
 import java.util.Map;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Collection;
 import java.util.concurrent.CountDownLatch;
 import java.util.List;
 import java.util.ArrayList;
@@ -58,6 +60,12 @@ import java.awt.Dimension;
 import java.awt.FlowLayout;
 import org.apache.commons.collections15.map.MultiKeyMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * This class provides textfields, combo boxes etc. for editable info
@@ -122,6 +130,36 @@ public abstract class EditableInfo extends Info {
     private MyButton revertButton;
     /** Is counted down, first time the info panel is initialized. */
     private final CountDownLatch infoPanelLatch = new CountDownLatch(1);
+    /** Executor, where the field checks of all infos run. */
+    private static final ScheduledExecutorService CHECK_EXECUTOR =
+        Executors.newScheduledThreadPool(
+                        Tools.getDefaultInt("EditableInfo.CheckThreads"),
+                        new ThreadFactory() {
+                            private final AtomicInteger threadNumber =
+                                                        new AtomicInteger(1);
+                            @Override
+                            public Thread newThread(final Runnable runnable) {
+                                final Thread thread = new Thread(
+                                    runnable,
+                                    "field-check-"
+                                    + threadNumber.getAndIncrement());
+                                thread.setDaemon(true);
+                                return thread;
+                            }
+                        });
+    /** How long to wait for more changes before the check, in ms. */
+    private static final int CHECK_DELAY =
+                                Tools.getDefaultInt("EditableInfo.CheckDelay");
+    /**
+     * Field checks that wait for the next run by apply button and widget.
+     * A newer check of the same widget replaces the older one.
+     */
+    private final Map<MyButton, Map<Widget, FieldCheck>> pendingChecks =
+                  new LinkedHashMap<MyButton, Map<Widget, FieldCheck>>();
+    /** Whether the check is scheduled or running. */
+    private boolean checkScheduled = false;
+    /** Pending checks lock. */
+    private final Lock mPendingChecksLock = new ReentrantLock();
     /** List of advanced panels. */
     private final List<JPanel> advancedPanelList = new ArrayList<JPanel>();
     /** List of messages if advanced panels are hidden. */
@@ -548,71 +586,152 @@ public abstract class EditableInfo extends Info {
         return moreOptionsPanel;
     }
 
-    /** Checks ands sets paramter fields. */
+    /**
+     * Checks ands sets paramter fields. The checks are not done right away,
+     * but after a short delay in the check executor. All the fields, that
+     * were changed in the meantime, are checked together.
+     */
     public void checkParameterFields(final Widget paramWi,
                                      final Widget realParamWi,
                                      final String param,
                                      final String[] params,
                                      final MyButton thisApplyButton) {
-        final EditableInfo thisClass = this;
-        final Thread thread = new Thread(new Runnable() {
+        if (realParamWi != null) {
+            SwingUtilities.invokeLater(new Runnable() {
+                @Override
+                public void run() {
+                    if (paramWi.getValue() == null
+                        || paramWi.getValue() == Widget.NOTHING_SELECTED) {
+                        realParamWi.setValueAndWait(null);
+                    } else {
+                        final Object value = paramWi.getStringValue();
+                        realParamWi.setValueAndWait(value);
+                    }
+                }
+            });
+        }
+        boolean schedule = false;
+        mPendingChecksLock.lock();
+        try {
+            Map<Widget, FieldCheck> checks =
+                                           pendingChecks.get(thisApplyButton);
+            if (checks == null) {
+                checks = new LinkedHashMap<Widget, FieldCheck>();
+                pendingChecks.put(thisApplyButton, checks);
+            }
+            checks.put(paramWi, new FieldCheck(paramWi,
+                                               realParamWi,
+                                               param,
+                                               params));
+            if (!checkScheduled) {
+                checkScheduled = true;
+                schedule = true;
+            }
+        } finally {
+            mPendingChecksLock.unlock();
+        }
+        if (schedule) {
+            scheduleChecks(CHECK_DELAY);
+        }
+    }
+
+    /** Schedules the run of the pending checks. */
+    private void scheduleChecks(final int delay) {
+        CHECK_EXECUTOR.schedule(new Runnable() {
+                                    @Override
+                                    public void run() {
+                                        runPendingChecks();
+                                    }
+                                },
+                                delay,
+                                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Runs the pending checks. If there are new checks after that, they run
+     * again right away, there is only one run for this info at a time.
+     */
+    private void runPendingChecks() {
+        final Map<MyButton, Map<Widget, FieldCheck>> checks =
+                  new LinkedHashMap<MyButton, Map<Widget, FieldCheck>>();
+        mPendingChecksLock.lock();
+        try {
+            checks.putAll(pendingChecks);
+            pendingChecks.clear();
+        } finally {
+            mPendingChecksLock.unlock();
+        }
+        try {
+            Tools.waitForSwing();
+            for (final Map.Entry<MyButton, Map<Widget, FieldCheck>> entry
+                                                     : checks.entrySet()) {
+                checkParameterFields(entry.getKey(),
+                                     entry.getValue().values());
+            }
+        } finally {
+            boolean again;
+            mPendingChecksLock.lock();
+            try {
+                again = !pendingChecks.isEmpty();
+                checkScheduled = again;
+            } finally {
+                mPendingChecksLock.unlock();
+            }
+            if (again) {
+                scheduleChecks(0);
+            }
+        }
+    }
+
+    /**
+     * Checks the fields after they changed and sets the buttons. If only
+     * one parameter changed, only this parameter is checked, the others are
+     * checked in the cache.
+     */
+    private void checkParameterFields(final MyButton thisApplyButton,
+                                      final Collection<FieldCheck> checks) {
+        String param = null;
+        String[] params = null;
+        boolean wizard = false;
+        final Set<String> changedParams = new HashSet<String>();
+        for (final FieldCheck check : checks) {
+            changedParams.add(check.param);
+            params = check.params;
+            wizard = check.realParamWi != null;
+        }
+        if (changedParams.size() == 1) {
+            param = changedParams.iterator().next();
+        }
+        boolean ch = false;
+        if (!wizard) {
+            ch = checkResourceFieldsChanged(param, params);
+        }
+        final boolean check = checkResourceFieldsCorrect(param, params);
+        final boolean changed = ch;
+        SwingUtilities.invokeLater(new Runnable() {
             @Override
             public void run() {
-                //SwingUtilities.invokeLater(new Runnable() {
-                //    @Override
-                //    public void run() {
-                //        paramWi.setEditable();
-                //    }
-                //});
-                boolean c;
-                boolean ch = false;
-                if (realParamWi == null) {
-                    Tools.waitForSwing();
-                    ch = checkResourceFieldsChanged(param, params);
-                    c = checkResourceFieldsCorrect(param, params);
+                if (thisApplyButton == applyButton) {
+                    thisApplyButton.setEnabled(
+                          !isDialogStarted()
+                          && check
+                          && (changed || getResource().isNew()));
                 } else {
-                    SwingUtilities.invokeLater(new Runnable() {
-                        @Override
-                        public void run() {
-                            if (paramWi.getValue() == null
-                                || paramWi.getValue() == Widget.NOTHING_SELECTED) {
-                                realParamWi.setValueAndWait(null);
-                            } else {
-                                final Object value = paramWi.getStringValue();
-                                realParamWi.setValueAndWait(value);
-                            }
-                        }
-                    });
-                    Tools.waitForSwing();
-                    c = checkResourceFieldsCorrect(param, params);
+                    /* wizard button */
+                    thisApplyButton.setEnabled(check);
                 }
-                final boolean check = c;
-                final boolean changed = ch;
-                SwingUtilities.invokeLater(new Runnable() {
-                    @Override
-                    public void run() {
-                        if (thisApplyButton == applyButton) {
-                            thisApplyButton.setEnabled(
-                                  !isDialogStarted()
-                                  && check
-                                  && (changed || getResource().isNew()));
-                        } else {
-                            /* wizard button */
-                            thisApplyButton.setEnabled(check);
-                        }
-                        if (revertButton != null) {
-                            revertButton.setEnabled(changed);
-                        }
-                        paramWi.setToolTipText(
-                                getToolTipText(param));
-                        if (realParamWi != null) {
-                            realParamWi.setToolTipText(getToolTipText(param));
-                        }
+                if (revertButton != null) {
+                    revertButton.setEnabled(changed);
+                }
+                for (final FieldCheck fc : checks) {
+                    fc.paramWi.setToolTipText(getToolTipText(fc.param));
+                    if (fc.realParamWi != null) {
+                        fc.realParamWi.setToolTipText(
+                                                   getToolTipText(fc.param));
                     }
-                });
+                }
             }
         });
-        thread.start();
     }
 
     /** Get stored value in the combo box. */
@@ -636,6 +755,22 @@ public abstract class EditableInfo extends Info {
         return value;
     }
 
+    /**
+     * Returns the value in the combo box, or if the widget was not created,
+     * the saved value, so that the value can be obtained without creating
+     * the info panel.
+     */
+    protected final String getParamValue(final String param) {
+        if (getWidget(param, null) != null) {
+            return getComboBoxValue(param);
+        }
+        final String value = getParamSaved(param);
+        if (value == null) {
+            return getParamDefault(param);
+        }
+        return value;
+    }
+
     /** Stores values in the combo boxes in the component c. */
     protected void storeComboBoxValues(final String[] params) {
         for (String param : params) {
@@ -1146,4 +1281,27 @@ public abstract class EditableInfo extends Info {
         }
         return null;
     }
+
+    /** Check of one field, that waits for the next run. */
+    private static final class FieldCheck {
+        /** Widget that changed. */
+        private final Widget paramWi;
+        /** Widget in the info panel, if the check is from a wizard. */
+        private final Widget realParamWi;
+        /** Parameter of the widget. */
+        private final String param;
+        /** All parameters of the panel. */
+        private final String[] params;
+
+        /** Prepares a new <code>FieldCheck</code> object. */
+        FieldCheck(final Widget paramWi,
+                   final Widget realParamWi,
+                   final String param,
+                   final String[] params) {
+            this.paramWi = paramWi;
+            this.realParamWi = realParamWi;
+            this.param = param;
+            this.params = params;
+        }
+    }
 }
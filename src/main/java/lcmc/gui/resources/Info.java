@@ -1079,7 +1079,7 @@ public class Info implements Comparable {
 
     /** Updates data in the table. */
     public final void updateTable(final String tableName) {
-        Tools.debug(this, "update table: " + tableName, 2);
+        Tools.debug(this, "update table: {}", 2, tableName);
         final JTable table = tables.get(tableName);
         final DefaultTableModel tableModel = tableModels.get(tableName);
         if (tableModel != null) {
@@ -1089,7 +1089,7 @@ public class Info implements Comparable {
                     @Override
                     public void run() {
                         final Object[][] data = getTableData(tableName);
-                        Tools.debug(this, "update table in: " + getName(), 1);
+                        Tools.debug(this, "update table in: {}", 1, getName());
                         tableModel.setDataVector(data, colNames);
                         tableModel.fireTableDataChanged();
                         Tools.resizeTable(table, getDefaultWidths(tableName));
@@ -664,28 +664,38 @@ public final class PcmkMultiSelectionInfo extends EditableInfo {
                 public void action() {
                     hidePopup();
                     final Host dcHost = getBrowser().getDCHost();
-                    for (final ServiceInfo si : selectedServiceInfos) {
-                        if (si.isConstraintPH()
-                            || si.getService().isNew()
-                            || si.getService().isOrphaned()) {
-                            continue;
+                    CRM.runInTransaction(new Runnable() {
+                        @Override
+                        public void run() {
+                            for (final ServiceInfo si : selectedServiceInfos) {
+                                if (si.isConstraintPH()
+                                    || si.getService().isNew()
+                                    || si.getService().isOrphaned()) {
+                                    continue;
+                                }
+                                si.startResource(dcHost, CRM.LIVE);
+                            }
                         }
-                        si.startResource(dcHost, CRM.LIVE);
-                    }
+                    });
                 }
             };
         final ClusterBrowser.ClMenuItemCallback startItemCallback =
                     getBrowser().new ClMenuItemCallback(startMenuItem, null) {
             @Override
             public void action(final Host dcHost) {
-                for (final ServiceInfo si : selectedServiceInfos) {
-                    if (si.isConstraintPH()
-                        || si.getService().isNew()
-                        || si.getService().isOrphaned()) {
-                        continue;
+                CRM.runInTransaction(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (final ServiceInfo si : selectedServiceInfos) {
+                            if (si.isConstraintPH()
+                                || si.getService().isNew()
+                                || si.getService().isOrphaned()) {
+                                continue;
+                            }
+                            si.startResource(dcHost, CRM.TESTONLY);
+                        }
                     }
-                    si.startResource(dcHost, CRM.TESTONLY);
-                }
+                });
             }
         };
         addMouseOverListener(startMenuItem, startItemCallback);
@@ -736,28 +746,38 @@ public final class PcmkMultiSelectionInfo extends EditableInfo {
                 public void action() {
                     hidePopup();
                     final Host dcHost = getBrowser().getDCHost();
-                    for (final ServiceInfo si : selectedServiceInfos) {
-                        if (si.isConstraintPH()
-                            || si.getService().isNew()
-                            || si.getService().isOrphaned()) {
-                            continue;
+                    CRM.runInTransaction(new Runnable() {
+                        @Override
+                        public void run() {
+                            for (final ServiceInfo si : selectedServiceInfos) {
+                                if (si.isConstraintPH()
+                                    || si.getService().isNew()
+                                    || si.getService().isOrphaned()) {
+                                    continue;
+                                }
+                                si.stopResource(dcHost, CRM.LIVE);
+                            }
                         }
-                        si.stopResource(dcHost, CRM.LIVE);
-                    }
+                    });
                 }
             };
         final ClusterBrowser.ClMenuItemCallback stopItemCallback =
                     getBrowser().new ClMenuItemCallback(stopMenuItem, null) {
             @Override
             public void action(final Host dcHost) {
-                for (final ServiceInfo si : selectedServiceInfos) {
-                    if (si.isConstraintPH()
-                        || si.getService().isNew()
-                        || si.getService().isOrphaned()) {
-                        continue;
+                CRM.runInTransaction(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (final ServiceInfo si : selectedServiceInfos) {
+                            if (si.isConstraintPH()
+                                || si.getService().isNew()
+                                || si.getService().isOrphaned()) {
+                                continue;
+                            }
+                            si.stopResource(dcHost, CRM.TESTONLY);
+                        }
                     }
-                    si.stopResource(dcHost, CRM.TESTONLY);
-                }
+                });
             }
         };
         addMouseOverListener(stopMenuItem, stopItemCallback);
@@ -826,14 +846,19 @@ public final class PcmkMultiSelectionInfo extends EditableInfo {
                 public void action() {
                     hidePopup();
                     final Host dcHost = getBrowser().getDCHost();
-                    for (final ServiceInfo si : selectedServiceInfos) {
-                        if (si.isConstraintPH()
-                            || si.getService().isNew()
-                            || si.getService().isOrphaned()) {
-                            continue;
+                    CRM.runInTransaction(new Runnable() {
+                        @Override
+                        public void run() {
+                            for (final ServiceInfo si : selectedServiceInfos) {
+                                if (si.isConstraintPH()
+                                    || si.getService().isNew()
+                                    || si.getService().isOrphaned()) {
+                                    continue;
+                                }
+                                si.cleanupResource(dcHost, CRM.LIVE);
+                            }
                         }
-                        si.cleanupResource(dcHost, CRM.LIVE);
-                    }
+                    });
                 }
             };
         /* cleanup ignores CIB_file */
@@ -888,28 +913,38 @@ public final class PcmkMultiSelectionInfo extends EditableInfo {
                 public void action() {
                     hidePopup();
                     final Host dcHost = getBrowser().getDCHost();
-                    for (final ServiceInfo si : selectedServiceInfos) {
-                        if (si.isConstraintPH()
-                            || si.getService().isNew()
-                            || si.getService().isOrphaned()) {
-                            continue;
+                    CRM.runInTransaction(new Runnable() {
+                        @Override
+                        public void run() {
+                            for (final ServiceInfo si : selectedServiceInfos) {
+                                if (si.isConstraintPH()
+                                    || si.getService().isNew()
+                                    || si.getService().isOrphaned()) {
+                                    continue;
+                                }
+                                si.setManaged(true, dcHost, CRM.LIVE);
+                            }
                         }
-                        si.setManaged(true, dcHost, CRM.LIVE);
-                    }
+                    });
                 }
             };
         final ClusterBrowser.ClMenuItemCallback manageItemCallback =
                   getBrowser().new ClMenuItemCallback(manageMenuItem, null) {
             @Override
             public void action(final Host dcHost) {
-                for (final ServiceInfo si : selectedServiceInfos) {
-                    if (si.isConstraintPH()
-                        || si.getService().isNew()
-                        || si.getService().isOrphaned()) {
-                        continue;
+                CRM.runInTransaction(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (final ServiceInfo si : selectedServiceInfos) {
+                            if (si.isConstraintPH()
+                                || si.getService().isNew()
+                                || si.getService().isOrphaned()) {
+                                continue;
+                            }
+                            si.setManaged(true, dcHost, CRM.TESTONLY);
+                        }
                     }
-                    si.setManaged(true, dcHost, CRM.TESTONLY);
-                }
+                });
             }
         };
         addMouseOverListener(manageMenuItem, manageItemCallback);
@@ -963,28 +998,38 @@ public final class PcmkMultiSelectionInfo extends EditableInfo {
                 public void action() {
                     hidePopup();
                     final Host dcHost = getBrowser().getDCHost();
-                    for (final ServiceInfo si : selectedServiceInfos) {
-                        if (si.isConstraintPH()
-                            || si.getService().isNew()
-                            || si.getService().isOrphaned()) {
-                            continue;
+                    CRM.runInTransaction(new Runnable() {
+                        @Override
+                        public void run() {
+                            for (final ServiceInfo si : selectedServiceInfos) {
+                                if (si.isConstraintPH()
+                                    || si.getService().isNew()
+                                    || si.getService().isOrphaned()) {
+                                    continue;
+                                }
+                                si.setManaged(false, dcHost, CRM.LIVE);
+                            }
                         }
-                        si.setManaged(false, dcHost, CRM.LIVE);
-                    }
+                    });
                 }
             };
         final ClusterBrowser.ClMenuItemCallback unmanageItemCallback =
                   getBrowser().new ClMenuItemCallback(unmanageMenuItem, null) {
             @Override
             public void action(final Host dcHost) {
-                for (final ServiceInfo si : selectedServiceInfos) {
-                    if (si.isConstraintPH()
-                        || si.getService().isNew()
-                        || si.getService().isOrphaned()) {
-                        continue;
+                CRM.runInTransaction(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (final ServiceInfo si : selectedServiceInfos) {
+                            if (si.isConstraintPH()
+                                || si.getService().isNew()
+                                || si.getService().isOrphaned()) {
+                                continue;
+                            }
+                            si.setManaged(false, dcHost, CRM.TESTONLY);
+                        }
                     }
-                    si.setManaged(false, dcHost, CRM.TESTONLY);
-                }
+                });
             }
         };
         addMouseOverListener(unmanageMenuItem, unmanageItemCallback);
@@ -1059,28 +1104,43 @@ public final class PcmkMultiSelectionInfo extends EditableInfo {
                     public void action() {
                         hidePopup();
                         final Host dcHost = getBrowser().getDCHost();
-                        for (final ServiceInfo si : selectedServiceInfos) {
-                            if (si.isConstraintPH()
-                                || si.getService().isNew()
-                                || si.getService().isOrphaned()) {
-                                continue;
+                        CRM.runInTransaction(new Runnable() {
+                            @Override
+                            public void run() {
+                                for (final ServiceInfo si
+                                                   : selectedServiceInfos) {
+                                    if (si.isConstraintPH()
+                                        || si.getService().isNew()
+                                        || si.getService().isOrphaned()) {
+                                        continue;
+                                    }
+                                    si.migrateFromResource(dcHost,
+                                                           hostName,
+                                                           CRM.LIVE);
+                                }
                             }
-                            si.migrateFromResource(dcHost, hostName, CRM.LIVE);
-                        }
+                        });
                     }
                 };
             final ClusterBrowser.ClMenuItemCallback migrateItemCallback =
                getBrowser().new ClMenuItemCallback(migrateFromMenuItem, null) {
                 @Override
                 public void action(final Host dcHost) {
-                    for (final ServiceInfo si : selectedServiceInfos) {
-                        if (si.isConstraintPH()
-                            || si.getService().isNew()
-                            || si.getService().isOrphaned()) {
-                            continue;
+                    CRM.runInTransaction(new Runnable() {
+                        @Override
+                        public void run() {
+                            for (final ServiceInfo si : selectedServiceInfos) {
+                                if (si.isConstraintPH()
+                                    || si.getService().isNew()
+                                    || si.getService().isOrphaned()) {
+                                    continue;
+                                }
+                                si.migrateFromResource(dcHost,
+                                                       hostName,
+                                                       CRM.TESTONLY);
+                            }
                         }
-                        si.migrateFromResource(dcHost, hostName, CRM.TESTONLY);
-                    }
+                    });
                 }
             };
             addMouseOverListener(migrateFromMenuItem, migrateItemCallback);
@@ -1127,28 +1187,38 @@ public final class PcmkMultiSelectionInfo extends EditableInfo {
                 public void action() {
                     hidePopup();
                     final Host dcHost = getBrowser().getDCHost();
-                    for (final ServiceInfo si : selectedServiceInfos) {
-                        if (si.isConstraintPH()
-                            || si.getService().isNew()
-                            || si.getService().isOrphaned()) {
-                            continue;
+                    CRM.runInTransaction(new Runnable() {
+                        @Override
+                        public void run() {
+                            for (final ServiceInfo si : selectedServiceInfos) {
+                                if (si.isConstraintPH()
+                                    || si.getService().isNew()
+                                    || si.getService().isOrphaned()) {
+                                    continue;
+                                }
+                                si.unmigrateResource(dcHost, CRM.LIVE);
+                            }
                         }
-                        si.unmigrateResource(dcHost, CRM.LIVE);
-                    }
+                    });
                 }
             };
         final ClusterBrowser.ClMenuItemCallback unmigrateItemCallback =
                getBrowser().new ClMenuItemCallback(unmigrateMenuItem, null) {
             @Override
             public void action(final Host dcHost) {
-                for (final ServiceInfo si : selectedServiceInfos) {
-                    if (si.isConstraintPH()
-                        || si.getService().isNew()
-                        || si.getService().isOrphaned()) {
-                        continue;
+                CRM.runInTransaction(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (final ServiceInfo si : selectedServiceInfos) {
+                            if (si.isConstraintPH()
+                                || si.getService().isNew()
+                                || si.getService().isOrphaned()) {
+                                continue;
+                            }
+                            si.unmigrateResource(dcHost, CRM.TESTONLY);
+                        }
                     }
-                    si.unmigrateResource(dcHost, CRM.TESTONLY);
-                }
+                });
             }
         };
         addMouseOverListener(unmigrateMenuItem, unmigrateItemCallback);
@@ -1207,17 +1277,22 @@ public final class PcmkMultiSelectionInfo extends EditableInfo {
                     return;
                 }
                 final Host dcHost = getBrowser().getDCHost();
-                for (ServiceInfo si : selectedServiceInfos) {
-                    final ServiceInfo cs = si.getContainedService();
-                    if (cs != null) {
-                        si = cs;
-                    }
-                    if (si.getService().isOrphaned()) {
-                        si.cleanupResource(dcHost, CRM.LIVE);
-                    } else {
-                        si.removeMyselfNoConfirm(dcHost, CRM.LIVE);
+                CRM.runInTransaction(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (ServiceInfo si : selectedServiceInfos) {
+                            final ServiceInfo cs = si.getContainedService();
+                            if (cs != null) {
+                                si = cs;
+                            }
+                            if (si.getService().isOrphaned()) {
+                                si.cleanupResource(dcHost, CRM.LIVE);
+                            } else {
+                                si.removeMyselfNoConfirm(dcHost, CRM.LIVE);
+                            }
+                        }
                     }
-                }
+                });
                 getBrowser().getHeartbeatGraph().repaint();
             }
         };
@@ -1239,9 +1314,14 @@ public final class PcmkMultiSelectionInfo extends EditableInfo {
 
             @Override
             public void action(final Host dcHost) {
-                for (final ServiceInfo si : selectedServiceInfos) {
-                    si.removeMyselfNoConfirm(dcHost, CRM.TESTONLY);
-                }
+                CRM.runInTransaction(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (final ServiceInfo si : selectedServiceInfos) {
+                            si.removeMyselfNoConfirm(dcHost, CRM.TESTONLY);
+                        }
+                    }
+                });
             }
         };
         addMouseOverListener(removeMenuItem, removeItemCallback);
@@ -46,6 +46,7 @@ import lcmc.utilities.MyMenuItem;
 import lcmc.utilities.MyList;
 import lcmc.utilities.MyListModel;
 import lcmc.utilities.WidgetListener;
+import lcmc.utilities.MyButton;
 import lcmc.gui.SpringUtilities;
 import lcmc.gui.dialog.pacemaker.ServiceLogs;
 import lcmc.gui.dialog.EditConfig;
@@ -67,6 +68,11 @@ import java.util.HashMap;
 import java.util.TreeSet;
 import java.util.LinkedHashMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.Locale;
 import java.util.Set;
 import java.util.regex.Matcher;
@@ -151,6 +157,25 @@ public class ServiceInfo extends EditableInfo {
     private final ResourceAgent resourceAgent;
     /** Radio buttons for clone/master/slave primitive resources. */
     private Widget typeRadioGroup;
+    /**
+     * Executor, where the ptest prefetches of all services run. The ptests
+     * run one at a time anyway.
+     */
+    private static final ScheduledExecutorService PTEST_PREFETCH_EXECUTOR =
+        Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                final Thread thread = new Thread(runnable, "ptest-prefetch");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    /** The last scheduled ptest prefetch, only this one runs. */
+    private Runnable ptestPrefetch = null;
+    /** Future of the last scheduled ptest prefetch. */
+    private ScheduledFuture<?> ptestPrefetchFuture = null;
+    /** Ptest prefetch lock. */
+    private final Lock mPtestPrefetchLock = new ReentrantLock();
     /** Default values item in the "same as" scrolling list in meta
         attributes.*/
     private static final String META_ATTRS_DEFAULT_VALUES_TEXT =
@@ -317,6 +342,92 @@ public class ServiceInfo extends EditableInfo {
         this.infoPanel = infoPanel;
     }
 
+    /**
+     * Checks and sets the parameter fields and prefetches the ptest of the
+     * changes, so that it is ready, when the mouse is over the apply button.
+     */
+    @Override
+    public void checkParameterFields(final Widget paramWi,
+                                     final Widget realParamWi,
+                                     final String param,
+                                     final String[] params,
+                                     final MyButton thisApplyButton) {
+        super.checkParameterFields(paramWi,
+                                   realParamWi,
+                                   param,
+                                   params,
+                                   thisApplyButton);
+        if (thisApplyButton != null && thisApplyButton == getApplyButton()) {
+            prefetchPtest();
+        }
+    }
+
+    /**
+     * Runs the ptest of the changes in the background after a delay, if
+     * there are no other changes in the meantime. Every change cancels the
+     * prefetch, that is still waiting. The ptest output is cached by CRM.
+     */
+    private void prefetchPtest() {
+        final Runnable prefetch = new Runnable() {
+            @Override
+            public void run() {
+                if (!isLastPtestPrefetch(this)) {
+                    return;
+                }
+                final Host dcHost = getBrowser().getDCHost();
+                final MyButton ab = getApplyButton();
+                if (dcHost == null
+                    || Tools.versionBeforePacemaker(dcHost)
+                    || ab == null
+                    || !ab.isEnabled()) {
+                    return;
+                }
+                getBrowser().ptestLockAcquire();
+                try {
+                    if (!isLastPtestPrefetch(this)) {
+                        return;
+                    }
+                    getBrowser().getClusterStatus().setPtestData(null);
+                    CRM.runInTransaction(new Runnable() {
+                        @Override
+                        public void run() {
+                            apply(dcHost, CRM.TESTONLY);
+                        }
+                    });
+                    CRM.getPtest(dcHost);
+                } finally {
+                    getBrowser().ptestLockRelease();
+                }
+            }
+        };
+        mPtestPrefetchLock.lock();
+        try {
+            if (ptestPrefetchFuture != null) {
+                ptestPrefetchFuture.cancel(false);
+            }
+            ptestPrefetch = prefetch;
+            ptestPrefetchFuture = PTEST_PREFETCH_EXECUTOR.schedule(
+                            prefetch,
+                            Tools.getDefaultInt("CRM.PtestPrefetch.Delay"),
+                            TimeUnit.MILLISECONDS);
+        } finally {
+            mPtestPrefetchLock.unlock();
+        }
+    }
+
+    /**
+     * Returns whether the prefetch is the last scheduled one, the older
+     * ones are not needed anymore.
+     */
+    private boolean isLastPtestPrefetch(final Runnable prefetch) {
+        mPtestPrefetchLock.lock();
+        try {
+            return prefetch == ptestPrefetch;
+        } finally {
+            mPtestPrefetchLock.unlock();
+        }
+    }
+
     /** Returns true if the node is active. */
     boolean isOfflineNode(final String node) {
         return "no".equals(getBrowser().getClusterStatus().isOnlineNode(node));
@@ -2652,6 +2763,7 @@ public class ServiceInfo extends EditableInfo {
                     return;
                 }
                 mouseStillOver = false;
+                CRM.cancelPtest();
                 getBrowser().getHeartbeatGraph().stopTestAnimation(
                                                              getApplyButton());
                 getApplyButton().setToolTipText(null);
@@ -2680,7 +2792,12 @@ public class ServiceInfo extends EditableInfo {
                 getBrowser().ptestLockAcquire();
                 final ClusterStatus cs = getBrowser().getClusterStatus();
                 cs.setPtestData(null);
-                apply(dcHost, true);
+                CRM.runInTransaction(new Runnable() {
+                    @Override
+                    public void run() {
+                        apply(dcHost, true);
+                    }
+                });
                 final PtestData ptestData = new PtestData(CRM.getPtest(dcHost));
                 getApplyButton().setToolTipText(ptestData.getToolTip());
                 cs.setPtestData(ptestData);
@@ -2708,7 +2825,12 @@ public class ServiceInfo extends EditableInfo {
                             @Override
                             public void run() {
                                 getBrowser().clStatusLock();
-                                apply(getBrowser().getDCHost(), false);
+                                CRM.runInTransaction(new Runnable() {
+                                    @Override
+                                    public void run() {
+                                        apply(getBrowser().getDCHost(), false);
+                                    }
+                                });
                                 getBrowser().clStatusUnlock();
                             }
                         });
@@ -2994,6 +3116,8 @@ public class ServiceInfo extends EditableInfo {
 
         final ClusterStatus cs = getBrowser().getClusterStatus();
         final CloneInfo ci = getCloneInfo();
+        /* without the info panel the saved operations are used */
+        final boolean saved = !isInfoPanelOk() && !getService().isNew();
         for (final String op : getResourceAgent().getOperationNames()) {
             final Map<String, String> opHash =
                                            new LinkedHashMap<String, String>();
@@ -3016,13 +3140,17 @@ public class ServiceInfo extends EditableInfo {
                     final Widget wi = operationsComboBoxHash.get(op, param);
                     mOperationsComboBoxHashReadLock.unlock();
                     String value;
-                    if (wi == null) {
+                    if (saved) {
+                        mSavedOperationsLock.lock();
+                        value = savedOperation.get(op, param);
+                        mSavedOperationsLock.unlock();
+                    } else if (wi == null) {
                         value = "0";
                     } else {
                         value = wi.getStringValue();
                     }
                     if (value != null && !"".equals(value)) {
-                        if (wi != null && firstTime) {
+                        if ((wi != null || saved) && firstTime) {
                             opHash.put("id", opId);
                             opHash.put("name", op);
                             firstTime = false;
@@ -3042,7 +3170,14 @@ public class ServiceInfo extends EditableInfo {
      */
     protected String getMetaAttrsRefId() {
         String metaAttrsRefId = null;
-        if (sameAsMetaAttrsWi != null) {
+        if (sameAsMetaAttrsWi == null) {
+            final ServiceInfo si = savedMetaAttrInfoRef;
+            if (si != null && !isInfoPanelOk()) {
+                final ClusterStatus cs = getBrowser().getClusterStatus();
+                metaAttrsRefId = cs.getMetaAttrsId(
+                                            si.getService().getHeartbeatId());
+            }
+        } else {
             final Info i = (Info) sameAsMetaAttrsWi.getValue();
             if (!Widget.NOTHING_SELECTED.equals(i.toString())
                 && !META_ATTRS_DEFAULT_VALUES_TEXT.equals(i.toString())) {
@@ -3061,7 +3196,14 @@ public class ServiceInfo extends EditableInfo {
      */
     protected String getOperationsRefId() {
         String operationsRefId = null;
-        if (sameAsOperationsWi != null) {
+        if (sameAsOperationsWi == null) {
+            final ServiceInfo si = savedOperationIdRef;
+            if (si != null && !isInfoPanelOk()) {
+                final ClusterStatus cs = getBrowser().getClusterStatus();
+                operationsRefId = cs.getOperationsId(
+                                            si.getService().getHeartbeatId());
+            }
+        } else {
             final Info i = sameAsOperationsWiValue();
             if (!Widget.NOTHING_SELECTED.equals(i.toString())
                 && !OPERATIONS_DEFAULT_VALUES_TEXT.equals(i.toString())) {
@@ -3107,7 +3249,7 @@ public class ServiceInfo extends EditableInfo {
                 || PCMK_ID.equals(param)) {
                 continue;
             }
-            String value = getComboBoxValue(param);
+            String value = getParamValue(param);
             if (value == null) {
                 value = "";
             }
@@ -3136,7 +3278,7 @@ public class ServiceInfo extends EditableInfo {
                 || PCMK_ID.equals(param)) {
                 continue;
             }
-            String value = getComboBoxValue(param);
+            String value = getParamValue(param);
             if (value == null) {
                 value = "";
             }
@@ -3327,9 +3469,16 @@ public class ServiceInfo extends EditableInfo {
         mSavedOperationsLock.unlock();
     }
 
-    /** Applies the changes to the service parameters. */
+    /**
+     * Applies the changes to the service parameters. If the info panel of
+     * an existing service was not created yet, it is not created now, the
+     * values and operations are taken from the cluster status instead of
+     * the widgets and the locations are left as they are. This way many
+     * services can be applied at once, without creating all their panels.
+     */
     void apply(final Host dcHost, final boolean testOnly) {
-        if (!testOnly) {
+        final boolean headless = !getService().isNew() && !isInfoPanelOk();
+        if (!testOnly && !headless) {
             Tools.invokeAndWait(new Runnable() {
                 @Override
                 public void run() {
@@ -3338,8 +3487,10 @@ public class ServiceInfo extends EditableInfo {
                 }
             });
         }
-        getInfoPanel();
-        waitForInfoPanel();
+        if (!headless) {
+            getInfoPanel();
+            waitForInfoPanel();
+        }
         /* TODO: make progress indicator per resource. */
         if (!testOnly) {
             setUpdated(true);
@@ -3365,16 +3516,18 @@ public class ServiceInfo extends EditableInfo {
 
         }
         if (!testOnly) {
-            SwingUtilities.invokeLater(new Runnable() {
-                @Override
-                public void run() {
-                    getApplyButton().setToolTipText(null);
-                    getWidget(GUI_ID, null).setEnabled(false);
-                    if (clInfo != null) {
-                        clInfo.getWidget(GUI_ID, null).setEnabled(false);
+            if (!headless) {
+                SwingUtilities.invokeLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        getApplyButton().setToolTipText(null);
+                        getWidget(GUI_ID, null).setEnabled(false);
+                        if (clInfo != null) {
+                            clInfo.getWidget(GUI_ID, null).setEnabled(false);
+                        }
                     }
-                }
-            });
+                });
+            }
 
             /* add myself to the hash with service name and id as
              * keys */
@@ -3435,14 +3588,18 @@ public class ServiceInfo extends EditableInfo {
         }
 
         final String refCRMId = getOperationsRefId();
-        savedOperationsId = refCRMId;
-        savedOperationIdRef = getBrowser().getServiceInfoFromCRMId(refCRMId);
-        final Info i = sameAsOperationsWiValue();
-        if (i == null || (i instanceof StringInfo)) {
-            savedOperationsId = null;
-        } else {
-            savedOperationIdRef = (ServiceInfo) i;
-            savedOperationsId = ((ServiceInfo) i).getService().getHeartbeatId();
+        if (!headless) {
+            savedOperationsId = refCRMId;
+            savedOperationIdRef =
+                               getBrowser().getServiceInfoFromCRMId(refCRMId);
+            final Info i = sameAsOperationsWiValue();
+            if (i == null || (i instanceof StringInfo)) {
+                savedOperationsId = null;
+            } else {
+                savedOperationIdRef = (ServiceInfo) i;
+                savedOperationsId =
+                              savedOperationIdRef.getService().getHeartbeatId();
+            }
         }
         if (getService().isNew()) {
             if (clInfo != null) {
@@ -3598,7 +3755,7 @@ public class ServiceInfo extends EditableInfo {
                         || PCMK_ID.equals(param)) {
                         continue;
                     }
-                    final String value = clInfo.getComboBoxValue(param);
+                    final String value = clInfo.getParamValue(param);
                     if (value.equals(clInfo.getParamDefault(param))) {
                             continue;
                     }
@@ -3613,7 +3770,7 @@ public class ServiceInfo extends EditableInfo {
                         || PCMK_ID.equals(param)) {
                         continue;
                     }
-                    final String value = gInfo.getComboBoxValue(param);
+                    final String value = gInfo.getParamValue(param);
                     if (value == null
                         || value.equals(gInfo.getParamDefault(param))) {
                         continue;
@@ -3656,7 +3813,9 @@ public class ServiceInfo extends EditableInfo {
             }
         }
 
-        if (gInfo == null) {
+        if (headless) {
+            /* the locations are only in the widgets */
+        } else if (gInfo == null) {
             if (clInfo == null) {
                 setLocations(heartbeatId, dcHost, testOnly);
             } else {
@@ -3666,17 +3825,19 @@ public class ServiceInfo extends EditableInfo {
             setLocations(heartbeatId, dcHost, testOnly);
         }
         if (!testOnly) {
-            storeComboBoxValues(params);
-            storeOperations();
-            if (clInfo != null) {
-                clInfo.storeComboBoxValues(cloneParams);
-            }
-
-            SwingUtilities.invokeLater(new Runnable() {
-                public void run() {
-                    setApplyButtons(null, params);
+            if (!headless) {
+                storeComboBoxValues(params);
+                storeOperations();
+                if (clInfo != null) {
+                    clInfo.storeComboBoxValues(cloneParams);
                 }
-            });
+
+                SwingUtilities.invokeLater(new Runnable() {
+                    public void run() {
+                        setApplyButtons(null, params);
+                    }
+                });
+            }
             final DefaultMutableTreeNode node = getNode();
             if (node != null) {
                 if (ci == null) {
@@ -347,6 +347,7 @@ public final class ServicesInfo extends EditableInfo {
     /** Sets clone info object. */
     private CloneInfo setCreateCloneInfo(final String cloneId,
                                          final ClusterStatus clStatus,
+                                         final Set<String> changedResources,
                                          final boolean testOnly) {
         CloneInfo newCi = null;
         newCi = (CloneInfo) getBrowser().getServiceInfoFromCRMId(cloneId);
@@ -367,10 +368,12 @@ public final class ServicesInfo extends EditableInfo {
                                           newCi.getHeartbeatId(testOnly));
             newCi.setParameters(resourceNode);
         } else {
-            final Map<String, String> resourceNode =
-                                  clStatus.getParamValuePairs(
-                                          newCi.getHeartbeatId(testOnly));
-            newCi.setParameters(resourceNode);
+            if (isChanged(cloneId, changedResources)) {
+                final Map<String, String> resourceNode =
+                                      clStatus.getParamValuePairs(
+                                              newCi.getHeartbeatId(testOnly));
+                newCi.setParameters(resourceNode);
+            }
             if (!testOnly) {
                 newCi.setUpdated(false);
                 hg.repaint();
@@ -384,6 +387,7 @@ public final class ServicesInfo extends EditableInfo {
     private GroupInfo setCreateGroupInfo(final String group,
                                          final CloneInfo newCi,
                                          final ClusterStatus clStatus,
+                                         final Set<String> changedResources,
                                          final boolean testOnly) {
         GroupInfo newGi = null;
         newGi = (GroupInfo) getBrowser().getServiceInfoFromCRMId(group);
@@ -406,10 +410,12 @@ public final class ServicesInfo extends EditableInfo {
                 newCi.addCloneServicePanel(newGi);
             }
         } else {
-            final Map<String, String> resourceNode =
-                                    clStatus.getParamValuePairs(
-                                      newGi.getHeartbeatId(testOnly));
-            newGi.setParameters(resourceNode);
+            if (isChanged(group, changedResources)) {
+                final Map<String, String> resourceNode =
+                                        clStatus.getParamValuePairs(
+                                          newGi.getHeartbeatId(testOnly));
+                newGi.setParameters(resourceNode);
+            }
             if (!testOnly) {
                 newGi.setUpdated(false);
                 hg.repaint();
@@ -428,10 +434,18 @@ public final class ServicesInfo extends EditableInfo {
                                final List<ServiceInfo> serviceIsPresent,
                                final List<ServiceInfo> groupServiceIsPresent,
                                final ClusterStatus clStatus,
+                               final Set<String> changedResources,
                                final boolean testOnly) {
         final Map<ServiceInfo, Map<String, String>> setParametersHash =
                            new HashMap<ServiceInfo, Map<String, String>>();
-        if (newCi != null) {
+        final List<ServiceInfo> notChanged = new ArrayList<ServiceInfo>();
+        if (!isChanged(grpOrCloneId, changedResources)) {
+            if (newCi != null) {
+                notChanged.add(newCi);
+            } else if (newGi != null) {
+                notChanged.add(newGi);
+            }
+        } else if (newCi != null) {
             setParametersHash.put(
                             newCi,
                             clStatus.getParamValuePairs(grpOrCloneId));
@@ -462,6 +476,7 @@ public final class ServicesInfo extends EditableInfo {
                 final GroupInfo gi = setCreateGroupInfo(hbId,
                                                         newCi,
                                                         clStatus,
+                                                        changedResources,
                                                         testOnly);
                 setGroupResources(allGroupsAndClones,
                                   hbId,
@@ -470,6 +485,7 @@ public final class ServicesInfo extends EditableInfo {
                                   serviceIsPresent,
                                   groupServiceIsPresent,
                                   clStatus,
+                                  changedResources,
                                   testOnly);
                 newSi = (ServiceInfo) gi;
             } else {
@@ -545,7 +561,11 @@ public final class ServicesInfo extends EditableInfo {
                     }
                 } else {
                     getBrowser().addNameToServiceInfoHash(newSi);
-                    setParametersHash.put(newSi, resourceNode);
+                    if (isChanged(hbId, changedResources)) {
+                        setParametersHash.put(newSi, resourceNode);
+                    } else {
+                        notChanged.add(newSi);
+                    }
                 }
                 newSi.getService().setNew(false);
                 serviceIsPresent.add(newSi);
@@ -581,17 +601,40 @@ public final class ServicesInfo extends EditableInfo {
                 newSi.setUpdated(false);
             }
         }
+        if (!testOnly) {
+            for (final ServiceInfo newSi : notChanged) {
+                newSi.setUpdated(false);
+            }
+        }
         if (newService) {
             getBrowser().reload(getBrowser().getServicesNode(), false);
         }
         hg.repaint();
     }
 
+    /** Returns whether the resource is among the changed resources. */
+    private static boolean isChanged(final String hbId,
+                                     final Set<String> changedResources) {
+        return changedResources == null || changedResources.contains(hbId);
+    }
+
+    /**
+     * This functions goes through all services, constrains etc. in
+     * clusterStatus and updates the internal structures and graph.
+     */
+    public void setAllResources(final ClusterStatus clStatus,
+                                final boolean testOnly) {
+        setAllResources(clStatus, null, testOnly);
+    }
+
     /**
      * This functions goes through all services, constrains etc. in
      * clusterStatus and updates the internal structures and graph.
+     * Parameters are set only for the resources in changedResources, or for
+     * all of them if it is null.
      */
     public void setAllResources(final ClusterStatus clStatus,
+                                final Set<String> changedResources,
                                 final boolean testOnly) {
         if (clStatus == null) {
             return;
@@ -606,7 +649,10 @@ public final class ServicesInfo extends EditableInfo {
             GroupInfo newGi = null;
             if (clStatus.isClone(groupOrClone)) {
                 /* clone */
-                newCi = setCreateCloneInfo(groupOrClone, clStatus, testOnly);
+                newCi = setCreateCloneInfo(groupOrClone,
+                                           clStatus,
+                                           changedResources,
+                                           testOnly);
                 serviceIsPresent.add(newCi);
             } else if (!"none".equals(groupOrClone)) {
                 /* group */
@@ -621,6 +667,7 @@ public final class ServicesInfo extends EditableInfo {
                 newGi = setCreateGroupInfo(groupOrClone,
                                            newCi,
                                            clStatus,
+                                           changedResources,
                                            testOnly);
                 serviceIsPresent.add(newGi);
             }
@@ -631,6 +678,7 @@ public final class ServicesInfo extends EditableInfo {
                               serviceIsPresent,
                               groupServiceIsPresent,
                               clStatus,
+                              changedResources,
                               testOnly);
         }
 
@@ -1019,7 +1067,12 @@ public final class ServicesInfo extends EditableInfo {
                 getBrowser().ptestLockAcquire();
                 final ClusterStatus clStatus = getBrowser().getClusterStatus();
                 clStatus.setPtestData(null);
-                apply(dcHost, true);
+                CRM.runInTransaction(new Runnable() {
+                    @Override
+                    public void run() {
+                        apply(dcHost, true);
+                    }
+                });
                 final PtestData ptestData = new PtestData(CRM.getPtest(dcHost));
                 getApplyButton().setToolTipText(ptestData.getToolTip());
                 clStatus.setPtestData(ptestData);
@@ -1067,7 +1120,12 @@ public final class ServicesInfo extends EditableInfo {
                             @Override
                             public void run() {
                                 getBrowser().clStatusLock();
-                                apply(getBrowser().getDCHost(), false);
+                                CRM.runInTransaction(new Runnable() {
+                                    @Override
+                                    public void run() {
+                                        apply(getBrowser().getDCHost(), false);
+                                    }
+                                });
                                 getBrowser().clStatusUnlock();
                             }
                         }
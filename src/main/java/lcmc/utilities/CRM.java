@@ -29,6 +29,7 @@ import java.util.Map;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -61,6 +62,37 @@ public final class CRM {
     public static final boolean TESTONLY = true;
     /** Live boolean variable. */
     public static final boolean LIVE = false;
+    /**
+     * Template of the temporary directory of the CIB transaction, for
+     * mktemp.
+     */
+    private static final String TRANSACTION_DIR =
+                                        "/tmp/lcmc-cib-transaction.XXXXXXXXXX";
+    /** Open CIB transaction of the current thread or null. */
+    private static final ThreadLocal<Transaction> TRANSACTION =
+                                               new ThreadLocal<Transaction>();
+    /**
+     * Cached ptest outputs by the host, the CIB version and the test
+     * commands, that led to them. The least recently used are removed.
+     */
+    private static final Map<String, String> PTEST_CACHE =
+        new LinkedHashMap<String, String>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+            @Override
+            protected boolean removeEldestEntry(
+                                     final Map.Entry<String, String> eldest) {
+                return size() > Tools.getDefaultInt("CRM.PtestCache.Size");
+            }
+        };
+    /** Version of the CIB, that is incremented with every cib update. */
+    private static long cibVersion = 0;
+    /**
+     * Cache key of the test commands, that ran since the last ptest, or null
+     * if they can't be cached.
+     */
+    private static volatile String ptestKey = null;
+    /** Ptest command that is running or null. */
+    private static volatile SSH.ExecCommandThread ptestThread = null;
 
     /**
      * No instantiation.
@@ -83,17 +115,66 @@ public final class CRM {
         return cmd.toString();
     }
 
-    /** Executes specified command on the host. */
+    /**
+     * Executes specified command on the host, or adds it to the CIB
+     * transaction of the current thread.
+     */
     private static SSH.SSHOutput execCommand(final Host host,
                                              final String command,
                                              final boolean outputVisible,
                                              final boolean testOnly) {
+        final Transaction transaction = TRANSACTION.get();
+        if (transaction != null) {
+            if (transaction.add(host, command, testOnly)) {
+                Tools.debug(null, "CRM.java: crm command in transaction: {}",
+                            2, command);
+                return new SSH.SSHOutput("", 0);
+            }
+            flushTransaction(transaction, false);
+        }
+        return runCommand(host, command, outputVisible, testOnly);
+    }
+
+    /**
+     * Executes specified command on the host right away. The commands, that
+     * were collected in the transaction so far, run before it.
+     */
+    private static SSH.SSHOutput execCommandNow(final Host host,
+                                                final String command,
+                                                final boolean outputVisible,
+                                                final boolean testOnly) {
+        final Transaction transaction = TRANSACTION.get();
+        if (transaction != null) {
+            flushTransaction(transaction, false);
+        }
+        return runCommand(host, command, outputVisible, testOnly);
+    }
+
+    /** Runs specified command on the host. */
+    private static SSH.SSHOutput runCommand(final Host host,
+                                            final String command,
+                                            final boolean outputVisible,
+                                            final boolean testOnly) {
+        return runCommand(host, command, outputVisible, testOnly, false);
+    }
+
+    /**
+     * Runs specified command on the host. If freshTestCib is set, the test
+     * commands start from a new copy of the live CIB.
+     */
+    private static SSH.SSHOutput runCommand(final Host host,
+                                            final String command,
+                                            final boolean outputVisible,
+                                            final boolean testOnly,
+                                            final boolean freshTestCib) {
         M_PTEST_WRITELOCK.lock();
         ptestOutput = null;
+        ptestKey = null;
         M_PTEST_WRITELOCK.unlock();
         if (testOnly) {
             final String testCmd =
-             "if [ ! -e " + LCMC_TEST_FILE + " ]; "
+             (freshTestCib ? "rm -f " + LCMC_TEST_FILE + ";" : "")
+             + "if [ ! -e " + LCMC_TEST_FILE + " ]; "
              + "then " + DistResource.SUDO + "/usr/sbin/cibadmin -Ql > "
              + LCMC_TEST_FILE + ";fi;"
              + "export CIB_file=" + LCMC_TEST_FILE + ";";
@@ -105,7 +186,7 @@ public final class CRM {
                                                  SSH.DEFAULT_COMMAND_TIMEOUT);
             return out;
         } else {
-            Tools.debug(null, "CRM.java: crm command: " + command, 1);
+            Tools.debug(null, "CRM.java: crm command: {}", 1, command);
             return Tools.execCommandProgressIndicator(
                                     host,
                                     command,
@@ -116,6 +197,209 @@ public final class CRM {
         }
     }
 
+    /**
+     * Starts a CIB transaction in the current thread. Until it is
+     * committed, the CRM commands of this thread are only collected and the
+     * methods return success. Transactions can be nested, only the
+     * outermost commit runs the commands. Commands that don't only change
+     * the CIB, like the cleanup, run right away after the commands that
+     * were collected before them.
+     */
+    public static void beginTransaction() {
+        Transaction transaction = TRANSACTION.get();
+        if (transaction == null) {
+            transaction = new Transaction();
+            TRANSACTION.set(transaction);
+        }
+        transaction.depth++;
+    }
+
+    /**
+     * Runs the body in a CIB transaction and commits it. If the live
+     * commands of the transaction failed, it is shown in the progress
+     * indicator. Returns false if any of the commands failed.
+     */
+    public static boolean runInTransaction(final Runnable body) {
+        beginTransaction();
+        final Transaction transaction = TRANSACTION.get();
+        boolean ok = false;
+        try {
+            body.run();
+        } finally {
+            ok = commitTransaction();
+        }
+        if (!ok && !transaction.testOnly && transaction.host != null) {
+            Tools.progressIndicatorFailed(
+                                    transaction.host.getName(),
+                                    Tools.getString("CIB.TransactionFailed"));
+        }
+        return ok;
+    }
+
+    /**
+     * Commits the CIB transaction of the current thread. The collected
+     * commands run in one ssh command. Returns false if any of the commands
+     * in the transaction failed.
+     */
+    public static boolean commitTransaction() {
+        final Transaction transaction = TRANSACTION.get();
+        if (transaction == null) {
+            Tools.appWarning("no CIB transaction to commit");
+            return false;
+        }
+        transaction.depth--;
+        if (transaction.depth > 0) {
+            return true;
+        }
+        TRANSACTION.remove();
+        flushTransaction(transaction, true);
+        return !transaction.failed;
+    }
+
+    /**
+     * Runs the commands, that were collected in the transaction, in one ssh
+     * command. The live commands are applied to a copy of the CIB first and
+     * the difference is then applied as one patch, so that the CIB changes
+     * only once. If crm_diff or the patch fail, the commands are applied to
+     * the CIB one by one. The ptest of the test commands of a whole
+     * transaction is cached.
+     */
+    private static void flushTransaction(final Transaction transaction,
+                                         final boolean commit) {
+        if (transaction.commands.isEmpty()) {
+            return;
+        }
+        final StringBuilder commands = new StringBuilder(300);
+        commands.append("E=0;");
+        for (final String command : transaction.commands) {
+            commands.append("( ");
+            commands.append(command);
+            commands.append(" ) || E=1;");
+        }
+        transaction.commands.clear();
+        final String cmds = commands.toString();
+        final String command;
+        String key = null;
+        boolean freshTestCib = false;
+        if (transaction.testOnly) {
+            if (transaction.flushed) {
+                command = cmds + "[ $E -eq 0 ]";
+            } else {
+                if (commit) {
+                    key = transaction.host.getName() + '\n' + getCibVersion()
+                          + '\n' + cmds;
+                    final String cached;
+                    synchronized (PTEST_CACHE) {
+                        cached = PTEST_CACHE.get(key);
+                    }
+                    if (cached != null) {
+                        Tools.debug(null, "CRM.java: cached ptest", 2);
+                        M_PTEST_WRITELOCK.lock();
+                        ptestOutput = cached;
+                        ptestKey = null;
+                        M_PTEST_WRITELOCK.unlock();
+                        return;
+                    }
+                }
+                /* start from the live cib, the test file may be left over
+                 * from a canceled ptest. */
+                freshTestCib = true;
+                command = cmds + "[ $E -eq 0 ]";
+            }
+        } else {
+            /* the files are in a new directory, that only this user can
+             * access, so that they can't be replaced by symlinks. */
+            command =
+                "if T=$(mktemp -d " + TRANSACTION_DIR + ")"
+                + " && " + DistResource.SUDO
+                + "/usr/sbin/cibadmin -Ql > $T/orig"
+                + " && cp $T/orig $T/new; then "
+                + "export CIB_file=$T/new;" + cmds + "unset CIB_file;"
+                + DistResource.SUDO + "/usr/sbin/crm_diff -o $T/orig"
+                + " -n $T/new > $T/diff 2>/dev/null;D=$?;"
+                + "if [ -s $T/diff ]; then "
+                + DistResource.SUDO + "/usr/sbin/cibadmin --patch"
+                + " --xml-file $T/diff || { " + cmds + " };"
+                + "elif [ $D -gt 1 ]; then " + cmds
+                + "fi;"
+                + "else " + cmds + "fi;"
+                + "rm -rf $T;[ $E -eq 0 ]";
+        }
+        final SSH.SSHOutput ret = runCommand(transaction.host,
+                                             command,
+                                             true,
+                                             transaction.testOnly,
+                                             freshTestCib);
+        if (ret.getExitCode() == 0) {
+            if (key != null) {
+                ptestKey = key;
+            }
+        } else {
+            transaction.failed = true;
+        }
+        transaction.flushed = true;
+    }
+
+    /** Returns the current CIB version. */
+    private static long getCibVersion() {
+        synchronized (PTEST_CACHE) {
+            return cibVersion;
+        }
+    }
+
+    /**
+     * Is called after the CIB or the cluster status was updated. The cached
+     * ptest outputs of the old CIB are not used anymore.
+     */
+    public static void cibUpdated() {
+        synchronized (PTEST_CACHE) {
+            cibVersion++;
+            PTEST_CACHE.clear();
+        }
+    }
+
+    /** Cancels the running ptest, its output is not used. */
+    public static void cancelPtest() {
+        final SSH.ExecCommandThread t = ptestThread;
+        if (t != null) {
+            t.cancel();
+        }
+    }
+
+    /** Commands of a CIB transaction. */
+    private static final class Transaction {
+        /** Collected commands. */
+        private final List<String> commands = new ArrayList<String>();
+        /** Host of the commands. */
+        private Host host = null;
+        /** Whether the commands are test only. */
+        private boolean testOnly = false;
+        /** Nesting depth of the transaction. */
+        private int depth = 0;
+        /** Whether any of the commands failed. */
+        private boolean failed = false;
+        /** Whether some of the commands ran already. */
+        private boolean flushed = false;
+
+        /**
+         * Adds the command to the transaction. Returns false if the command
+         * is for another host or mode than the ones before and must run
+         * separately.
+         */
+        boolean add(final Host cmdHost,
+                    final String command,
+                    final boolean cmdTestOnly) {
+            if (commands.isEmpty()) {
+                host = cmdHost;
+                testOnly = cmdTestOnly;
+            } else if (host != cmdHost || testOnly != cmdTestOnly) {
+                return false;
+            }
+            commands.add(command.trim().replaceAll(";+$", ""));
+            return true;
+        }
+    }
+
     /** Executes the ptest command and returns results. */
     public static String getPtest(final Host host) {
         M_PTEST_READLOCK.lock();
@@ -125,6 +409,7 @@ public final class CRM {
             return po;
         }
         M_PTEST_READLOCK.unlock();
+        final String key = ptestKey;
         final String command =
                 "export PROG=/usr/sbin/crm_simulate;"
                 + "if [ -e /usr/sbin/ptest ];"
@@ -136,18 +421,50 @@ public final class CRM {
                 + PTEST_END_DELIM
                 + "';cat " + LCMC_TEST_FILE + " 2>/dev/null;"
                 + "mv -f " + LCMC_TEST_FILE + "{,.last} 2>/dev/null";
-        final SSH.SSHOutput output = Tools.execCommand(
-                                                host,
-                                                command,
-                                                null,
-                                                false,
-                                                SSH.DEFAULT_COMMAND_TIMEOUT);
+        final StringBuilder output = new StringBuilder("");
+        final boolean[] failed = new boolean[]{false};
+        final SSH.ExecCommandThread t = host.execCommandRaw(
+                                   command,
+                                   new ExecCallback() {
+                                       @Override
+                                       public void done(final String ans) {
+                                           output.append(ans);
+                                       }
+
+                                       @Override
+                                       public void doneError(
+                                                         final String ans,
+                                                         final int exitCode) {
+                                           failed[0] = true;
+                                           output.append(ans);
+                                       }
+                                   },
+                                   false,
+                                   true,
+                                   SSH.DEFAULT_COMMAND_TIMEOUT);
+        ptestThread = t;
+        if (t != null) {
+            try {
+                t.join(0);
+            } catch (java.lang.InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        ptestThread = null;
+        final String po = output.toString();
+        if (t == null || t.isCancelled()) {
+            return po;
+        }
         M_PTEST_WRITELOCK.lock();
-        final String po = output.getOutput();
         if (ptestOutput == null) {
             ptestOutput = po;
         }
         M_PTEST_WRITELOCK.unlock();
+        if (key != null && !failed[0]) {
+            synchronized (PTEST_CACHE) {
+                PTEST_CACHE.put(key, po);
+            }
+        }
         return po;
     }
 
@@ -892,7 +1209,7 @@ public final class CRM {
                       host.getDistCommand("CRM.cleanupResource",
                                           replaceHash);
             final SSH.SSHOutput ret =
-                                    execCommand(host, command, true, testOnly);
+                                 execCommandNow(host, command, true, testOnly);
             exitCode = ret.getExitCode();
         }
         return true; /* always return true */
@@ -1310,7 +1627,8 @@ public final class CRM {
             Tools.escapeQuotes(Matcher.quoteReplacement(config), 1));
         final String command = host.getDistCommand("CRM.configureCommit",
                                                    replaceHash);
-        final SSH.SSHOutput ret = execCommand(host, command, true, testOnly);
+        final SSH.SSHOutput ret =
+                             execCommandNow(host, command, true, testOnly);
         if (ret.getExitCode() == 0) {
             return ret.getOutput();
         }
@@ -0,0 +1,171 @@
+/*
+ * This file is part of LCMC by Rasto Levrinc.
+ *
+ * Copyright (C) 2013, Rastislav Levrinc
+ *
+ * LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.utilities;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class prints the debug messages to the stdout in its own thread, so
+ * that the threads that log don't wait for the output. The messages are
+ * kept in a bounded queue, if it is full, the oldest messages are dropped
+ * and the number of dropped messages is printed before the next message.
+ * In the synchronous mode, that the tests use, the messages are printed
+ * right away.
+ *
+ * @author Rasto Levrinc
+ * @version $Id$
+ *
+ */
+final class DebugAppender {
+    /** How many messages can wait for the output. */
+    private static final int CAPACITY = 10000;
+    /** Messages that wait for the output. */
+    private static final BlockingQueue<String> QUEUE =
+                                      new ArrayBlockingQueue<String>(CAPACITY);
+    /** Number of dropped messages. */
+    private static final AtomicInteger DROPPED = new AtomicInteger(0);
+    /** Lock for the output and the count of the pending messages. */
+    private static final Object OUTPUT_LOCK = new Object();
+    /** Messages that were appended, but not printed or dropped yet. */
+    private static int pending = 0;
+    /** Whether the messages are printed in the thread that logs them. */
+    private static volatile boolean synchronous = false;
+    /** The output thread. */
+    private static volatile Thread thread = null;
+
+    /** Private constructor, cannot be instantiated. */
+    private DebugAppender() {
+        /* Cannot be instantiated. */
+    }
+
+    /**
+     * Sets whether the messages are printed right away in the thread that
+     * logs them. The messages in the queue are printed first.
+     */
+    static void setSynchronous(final boolean sync) {
+        flush();
+        synchronous = sync;
+    }
+
+    /** Adds the message to the queue or prints it in synchronous mode. */
+    static void append(final String message) {
+        if (synchronous) {
+            synchronized (OUTPUT_LOCK) {
+                print(message);
+            }
+            return;
+        }
+        if (thread == null) {
+            startThread();
+        }
+        synchronized (OUTPUT_LOCK) {
+            pending++;
+        }
+        while (!QUEUE.offer(message)) {
+            if (QUEUE.poll() != null) {
+                DROPPED.incrementAndGet();
+                printed();
+            }
+        }
+    }
+
+    /** Waits till all the messages in the queue are printed. */
+    static void flush() {
+        synchronized (OUTPUT_LOCK) {
+            while (pending > 0 && thread != null) {
+                try {
+                    OUTPUT_LOCK.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            reportDropped();
+        }
+    }
+
+    /** Prints the message after the number of the dropped messages. */
+    private static void print(final String message) {
+        reportDropped();
+        System.out.println(message);
+    }
+
+    /** Prints the number of dropped messages, if some were dropped. */
+    private static void reportDropped() {
+        final int dropped = DROPPED.getAndSet(0);
+        if (dropped > 0) {
+            System.out.println("DEBUG: "
+                               + dropped + " debug messages dropped");
+        }
+    }
+
+    /** Counts down the pending messages. */
+    private static void printed() {
+        synchronized (OUTPUT_LOCK) {
+            pending--;
+            if (pending == 0) {
+                OUTPUT_LOCK.notifyAll();
+            }
+        }
+    }
+
+    /** Starts the output thread, if it is not running. */
+    private static synchronized void startThread() {
+        if (thread != null) {
+            return;
+        }
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (true) {
+                    final String message;
+                    try {
+                        message = QUEUE.take();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    synchronized (OUTPUT_LOCK) {
+                        print(message);
+                        printed();
+                    }
+                }
+            }
+        }, "debug-appender");
+        thread.setDaemon(true);
+        thread.start();
+        /* print what is left at exit */
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            @Override
+            public void run() {
+                String message;
+                synchronized (OUTPUT_LOCK) {
+                    while ((message = QUEUE.poll()) != null) {
+                        print(message);
+                    }
+                    reportDropped();
+                }
+            }
+        }));
+    }
+}
@@ -166,7 +166,7 @@ public final class Heartbeat {
         } else {
             cmd = "Heartbeat.enableDopd";
         }
-        final Thread t = host.execCommand(cmd,
+        final SSH.ExecCommandThread t = host.execCommand(cmd,
                                           null,
                                           null,
                                           true,
@@ -30,7 +30,6 @@ import javax.swing.SwingUtilities;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
 
 import ch.ethz.ssh2.Connection;
 import ch.ethz.ssh2.ServerHostKeyVerifier;
@@ -39,9 +38,27 @@ import ch.ethz.ssh2.Session;
 import ch.ethz.ssh2.ChannelCondition;
 import ch.ethz.ssh2.KnownHosts;
 import ch.ethz.ssh2.LocalPortForwarder;
+import ch.ethz.ssh2.LocalStreamForwarder;
+import ch.ethz.ssh2.StreamProxyData;
 import ch.ethz.ssh2.SCPClient;
 import ch.ethz.ssh2.channel.ChannelManager;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -71,8 +88,14 @@ public final class SSH {
     private volatile boolean disconnectForGood = true;
     /** Exit code if command failed. */
     private static final int ERROR_EXIT_CODE = 255;
-    /** Size of the buffer for output of commads. */
-    private static final int EXEC_OUTPUT_BUFFER_SIZE = 8192;
+    /**
+     * Number of characters at the beginning of the output, where the sudo
+     * prompt is searched anywhere. After that only output that ends with
+     * the prompt is checked.
+     */
+    private static final int SUDO_PROMPT_WINDOW = 4096;
+    /** Port of the sshd on the hops after the first one. */
+    private static final int HOP_SSH_PORT = 22;
     /** Last successful password. */
     private String lastPassword = null;
     /** Last successful rsa key. */
@@ -95,6 +118,65 @@ public final class SSH {
     public static final int NO_COMMAND_TIMEOUT = 0;
     /** Sudo prompt. */
     public static final String SUDO_PROMPT = "DRBD MC sudo pwd: ";
+    /** Directory for the uploaded files on the remote host. */
+    private static final String UPLOAD_DIR = "/tmp/";
+    /**
+     * Maximum length of the contents, that createConfigs sends in one
+     * command line. Linux limits one argument to 128KB.
+     */
+    private static final int MAX_CONFIGS_COMMAND_LENGTH = 64 * 1024;
+    /** How long can an idle command thread live, in seconds. */
+    private static final long COMMAND_THREAD_KEEP_ALIVE = 60;
+    /**
+     * Executor, where the commands of all hosts run. The commands are
+     * passed to it only, if there is a free permit on their host, so that
+     * no thread waits here for other commands.
+     */
+    private static final ThreadPoolExecutor COMMAND_EXECUTOR =
+        new ThreadPoolExecutor(Tools.getDefaultInt("SSH.Command.Threads"),
+                               Tools.getDefaultInt("SSH.Command.Threads"),
+                               COMMAND_THREAD_KEEP_ALIVE,
+                               TimeUnit.SECONDS,
+                               new LinkedBlockingQueue<Runnable>(),
+                               new CommandThreadFactory("ssh-command-"));
+    static {
+        COMMAND_EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+    /**
+     * Executor for the commands with output callback. These are status
+     * commands that run all the time, so they don't take the threads of
+     * the command executor.
+     */
+    private static final ThreadPoolExecutor STATUS_EXECUTOR =
+        new ThreadPoolExecutor(0,
+                               Integer.MAX_VALUE,
+                               COMMAND_THREAD_KEEP_ALIVE,
+                               TimeUnit.SECONDS,
+                               new SynchronousQueue<Runnable>(),
+                               new CommandThreadFactory("ssh-status-"));
+    /** Executor for the timeouts of opening the sessions. */
+    private static final ScheduledExecutorService TIMEOUT_EXECUTOR =
+          Executors.newSingleThreadScheduledExecutor(
+                                   new CommandThreadFactory("ssh-timeout-"));
+    /**
+     * Limits how many commands without output callback can run on this host
+     * at the same time. Commands with output callback are status commands
+     * that run all the time.
+     */
+    private final Semaphore commandPermits =
+         new Semaphore(Tools.getDefaultInt("SSH.Command.MaxPerHost"), true);
+    /** Commands that wait for a permit on this host. */
+    private final Deque<ExecCommandThread> pendingCommands =
+                                            new ArrayDeque<ExecCommandThread>();
+    /** Pending commands lock. */
+    private final Lock mPendingCommandsLock = new ReentrantLock();
+    /**
+     * Whether the current thread runs a command with a permit. Nested
+     * synchronous commands of such thread, e.g. from the callbacks, don't
+     * wait for another permit, that could be never freed.
+     */
+    private static final ThreadLocal<Boolean> HOLDS_COMMAND_PERMIT =
+                                                new ThreadLocal<Boolean>();
 
     /** Reconnect. */
     boolean reconnect() {
@@ -117,7 +199,7 @@ public final class SSH {
             return false;
         }
         if (!isConnected()) {
-            Tools.debug(this, "connecting: " + host.getName(), 1);
+            Tools.debug(this, "connecting: {}", 1, host.getName());
             this.callback = null;
             this.progressBar = null;
             this.sshGui = new SSHGui(Tools.getGUIData().getMainFrame(),
@@ -259,7 +341,7 @@ public final class SSH {
             connection.close();
             connection = null;
             mConnectionLock.unlock();
-            Tools.debug(this, "disconnecting: " + host.getName(), 0);
+            Tools.debug(this, "disconnecting: {}", 0, host.getName());
             host.getTerminalPanel().addCommand("logout");
             host.getTerminalPanel().nextCommand();
         }
@@ -282,7 +364,7 @@ public final class SSH {
         } else {
             connection = null;
             mConnectionLock.unlock();
-            Tools.debug(this, "force reconnecting: " + host.getName(), 0);
+            Tools.debug(this, "force reconnecting: {}", 0, host.getName());
             host.getTerminalPanel().addCommand("logout");
             host.getTerminalPanel().nextCommand();
         }
@@ -297,7 +379,7 @@ public final class SSH {
             disconnectForGood = true;
             connection = null;
             mConnectionLock.unlock();
-            Tools.debug(this, "force disconnecting: " + host.getName(), 0);
+            Tools.debug(this, "force disconnecting: {}", 0, host.getName());
             host.getTerminalPanel().addCommand("logout");
             host.getTerminalPanel().nextCommand();
         }
@@ -317,7 +399,7 @@ public final class SSH {
     }
 
     /** This class is a thread that executes commands. */
-    public final class ExecCommandThread extends Thread {
+    public final class ExecCommandThread implements Runnable {
         /** Command that should be executed. */
         private String command;
         /** After the exec callback. */
@@ -336,6 +418,10 @@ public final class SSH {
         private Session sess = null;
         /** Timeout for ssh command. */
         private final int sshCommandTimeout;
+        /** Counted down, when the command finished. */
+        private final CountDownLatch doneLatch = new CountDownLatch(1);
+        /** Whether this command has taken a permit of this host. */
+        private volatile boolean permitTaken = false;
 
        /**
         * Executes command on the host.
@@ -356,11 +442,13 @@ public final class SSH {
             this.outputVisible = outputVisible;
             int exitCode = 100;
             final StringBuilder res = new StringBuilder("");
+            final boolean tunnelled;
             mConnectionLock.lock();
             if (connection == null) {
                 mConnectionLock.unlock();
                 return new SSHOutput("SSH.NotConnected", 1);
             } else {
+                tunnelled = connection.isTunnelled();
                 mConnectionLock.unlock();
             }
             if ("installGuiHelper".equals(command)) {
@@ -380,29 +468,43 @@ public final class SSH {
                    to enter sudo password by every command.
                    (It would be exposed) */
                 thisSession.requestPTY("dumb", 0, 0, 0, 0, null);
-                Tools.debug(this, "exec command: "
-                                  + host.getName()
-                                  + ": "
-                                  + host.getSudoCommand(
-                                               host.getHoppedCommand(command),
-                                               true),
-                                  2);
+                /* the tunnelled connection goes to the last hop already */
+                final String hoppedCommand;
+                if (tunnelled) {
+                    hoppedCommand = command;
+                } else {
+                    hoppedCommand = host.getHoppedCommand(command);
+                }
+                if (Tools.isDebug(this, 2)) {
+                    Tools.debug(this, "exec command: "
+                                      + host.getName()
+                                      + ": "
+                                      + host.getSudoCommand(hoppedCommand,
+                                                            true),
+                                      2);
+                }
                 thisSession.execCommand("bash -c '"
                                         + Tools.escapeSingleQuotes(
                                                             "export LC_ALL=C;"
-                                        + host.getSudoCommand(
-                                               host.getHoppedCommand(command),
-                                               false), 1) + "'");
-                final InputStream stdout = thisSession.getStdout();
+                                        + host.getSudoCommand(hoppedCommand,
+                                                              false),
+                                                   1) + "'");
+                final SessionOutputReader stdout =
+                            new SessionOutputReader(thisSession.getStdout());
                 final java.io.OutputStream stdin = thisSession.getStdin();
-                final InputStream stderr = thisSession.getStderr();
-                //byte[] buff = new byte[8192];
-                final byte[] buff = new byte[EXEC_OUTPUT_BUFFER_SIZE];
+                final SessionOutputReader stderr =
+                            new SessionOutputReader(thisSession.getStderr());
                 String sudoPwd = host.getSudoPassword();
                 boolean skipNextLine = false;
+                /* sudo asks for the password usually before the command
+                   starts, so only the beginning of the output is searched
+                   for the prompt. Later sudo calls in the command stop and
+                   wait after the prompt, so it is at the end of the output
+                   then. */
+                int sudoPromptWindow = SUDO_PROMPT_WINDOW;
+                String lastOutput = null;
                 while (true) {
-                    if ((stdout.available() == 0)
-                        && (stderr.available() == 0)) {
+                    if (!stdout.isAvailable() && !stderr.isAvailable()) {
                         /* Even though currently there is no data available,
                          * it may be that new data arrives and the session's
                          * underlying channel is closed before we call
@@ -453,84 +555,70 @@ public final class SSH {
 
                     }
 
-                    /* If you below replace "while" with "if", then the way
-                     * the output appears on the local stdout and stder streams
-                     * is more "balanced". Addtionally reducing the buffer size
-                     * will also improve the interleaving, but performance will
-                     * slightly suffer. OKOK, that all matters only if you get
-                     * HUGE amounts of stdout and stderr data =)
-                     */
-
                     /* stdout */
-                    final StringBuilder output = new StringBuilder("");
-                    while (stdout.available() > 0 && !cancelIt) {
-                        final int len = stdout.read(buff);
-
-                        if (len > 0) {
-                            final String buffString =
-                                            new String(buff, 0, len, "UTF-8");
-                            output.append(buffString);
-
-                            if (outputVisible) {
-                                host.getTerminalPanel().addContent(buffString);
-                            }
-                        }
+                    String output = stdout.readAvailable();
+                    if (output != null && outputVisible) {
+                        host.getTerminalPanel().addContent(output);
                     }
-                    final int index = output.indexOf(SUDO_PROMPT);
-                    if (index >= 0) {
-                        if (sudoPwd == null) {
-                            enterSudoPassword();
-                        }
-                        final String pwd = host.getSudoPassword() + "\n";
-                        sudoPwd = null; // TODO: do I want to keep the pwd?
-                        stdin.write(pwd.getBytes());
-                        skipNextLine = true;
-                        continue;
-                    } else {
-                        if (skipNextLine) {
-                            /* this is the "enter" after pwd */
-                            skipNextLine = false;
+                    if (output != null) {
+                        if ((sudoPromptWindow > 0
+                             && output.indexOf(SUDO_PROMPT) >= 0)
+                            || endsWithSudoPrompt(lastOutput, output)) {
+                            if (sudoPwd == null) {
+                                enterSudoPassword();
+                            }
+                            final String pwd = host.getSudoPassword() + "\n";
+                            sudoPwd = null; // TODO: do I want to keep the pwd?
+                            stdin.write(pwd.getBytes());
+                            skipNextLine = true;
+                            lastOutput = null;
                             continue;
                         }
+                        sudoPromptWindow -= output.length();
+                        lastOutput = output;
+                    }
+                    if (skipNextLine) {
+                        /* this is the "enter" after pwd */
                         skipNextLine = false;
+                        continue;
                     }
 
                     /* stderr */
-                    final StringBuilder errOutput = new StringBuilder("");
-                    while (stderr.available() > 0 && !cancelIt) {
-                        // this is unreachable.
-                        // stdout and stderr are mixed in the stdout
-                        // if pty is requested.
-                        final int len = stderr.read(buff);
-                        if (len > 0) {
-                            final String buffString =
-                                            new String(buff, 0, len, "UTF-8");
-                            output.append(buffString);
-
-                            if (outputVisible) {
-                                host.getTerminalPanel().addContentErr(
-                                                                   buffString);
-                            }
+                    // this is unreachable.
+                    // stdout and stderr are mixed in the stdout
+                    // if pty is requested.
+                    final String errOutput = stderr.readAvailable();
+                    if (errOutput != null) {
+                        if (outputVisible) {
+                            host.getTerminalPanel().addContentErr(errOutput);
+                        }
+                        if (output == null) {
+                            output = errOutput;
+                        } else {
+                            output += errOutput;
                         }
-                    }
-                    res.append(errOutput);
-
-                    if (newOutputCallback != null && !cancelIt) {
-                        Tools.debug(this, "output" + exitCode + ": "
-                                          + host.getName()
-                                          + ": "
-                                          + output.toString(),
-                                          2);
-                        newOutputCallback.output(output.toString());
                     }
 
                     if (cancelIt) {
                         return new SSHOutput("", 130);
                     }
-
-                    if (newOutputCallback == null) {
-                        res.append(output);
+                    if (output != null) {
+                        handleOutput(output, res);
+                    }
+                }
+                final String rest = stdout.finish();
+                if (rest != null) {
+                    if (outputVisible) {
+                        host.getTerminalPanel().addContent(rest);
                     }
+                    handleOutput(rest, res);
+                }
+                final String errRest = stderr.finish();
+                if (errRest != null) {
+                    if (outputVisible) {
+                        host.getTerminalPanel().addContentErr(errRest);
+                    }
+                    handleOutput(errRest, res);
                 }
 
                 if (outputVisible) {
@@ -551,14 +639,30 @@ public final class SSH {
                 exitCode = ERROR_EXIT_CODE;
             }
             final String outputString = res.toString();
-            Tools.debug(this, "output" + exitCode + ": "
-                              + host.getName()
-                              + ": "
-                              + outputString,
-                              2);
+            Tools.debug(this, "output{}: {}: {}", 2,
+                        exitCode, host.getName(), outputString);
             return new SSHOutput(outputString, exitCode);
         }
 
+        /**
+         * Passes the output to the new output callback, or appends it to the
+         * result if there is no callback.
+         */
+        private void handleOutput(final String output,
+                                  final StringBuilder res) {
+            if (newOutputCallback == null) {
+                res.append(output);
+            } else if (!cancelIt) {
+                Tools.debug(this, "output: {}: {}", 2, host.getName(), output);
+                newOutputCallback.output(output);
+            }
+        }
+
+        /** Returns whether the session was canceled. */
+        public boolean isCancelled() {
+            return cancelIt;
+        }
+
         /** Cancel the session. */
         public void cancel() {
             cancelIt = true;
@@ -581,7 +685,7 @@ public final class SSH {
         throws java.io.IOException {
             super();
             this.command = command;
-            Tools.debug(this, "command: " + command, 1);
+            Tools.debug(this, "command: {}", 1, command);
             this.execCallback = execCallback;
             this.newOutputCallback = newOutputCallback;
             this.outputVisible = outputVisible;
@@ -607,21 +711,138 @@ public final class SSH {
          */
         @Override
         public void run() {
-            if (reconnect()) {
-                mConnectionLock.lock();
-                if (connection == null) {
-                    mConnectionLock.unlock();
-                    if (execCallback != null) {
-                        execCallback.doneError("not connected", 139);
+            if (permitTaken) {
+                HOLDS_COMMAND_PERMIT.set(Boolean.TRUE);
+            }
+            try {
+                if (isCanceledBeforeStart()) {
+                    return;
+                }
+                if (reconnect()) {
+                    if (isCanceledBeforeStart()) {
+                        return;
                     }
-                } else {
-                    final MyConnection conn = connection;
-                    mConnectionLock.unlock();
-                    exec(conn);
+                    mConnectionLock.lock();
+                    if (connection == null) {
+                        mConnectionLock.unlock();
+                        if (execCallback != null) {
+                            execCallback.doneError("not connected", 139);
+                        }
+                    } else {
+                        final MyConnection conn = connection;
+                        mConnectionLock.unlock();
+                        exec(conn);
+                    }
+                }
+            } finally {
+                if (permitTaken) {
+                    HOLDS_COMMAND_PERMIT.remove();
+                    permitTaken = false;
+                    commandPermits.release();
+                    dispatchCommands();
+                }
+                doneLatch.countDown();
+            }
+        }
+
+        /**
+         * Returns true and calls the exec callback, if the command was
+         * canceled, before it was started.
+         */
+        private boolean isCanceledBeforeStart() {
+            if (!cancelIt) {
+                return false;
+            }
+            if (execCallback != null) {
+                execCallback.doneError("", 130);
+            }
+            return true;
+        }
+
+        /**
+         * Returns whether the command needs a permit. Commands with output
+         * callback are status commands, that run all the time.
+         */
+        private boolean isLimited() {
+            return newOutputCallback == null;
+        }
+
+        /**
+         * Starts the command. Status commands start in the status executor
+         * right away, the others wait in the queue of this host, till there
+         * is a free permit.
+         */
+        void start() {
+            if (!isLimited()) {
+                STATUS_EXECUTOR.execute(this);
+                return;
+            }
+            mPendingCommandsLock.lock();
+            try {
+                pendingCommands.addLast(this);
+            } finally {
+                mPendingCommandsLock.unlock();
+            }
+            if (commandPermits.availablePermits() == 0) {
+                Tools.debug(this, "{}: command waits: {}", 1,
+                            host.getName(), getCommandQueueInfo());
+            }
+            dispatchCommands();
+        }
+
+        /**
+         * Runs the command in the calling thread and waits for a permit.
+         * If the calling thread runs a command with a permit already, it
+         * would wait for itself, so the command runs without a permit.
+         */
+        void runInThisThread() {
+            if (isLimited()
+                && !Boolean.TRUE.equals(HOLDS_COMMAND_PERMIT.get())) {
+                if (!acquireCommandPermit()) {
+                    doneLatch.countDown();
+                    return;
                 }
+                permitTaken = true;
+            }
+            run();
+        }
+
+        /** Waits till the command finishes. */
+        public void join() throws InterruptedException {
+            doneLatch.await();
+        }
+
+        /**
+         * Waits at most millis milliseconds till the command finishes, 0
+         * means to wait forever.
+         */
+        public void join(final long millis) throws InterruptedException {
+            if (millis == 0) {
+                doneLatch.await();
+            } else {
+                doneLatch.await(millis, TimeUnit.MILLISECONDS);
             }
         }
 
+        /**
+         * Waits for a free slot on this host. Returns false if the thread
+         * was interrupted. This is called only from the threads that wait
+         * for the command anyway.
+         */
+        private boolean acquireCommandPermit() {
+            if (!commandPermits.tryAcquire()) {
+                Tools.debug(this, "{}: command waits: {}", 1,
+                            host.getName(), getCommandQueueInfo());
+                try {
+                    commandPermits.acquire();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            return true;
+        }
+
         /** Executes the command. */
         private void exec(final MyConnection conn) {
             // ;;; separates commands, that are to be executed one after one,
@@ -631,21 +852,22 @@ public final class SSH {
             for (int i = 0; i < commands.length; i++) {
                 final Boolean[] cancelTimeout = new Boolean[1];
                 cancelTimeout[0] = false;
-                final Thread tt = new Thread(new Runnable() {
-                    @Override
-                    public void run() {
-                        Tools.sleep(Tools.getDefaultInt("SSH.ConnectTimeout"));
-                        if (!cancelTimeout[0]) {
-                            Tools.debug(this,
-                                        host.getName()
-                                        + ": open ssh session: timeout.",
-                                        1);
-                            cancelTimeout[0] = true;
-                            conn.dmcCancel();
+                final ScheduledFuture<?> openTimeout =
+                    TIMEOUT_EXECUTOR.schedule(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (!cancelTimeout[0]) {
+                                Tools.debug(this,
+                                            "{}: open ssh session: timeout.",
+                                            1,
+                                            host.getName());
+                                cancelTimeout[0] = true;
+                                conn.dmcCancel();
+                            }
                         }
-                    }
-                });
-                tt.start();
+                    },
+                    Tools.getDefaultInt("SSH.ConnectTimeout"),
+                    TimeUnit.MILLISECONDS);
                 try {
                     /* it may hang here if we lost connection, so it will be
                      * interrupted after a timeout. */
@@ -657,7 +879,9 @@ public final class SSH {
                         throw new java.io.IOException("open session failed");
                     }
                     cancelTimeout[0] = true;
+                    openTimeout.cancel(false);
                 } catch (java.io.IOException e) {
+                    openTimeout.cancel(false);
                     mConnectionLock.lock();
                     connection = null;
                     mConnectionLock.unlock();
@@ -736,12 +960,9 @@ public final class SSH {
             Tools.appError("Can not execute command: " + command, "", e);
             return new SSHOutput("", 102);
         }
-        execCommandThread.start();
-        try {
-            execCommandThread.join();
-        } catch (java.lang.InterruptedException e) {
-            Thread.currentThread().interrupt();
-        }
+        /* the caller waits anyway, so it runs in this thread. Nested calls
+         * from the command threads don't take another permit. */
+        execCommandThread.runInThisThread();
         return new SSHOutput(answer[0], exitCode[0]);
     }
 
@@ -768,7 +989,7 @@ public final class SSH {
             return null;
         }
         final String realCommand = host.replaceVars(command);
-        Tools.debug(this, "real command: " + realCommand, 2);
+        Tools.debug(this, "real command: {}", 2, realCommand);
         ExecCommandThread execCommandThread;
         try {
             execCommandThread = new ExecCommandThread(realCommand,
@@ -781,7 +1002,6 @@ public final class SSH {
             Tools.appError("Can not execute command: " + realCommand, "", e);
             return null;
         }
-        execCommandThread.setPriority(Thread.MIN_PRIORITY);
         execCommandThread.start();
         return execCommandThread;
     }
@@ -825,7 +1045,6 @@ public final class SSH {
             Tools.appError("Can not execute command: " + realCommand, "", e);
             return null;
         }
-        execCommandThread.setPriority(Thread.MIN_PRIORITY);
         execCommandThread.start();
         return execCommandThread;
     }
@@ -1048,11 +1267,41 @@ public final class SSH {
 
     /** Connection class that can cancel it's connection during openSession. */
     static class MyConnection extends Connection {
+        /**
+         * Connections to the previous hops, through which this connection
+         * is tunnelled, the first hop first.
+         */
+        private final List<Connection> hopConnections =
+                                                new ArrayList<Connection>();
+
         /** Creates new MyConnection object. */
         MyConnection(final String hostname, final int port) {
             super(hostname, port);
         }
 
+        /**
+         * Returns whether this connection is tunnelled to the last hop, so
+         * that the commands don't have to be hopped.
+         */
+        boolean isTunnelled() {
+            return !hopConnections.isEmpty();
+        }
+
+        /**
+         * Sets the previous hops, through which this connection is
+         * tunnelled. They are closed, when this connection is closed.
+         */
+        void setHops(final List<Connection> connections) {
+            hopConnections.addAll(connections);
+        }
+
+        /** Closes the connection and the previous hops. */
+        @Override
+        public void close() {
+            super.close();
+            closeHops(hopConnections);
+        }
+
         /** Cancel from application. */
         void dmcCancel() {
             /* public getChannelManager() { return cm }
@@ -1091,6 +1340,129 @@ public final class SSH {
             cancelIt = true;
         }
 
+        /**
+         * Connects the other hops through the direct-tcpip channels of the
+         * previous hops and returns the connection to the last hop. The
+         * channels are used as streams, no local port is opened, so that
+         * other local processes can't get to the hops through the tunnel.
+         *
+         * The hops are authenticated only with the key or the password of
+         * the first hop, the user is not asked again. If it doesn't work for
+         * some hop, null is returned and the commands are hopped with nested
+         * ssh commands instead, as before, which can use the forwarded ssh
+         * agent.
+         */
+        private MyConnection connectHops(final MyConnection firstConn,
+                                         final int connectTimeout,
+                                         final int kexTimeout) {
+            final List<Connection> hopConns = new ArrayList<Connection>();
+            final List<LocalStreamForwarder> forwarders =
+                                        new ArrayList<LocalStreamForwarder>();
+            Connection prevConn = firstConn;
+            try {
+                for (int hop = 1; hop < host.getHops(); hop++) {
+                    final String hopIp = host.getIp(hop);
+                    final String hopUsername = host.getUsername(hop);
+                    Tools.debug(this, "connect hop: {}", 1, hopIp);
+                    final LocalStreamForwarder forwarder =
+                          prevConn.createLocalStreamForwarder(hopIp,
+                                                              HOP_SSH_PORT);
+                    forwarders.add(forwarder);
+                    final MyConnection hopConn =
+                                        new MyConnection(hopIp, HOP_SSH_PORT);
+                    hopConns.add(hopConn);
+                    hopConn.setProxyData(new StreamProxyData(forwarder));
+                    hopConn.setCompression(host.isCompression());
+                    hopConn.connect(new HopVerifier(hopIp),
+                                    connectTimeout,
+                                    kexTimeout);
+                    if (!authenticateHop(hopConn, hopUsername)) {
+                        throw new IOException(
+                                  "the credentials of the first hop failed: "
+                                  + hopUsername + "@" + hopIp);
+                    }
+                    prevConn = hopConn;
+                }
+            } catch (IOException e) {
+                Tools.info(host.getName() + ": could not tunnel to the hops ("
+                           + e.getMessage()
+                           + "), the commands will be hopped with ssh");
+                /* the forwarders of the connections, that didn't connect */
+                for (int i = forwarders.size() - 1; i >= 0; i--) {
+                    try {
+                        forwarders.get(i).close();
+                    } catch (IOException e2) {
+                        Tools.debug(this,
+                                    "could not close forwarder: {}",
+                                    1,
+                                    e2.getMessage());
+                    }
+                }
+                closeHops(hopConns);
+                return null;
+            }
+            final MyConnection lastConn =
+                       (MyConnection) hopConns.remove(hopConns.size() - 1);
+            hopConns.add(0, firstConn);
+            lastConn.setHops(hopConns);
+            return lastConn;
+        }
+
+        /**
+         * Authenticates the hop with the key or the password, that was used
+         * for the first hop. The user is not asked for other credentials,
+         * false is returned, if these don't work.
+         */
+        private boolean authenticateHop(final Connection hopConn,
+                                        final String hopUsername)
+        throws IOException {
+            if (lastDSAKey != null || lastRSAKey != null) {
+                if (!hopConn.isAuthMethodAvailable(hopUsername, "publickey")) {
+                    return false;
+                }
+                final File keyFile;
+                final String key;
+                if (lastDSAKey != null) {
+                    keyFile = new File(Tools.getConfigData().getIdDSAPath());
+                    key = lastDSAKey;
+                } else {
+                    keyFile = new File(Tools.getConfigData().getIdRSAPath());
+                    key = lastRSAKey;
+                }
+                return keyFile.exists()
+                       && hopConn.authenticateWithPublicKey(hopUsername,
+                                                            keyFile,
+                                                            key);
+            }
+            final String password = lastPassword;
+            if (password == null) {
+                return false;
+            }
+            if (hopConn.isAuthMethodAvailable(hopUsername, "password")) {
+                return hopConn.authenticateWithPassword(hopUsername, password);
+            }
+            if (hopConn.isAuthMethodAvailable(hopUsername,
+                                              "keyboard-interactive")) {
+                return hopConn.authenticateWithKeyboardInteractive(
+                    hopUsername,
+                    new InteractiveCallback() {
+                        public String[] replyToChallenge(
+                                                final String name,
+                                                final String instruction,
+                                                final int numPrompts,
+                                                final String[] prompt,
+                                                final boolean[] echo) {
+                            final String[] result = new String[numPrompts];
+                            for (int i = 0; i < numPrompts; i++) {
+                                result[i] = password;
+                            }
+                            return result;
+                        }
+                    });
+            }
+            return false;
+        }
+
         /** Start connection in the thread. */
         @Override
         public void run() {
@@ -1104,7 +1476,7 @@ public final class SSH {
 
             try {
                 /* connect and verify server host key (with callback) */
-                Tools.debug(this, "verify host keys: " + hostname, 1);
+                Tools.debug(this, "verify host keys: {}", 1, hostname);
                 final String[] hostkeyAlgos =
                     Tools.getConfigData().getKnownHosts().
                         getPreferredServerHostkeyAlgorithmOrder(hostname);
@@ -1112,6 +1484,7 @@ public final class SSH {
                 if (hostkeyAlgos != null) {
                     conn.setServerHostKeyAlgorithms(hostkeyAlgos);
                 }
+                conn.setCompression(host.isCompression());
                 final int connectTimeout =
                                     Tools.getDefaultInt("SSH.ConnectTimeout");
                 final int kexTimeout = Tools.getDefaultInt("SSH.KexTimeout");
@@ -1374,8 +1747,16 @@ public final class SSH {
                     host.setConnected();
                 } else {
                     //  authentication ok.
+                    MyConnection lastConn = conn;
+                    if (host.getHops() > 1) {
+                        final MyConnection tunnelledConn =
+                                connectHops(conn, connectTimeout, kexTimeout);
+                        if (tunnelledConn != null) {
+                            lastConn = tunnelledConn;
+                        }
+                    }
                     mConnectionLock.lock();
-                    connection = conn;
+                    connection = lastConn;
                     mConnectionLock.unlock();
                     host.setConnected();
                     SwingUtilities.invokeLater(new Runnable() {
@@ -1391,12 +1772,11 @@ public final class SSH {
                     if (callback != null) {
                         callback.done(0);
                     }
-                    Tools.debug(this,
-                                host.getName() + ": authentication ok",
-                                1);
+                    Tools.debug(this, "{}: authentication ok", 1,
+                                host.getName());
                 }
             } catch (IOException e) {
-                Tools.debug(this, "connecting: " + e.getMessage(), 1);
+                Tools.debug(this, "connecting: {}", 1, e.getMessage());
                 connectionFailed = true;
                 if (!cancelIt) {
                     host.getTerminalPanel().addCommandOutput(e.getMessage()
@@ -1417,6 +1797,74 @@ public final class SSH {
         }
     }
 
+    /**
+     * This ServerHostKeyVerifier verifies host keys of the hops after the
+     * first one. The connections to these hops go to the local forwarders,
+     * so the keys are verified for the ip of the hop. Like with the
+     * "StrictHostKeyChecking no" option of the hopped ssh commands, new keys
+     * are accepted without asking, but changed keys are rejected.
+     */
+    static class HopVerifier implements ServerHostKeyVerifier {
+        /** Ip of the hop. */
+        private final String hopIp;
+
+        /** Prepares a new <code>HopVerifier</code> object. */
+        HopVerifier(final String hopIp) {
+            this.hopIp = hopIp;
+        }
+
+        /** Verifies the keys. */
+        public boolean verifyServerHostKey(final String hostname,
+                                           final int port,
+                                           final String serverHostKeyAlgorithm,
+                                           final byte[] serverHostKey)
+        throws Exception {
+            final KnownHosts knownHosts =
+                                    Tools.getConfigData().getKnownHosts();
+            switch (knownHosts.verifyHostkey(hopIp,
+                                             serverHostKeyAlgorithm,
+                                             serverHostKey)) {
+            case KnownHosts.HOSTKEY_IS_OK:
+                return true;
+
+            case KnownHosts.HOSTKEY_IS_NEW:
+                knownHosts.addHostkey(
+                          new String[] {KnownHosts.createHashedHostname(hopIp)},
+                          serverHostKeyAlgorithm,
+                          serverHostKey);
+                return true;
+
+            default:
+                Tools.appWarning("hostkey for " + hopIp + " has changed");
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Closes the connections of the hops, last first. The forwarders to the
+     * hops are closed with their connections.
+     */
+    private static void closeHops(final List<Connection> connections) {
+        for (int i = connections.size() - 1; i >= 0; i--) {
+            connections.get(i).close();
+        }
+    }
+
+    /**
+     * Returns whether the output ends with the sudo prompt. The prompt can
+     * be split between the last and the current output.
+     */
+    static boolean endsWithSudoPrompt(final String last, final String output) {
+        final int missing = SUDO_PROMPT.length() - output.length();
+        if (missing <= 0) {
+            return output.endsWith(SUDO_PROMPT);
+        }
+        return last != null
+               && SUDO_PROMPT.endsWith(output)
+               && last.endsWith(SUDO_PROMPT.substring(0, missing));
+    }
+
     /** Enter sudo password. */
     void enterSudoPassword() {
         if (host.isUseSudo() != null && host.isUseSudo()) {
@@ -1507,6 +1955,161 @@ public final class SSH {
             postCommand);
     }
 
+    /**
+     * Creates several config files. The keys of the map are the full paths
+     * of the files. The contents are uploaded with scp and copied in place
+     * with one command. If they can't be uploaded, they are sent on the
+     * command line and the files are split into several commands, so that
+     * the command line doesn't get too long. The files are written, only
+     * if the preCommand succeeded, and the postCommand runs, only if all
+     * files were written. Returns whether all commands succeeded.
+     */
+    public boolean createConfigs(final Map<String, String> configs,
+                                 final String mode,
+                                 final String preCommand,
+                                 final String postCommand) {
+        if (!isConnected()) {
+            return false;
+        }
+        final List<String> uploadedFiles = new ArrayList<String>();
+        /* length of the written files in the command, after it is escaped
+         * for bash -c */
+        int length = 0;
+        final StringBuilder commands = new StringBuilder(1000);
+        final StringBuilder debugCommands = new StringBuilder(200);
+        if (preCommand != null) {
+            commands.append(preCommand);
+            debugCommands.append(preCommand);
+        } else {
+            commands.append("true");
+            debugCommands.append("true");
+        }
+        for (final Map.Entry<String, String> config : configs.entrySet()) {
+            final String fileName = config.getKey();
+            final StringBuilder tail = new StringBuilder(100);
+            tail.append('>');
+            tail.append(fileName);
+            tail.append(".new");
+            if (mode != null) {
+                tail.append(" && chmod ");
+                tail.append(mode);
+                tail.append(' ');
+                tail.append(fileName);
+                tail.append(".new");
+            }
+            tail.append(" && mv ");
+            tail.append(fileName);
+            tail.append(".new ");
+            tail.append(fileName);
+            final String uploadedFile = upload(config.getValue() + "\n");
+            final String write;
+            final String debugWrite;
+            if (uploadedFile == null) {
+                write = " && echo \""
+                        + Tools.escapeQuotes(config.getValue(), 1)
+                        + '"' + tail;
+                debugWrite = " && echo \"...\"" + tail;
+            } else {
+                write = " && cat " + uploadedFile + tail;
+                debugWrite = write;
+            }
+            final int writeLength = Tools.escapeQuotes(write, 1).length();
+            if (length > 0
+                && length + writeLength > MAX_CONFIGS_COMMAND_LENGTH) {
+                if (!execConfigsCommand(commands,
+                                        debugCommands,
+                                        uploadedFiles)) {
+                    if (uploadedFile != null) {
+                        execCommandAndWait("rm -f " + uploadedFile,
+                                           false,
+                                           false,
+                                           DEFAULT_COMMAND_TIMEOUT);
+                    }
+                    return false;
+                }
+                commands.append("true");
+                debugCommands.append("true");
+                length = 0;
+            }
+            if (uploadedFile != null) {
+                uploadedFiles.add(uploadedFile);
+            }
+            length += writeLength;
+            commands.append(write);
+            debugCommands.append(debugWrite);
+        }
+        if (postCommand != null) {
+            commands.append(" && ");
+            commands.append(postCommand);
+            debugCommands.append(" && ");
+            debugCommands.append(postCommand);
+        }
+        return execConfigsCommand(commands, debugCommands, uploadedFiles);
+    }
+
+    /**
+     * Runs the command of createConfigs and removes the uploaded files
+     * afterwards. Returns whether it succeeded. The builders and the list
+     * are cleared for the next command.
+     */
+    private boolean execConfigsCommand(final StringBuilder commands,
+                                       final StringBuilder debugCommands,
+                                       final List<String> uploadedFiles) {
+        final StringBuilder command = new StringBuilder(
+                                        commands.length() + 100);
+        if (!uploadedFiles.isEmpty()) {
+            command.append("trap 'rm -f");
+            for (final String uploadedFile : uploadedFiles) {
+                command.append(' ');
+                command.append(uploadedFile);
+            }
+            command.append("' EXIT;");
+        }
+        command.append(commands);
+        Tools.debug(this, debugCommands.toString(), 1);
+        commands.delete(0, commands.length());
+        debugCommands.delete(0, debugCommands.length());
+        uploadedFiles.clear();
+        final SSHOutput ret = execCommandAndWait(
+                                DistResource.SUDO + "bash -c \""
+                                + Tools.escapeQuotes(command.toString(), 1)
+                                + "\"",
+                                false,
+                                false,
+                                DEFAULT_COMMAND_TIMEOUT);
+        if (ret.getExitCode() != 0) {
+            Tools.debug(this, "create configs failed: {}: {}", 1,
+                        ret.getExitCode(), ret.getOutput());
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Uploads the content to a new file in the /tmp/ dir on the remote host
+     * with scp, so that it doesn't have to be escaped and sent on the
+     * command line. Returns the file name or null, if it could not be
+     * uploaded and it should be sent on the command line.
+     */
+    private String upload(final String content) {
+        final MyConnection conn = connection;
+        if (conn == null || (!conn.isTunnelled() && host.getHops() > 1)) {
+            /* scp would go only to the first hop */
+            return null;
+        }
+        final String fileName = "lcmc-upload-" + Tools.getRandomSecret(16);
+        try {
+            new SCPClient(conn).put(content.getBytes("UTF-8"),
+                                    fileName,
+                                    UPLOAD_DIR,
+                                    "0600");
+        } catch (IOException e) {
+            Tools.debug(this, "scp upload failed: {}", 1, e.getMessage());
+            return null;
+        }
+        return UPLOAD_DIR + fileName;
+    }
+
     /**
      * Copies file to the /tmp/ dir on the remote host.
      *
@@ -1568,7 +2171,7 @@ public final class SSH {
         if (installCommand == null) {
             installCommand = "mv " + remoteFilename + ".new " + remoteFilename;
         }
-        final String commandTail = "\">" + remoteFilename + ".new"
+        final String commandTail = ">" + remoteFilename + ".new"
                                    + modeString
 
                                    + "&& "
@@ -1576,17 +2179,29 @@ public final class SSH {
 
                                    + postCommandString
                                    + backupString.toString();
-        Tools.debug(this, commands.toString()
-                          + "echo \""
-                          + "..."
-                          + commandTail, 1);
-        final Thread t = execCommand(
+        final String uploadedFile = upload(fileContent + "\n");
+        final String command;
+        if (uploadedFile == null) {
+            Tools.debug(this, commands.toString()
+                              + "echo \""
+                              + "..."
+                              + "\""
+                              + commandTail, 1);
+            command = commands.toString()
+                      + "echo \""
+                      + Tools.escapeQuotes(fileContent, 1)
+                      + "\""
+                      + commandTail;
+        } else {
+            command = "trap 'rm -f " + uploadedFile + "' EXIT;"
+                      + commands.toString()
+                      + "cat " + uploadedFile
+                      + commandTail;
+            Tools.debug(this, command, 1);
+        }
+        final ExecCommandThread t = execCommand(
                             DistResource.SUDO + "bash -c \""
-                            + Tools.escapeQuotes(
-                                commands.toString()
-                                + "echo \""
-                                + Tools.escapeQuotes(fileContent, 1)
-                                + commandTail, 1)
+                            + Tools.escapeQuotes(command, 1)
                             + "\"",
                             new ExecCallback() {
                                 @Override
@@ -1682,8 +2297,65 @@ public final class SSH {
 
     }
 
+    /**
+     * Passes the pending commands of this host to the command executor, as
+     * long as there are free permits.
+     */
+    private void dispatchCommands() {
+        while (true) {
+            final ExecCommandThread next;
+            mPendingCommandsLock.lock();
+            try {
+                if (pendingCommands.isEmpty()
+                    || !commandPermits.tryAcquire()) {
+                    return;
+                }
+                next = pendingCommands.pollFirst();
+            } finally {
+                mPendingCommandsLock.unlock();
+            }
+            next.permitTaken = true;
+            COMMAND_EXECUTOR.execute(next);
+        }
+    }
+
     /** Returns whether connection was canceled. */
     public boolean isConnectionCanceled() {
         return disconnectForGood;
     }
+
+    /**
+     * Returns info about the command executor: running, queued and
+     * completed commands, and the running status commands.
+     */
+    public static String getCommandQueueInfo() {
+        return "running: " + COMMAND_EXECUTOR.getActiveCount()
+               + ", queued: " + COMMAND_EXECUTOR.getQueue().size()
+               + ", completed: " + COMMAND_EXECUTOR.getCompletedTaskCount()
+               + ", threads: " + COMMAND_EXECUTOR.getPoolSize()
+               + ", status: " + STATUS_EXECUTOR.getActiveCount();
+    }
+
+    /** Creates low priority daemon threads for the commands. */
+    private static final class CommandThreadFactory implements ThreadFactory {
+        /** Prefix of the thread names. */
+        private final String prefix;
+        /** Number of the next thread. */
+        private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+        /** Prepares a new <code>CommandThreadFactory</code> object. */
+        CommandThreadFactory(final String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            final Thread thread =
+                    new Thread(runnable,
+                               prefix + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        }
+    }
 }
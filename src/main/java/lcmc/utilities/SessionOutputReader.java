@@ -0,0 +1,133 @@
+/*
+ * This file is part of LCMC by Rasto Levrinc.
+ *
+ * Copyright (C) 2013, Rastislav Levrinc
+ *
+ * LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.utilities;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * This class reads the output of a ssh session stream. The buffers and the
+ * decoder are allocated once per stream and reused for every read. Bytes of
+ * a multi-byte character, that was split between two reads, are kept in the
+ * byte buffer, till the rest of the character arrives.
+ *
+ * @author Rasto Levrinc
+ * @version $Id$
+ *
+ */
+final class SessionOutputReader {
+    /** Size of the buffers. */
+    private static final int BUFFER_SIZE = 8192;
+    /** Encoding of the output. */
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+    /** The stream. */
+    private final InputStream in;
+    /** Read bytes, including the not yet decoded rest of the last read. */
+    private final ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+    /** Decoded characters. */
+    private final CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+    /** Output of one read. */
+    private final StringBuilder output = new StringBuilder(BUFFER_SIZE);
+    /** Decoder. */
+    private final CharsetDecoder decoder =
+                CHARSET.newDecoder()
+                       .onMalformedInput(CodingErrorAction.REPLACE)
+                       .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    /** Prepares a new <code>SessionOutputReader</code> object. */
+    SessionOutputReader(final InputStream in) {
+        this.in = in;
+    }
+
+    /** Returns whether there are data that can be read without blocking. */
+    boolean isAvailable() throws IOException {
+        return in.available() > 0;
+    }
+
+    /**
+     * Reads and decodes all data that are available. Returns null, if there
+     * were no complete characters.
+     */
+    String readAvailable() throws IOException {
+        output.setLength(0);
+        while (in.available() > 0) {
+            final int len = in.read(bytes.array(),
+                                    bytes.arrayOffset() + bytes.position(),
+                                    bytes.remaining());
+            if (len <= 0) {
+                break;
+            }
+            bytes.position(bytes.position() + len);
+            bytes.flip();
+            decode(false);
+            bytes.compact();
+        }
+        return getOutput();
+    }
+
+    /**
+     * Decodes the bytes that are left after the end of the stream. Returns
+     * null, if there were none.
+     */
+    String finish() {
+        output.setLength(0);
+        bytes.flip();
+        decode(true);
+        CoderResult result;
+        do {
+            result = decoder.flush(chars);
+            appendChars();
+        } while (result.isOverflow());
+        bytes.clear();
+        decoder.reset();
+        return getOutput();
+    }
+
+    /** Decodes the bytes in the byte buffer. */
+    private void decode(final boolean endOfInput) {
+        CoderResult result;
+        do {
+            result = decoder.decode(bytes, chars, endOfInput);
+            appendChars();
+        } while (result.isOverflow());
+    }
+
+    /** Moves the decoded characters to the output. */
+    private void appendChars() {
+        chars.flip();
+        output.append(chars);
+        chars.clear();
+    }
+
+    /** Returns the output or null if it is empty. */
+    private String getOutput() {
+        if (output.length() == 0) {
+            return null;
+        }
+        return output.toString();
+    }
+}
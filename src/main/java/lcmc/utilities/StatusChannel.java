@@ -0,0 +1,365 @@
+/*
+ * This file is part of LCMC by Rasto Levrinc.
+ *
+ * Copyright (C) 2013, Rastislav Levrinc
+ *
+ * LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.utilities;
+
+import lcmc.utilities.SSH.ExecCommandThread;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * This class runs all status streams of one host in one ssh session. The
+ * "status-mux" command of the gui helper prefixes every line with the tag
+ * of its stream, e.g. "hw:" or "drbd:". The output is split by the tags and
+ * passed to the callbacks, that subscribed to the stream, as if they ran
+ * their own commands. The command is started with the first subscription
+ * and stopped, when the last subscription is canceled. If a stream, that
+ * needs its initial state, is subscribed again after its output was already
+ * passed on, the command is restarted, so that the stream starts from the
+ * beginning.
+ *
+ * @author Rasto Levrinc
+ * @version $Id$
+ *
+ */
+public final class StatusChannel {
+    /** Exit code that is passed to the callbacks after cancel. */
+    private static final int CANCEL_EXIT_CODE = 130;
+    /** Exit code if the command could not be started. */
+    private static final int START_ERROR_EXIT_CODE = 1;
+    /** Executor, where the callbacks of the canceled subscriptions run. */
+    private static final ExecutorService FINISH_EXECUTOR =
+        Executors.newCachedThreadPool(new ThreadFactory() {
+            private final AtomicInteger threadNumber = new AtomicInteger(1);
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                final Thread thread = new Thread(
+                                runnable,
+                                "status-finish-"
+                                + threadNumber.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    /** SSH connection to the host. */
+    private final SSH ssh;
+    /** Timeout for the command. */
+    private final int timeout;
+    /** Subscriptions by tag. */
+    private final Map<String, Subscription> subscriptions =
+                                        new HashMap<String, Subscription>();
+    /** Thread that runs the command, or null. */
+    private ExecCommandThread thread = null;
+    /** Counts started commands, so that old commands are ignored. */
+    private int generation = 0;
+    /** Tags that had output from the current command. */
+    private final Set<String> startedTags = new HashSet<String>();
+    /** Channel lock. */
+    private final Lock mChannelLock = new ReentrantLock();
+
+    /** Prepares a new <code>StatusChannel</code> object. */
+    public StatusChannel(final SSH ssh, final int timeout) {
+        this.ssh = ssh;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Subscribes the callbacks to the stream with the tag. The command is
+     * started, if it doesn't run already. If the initialState is set and
+     * the stream had already some output, the command is restarted, so that
+     * the callback gets the initial state of the stream. The execCallback
+     * is called, when the command finishes or the subscription is canceled.
+     */
+    public Subscription subscribe(final String command,
+                                  final String tag,
+                                  final boolean initialState,
+                                  final ExecCallback execCallback,
+                                  final NewOutputCallback outputCallback) {
+        final Subscription subscription =
+                       new Subscription(tag, execCallback, outputCallback);
+        Subscription old;
+        ExecCommandThread restartedThread = null;
+        final List<Subscription> failed = new ArrayList<Subscription>();
+        mChannelLock.lock();
+        try {
+            old = subscriptions.put(tag, subscription);
+            if (thread != null
+                && initialState
+                && startedTags.contains(tag)) {
+                Tools.debug(this, "restart status channel for: {}", 1, tag);
+                restartedThread = thread;
+                thread = null;
+            }
+            if (thread == null) {
+                generation++;
+                startedTags.clear();
+                thread = ssh.execCommand(command,
+                                         new ChannelCallback(generation),
+                                         new ChannelOutput(generation),
+                                         false,
+                                         false,
+                                         timeout);
+                if (thread == null) {
+                    failed.addAll(subscriptions.values());
+                    subscriptions.clear();
+                }
+            }
+        } finally {
+            mChannelLock.unlock();
+        }
+        if (restartedThread != null) {
+            /* its callbacks are ignored, because of the generation */
+            restartedThread.cancel();
+        }
+        if (old != null) {
+            Tools.appWarning("trying to start started " + tag + " status");
+            old.finishLater(CANCEL_EXIT_CODE);
+        }
+        for (final Subscription s : failed) {
+            s.finish("", START_ERROR_EXIT_CODE);
+        }
+        return subscription;
+    }
+
+    /** Removes the subscription and stops the command if it was the last. */
+    private boolean unsubscribe(final Subscription subscription) {
+        ExecCommandThread stopThread = null;
+        mChannelLock.lock();
+        try {
+            if (subscriptions.get(subscription.tag) != subscription) {
+                return false;
+            }
+            subscriptions.remove(subscription.tag);
+            if (subscriptions.isEmpty()) {
+                stopThread = thread;
+                thread = null;
+            }
+        } finally {
+            mChannelLock.unlock();
+        }
+        if (stopThread != null) {
+            stopThread.cancel();
+        }
+        return true;
+    }
+
+    /**
+     * Returns the subscription if the command is still the current one and
+     * remembers that the stream had an output.
+     */
+    private Subscription getSubscription(final int gen, final String tag) {
+        mChannelLock.lock();
+        try {
+            if (gen != generation) {
+                return null;
+            }
+            startedTags.add(tag);
+            return subscriptions.get(tag);
+        } finally {
+            mChannelLock.unlock();
+        }
+    }
+
+    /** Called after the command finished. */
+    private void commandDone(final int gen,
+                             final String answer,
+                             final int exitCode) {
+        final List<Subscription> finished = new ArrayList<Subscription>();
+        mChannelLock.lock();
+        try {
+            if (gen != generation || thread == null) {
+                return;
+            }
+            thread = null;
+            finished.addAll(subscriptions.values());
+            subscriptions.clear();
+        } finally {
+            mChannelLock.unlock();
+        }
+        for (final Subscription subscription : finished) {
+            subscription.finish(answer, exitCode);
+        }
+    }
+
+    /** Callback for the end of the command. */
+    private final class ChannelCallback implements ExecCallback {
+        /** Generation of the command. */
+        private final int gen;
+
+        /** Prepares a new <code>ChannelCallback</code> object. */
+        ChannelCallback(final int gen) {
+            this.gen = gen;
+        }
+
+        @Override
+        public void done(final String answer) {
+            commandDone(gen, answer, 0);
+        }
+
+        @Override
+        public void doneError(final String answer, final int exitCode) {
+            commandDone(gen, answer, exitCode);
+        }
+    }
+
+    /** Splits the output by the tags. */
+    private final class ChannelOutput implements NewOutputCallback {
+        /** Generation of the command. */
+        private final int gen;
+        /** Incomplete line. */
+        private final StringBuilder buffer = new StringBuilder(300);
+
+        /** Prepares a new <code>ChannelOutput</code> object. */
+        ChannelOutput(final int gen) {
+            this.gen = gen;
+        }
+
+        @Override
+        public void output(final String output) {
+            buffer.append(output);
+            final Map<String, StringBuilder> outputs =
+                                new LinkedHashMap<String, StringBuilder>();
+            int start = 0;
+            while (true) {
+                final int eol = buffer.indexOf("\n", start);
+                if (eol < 0) {
+                    break;
+                }
+                final int colon = buffer.indexOf(":", start);
+                if (colon < 0 || colon > eol) {
+                    if (Tools.isDebug(this, 2)) {
+                        Tools.debug(this, "untagged status: "
+                                          + buffer.substring(start, eol), 2);
+                    }
+                } else {
+                    final String tag = buffer.substring(start, colon);
+                    StringBuilder out = outputs.get(tag);
+                    if (out == null) {
+                        out = new StringBuilder();
+                        outputs.put(tag, out);
+                    }
+                    out.append(buffer, colon + 1, eol + 1);
+                }
+                start = eol + 1;
+            }
+            buffer.delete(0, start);
+            for (final Map.Entry<String, StringBuilder> entry
+                                                    : outputs.entrySet()) {
+                final Subscription subscription =
+                                          getSubscription(gen, entry.getKey());
+                if (subscription == null) {
+                    Tools.debug(this, "no subscription for: {}", 2,
+                                entry.getKey());
+                } else {
+                    subscription.output(entry.getValue().toString());
+                }
+            }
+        }
+    }
+
+    /** Subscription to one stream. */
+    public final class Subscription {
+        /** Tag of the stream. */
+        private final String tag;
+        /** Callback after the command finished. */
+        private final ExecCallback execCallback;
+        /** Callback for the new output. */
+        private final NewOutputCallback outputCallback;
+        /** Counted down after the exec callback was called. */
+        private final CountDownLatch doneLatch = new CountDownLatch(1);
+        /** Whether the subscription is finished. */
+        private volatile boolean finished = false;
+
+        /** Prepares a new <code>Subscription</code> object. */
+        Subscription(final String tag,
+                     final ExecCallback execCallback,
+                     final NewOutputCallback outputCallback) {
+            this.tag = tag;
+            this.execCallback = execCallback;
+            this.outputCallback = outputCallback;
+        }
+
+        /** Passes the output to the callback. */
+        private void output(final String output) {
+            if (!finished && outputCallback != null) {
+                outputCallback.output(output);
+            }
+        }
+
+        /** Calls the exec callback once. */
+        private void finish(final String answer, final int exitCode) {
+            synchronized (this) {
+                if (finished) {
+                    return;
+                }
+                finished = true;
+            }
+            try {
+                if (execCallback != null) {
+                    if (exitCode == 0) {
+                        execCallback.done(answer);
+                    } else {
+                        execCallback.doneError(answer, exitCode);
+                    }
+                }
+            } finally {
+                doneLatch.countDown();
+            }
+        }
+
+        /**
+         * Calls the exec callback in another thread, like it would be called
+         * from the command thread.
+         */
+        private void finishLater(final int exitCode) {
+            FINISH_EXECUTOR.execute(new Runnable() {
+                @Override
+                public void run() {
+                    finish("", exitCode);
+                }
+            });
+        }
+
+        /** Cancels the subscription. */
+        public void cancel() {
+            if (unsubscribe(this)) {
+                finishLater(CANCEL_EXIT_CODE);
+            }
+        }
+
+        /** Waits till the subscription is finished. */
+        public void join() throws InterruptedException {
+            doneLatch.await();
+        }
+    }
+}
@@ -0,0 +1,262 @@
+/*
+ * This file is part of LCMC by Rasto Levrinc.
+ *
+ * Copyright (C) 2013, Rastislav Levrinc
+ *
+ * LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.utilities;
+
+import ch.ethz.ssh2.crypto.Base64;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * This class reads frames from the output of the "hw-info-daemon framed"
+ * command of the gui helper. Every frame starts with a header line:
+ *
+ * --frame-- type sequence timestamp raw|gz length
+ *
+ * followed by base64 encoded payload of the specified length, that can be
+ * gzipped. The output is read only once, there is no searching in the
+ * already parsed output. If the helper sends text blocks instead, because
+ * it doesn't support frames, the reader switches to the text protocol.
+ *
+ * @author Rasto Levrinc
+ * @version $Id$
+ *
+ */
+public final class StatusFrameReader {
+    /** Start of the frame header. */
+    private static final String FRAME_START = "--frame--";
+    /** Start of a text block in the old protocol. */
+    private static final String TEXT_START = "-info-start--";
+    /** Number of fields in the header. */
+    private static final int HEADER_FIELDS = 6;
+    /** Gzipped payload. */
+    private static final String GZIP_ENCODING = "gz";
+    /** Unparsed output. */
+    private final StringBuilder buffer = new StringBuilder(300);
+    /** Position in the buffer, where the parsing continues. */
+    private int pos = 0;
+    /** Header of the frame whose payload is not complete yet. */
+    private String[] pendingHeader = null;
+    /** Position of the pending payload in the buffer. */
+    private int pendingPayloadStart = -1;
+    /** Whether the frames were seen. */
+    private boolean framed = false;
+    /** Whether the helper sends text blocks instead of frames. */
+    private boolean textProtocol = false;
+    /** Sequence number of the last frame. */
+    private long lastSequence = 0;
+
+    /**
+     * Adds the output and returns frames that are complete. Returns empty
+     * list, if the text protocol was detected.
+     */
+    public List<Frame> read(final String output) {
+        final List<Frame> frames = new ArrayList<Frame>();
+        if (textProtocol) {
+            buffer.append(output);
+            return frames;
+        }
+        buffer.append(output);
+        while (true) {
+            if (pendingHeader == null) {
+                final int s = buffer.indexOf(FRAME_START, pos);
+                if (s < 0) {
+                    if (!framed && buffer.indexOf(TEXT_START) >= 0) {
+                        textProtocol = true;
+                        return frames;
+                    }
+                    if (framed) {
+                        /* keep what can be a start of the next header */
+                        pos = Math.max(pos,
+                                       buffer.length() - FRAME_START.length());
+                    }
+                    break;
+                }
+                final int eol = buffer.indexOf("\n", s);
+                if (eol < 0) {
+                    pos = s;
+                    break;
+                }
+                framed = true;
+                final String[] header =
+                               buffer.substring(s, eol).trim().split("\\s+");
+                if (header.length != HEADER_FIELDS) {
+                    Tools.appWarning("could not parse frame header: "
+                                     + buffer.substring(s, eol));
+                    pos = eol + 1;
+                    continue;
+                }
+                pendingHeader = header;
+                pendingPayloadStart = eol + 1;
+            }
+            final int length;
+            try {
+                length = Integer.parseInt(pendingHeader[5]);
+            } catch (final NumberFormatException nfe) {
+                Tools.appWarning("could not parse frame length: "
+                                 + pendingHeader[5]);
+                pos = pendingPayloadStart;
+                pendingHeader = null;
+                continue;
+            }
+            if (buffer.length() < pendingPayloadStart + length) {
+                pos = pendingPayloadStart;
+                break;
+            }
+            final Frame frame = parseFrame(pendingHeader,
+                                           pendingPayloadStart,
+                                           length);
+            if (frame != null) {
+                frames.add(frame);
+            }
+            pos = pendingPayloadStart + length;
+            pendingHeader = null;
+        }
+        buffer.delete(0, pos);
+        if (pendingHeader != null) {
+            pendingPayloadStart -= pos;
+        }
+        pos = 0;
+        return frames;
+    }
+
+    /** Returns whether the helper sends text blocks instead of frames. */
+    public boolean isTextProtocol() {
+        return textProtocol;
+    }
+
+    /**
+     * Returns the output that was not parsed as frames and clears it. This
+     * is used after the text protocol was detected.
+     */
+    public String getUnparsedOutput() {
+        final String out = buffer.toString();
+        buffer.setLength(0);
+        pos = 0;
+        return out;
+    }
+
+    /** Decodes the payload and returns the frame or null on error. */
+    private Frame parseFrame(final String[] header,
+                             final int start,
+                             final int length) {
+        final String type = header[1];
+        long sequence = 0;
+        try {
+            sequence = Long.parseLong(header[2]);
+        } catch (final NumberFormatException nfe) {
+            Tools.debug(this, "could not parse: {} {}", 0, header[2], nfe);
+        }
+        if (lastSequence != 0 && sequence != lastSequence + 1) {
+            Tools.debug(this, "missing frames: {} - {}", 1,
+                        lastSequence, sequence);
+        }
+        lastSequence = sequence;
+        Double timestamp = null;
+        try {
+            timestamp = Double.parseDouble(header[3]);
+        } catch (final NumberFormatException nfe) {
+            Tools.debug(this, "could not parse: {} {}", 0, header[3], nfe);
+        }
+        final char[] encoded = new char[length];
+        buffer.getChars(start, start + length, encoded, 0);
+        try {
+            byte[] payload = Base64.decode(encoded);
+            if (GZIP_ENCODING.equals(header[4])) {
+                payload = gunzip(payload);
+            }
+            return new Frame(type,
+                             sequence,
+                             timestamp,
+                             new String(payload, "UTF-8"));
+        } catch (final IOException e) {
+            Tools.appWarning("could not decode " + type + " frame: "
+                             + e.getMessage());
+            return null;
+        }
+    }
+
+    /** Returns uncompressed data. */
+    private static byte[] gunzip(final byte[] data) throws IOException {
+        final InputStream in =
+                    new GZIPInputStream(new ByteArrayInputStream(data));
+        final ByteArrayOutputStream out =
+                                   new ByteArrayOutputStream(data.length * 4);
+        final byte[] buf = new byte[8192];
+        try {
+            int len;
+            while ((len = in.read(buf)) > 0) {
+                out.write(buf, 0, len);
+            }
+        } finally {
+            in.close();
+        }
+        return out.toByteArray();
+    }
+
+    /** One frame from the helper. */
+    public static final class Frame {
+        /** Type of the info: hw, vm, drbd. */
+        private final String type;
+        /** Sequence number. */
+        private final long sequence;
+        /** Timestamp, when the info was created, or null. */
+        private final Double timestamp;
+        /** Decoded payload. */
+        private final String payload;
+
+        /** Prepares a new <code>Frame</code> object. */
+        Frame(final String type,
+              final long sequence,
+              final Double timestamp,
+              final String payload) {
+            this.type = type;
+            this.sequence = sequence;
+            this.timestamp = timestamp;
+            this.payload = payload;
+        }
+
+        /** Returns type of the info. */
+        public String getType() {
+            return type;
+        }
+
+        /** Returns sequence number of the frame. */
+        public long getSequence() {
+            return sequence;
+        }
+
+        /** Returns timestamp or null if it is not known. */
+        public Double getTimestamp() {
+            return timestamp;
+        }
+
+        /** Returns the payload. */
+        public String getPayload() {
+            return payload;
+        }
+    }
+}
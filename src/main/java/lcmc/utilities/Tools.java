@@ -47,12 +47,22 @@ import java.util.Locale;
 import java.util.Enumeration;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.Collections;
 import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.security.SecureRandom;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Set;
 import java.util.Collection;
 import java.util.TreeSet;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.swing.JFrame;
 import javax.swing.JPanel;
@@ -113,6 +123,7 @@ import java.io.FileOutputStream;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
 
 import java.net.MalformedURLException;
 import java.net.URISyntaxException;
@@ -136,7 +147,15 @@ public final class Tools {
     /** Release version. */
     private static String release = null;
     /** Debug level. */
-    private static int debugLevel = -1;
+    private static volatile int debugLevel = -1;
+    /** Debug levels of classes and packages. */
+    private static final Map<String, Integer> DEBUG_CLASS_LEVELS =
+                                  new ConcurrentHashMap<String, Integer>();
+    /**
+     * The highest of all debug levels, messages above it are not printed
+     * without further checks.
+     */
+    private static volatile int maxDebugLevel = -1;
     /** Whether the warnings should be shown. */
     private static boolean appWarning;
     /** Whether application errors should show a dialog. */
@@ -148,10 +167,9 @@ public final class Tools {
     /** Image icon cache. */
     private static Map<String, ImageIcon> imageIcons =
                                               new HashMap<String, ImageIcon>();
-    /** Resource bundle. */
-    private static ResourceBundle resource = null;
-    /** Application defaults bundle. */
-    private static ResourceBundle resourceAppDefaults = null;
+    /** DistResource tables by distribution and version. */
+    private static final Map<String, Map<String, Object>> DIST_RESOURCES =
+                          new ConcurrentHashMap<String, Map<String, Object>>();
 
     /** Config data object. */
     private static ConfigData configData;
@@ -187,6 +205,21 @@ public final class Tools {
     private static final Pattern UNIT_PATTERN = Pattern.compile("(\\d*)(\\D*)");
     /** Random number generator. */
     private static final Random RANDOM = new Random();
+    /** Random number generator for the secrets. */
+    private static final SecureRandom SECURE_RANDOM = new SecureRandom();
+    /** Executor, where the configs are created on the hosts. */
+    private static final ExecutorService CONFIG_EXECUTOR =
+        Executors.newCachedThreadPool(new ThreadFactory() {
+            private final AtomicInteger threadNumber = new AtomicInteger(1);
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                final Thread thread = new Thread(
+                                runnable,
+                                "config-" + threadNumber.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
     /** Time when the application started in seconds. */
     private static final long START_TIME = System.currentTimeMillis() / 1000;
     /** Private constructor. */
@@ -262,7 +295,7 @@ public final class Tools {
 
     /** Sets defaults from AppDefaults bundle. */
     public static void setDefaults() {
-        debugLevel = getDefaultInt("DebugLevel");
+        setDebugLevel(getDefaultInt("DebugLevel"));
         if (getDefault("AppWarning").equals("y")) {
             appWarning = true;
         }
@@ -273,13 +306,13 @@ public final class Tools {
 
     /** Increments the debug level. */
     public static void incrementDebugLevel() {
-        debugLevel++;
+        setDebugLevel(debugLevel + 1);
         info("debug level: " + debugLevel);
     }
 
     /** Decrements the debug level. */
     public static void decrementDebugLevel() {
-        debugLevel--;
+        setDebugLevel(debugLevel - 1);
         info("debug level: " + debugLevel);
     }
 
@@ -291,6 +324,59 @@ public final class Tools {
      */
     public static void setDebugLevel(final int level) {
         debugLevel = level;
+        updateMaxDebugLevel();
+    }
+
+    /**
+     * Sets debug level for a class or a package, e.g. lcmc.utilities.SSH or
+     * lcmc.data. The higher of this and the global debug level is used.
+     */
+    public static void setDebugLevel(final String classOrPackage,
+                                     final int level) {
+        DEBUG_CLASS_LEVELS.put(classOrPackage, level);
+        updateMaxDebugLevel();
+    }
+
+    /** Computes the highest debug level. */
+    private static void updateMaxDebugLevel() {
+        int max = debugLevel;
+        for (final int level : DEBUG_CLASS_LEVELS.values()) {
+            if (level > max) {
+                max = level;
+            }
+        }
+        maxDebugLevel = max;
+    }
+
+    /**
+     * Returns the debug level of the object's class. The class, its outer
+     * classes and its packages are looked up in the debug class levels.
+     */
+    private static int getDebugLevel(final Object object) {
+        if (object == null || DEBUG_CLASS_LEVELS.isEmpty()) {
+            return debugLevel;
+        }
+        String name = object.getClass().getName();
+        while (true) {
+            final Integer level = DEBUG_CLASS_LEVELS.get(name);
+            if (level != null) {
+                return Math.max(level, debugLevel);
+            }
+            final int i = Math.max(name.lastIndexOf('$'),
+                                   name.lastIndexOf('.'));
+            if (i < 0) {
+                return debugLevel;
+            }
+            name = name.substring(0, i);
+        }
+    }
+
+    /**
+     * Returns whether a debug message with this level from this object
+     * would be printed. Use it, if the message is expensive to build.
+     */
+    public static boolean isDebug(final Object object, final int level) {
+        return level <= maxDebugLevel && level <= getDebugLevel(object);
     }
 
     /**
@@ -301,9 +387,9 @@ public final class Tools {
      */
     private static void debug(final String msg) {
         if (debugLevel > 0) {
-            System.out.println(DEBUG_STRING
-                               + "[" + seconds() + "s] "
-                               + msg + " (lcmc.utilities.Tools)");
+            DebugAppender.append(DEBUG_STRING
+                                 + "[" + seconds() + "s] "
+                                 + msg + " (lcmc.utilities.Tools)");
         }
     }
 
@@ -319,10 +405,10 @@ public final class Tools {
      */
     private static void debug(final String msg, final int level) {
         if (level <= debugLevel) {
-            System.out.println(DEBUG_STRING
-                               + "(" + level + ") "
-                               + "[" + seconds() + "s] "
-                               + msg + " (lcmc.utilities.Tools)");
+            DebugAppender.append(DEBUG_STRING
+                                 + "(" + level + ") "
+                                 + "[" + seconds() + "s] "
+                                 + msg + " (lcmc.utilities.Tools)");
         }
     }
 
@@ -336,16 +422,17 @@ public final class Tools {
      *          debug message
      */
     public static void debug(final Object object, final String msg) {
-        if (debugLevel > -1) {
+        if (isDebug(object, 0)) {
             if (object == null) {
-                System.out.println(DEBUG_STRING
-                                   + "[" + seconds() + "s] "
-                                   + msg);
+                DebugAppender.append(DEBUG_STRING
+                                     + "[" + seconds() + "s] "
+                                     + msg);
             } else {
-                System.out.println(DEBUG_STRING
-                                   + "[" + seconds() + "s] "
-                                   + msg
-                                   + " (" + object.getClass().getName() + ")");
+                DebugAppender.append(DEBUG_STRING
+                                     + "[" + seconds() + "s] "
+                                     + msg
+                                     + " (" + object.getClass().getName()
+                                     + ")");
             }
         }
     }
@@ -365,17 +452,118 @@ public final class Tools {
     public static void debug(final Object object,
                              final String msg,
                              final int level) {
-        if (level <= debugLevel) {
-            String from = "";
-            if (object != null) {
-                from = " (" + object.getClass().getName() + ")";
+        if (isDebug(object, level)) {
+            printDebug(object, msg, level);
+        }
+    }
+
+    /**
+     * Prints debug message to the stdout. The message is built only if it
+     * will be printed, the "{}" in the format is replaced by the argument.
+     *
+     * @param object
+     *          object from which this message originated. Use "this" by
+     *          caller for this.
+     * @param format
+     *          debug message with "{}" placeholder
+     * @param level
+     *          level of this message.
+     * @param arg
+     *          argument of the message
+     */
+    public static void debug(final Object object,
+                             final String format,
+                             final int level,
+                             final Object arg) {
+        if (isDebug(object, level)) {
+            printDebug(object, formatDebug(format, new Object[]{arg}), level);
+        }
+    }
+
+    /**
+     * Prints debug message to the stdout. The message is built only if it
+     * will be printed, the "{}" in the format are replaced by the arguments.
+     *
+     * @param object
+     *          object from which this message originated. Use "this" by
+     *          caller for this.
+     * @param format
+     *          debug message with "{}" placeholders
+     * @param level
+     *          level of this message.
+     * @param arg1
+     *          first argument of the message
+     * @param arg2
+     *          second argument of the message
+     */
+    public static void debug(final Object object,
+                             final String format,
+                             final int level,
+                             final Object arg1,
+                             final Object arg2) {
+        if (isDebug(object, level)) {
+            printDebug(object,
+                       formatDebug(format, new Object[]{arg1, arg2}),
+                       level);
+        }
+    }
+
+    /**
+     * Prints debug message to the stdout. The message is built only if it
+     * will be printed, every "{}" in the format is replaced by the next
+     * argument. Use the fixed-arity methods for one or two arguments, they
+     * don't allocate anything, if the message is not printed.
+     *
+     * @param object
+     *          object from which this message originated. Use "this" by
+     *          caller for this.
+     * @param format
+     *          debug message with "{}" placeholders
+     * @param level
+     *          level of this message.
+     * @param args
+     *          arguments of the message
+     */
+    public static void debug(final Object object,
+                             final String format,
+                             final int level,
+                             final Object... args) {
+        if (isDebug(object, level)) {
+            printDebug(object, formatDebug(format, args), level);
+        }
+    }
+
+    /** Replaces every "{}" in the format by the next argument. */
+    private static String formatDebug(final String format,
+                                      final Object[] args) {
+        final StringBuilder msg = new StringBuilder(format.length() + 50);
+        int start = 0;
+        for (final Object arg : args) {
+            final int i = format.indexOf("{}", start);
+            if (i < 0) {
+                break;
             }
-            System.out.println(DEBUG_STRING
-                               + "(" + level + ") "
-                               + "[" + seconds() + "s] "
-                               + msg
-                               + from);
+            msg.append(format, start, i);
+            msg.append(arg);
+            start = i + 2;
         }
+        msg.append(format, start, format.length());
+        return msg.toString();
+    }
+
+    /** Prints the debug message with the level. */
+    private static void printDebug(final Object object,
+                                   final String msg,
+                                   final int level) {
+        String from = "";
+        if (object != null) {
+            from = " (" + object.getClass().getName() + ")";
+        }
+        DebugAppender.append(DEBUG_STRING
+                             + "(" + level + ") "
+                             + "[" + seconds() + "s] "
+                             + msg
+                             + from);
     }
 
     /**
@@ -484,7 +672,7 @@ public final class Tools {
         } else {
             ec = execCallback;
         }
-        final Thread commandThread = host.execCommandRaw(command,
+        final SSH.ExecCommandThread commandThread = host.execCommandRaw(command,
                                                          ec,
                                                          outputVisible,
                                                          true,
@@ -537,7 +725,7 @@ public final class Tools {
             ec = execCallback;
         }
 
-        final Thread commandThread = host.execCommandRaw(command,
+        final SSH.ExecCommandThread commandThread = host.execCommandRaw(command,
                                                          ec,
                                                          outputVisible,
                                                          true,
@@ -887,6 +1075,7 @@ public final class Tools {
                                    hostOptions.getPort(),
                                    null,
                                    hostOptions.getSudo(),
+                                   hostOptions.getCompression(),
                                    false);
             }
         }
@@ -980,18 +1169,12 @@ public final class Tools {
      * @return string with default value.
      */
     public static String getDefault(final String option) {
-        synchronized (Tools.class) {
-            if (resourceAppDefaults == null) {
-                resourceAppDefaults =
-                        ResourceBundle.getBundle("lcmc.configs.AppDefaults");
-            }
-        }
-        try {
-            return resourceAppDefaults.getString(option);
-        } catch (Exception e) {
-            appError("unresolved config resource", option, e);
+        final String value = Resources.DEFAULTS.get(option);
+        if (value == null) {
+            appError("unresolved config resource", option);
             return option;
         }
+        return value;
     }
 
     /**
@@ -1003,18 +1186,12 @@ public final class Tools {
      * @return default color.
      */
     public static Color getDefaultColor(final String option) {
-        synchronized (Tools.class) {
-            if (resourceAppDefaults == null) {
-                resourceAppDefaults =
-                        ResourceBundle.getBundle("lcmc.configs.AppDefaults");
-            }
-        }
-        try {
-            return (Color) resourceAppDefaults.getObject(option);
-        } catch (Exception e) {
-            appError("unresolved config resource", option, e);
+        final Color color = Resources.DEFAULT_COLORS.get(option);
+        if (color == null) {
+            appError("unresolved config resource", option);
             return Color.WHITE;
         }
+        return color;
     }
 
     /**
@@ -1035,20 +1212,13 @@ public final class Tools {
      * @return integer with default value.
      */
     public static int getDefaultInt(final String option) {
-        synchronized (Tools.class) {
-            if (resourceAppDefaults == null) {
-                resourceAppDefaults =
-                        ResourceBundle.getBundle("lcmc.configs.AppDefaults");
-            }
-        }
-        try {
-            return (Integer) resourceAppDefaults.getObject(option);
-        } catch (Exception e) {
+        final Integer value = Resources.DEFAULT_INTS.get(option);
+        if (value == null) {
             appError("AppError.getInt.Exception",
-                     option + ": " + getDefault(option),
-                     e);
+                     option + ": " + getDefault(option));
             return 0;
         }
+        return value;
         /*
         try {
             return Integer.parseInt(getDefault(option));
@@ -1070,21 +1240,12 @@ public final class Tools {
      * @return localized string.
      */
     public static String getString(final String text) {
-        synchronized (Tools.class) {
-            if (resource == null) {
-                /* set locale */
-                final Locale currentLocale = Locale.getDefault();
-                resource =
-                    ResourceBundle.getBundle("lcmc.configs.TextResource",
-                                             currentLocale);
-            }
-        }
-        try {
-            return resource.getString(text);
-        } catch (Exception e) {
+        final String value = Resources.TEXTS.get(text);
+        if (value == null) {
             appError("unresolved resource: " + text);
             return text;
         }
+        return value;
     }
 
     /**
@@ -1107,33 +1268,23 @@ public final class Tools {
         if (version == null) {
             version = "";
         }
-        final Locale locale = new Locale(dist, version);
         debug("getDistString text: "
               + text
               + " dist: "
               + dist
               + " version: "
               + version, 2);
-        final ResourceBundle resourceString =
-                ResourceBundle.getBundle("lcmc.configs.DistResource", locale);
-        String ret;
-        try {
-            ret = resourceString.getString(text + "." + arch);
-        } catch (Exception e) {
-            ret = null;
-        }
-        if (ret == null) {
-            try {
-                if (ret == null) {
-                    ret = resourceString.getString(text);
-                }
-                debug("ret: " + ret, 2);
-                return ret;
-            } catch (Exception e) {
+        final Map<String, Object> resourceString =
+                                               getDistResource(dist, version);
+        Object ret = resourceString.get(text + "." + arch);
+        if (!(ret instanceof String)) {
+            ret = resourceString.get(text);
+            debug("ret: " + ret, 2);
+            if (!(ret instanceof String)) {
                 return null;
             }
         }
-        return ret;
+        return (String) ret;
     }
 
     /** Returns string that is specific to a distribution and version. */
@@ -1148,22 +1299,96 @@ public final class Tools {
         if (version == null) {
             version = "";
         }
-        final Locale locale = new Locale(dist, version);
         debug("getDistStrings text: "
               + text
               + " dist: "
               + dist
               + " version: "
               + version, 2);
-        final ResourceBundle resourceString =
-                ResourceBundle.getBundle("lcmc.configs.DistResource", locale);
-        List<String> ret;
-        try {
-            ret = (List<String>) resourceString.getObject(text);
-        } catch (Exception e) {
-            ret = new ArrayList<String>();
+        final Object ret = getDistResource(dist, version).get(text);
+        if (ret instanceof List) {
+            return (List<String>) ret;
+        }
+        return new ArrayList<String>();
+    }
+
+    /**
+     * Returns the DistResource table for the distribution and version. The
+     * bundle with all its parents is resolved only once, the hosts with the
+     * same distribution and version share the table.
+     */
+    private static Map<String, Object> getDistResource(final String dist,
+                                                       final String version) {
+        final String key = dist + '\n' + version;
+        Map<String, Object> table = DIST_RESOURCES.get(key);
+        if (table == null) {
+            table = getResourceTable(
+                    ResourceBundle.getBundle("lcmc.configs.DistResource",
+                                             new Locale(dist, version)));
+            DIST_RESOURCES.put(key, table);
+        }
+        return table;
+    }
+
+    /** Returns all the values of the bundle and its parents in a map. */
+    private static Map<String, Object> getResourceTable(
+                                               final ResourceBundle bundle) {
+        final Map<String, Object> table = new HashMap<String, Object>();
+        for (final String key : bundle.keySet()) {
+            table.put(key, bundle.getObject(key));
+        }
+        return Collections.unmodifiableMap(table);
+    }
+
+    /**
+     * AppDefaults and TextResource values. The tables are filled, when they
+     * are used for the first time and never change after that, so that they
+     * can be read from the painting and the status threads without a lock.
+     */
+    private static final class Resources {
+        /** String defaults. */
+        static final Map<String, String> DEFAULTS;
+        /** Color defaults. */
+        static final Map<String, Color> DEFAULT_COLORS;
+        /** Integer defaults. */
+        static final Map<String, Integer> DEFAULT_INTS;
+        /** Localized texts. */
+        static final Map<String, String> TEXTS;
+        static {
+            final Map<String, String> defaults = new HashMap<String, String>();
+            final Map<String, Color> colors = new HashMap<String, Color>();
+            final Map<String, Integer> ints = new HashMap<String, Integer>();
+            final Map<String, Object> appDefaults = getResourceTable(
+                         ResourceBundle.getBundle("lcmc.configs.AppDefaults"));
+            for (final Map.Entry<String, Object> entry
+                                                : appDefaults.entrySet()) {
+                final Object value = entry.getValue();
+                if (value instanceof String) {
+                    defaults.put(entry.getKey(), (String) value);
+                } else if (value instanceof Color) {
+                    colors.put(entry.getKey(), (Color) value);
+                } else if (value instanceof Integer) {
+                    ints.put(entry.getKey(), (Integer) value);
+                }
+            }
+            DEFAULTS = Collections.unmodifiableMap(defaults);
+            DEFAULT_COLORS = Collections.unmodifiableMap(colors);
+            DEFAULT_INTS = Collections.unmodifiableMap(ints);
+            final Map<String, String> texts = new HashMap<String, String>();
+            for (final Map.Entry<String, Object> entry : getResourceTable(
+                    ResourceBundle.getBundle("lcmc.configs.TextResource",
+                                             Locale.getDefault())).entrySet()) {
+                if (entry.getValue() instanceof String) {
+                    texts.put(entry.getKey(), (String) entry.getValue());
+                }
+            }
+            TEXTS = Collections.unmodifiableMap(texts);
+        }
+
+        /** Private constructor, cannot be instantiated. */
+        private Resources() {
+            /* Cannot be instantiated. */
         }
-        return ret;
     }
 
     /**
@@ -1276,23 +1501,15 @@ public final class Tools {
             dist = "";
         }
         debug("dist: " + dist + ", version: " + version, 2);
-        final Locale locale = new Locale(dist, "");
-        final ResourceBundle resourceCommand =
-                ResourceBundle.getBundle("lcmc.configs.DistResource", locale);
-        String distVersion = null;
-        try {
-            distVersion = resourceCommand.getString("version:" + version);
-        } catch (Exception e) {
+        final Map<String, Object> resourceCommand = getDistResource(dist, "");
+        String distVersion = (String) resourceCommand.get("version:" + version);
+        if (distVersion == null) {
             /* with wildcard */
             final StringBuilder buf = new StringBuilder(version);
             for (int i = version.length() - 1; i >= 0; i--) {
-                try {
-                    distVersion = resourceCommand.getString("version:"
-                                                            + buf.toString()
-                                                            + "*");
-                } catch (Exception e2) {
-                    distVersion = null;
-                }
+                distVersion = (String) resourceCommand.get("version:"
+                                                           + buf.toString()
+                                                           + "*");
                 if (distVersion != null) {
                     break;
                 }
@@ -1657,6 +1874,9 @@ public final class Tools {
      *          mode, e.g. "0700"
      * @param makeBackup
      *          whether to make backup or not
+     *
+     * The configs are created on all hosts at the same time, this method
+     * returns, when they are created everywhere.
      */
     public static void createConfigOnAllHosts(final Host[] hosts,
                                               final String config,
@@ -1664,14 +1884,29 @@ public final class Tools {
                                               final String dir,
                                               final String mode,
                                               final boolean makeBackup) {
-        for (Host host : hosts) {
-            host.getSSH().createConfig(config,
-                                       fileName,
-                                       dir,
-                                       mode,
-                                       makeBackup,
-                                       null,
-                                       null);
+        final CountDownLatch done = new CountDownLatch(hosts.length);
+        for (final Host host : hosts) {
+            CONFIG_EXECUTOR.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        host.getSSH().createConfig(config,
+                                                   fileName,
+                                                   dir,
+                                                   mode,
+                                                   makeBackup,
+                                                   null,
+                                                   null);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            });
+        }
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
 
@@ -2366,9 +2601,25 @@ public final class Tools {
         return o;
     }
 
+    /** Returns md5 checksum of the string in hex. */
+    public static String getMD5(final String s) {
+        try {
+            final MessageDigest md = MessageDigest.getInstance("MD5");
+            final byte[] digest = md.digest(s.getBytes("UTF-8"));
+            final StringBuilder hex = new StringBuilder(32);
+            for (final byte b : digest) {
+                hex.append(String.format("%02x", b & 0xff));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     /** Returns random secret of the specified lenght. */
     public static String getRandomSecret(final int len) {
-        final Random rand = new Random();
         final ArrayList<Character> charsL = new ArrayList<Character>();
         for (int a = 'a'; a <= 'z'; a++) {
             charsL.add((char) a);
@@ -2381,7 +2632,7 @@ public final class Tools {
         final Character[] chars = charsL.toArray(new Character[charsL.size()]);
         final StringBuilder s = new StringBuilder(len + 1);
         for (int i = 0; i < len; i++) {
-            s.append(chars[rand.nextInt(chars.length)]);
+            s.append(chars[SECURE_RANDOM.nextInt(chars.length)]);
         }
         return s.toString();
     }
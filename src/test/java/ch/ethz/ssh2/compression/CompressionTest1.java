@@ -0,0 +1,146 @@
+package ch.ethz.ssh2.compression;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+import org.junit.After;
+import org.junit.Before;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+public final class CompressionTest1 extends TestCase {
+    private Compressor compressor;
+    private Decompressor decompressor;
+
+    @Before
+    protected void setUp() {
+        compressor = CompressionFactory.createCompressor(
+                                            CompressionFactory.ZLIB_DELAYED);
+        decompressor = CompressionFactory.createDecompressor(
+                                            CompressionFactory.ZLIB_DELAYED);
+    }
+
+    @After
+    protected void tearDown() {
+        compressor.end();
+        decompressor.end();
+    }
+
+    /** Compresses and decompresses one packet. */
+    private byte[] roundTrip(final byte[] payload) throws IOException {
+        final int clen = compressor.compress(payload, 0, payload.length);
+        final byte[] compressed =
+                           Arrays.copyOf(compressor.getBuffer(), clen);
+        final int len = decompressor.uncompress(compressed, 0, clen);
+        return Arrays.copyOf(decompressor.getBuffer(), len);
+    }
+
+    /* ---- tests ----- */
+
+    @Test
+    public void testFactory() {
+        assertNull(CompressionFactory.createCompressor(
+                                                CompressionFactory.NONE));
+        assertNull(CompressionFactory.createDecompressor(
+                                                CompressionFactory.NONE));
+        assertEquals(1, CompressionFactory.getServer2ClientCompressorList(
+                                                            false).length);
+        assertEquals(CompressionFactory.ZLIB_DELAYED,
+                     CompressionFactory.getServer2ClientCompressorList(
+                                                                true)[0]);
+        try {
+            CompressionFactory.createCompressor("zlib");
+            fail();
+        } catch (final IllegalArgumentException e) {
+            /* expected */
+        }
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        if (!Compressor.isSupported()) {
+            return;
+        }
+        final byte[] payload = "drbd:0: cs:Connected ro:Primary/Secondary\n"
+                               .getBytes("UTF-8");
+        assertTrue(Arrays.equals(payload, roundTrip(payload)));
+    }
+
+    @Test
+    public void testEmptyPacket() throws IOException {
+        if (!Compressor.isSupported()) {
+            return;
+        }
+        assertEquals(0, roundTrip(new byte[0]).length);
+        final byte[] payload = "after empty".getBytes("UTF-8");
+        assertTrue(Arrays.equals(payload, roundTrip(payload)));
+    }
+
+    @Test
+    public void testStreamContinuesBetweenPackets() throws IOException {
+        if (!Compressor.isSupported()) {
+            return;
+        }
+        final byte[] payload = ("hw:--frame-- hw 1 1370000000.5 gz 100\n")
+                               .getBytes("UTF-8");
+        int firstLength = -1;
+        for (int i = 0; i < 100; i++) {
+            final int clen =
+                       compressor.compress(payload, 0, payload.length);
+            if (i == 0) {
+                firstLength = clen;
+            } else {
+                /* the same data are found in the history of the stream */
+                assertTrue(clen < firstLength);
+            }
+            final byte[] compressed =
+                           Arrays.copyOf(compressor.getBuffer(), clen);
+            /* every packet is decompressed completely on its own */
+            final int len = decompressor.uncompress(compressed, 0, clen);
+            assertTrue(Arrays.equals(
+                           payload,
+                           Arrays.copyOf(decompressor.getBuffer(), len)));
+        }
+    }
+
+    @Test
+    public void testLargePackets() throws IOException {
+        if (!Compressor.isSupported()) {
+            return;
+        }
+        final Random random = new Random(1);
+        /* random data don't compress and grow the compressor buffer */
+        final byte[] noise = new byte[100000];
+        random.nextBytes(noise);
+        assertTrue(Arrays.equals(noise, roundTrip(noise)));
+        /* repeated data grow the decompressor buffer */
+        final byte[] zeros = new byte[200000];
+        assertTrue(Arrays.equals(zeros, roundTrip(zeros)));
+        final byte[] small = "small".getBytes("UTF-8");
+        assertTrue(Arrays.equals(small, roundTrip(small)));
+    }
+
+    @Test
+    public void testPayloadOffset() throws IOException {
+        if (!Compressor.isSupported()) {
+            return;
+        }
+        final byte[] packet = "xxxxpayloadyyyy".getBytes("UTF-8");
+        final int clen = compressor.compress(packet, 4, 7);
+        final byte[] compressed = new byte[clen + 3];
+        System.arraycopy(compressor.getBuffer(), 0, compressed, 3, clen);
+        final int len = decompressor.uncompress(compressed, 3, clen);
+        assertEquals("payload",
+                     new String(decompressor.getBuffer(), 0, len, "UTF-8"));
+    }
+
+    @Test
+    public void testCorruptedData() {
+        try {
+            decompressor.uncompress(new byte[]{1, 2, 3, 4, 5}, 0, 5);
+            fail();
+        } catch (final IOException e) {
+            /* expected */
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package ch.ethz.ssh2.crypto.cipher;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+import org.junit.After;
+import org.junit.Before;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.Random;
+import lcmc.utilities.TestSuite1;
+
+/**
+ * Compares the JCE ciphers with the AES and the CTR and CBC modes, that
+ * were used before.
+ */
+public final class JCEBlockCipherTest1 extends TestCase {
+    /** NIST SP 800-38A plain text. */
+    private static final String PLAIN = "6bc1bee22e409f96e93d7e117393172a"
+                                        + "ae2d8a571e03ac9c9eb76fac45af8e51"
+                                        + "30c81c46a35ce411e5fbc1191a0a52ef"
+                                        + "f69f2445df4f9b17ad2b417be66c3710";
+    private static final String KEY128 = "2b7e151628aed2a6abf7158809cf4f3c";
+    private static final String KEY256 = "603deb1015ca71be2b73aef0857d7781"
+                                         + "1f352c073b6108d72d9810a30914dff4";
+    private static final String CBC_IV = "000102030405060708090a0b0c0d0e0f";
+    private static final String CTR_IV = "f0f1f2f3f4f5f6f7f8f9fafbfcfdfeff";
+
+    @Before
+    protected void setUp() {
+        TestSuite1.initTest();
+    }
+
+    @After
+    protected void tearDown() {
+        assertEquals("", TestSuite1.getStdout());
+    }
+
+    private static byte[] bytes(final String hex) {
+        final byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(
+                                        hex.substring(i * 2, i * 2 + 2), 16);
+        }
+        return bytes;
+    }
+
+    /** Returns the AES cipher, that was used before the JCE. */
+    private static BlockCipher oldCipher(final String type,
+                                         final boolean encrypt,
+                                         final byte[] key,
+                                         final byte[] iv) {
+        final AES aes = new AES();
+        if (type.endsWith("-cbc")) {
+            aes.init(encrypt, key);
+            return new CBCMode(aes, iv, encrypt);
+        }
+        aes.init(true, key);
+        return new CTRMode(aes, iv, encrypt);
+    }
+
+    private static BlockCipher newCipher(final String type,
+                                         final boolean encrypt,
+                                         final byte[] key,
+                                         final byte[] iv)
+                                        throws GeneralSecurityException {
+        final String mode = type.endsWith("-cbc") ? "CBC" : "CTR";
+        return new JCEBlockCipher("AES/" + mode + "/NoPadding",
+                                  "AES",
+                                  16,
+                                  encrypt,
+                                  key,
+                                  iv);
+    }
+
+    /** Transforms the data block by block. */
+    private static byte[] transform(final BlockCipher cipher,
+                                    final byte[] data) {
+        final int bs = cipher.getBlockSize();
+        final byte[] out = new byte[data.length];
+        for (int i = 0; i < data.length; i += bs) {
+            cipher.transformBlock(data, i, out, i);
+        }
+        return out;
+    }
+
+    private static void assertVector(final String type,
+                                     final String key,
+                                     final String iv,
+                                     final String encrypted)
+                                        throws GeneralSecurityException {
+        final byte[] k = bytes(key);
+        final byte[] i = bytes(iv);
+        final byte[] plain = bytes(PLAIN);
+        final byte[] enc = bytes(encrypted);
+        assertTrue(Arrays.equals(enc,
+                                 transform(oldCipher(type, true, k, i),
+                                           plain)));
+        assertTrue(Arrays.equals(enc,
+                                 transform(newCipher(type, true, k, i),
+                                           plain)));
+        assertTrue(Arrays.equals(plain,
+                                 transform(oldCipher(type, false, k, i),
+                                           enc)));
+        assertTrue(Arrays.equals(plain,
+                                 transform(newCipher(type, false, k, i),
+                                           enc)));
+    }
+
+    /** Writes the data in the chunks of random length. */
+    private static byte[] write(final BlockCipher cipher,
+                                final byte[] data,
+                                final Random random) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final CipherOutputStream cos = new CipherOutputStream(cipher, out);
+        int off = 0;
+        while (off < data.length) {
+            final int len = Math.min(random.nextInt(5000) + 1,
+                                     data.length - off);
+            if (len == 1) {
+                cos.write(data[off]);
+            } else {
+                cos.write(data, off, len);
+            }
+            off += len;
+        }
+        cos.flush();
+        return out.toByteArray();
+    }
+
+    /** Reads the data in the chunks of random length. */
+    private static byte[] read(final BlockCipher cipher,
+                               final byte[] data,
+                               final Random random) throws IOException {
+        final CipherInputStream cis = new CipherInputStream(
+                                        cipher,
+                                        new ByteArrayInputStream(data));
+        final byte[] out = new byte[data.length];
+        int off = 0;
+        while (off < data.length) {
+            final int len = Math.min(random.nextInt(5000) + 1,
+                                     data.length - off);
+            if (len == 1) {
+                out[off] = (byte) cis.read();
+            } else {
+                assertEquals(len, cis.read(out, off, len));
+            }
+            off += len;
+        }
+        return out;
+    }
+
+    private static void assertStreams(final String type,
+                                      final int keyLength)
+                                        throws GeneralSecurityException,
+                                               IOException {
+        final Random random = new Random(keyLength);
+        final byte[] key = new byte[keyLength];
+        final byte[] iv = new byte[16];
+        random.nextBytes(key);
+        random.nextBytes(iv);
+        final byte[] plain = new byte[16 * 10000];
+        random.nextBytes(plain);
+        final byte[] enc = write(oldCipher(type, true, key, iv),
+                                 plain,
+                                 random);
+        assertTrue(Arrays.equals(enc,
+                                 write(newCipher(type, true, key, iv),
+                                       plain,
+                                       random)));
+        assertTrue(Arrays.equals(plain,
+                                 read(oldCipher(type, false, key, iv),
+                                      enc,
+                                      random)));
+        assertTrue(Arrays.equals(plain,
+                                 read(newCipher(type, false, key, iv),
+                                      enc,
+                                      random)));
+    }
+
+    /* ---- tests ----- */
+
+    @Test
+    public void testVectors() throws GeneralSecurityException {
+        assertVector("aes128-cbc",
+                     KEY128,
+                     CBC_IV,
+                     "7649abac8119b246cee98e9b12e9197d"
+                     + "5086cb9b507219ee95db113a917678b2"
+                     + "73bed6b8e3c1743b7116e69e22229516"
+                     + "3ff1caa1681fac09120eca307586e1a7");
+        assertVector("aes128-ctr",
+                     KEY128,
+                     CTR_IV,
+                     "874d6191b620e3261bef6864990db6ce"
+                     + "9806f66b7970fdff8617187bb9fffdff"
+                     + "5ae4df3edbd5d35e5b4f09020db03eab"
+                     + "1e031dda2fbe03d1792170a0f3009cee");
+        assertVector("aes256-cbc",
+                     KEY256,
+                     CBC_IV,
+                     "f58c4c04d6e5f1ba779eabfb5f7bfbd6"
+                     + "9cfc4e967edb808d679f777bc6702c7d"
+                     + "39f23369a9d9bacfa530e26304231461"
+                     + "b2eb05e2c39be9fcda6c19078c6a9d1b");
+        assertVector("aes256-ctr",
+                     KEY256,
+                     CTR_IV,
+                     "601ec313775789a5b7a7f504bbf3d228"
+                     + "f443e3ca4d62b59aca84e990cacaf5c5"
+                     + "2b0930daa23de94ce87017ba2d84988d"
+                     + "dfc9c58db67aada613c2dd08457941a6");
+    }
+
+    @Test
+    public void testStreams() throws GeneralSecurityException, IOException {
+        for (final String mode : new String[]{"ctr", "cbc"}) {
+            assertStreams("aes128-" + mode, 16);
+            assertStreams("aes192-" + mode, 24);
+            assertStreams("aes256-" + mode, 32);
+        }
+    }
+
+    @Test
+    public void testFactory() {
+        final byte[] key = new byte[16];
+        final byte[] iv = new byte[16];
+        assertTrue(BlockCipherFactory.createCipher("aes128-ctr",
+                                                   true,
+                                                   key,
+                                                   iv)
+                   instanceof JCEBlockCipher);
+        assertTrue(BlockCipherFactory.createCipher("aes128-cbc",
+                                                   false,
+                                                   key,
+                                                   iv)
+                   instanceof JCEBlockCipher);
+        assertFalse(BlockCipherFactory.createCipher("blowfish-ctr",
+                                                    true,
+                                                    key,
+                                                    new byte[8])
+                    instanceof JCEBlockCipher);
+    }
+}
@@ -0,0 +1,133 @@
+package ch.ethz.ssh2.crypto.digest;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+import org.junit.After;
+import org.junit.Before;
+import java.io.UnsupportedEncodingException;
+import java.util.Arrays;
+import java.util.Random;
+import lcmc.utilities.TestSuite1;
+
+/** Compares the JCE MACs with the HMAC, that was used before. */
+public final class MACTest1 extends TestCase {
+    /** RFC 2104, 2202 and 4231 key. */
+    private static final String KEY = "Jefe";
+    /**
+     * RFC 2104, 2202 and 4231 data. The first four bytes are the sequence
+     * number.
+     */
+    private static final String DATA = "what do ya want for nothing?";
+
+    @Before
+    protected void setUp() {
+        TestSuite1.initTest();
+    }
+
+    @After
+    protected void tearDown() {
+        assertEquals("", TestSuite1.getStdout());
+    }
+
+    private static String hex(final byte[] bytes) {
+        final StringBuilder hex = new StringBuilder();
+        for (final byte b : bytes) {
+            hex.append(String.format("%02x", b & 0xff));
+        }
+        return hex.toString();
+    }
+
+    /** Returns the mac of the data, that starts with the sequence number. */
+    private static byte[] mac(final String type,
+                              final byte[] key,
+                              final byte[] data) {
+        final MAC mac = new MAC(type, key);
+        final int seq = ((data[0] & 0xff) << 24)
+                        | ((data[1] & 0xff) << 16)
+                        | ((data[2] & 0xff) << 8)
+                        | (data[3] & 0xff);
+        mac.initMac(seq);
+        mac.update(data, 4, data.length - 4);
+        final byte[] out = new byte[mac.size()];
+        mac.getMac(out, 0);
+        return out;
+    }
+
+    private static byte[] oldMac(final String type,
+                                 final byte[] key,
+                                 final byte[] data) {
+        final Digest md = type.startsWith("hmac-sha1")
+                          ? new SHA1() : new MD5();
+        final int size = type.endsWith("-96") ? 12 : md.getDigestLength();
+        final HMAC hmac = new HMAC(md, key, size);
+        hmac.update(data, 0, data.length);
+        final byte[] out = new byte[hmac.getDigestLength()];
+        hmac.digest(out, 0);
+        return out;
+    }
+
+    private static void assertVector(final String type, final String mac)
+                                        throws UnsupportedEncodingException {
+        assertEquals(mac, hex(mac(type,
+                                  KEY.getBytes("US-ASCII"),
+                                  DATA.getBytes("US-ASCII"))));
+    }
+
+    /* ---- tests ----- */
+
+    @Test
+    public void testVectors() throws UnsupportedEncodingException {
+        assertVector("hmac-md5", "750c783e6ab0b503eaa86e310a5db738");
+        assertVector("hmac-md5-96", "750c783e6ab0b503eaa86e31");
+        assertVector("hmac-sha1", "effcdf6ae5eb2fa2d27416d5f184df9c259a7c79");
+        assertVector("hmac-sha1-96", "effcdf6ae5eb2fa2d27416d5");
+        assertVector("hmac-sha2-256",
+                     "5bdcc146bf60754e6a042426089575c7"
+                     + "5a003f089d2739839dec58b964ec3843");
+        assertVector("hmac-sha2-512",
+                     "164b7a7bfcf819e2e395fbe73b56e0a3"
+                     + "87bd64222e831fd610270cd7ea250554"
+                     + "9758bf75c05a994a6d034f65f8f0e6fd"
+                     + "caeab1a34d4a6b4b636e070a38bce737");
+    }
+
+    @Test
+    public void testOldHMAC() {
+        final Random random = new Random(1);
+        for (final String type : new String[]{"hmac-sha1",
+                                              "hmac-sha1-96",
+                                              "hmac-md5",
+                                              "hmac-md5-96"}) {
+            for (int i = 0; i < 100; i++) {
+                final byte[] key = new byte[MAC.getKeyLen(type)];
+                random.nextBytes(key);
+                final byte[] data = new byte[random.nextInt(3000) + 4];
+                random.nextBytes(data);
+                assertTrue(type,
+                           Arrays.equals(oldMac(type, key, data),
+                                         mac(type, key, data)));
+            }
+        }
+    }
+
+    @Test
+    public void testReuse() {
+        final byte[] key = new byte[32];
+        final byte[] data = new byte[100];
+        new Random(2).nextBytes(data);
+        final MAC mac = new MAC("hmac-sha2-256", key);
+        final byte[] first = new byte[mac.size()];
+        final byte[] second = new byte[mac.size()];
+        mac.initMac(7);
+        mac.update(data, 0, data.length);
+        mac.getMac(first, 0);
+        mac.initMac(7);
+        mac.update(data, 0, data.length);
+        mac.getMac(second, 0);
+        assertTrue(Arrays.equals(first, second));
+        mac.initMac(8);
+        mac.update(data, 0, data.length);
+        mac.getMac(second, 0);
+        assertFalse(Arrays.equals(first, second));
+    }
+}
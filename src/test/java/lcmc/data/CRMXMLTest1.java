@@ -0,0 +1,545 @@
+package lcmc.data;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+import org.junit.After;
+import org.junit.Before;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import lcmc.utilities.TestSuite1;
+
+/**
+ * The expected values are the values, that the DOM parser returned for the
+ * same cib, before the cib was parsed with StAX.
+ */
+public final class CRMXMLTest1 extends TestCase {
+    private static final String PCMK_CIB =
+                      "<pcmk>"
+                    + "<fenced><node>Node2</node></fenced>"
+                    + "<cib dc-uuid='id1' epoch='5'>"
+                    + "<configuration>"
+                    + "<crm_config>"
+                    + "<cluster_property_set id='cib-bootstrap-options'>"
+                    + "<nvpair id='o1' name='stonith-enabled' value='false'/>"
+                    + "<nvpair id='o2' name='no-quorum-policy' "
+                    + "value='ignore'/>"
+                    + "</cluster_property_set>"
+                    + "</crm_config>"
+                    + "<nodes>"
+                    + "<node id='id1' uname='Node1' type='normal'>"
+                    + "<instance_attributes id='nodes-id1'><nvpair id='na1' "
+                    + "name='standby' value='on'/></instance_attributes>"
+                    + "</node>"
+                    + "<node id='id2' uname='node2' type='normal'/>"
+                    + "</nodes>"
+                    + "<resources>"
+                    + "<primitive class='lsb' id='res_lsb_1' type='apache'>"
+                    + "<instance_attributes id='res_lsb_1-ia'><nvpair id='p1' "
+                    + "name='1' value='a'/></instance_attributes>"
+                    + "<meta_attributes id='res_lsb_1-meta'><nvpair id='m1' "
+                    + "name='target-role' value='Started'/><nvpair id='m2' "
+                    + "name='is-managed' value='false'/></meta_attributes>"
+                    + "<operations id='res_lsb_1-ops'>"
+                    + "<op id='res_lsb_1-monitor' name='monitor' "
+                    + "interval='10' timeout='20' start-delay='0'/>"
+                    + "<op id='res_lsb_1-start' name='start' interval='0' "
+                    + "timeout='90'/>"
+                    + "</operations>"
+                    + "</primitive>"
+                    + "<primitive class='heartbeat' id='res_hb_1' "
+                    + "type='drbddisk'>"
+                    + "<meta_attributes id-ref='res_lsb_1-meta'/>"
+                    + "<operations id-ref='res_lsb_1-ops'/>"
+                    + "</primitive>"
+                    + "<group id='grp_1'>"
+                    + "<meta_attributes id='grp_1-meta'><nvpair id='g1' "
+                    + "name='ordered' value='false'/><nvpair id='g2' "
+                    + "name='target-role' value='STOPPED'/></meta_attributes>"
+                    + "<primitive class='lsb' id='res_g1' type='sshd'/>"
+                    + "<primitive class='service' id='res_g2' type='cron'/>"
+                    + "</group>"
+                    + "<clone id='cl_1'>"
+                    + "<meta_attributes id='cl_1-meta'><nvpair id='c1' "
+                    + "name='clone-max' value='2'/></meta_attributes>"
+                    + "<primitive class='lsb' id='res_cl' type='ntp'/>"
+                    + "</clone>"
+                    + "<master id='ms_1'>"
+                    + "<meta_attributes id='ms_1-meta'><nvpair id='c2' "
+                    + "name='master-max' value='1'/></meta_attributes>"
+                    + "<group id='grp_ms'><primitive class='lsb' id='res_ms' "
+                    + "type='x'/></group>"
+                    + "</master>"
+                    + "<master_slave id='ms_2'><primitive class='lsb' "
+                    + "id='res_ms2' type='y'/></master_slave>"
+                    + "<primitive class='stonith' id='st_1' type='null'>"
+                    + "<instance_attributes id='st_1-ia'><nvpair id='s1' "
+                    + "name='priority' value='3'/></instance_attributes>"
+                    + "</primitive>"
+                    + "</resources>"
+                    + "<constraints>"
+                    + "<rsc_colocation id='col_1' rsc='res_g1' "
+                    + "with-rsc='res_lsb_1' score='INFINITY' "
+                    + "rsc-role='Started' with-rsc-role='Master'/>"
+                    + "<rsc_order id='ord_1' first='res_lsb_1' then='grp_1' "
+                    + "score='INFINITY' symmetrical='false' "
+                    + "first-action='start' then-action='promote'/>"
+                    + "<rsc_order id='ord_2' first='res_hb_1' "
+                    + "then='res_lsb_1' type='before' score='0'/>"
+                    + "<rsc_location id='loc_1' rsc='res_lsb_1' node='Node1' "
+                    + "score='100'/>"
+                    + "<rsc_location id='loc_2' rsc='grp_1'><rule "
+                    + "id='loc_2-rule' score='-INFINITY'><expression id='e1' "
+                    + "attribute='#uname' operation='eq' value='NODE2'/>"
+                    + "</rule></rsc_location>"
+                    + "<rsc_location id='loc_3' rsc='cl_1'><rule "
+                    + "id='loc_3-rule' score='-INFINITY' boolean-op='and'>"
+                    + "<expression id='e2' attribute='pingd' "
+                    + "operation='defined'/></rule></rsc_location>"
+                    + "<rsc_order id='ord_set' score='INFINITY'>"
+                    + "<resource_set id='ord_set-0' sequential='false' "
+                    + "require-all='false' action='start'><resource_ref "
+                    + "id='res_g1'/><resource_ref id='res_g2'/></resource_set>"
+                    + "<resource_set id='ord_set-1'><resource_ref "
+                    + "id='res_lsb_1'/></resource_set>"
+                    + "<resource_set id='ord_set-2'><resource_ref "
+                    + "id='res_hb_1'/></resource_set>"
+                    + "</rsc_order>"
+                    + "<rsc_colocation id='col_set' score='INFINITY'>"
+                    + "<resource_set id='col_set-0' role='Master'>"
+                    + "<resource_ref id='ms_1'/></resource_set>"
+                    + "<resource_set id='col_set-1' sequential='false'>"
+                    + "<resource_ref id='cl_1'/><resource_ref id='res_lsb_1'/>"
+                    + "</resource_set>"
+                    + "</rsc_colocation>"
+                    + "<rsc_colocation id='col_dangling' score='0'>"
+                    + "<resource_set id='col_dangling-0'><resource_ref "
+                    + "id='res_g2'/></resource_set></rsc_colocation>"
+                    + "</constraints>"
+                    + "<rsc_defaults><meta_attributes id='rsc-options'>"
+                    + "<nvpair id='rd1' name='resource-stickiness' "
+                    + "value='100'/><nvpair id='rd2' name='target-role' "
+                    + "value='Stopped'/></meta_attributes></rsc_defaults>"
+                    + "<op_defaults><meta_attributes id='op-options'><nvpair "
+                    + "id='od1' name='timeout' value='60'/></meta_attributes>"
+                    + "</op_defaults>"
+                    + "</configuration>"
+                    + "<status>"
+                    + "<node_state id='id1' uname='Node1' join='member' "
+                    + "in_ccm='true' crmd='online'>"
+                    + "<lrm id='id1'><lrm_resources>"
+                    + "<lrm_resource id='res_lsb_1' type='apache' "
+                    + "class='lsb'/>"
+                    + "<lrm_resource id='res_cl:0' type='ntp' class='lsb'/>"
+                    + "<lrm_resource id='res_old' type='Dummy' class='lsb'/>"
+                    + "</lrm_resources></lrm>"
+                    + "<transient_attributes id='id1'><instance_attributes "
+                    + "id='status-id1'>"
+                    + "<nvpair id='t1' name='fail-count-res_lsb_1' "
+                    + "value='INFINITY'/>"
+                    + "<nvpair id='t2' name='fail-count-res_cl:1' value='3'/>"
+                    + "<nvpair id='t3' name='pingd' value='200'/>"
+                    + "<nvpair id='t4' name='last-failure-res_lsb_1' "
+                    + "value='1'/>"
+                    + "</instance_attributes></transient_attributes>"
+                    + "</node_state>"
+                    + "<node_state id='id2' uname='node2' join='pending' "
+                    + "in_ccm='true' crmd='online'/>"
+                    + "</status>"
+                    + "</cib>"
+                    + "</pcmk>";
+
+    private static final String LEGACY_CIB =
+                      "<pcmk>"
+                    + "<cib dc_uuid='id1' dc-uuid='id2'>"
+                    + "<configuration>"
+                    + "<crm_config>"
+                    + "<cluster_property_set id='cib-bootstrap-options'>"
+                    + "<attributes>"
+                    + "<nvpair id='o1' name='symmetric_cluster' value='true'/>"
+                    + "</attributes></cluster_property_set>"
+                    + "</crm_config>"
+                    + "<nodes>"
+                    + "<node id='id1' uname='node1' type='normal'/>"
+                    + "<node id='id2' uname='node2' type='normal'>"
+                    + "<instance_attributes id='nodes-id2'><attributes>"
+                    + "<nvpair id='na1' name='standby' value='off'/>"
+                    + "</attributes></instance_attributes>"
+                    + "</node>"
+                    + "</nodes>"
+                    + "<resources>"
+                    + "<primitive class='heartbeat' id='res_hb' type='IPaddr'>"
+                    + "<instance_attributes id='res_hb-ia'><attributes>"
+                    + "<nvpair id='p1' name='1' value='10.0.0.1'/>"
+                    + "</attributes></instance_attributes>"
+                    + "<meta_attributes id='res_hb-meta'><attributes><nvpair "
+                    + "id='m1' name='target_role' value='stopped'/>"
+                    + "</attributes></meta_attributes>"
+                    + "</primitive>"
+                    + "<group id='grp_1'><primitive class='lsb' id='res_g1' "
+                    + "type='sshd'/></group>"
+                    + "</resources>"
+                    + "<constraints>"
+                    + "<rsc_colocation id='col_1' from='res_g1' to='res_hb' "
+                    + "score='INFINITY' from_role='Started'/>"
+                    + "<rsc_order id='ord_1' from='grp_1' to='res_hb' "
+                    + "score='INFINITY' action='start' to_action='start'/>"
+                    + "</constraints>"
+                    + "</configuration>"
+                    + "<status>"
+                    + "<node_state id='id1' uname='node1' join='member' "
+                    + "in_ccm='true' crmd='online'>"
+                    + "<transient_attributes id='id1'><instance_attributes "
+                    + "id='status-id1'><attributes>"
+                    + "<nvpair id='t1' name='fail-count-res_hb' value='1'/>"
+                    + "</attributes></instance_attributes>"
+                    + "</transient_attributes>"
+                    + "</node_state>"
+                    + "</status>"
+                    + "</cib>"
+                    + "</pcmk>";
+
+    @Before
+    protected void setUp() {
+        TestSuite1.initTest();
+    }
+
+    @After
+    protected void tearDown() {
+        assertEquals("", TestSuite1.getStdout());
+    }
+
+    /** Parses the cib like pacemaker 1.1 would return it. */
+    private static CibQuery parsePcmk() {
+        final Host host = new Host();
+        host.setPacemakerVersion("1.1.8");
+        final CibQuery cibQuery = new CRMXML(host).parseCibQuery(PCMK_CIB);
+        /* the stonith RA does not exist, there is no meta-data */
+        TestSuite1.clearStdout();
+        return cibQuery;
+    }
+
+    private static Map<String, String> map(final String... keysAndValues) {
+        final Map<String, String> map = new HashMap<String, String>();
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            map.put(keysAndValues[i], keysAndValues[i + 1]);
+        }
+        return map;
+    }
+
+    private static Set<String> set(final String... values) {
+        return new HashSet<String>(Arrays.asList(values));
+    }
+
+    private static void assertRA(final String name,
+                                 final String raClass,
+                                 final ResourceAgent ra) {
+        assertEquals(name, ra.getName());
+        assertEquals(ResourceAgent.HEARTBEAT_PROVIDER, ra.getProvider());
+        assertEquals(raClass, ra.getResourceClass());
+    }
+
+    private static void assertRscSet(final String id,
+                                     final List<String> rscIds,
+                                     final CRMXML.RscSet rscSet) {
+        assertEquals(id, rscSet.getId());
+        assertEquals(rscIds, rscSet.getRscIds());
+    }
+
+    /* ---- tests ----- */
+
+    @Test
+    public void testPrimitives() {
+        final CibQuery cibQuery = parsePcmk();
+        final Map<String, List<String>> groups =
+                                            cibQuery.getGroupsToResources();
+        assertEquals(Arrays.asList("res_lsb_1", "res_hb_1", "st_1", "res_old"),
+                     groups.get("none"));
+        assertEquals(map("1", "a",
+                         "target-role", "started",
+                         "is-managed", "false"),
+                     cibQuery.getParameters().get("res_lsb_1"));
+        assertEquals(map("1", "p1", "target-role", "m1", "is-managed", "m2"),
+                     cibQuery.getParametersNvpairsIds().get("res_lsb_1"));
+        assertEquals(map("stonith-priority", "3"),
+                     cibQuery.getParameters().get("st_1"));
+        assertEquals("res_lsb_1-ia",
+                     cibQuery.getResourceInstanceAttrId().get("res_lsb_1"));
+        assertEquals("st_1-ia",
+                     cibQuery.getResourceInstanceAttrId().get("st_1"));
+        assertEquals("res_lsb_1-meta",
+                     cibQuery.getMetaAttrsId().get("res_lsb_1"));
+        final Map<String, ResourceAgent> types = cibQuery.getResourceType();
+        assertRA("apache", "lsb", types.get("res_lsb_1"));
+        assertRA("drbddisk", "heartbeat", types.get("res_hb_1"));
+        assertRA("cron", "service", types.get("res_g2"));
+        assertRA("null", "stonith", types.get("st_1"));
+        assertEquals("10", cibQuery.getOperations().get("res_lsb_1",
+                                                        "monitor",
+                                                        "interval"));
+        assertEquals("20", cibQuery.getOperations().get("res_lsb_1",
+                                                        "monitor",
+                                                        "timeout"));
+        assertEquals("0", cibQuery.getOperations().get("res_lsb_1",
+                                                       "monitor",
+                                                       "start-delay"));
+        assertEquals("90", cibQuery.getOperations().get("res_lsb_1",
+                                                        "start",
+                                                        "timeout"));
+        assertNull(cibQuery.getOperations().get("res_lsb_1",
+                                                "start",
+                                                "start-delay"));
+        assertEquals(6, cibQuery.getOperations().size());
+        assertEquals("res_lsb_1-ops",
+                     cibQuery.getOperationsId().get("res_lsb_1"));
+        assertEquals(map("monitor", "res_lsb_1-monitor",
+                         "start", "res_lsb_1-start"),
+                     cibQuery.getResOpIds().get("res_lsb_1"));
+    }
+
+    @Test
+    public void testGroups() {
+        final CibQuery cibQuery = parsePcmk();
+        final Map<String, List<String>> groups =
+                                            cibQuery.getGroupsToResources();
+        assertEquals(set("none", "grp_1", "cl_1", "ms_1", "grp_ms", "ms_2"),
+                     groups.keySet());
+        assertEquals(Arrays.asList("res_g1", "res_g2"), groups.get("grp_1"));
+        assertEquals(map("group-ordered", "false", "target-role", "stopped"),
+                     cibQuery.getParameters().get("grp_1"));
+        assertEquals(map("group-ordered", "g1", "target-role", "g2"),
+                     cibQuery.getParametersNvpairsIds().get("grp_1"));
+        assertEquals("grp_1-meta", cibQuery.getMetaAttrsId().get("grp_1"));
+        assertEquals(map(), cibQuery.getParameters().get("res_g1"));
+        assertRA("sshd", "lsb", cibQuery.getResourceType().get("res_g1"));
+    }
+
+    @Test
+    public void testClones() {
+        final CibQuery cibQuery = parsePcmk();
+        final Map<String, List<String>> groups =
+                                            cibQuery.getGroupsToResources();
+        assertEquals(Arrays.asList("res_cl"), groups.get("cl_1"));
+        assertEquals(Arrays.asList("grp_ms"), groups.get("ms_1"));
+        assertEquals(Arrays.asList("res_ms"), groups.get("grp_ms"));
+        assertEquals(Arrays.asList("res_ms2"), groups.get("ms_2"));
+        assertEquals(map("cl_1", "res_cl",
+                         "ms_1", "grp_ms",
+                         "ms_2", "res_ms2"),
+                     cibQuery.getCloneToResource());
+        assertEquals(Arrays.asList("ms_1", "ms_2"), cibQuery.getMasterList());
+        assertEquals(map("clone-max", "2"),
+                     cibQuery.getParameters().get("cl_1"));
+        assertEquals(map("master-max", "1"),
+                     cibQuery.getParameters().get("ms_1"));
+        assertEquals(map("master-max", "c2"),
+                     cibQuery.getParametersNvpairsIds().get("ms_1"));
+        assertEquals(map(), cibQuery.getParameters().get("ms_2"));
+        assertEquals("cl_1-meta", cibQuery.getMetaAttrsId().get("cl_1"));
+        assertRA("x", "lsb", cibQuery.getResourceType().get("res_ms"));
+    }
+
+    @Test
+    public void testIdRefs() {
+        final CibQuery cibQuery = parsePcmk();
+        assertEquals(map("res_hb_1", "res_lsb_1"),
+                     cibQuery.getMetaAttrsRefs());
+        assertEquals(map("res_hb_1", "res_lsb_1"),
+                     cibQuery.getOperationsRefs());
+        assertNull(cibQuery.getMetaAttrsId().get("res_hb_1"));
+        assertNull(cibQuery.getOperationsId().get("res_hb_1"));
+        assertEquals(map(), cibQuery.getParameters().get("res_hb_1"));
+    }
+
+    @Test
+    public void testConstraints() {
+        final CibQuery cibQuery = parsePcmk();
+        final CRMXML.ColocationData col =
+                                    cibQuery.getColocationId().get("col_1");
+        assertEquals("res_g1", col.getRsc());
+        assertEquals("res_lsb_1", col.getWithRsc());
+        assertEquals("Started", col.getRscRole());
+        assertEquals("Master", col.getWithRscRole());
+        assertEquals("INFINITY", col.getScore());
+        assertEquals(Arrays.asList(col),
+                     cibQuery.getColocationRsc().get("res_g1"));
+
+        final CRMXML.OrderData ord1 = cibQuery.getOrderId().get("ord_1");
+        assertEquals("res_lsb_1", ord1.getRscFirst());
+        assertEquals("grp_1", ord1.getRscThen());
+        assertEquals("INFINITY", ord1.getScore());
+        assertEquals("false", ord1.getSymmetrical());
+        assertEquals("start", ord1.getFirstAction());
+        assertEquals("promote", ord1.getThenAction());
+        /* type="before" exchanges the resources */
+        final CRMXML.OrderData ord2 = cibQuery.getOrderId().get("ord_2");
+        assertEquals("res_lsb_1", ord2.getRscFirst());
+        assertEquals("res_hb_1", ord2.getRscThen());
+        assertEquals("0", ord2.getScore());
+        assertEquals(Arrays.asList(ord1, ord2),
+                     cibQuery.getOrderRsc().get("res_lsb_1"));
+
+        final Map<String, Map<String, HostLocation>> locations =
+                                                    cibQuery.getLocation();
+        final HostLocation loc1 = locations.get("res_lsb_1").get("node1");
+        assertEquals("100", loc1.getScore());
+        assertEquals("eq", loc1.getOperation());
+        final HostLocation loc2 = locations.get("grp_1").get("node2");
+        assertEquals("-INFINITY", loc2.getScore());
+        assertEquals("eq", loc2.getOperation());
+        assertEquals(map(), locations.get("cl_1"));
+        assertEquals(Arrays.asList("loc_1"),
+                     cibQuery.getLocationsId().get("res_lsb_1"));
+        assertEquals(Arrays.asList("loc_3"),
+                     cibQuery.getLocationsId().get("cl_1"));
+        assertEquals("loc_1",
+                     cibQuery.getResHostToLocId().get("res_lsb_1", "node1"));
+        assertEquals("loc_2",
+                     cibQuery.getResHostToLocId().get("grp_1", "node2"));
+        final HostLocation ping = cibQuery.getPingLocation().get("cl_1");
+        assertEquals("-INFINITY", ping.getScore());
+        assertEquals("defined", ping.getOperation());
+        assertNull(ping.getValue());
+        assertEquals(map("cl_1", "loc_3"), cibQuery.getResPingToLocId());
+    }
+
+    @Test
+    public void testResourceSets() {
+        final CibQuery cibQuery = parsePcmk();
+        final List<CRMXML.RscSet> ordSets =
+                                cibQuery.getOrderIdRscSets().get("ord_set");
+        assertEquals(3, ordSets.size());
+        assertRscSet("ord_set-0",
+                     Arrays.asList("res_g1", "res_g2"),
+                     ordSets.get(0));
+        assertEquals("false", ordSets.get(0).getSequential());
+        assertEquals("false", ordSets.get(0).getRequireAll());
+        assertEquals("start", ordSets.get(0).getOrderAction());
+        assertRscSet("ord_set-1", Arrays.asList("res_lsb_1"), ordSets.get(1));
+        assertNull(ordSets.get(1).getSequential());
+        assertRscSet("ord_set-2", Arrays.asList("res_hb_1"), ordSets.get(2));
+        final CRMXML.OrderData ord = cibQuery.getOrderId().get("ord_set");
+        assertNull(ord.getRscFirst());
+        assertEquals("INFINITY", ord.getScore());
+
+        final List<CRMXML.RscSet> colSets =
+                        cibQuery.getColocationIdRscSets().get("col_set");
+        assertEquals(2, colSets.size());
+        assertRscSet("col_set-0", Arrays.asList("ms_1"), colSets.get(0));
+        assertEquals("Master", colSets.get(0).getColocationRole());
+        assertRscSet("col_set-1",
+                     Arrays.asList("cl_1", "res_lsb_1"),
+                     colSets.get(1));
+        assertEquals("false", colSets.get(1).getSequential());
+
+        final List<CRMXML.RscSetConnectionData> connections =
+                                                cibQuery.getRscSetConnections();
+        assertEquals(4, connections.size());
+        /* order connections are in the reverse order */
+        assertSame(ordSets.get(1), connections.get(0).getRscSet1());
+        assertSame(ordSets.get(2), connections.get(0).getRscSet2());
+        assertEquals(1, connections.get(0).getConnectionPos());
+        assertSame(ordSets.get(0), connections.get(1).getRscSet1());
+        assertSame(ordSets.get(1), connections.get(1).getRscSet2());
+        assertEquals(0, connections.get(1).getConnectionPos());
+        assertFalse(connections.get(1).isColocation());
+        assertEquals("ord_set", connections.get(1).getConstraintId());
+        /* colocation sets are the other way around */
+        assertSame(colSets.get(1), connections.get(2).getRscSet1());
+        assertSame(colSets.get(0), connections.get(2).getRscSet2());
+        assertTrue(connections.get(2).isColocation());
+        assertEquals("col_set", connections.get(2).getConstraintId());
+        /* just one set */
+        final CRMXML.RscSetConnectionData dangling = connections.get(3);
+        assertRscSet("col_dangling-0",
+                     Arrays.asList("res_g2"),
+                     dangling.getRscSet1());
+        assertNull(dangling.getRscSet2());
+        assertEquals("col_dangling", dangling.getConstraintId());
+    }
+
+    @Test
+    public void testNodes() {
+        final CibQuery cibQuery = parsePcmk();
+        assertEquals("Node1", cibQuery.getDC());
+        assertEquals(set("node2"), cibQuery.getFencedNodes());
+        assertEquals("on",
+                     cibQuery.getNodeParameters().get("node1", "standby"));
+        assertEquals(1, cibQuery.getNodeParameters().size());
+        assertEquals(map("node1", "yes", "node2", "no"),
+                     cibQuery.getNodeOnline());
+        assertEquals(set("node2"), cibQuery.getNodePending());
+        assertEquals(map("stonith-enabled", "false",
+                         "no-quorum-policy", "ignore"),
+                     cibQuery.getCrmConfig());
+        assertEquals("rsc-options", cibQuery.getRscDefaultsId());
+        assertEquals(map("resource-stickiness", "100",
+                         "target-role", "stopped"),
+                     cibQuery.getRscDefaultsParams());
+        assertEquals(map("resource-stickiness", "rd1", "target-role", "rd2"),
+                     cibQuery.getRscDefaultsParamsNvpairIds());
+        assertEquals(map("timeout", "60"), cibQuery.getOpDefaultsParams());
+    }
+
+    @Test
+    public void testTransientAttributes() {
+        final CibQuery cibQuery = parsePcmk();
+        assertEquals("INFINITY", cibQuery.getFailCount("node1", "res_lsb_1"));
+        assertEquals("3", cibQuery.getFailCount("node1", "res_cl"));
+        assertEquals("3", cibQuery.getFailCount("node1", "res_cl:1"));
+        assertEquals(3, cibQuery.getFailed().size());
+        /* clone instances from the fail counts and from the lrm */
+        assertEquals(set("0", "1"),
+                     cibQuery.getFailedClones().get("node1", "res_cl"));
+        assertEquals("200", cibQuery.getPingCount("Node1"));
+        assertEquals(1, cibQuery.getPingCount().size());
+        final Map<String, Set<String>> inLRM = cibQuery.getInLRM();
+        assertEquals(set("node1"), inLRM.keySet());
+        assertEquals(set("res_lsb_1", "res_cl", "res_old"),
+                     inLRM.get("node1"));
+        assertEquals(set("res_old"), cibQuery.getOrphaned());
+        assertRA("Dummy", "lsb", cibQuery.getResourceType().get("res_old"));
+        assertEquals(map(), cibQuery.getParameters().get("res_old"));
+    }
+
+    @Test
+    public void testLegacyAttributes() {
+        final Host host = new Host();
+        host.setHeartbeatVersion("2.1.3");
+        final CibQuery cibQuery = new CRMXML(host).parseCibQuery(LEGACY_CIB);
+        assertEquals("node2", cibQuery.getDC());
+        assertEquals(map("symmetric_cluster", "true"),
+                     cibQuery.getCrmConfig());
+        assertEquals("off",
+                     cibQuery.getNodeParameters().get("node2", "standby"));
+        assertEquals(map("1", "10.0.0.1", "target_role", "stopped"),
+                     cibQuery.getParameters().get("res_hb"));
+        assertEquals(map("1", "p1", "target_role", "m1"),
+                     cibQuery.getParametersNvpairsIds().get("res_hb"));
+        assertEquals("res_hb-ia",
+                     cibQuery.getResourceInstanceAttrId().get("res_hb"));
+        assertEquals("res_hb-meta", cibQuery.getMetaAttrsId().get("res_hb"));
+        assertRA("IPaddr", "heartbeat",
+                 cibQuery.getResourceType().get("res_hb"));
+        assertEquals(Arrays.asList("res_g1"),
+                     cibQuery.getGroupsToResources().get("grp_1"));
+        /* from, to constraints */
+        final CRMXML.ColocationData col =
+                                    cibQuery.getColocationId().get("col_1");
+        assertEquals("res_g1", col.getRsc());
+        assertEquals("res_hb", col.getWithRsc());
+        assertEquals("Started", col.getRscRole());
+        assertNull(col.getWithRscRole());
+        final CRMXML.OrderData ord = cibQuery.getOrderId().get("ord_1");
+        assertEquals("res_hb", ord.getRscFirst());
+        assertEquals("grp_1", ord.getRscThen());
+        assertEquals("start", ord.getFirstAction());
+        assertEquals("start", ord.getThenAction());
+        assertEquals(map("node1", "yes", "node2", "no"),
+                     cibQuery.getNodeOnline());
+        assertEquals("1", cibQuery.getFailCount("node1", "res_hb"));
+    }
+}
@@ -0,0 +1,111 @@
+package lcmc.data;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+import org.junit.After;
+import org.junit.Before;
+import java.util.Arrays;
+import java.util.List;
+import lcmc.utilities.Tools;
+import lcmc.utilities.TestSuite1;
+
+public final class ClusterStatusTest1 extends TestCase {
+    private static final List<String> OLD_CIB = Arrays.asList(
+                    "<cib>",
+                    "<configuration>",
+                    "<resources>",
+                    "<primitive id=\"res_Dummy_1\"/>",
+                    "</resources>",
+                    "</configuration>",
+                    "<status/>",
+                    "</cib>");
+
+    @Before
+    protected void setUp() {
+        TestSuite1.initTest();
+    }
+
+    @After
+    protected void tearDown() {
+        assertEquals("", TestSuite1.getStdout());
+    }
+
+    private static String md5Line(final List<String> lines) {
+        return "md5 " + Tools.getMD5(Tools.join("\n", lines));
+    }
+
+    /* ---- tests ----- */
+
+    @Test
+    public void testApplyCibDiff() {
+        final List<String> newCib = Arrays.asList(
+                    "<cib>",
+                    "<configuration>",
+                    "<resources>",
+                    "<primitive id=\"res_Dummy_1\"/>",
+                    "<primitive id=\"res_Dummy_2\"/>",
+                    "</resources>",
+                    "</configuration>",
+                    "<status>",
+                    "<node_state id=\"node1\"/>",
+                    "</status>",
+                    "</cib>");
+        final List<String> diff = Arrays.asList(
+                    md5Line(newCib),
+                    "@@ 4 0 1",
+                    "<primitive id=\"res_Dummy_2\"/>",
+                    "@@ 6 1 3",
+                    "<status>",
+                    "<node_state id=\"node1\"/>",
+                    "</status>");
+        assertEquals(newCib, ClusterStatus.applyCibDiff(OLD_CIB, diff));
+    }
+
+    @Test
+    public void testApplyCibDiffRemove() {
+        final List<String> newCib = Arrays.asList(
+                    "<cib>",
+                    "<configuration>",
+                    "<resources>",
+                    "</resources>",
+                    "</configuration>",
+                    "<status/>",
+                    "</cib>");
+        final List<String> diff = Arrays.asList(md5Line(newCib), "@@ 3 1 0");
+        assertEquals(newCib, ClusterStatus.applyCibDiff(OLD_CIB, diff));
+    }
+
+    @Test
+    public void testApplyCibDiffInvalid() {
+        assertNull(ClusterStatus.applyCibDiff(
+                    null,
+                    Arrays.asList(md5Line(OLD_CIB))));
+        assertEquals(OLD_CIB, ClusterStatus.applyCibDiff(
+                    OLD_CIB,
+                    Arrays.asList(md5Line(OLD_CIB))));
+        /* wrong md5 sum */
+        assertNull(ClusterStatus.applyCibDiff(
+                    OLD_CIB,
+                    Arrays.asList(md5Line(OLD_CIB), "@@ 3 1 0")));
+        /* out of the old cib */
+        assertNull(ClusterStatus.applyCibDiff(
+                    OLD_CIB,
+                    Arrays.asList(md5Line(OLD_CIB), "@@ 8 1 0")));
+        /* changes not in order */
+        assertNull(ClusterStatus.applyCibDiff(
+                    OLD_CIB,
+                    Arrays.asList(md5Line(OLD_CIB),
+                                  "@@ 4 0 0",
+                                  "@@ 3 0 0")));
+        /* missing lines */
+        assertNull(ClusterStatus.applyCibDiff(
+                    OLD_CIB,
+                    Arrays.asList(md5Line(OLD_CIB), "@@ 3 1 2", "<x/>")));
+        assertNull(ClusterStatus.applyCibDiff(
+                    OLD_CIB,
+                    Arrays.asList(md5Line(OLD_CIB), "@@ a 1 0")));
+        assertNull(ClusterStatus.applyCibDiff(
+                    OLD_CIB,
+                    Arrays.asList("<cib>")));
+    }
+}
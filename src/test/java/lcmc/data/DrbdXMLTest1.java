@@ -0,0 +1,123 @@
+package lcmc.data;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+import org.junit.After;
+import org.junit.Before;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import lcmc.utilities.TestSuite1;
+
+public final class DrbdXMLTest1 extends TestCase {
+    @Before
+    protected void setUp() {
+        TestSuite1.initTest();
+    }
+
+    @After
+    protected void tearDown() {
+        assertEquals("", TestSuite1.getStdout());
+    }
+
+    private static final String COMMON =
+                                    "<common protocol=\"C\"></common>";
+
+    private static final String R0 =
+                    "<resource name=\"r0\" protocol=\"C\">"
+                    + "<host name=\"h1\"><device minor=\"0\">/dev/drbd0"
+                    + "</device><disk>/dev/sda1</disk>"
+                    + "<address family=\"ipv4\" port=\"7788\">10.0.0.1"
+                    + "</address><meta-disk>internal</meta-disk></host>"
+                    + "</resource>";
+
+    private static final String R1 =
+                    "<resource name=\"r1\" protocol=\"C\">"
+                    + "<host name=\"h1\"><device minor=\"1\">/dev/drbd1"
+                    + "</device><disk>/dev/sdb1</disk>"
+                    + "<address family=\"ipv4\" port=\"7789\">10.0.0.1"
+                    + "</address><meta-disk>internal</meta-disk></host>"
+                    + "</resource>";
+
+    /** Returns drbd xml of the config with the default schema. */
+    private static DrbdXML drbdXML(final String... sections) {
+        return drbdXML(new Host[]{}, new HashMap<Host, String>(), sections);
+    }
+
+    /** Returns drbd xml of the config. */
+    private static DrbdXML drbdXML(final Host[] hosts,
+                                   final Map<Host, String> parameters,
+                                   final String... sections) {
+        final DrbdXML dxml = new DrbdXML(hosts, parameters);
+        final StringBuilder config = new StringBuilder(
+                                      "<config file=\"/etc/drbd.conf\">");
+        for (final String section : sections) {
+            config.append(section);
+        }
+        config.append("</config>");
+        dxml.update(config.toString());
+        return dxml;
+    }
+
+    private static Set<String> set(final String... names) {
+        return new HashSet<String>(Arrays.asList(names));
+    }
+
+    /* ---- tests ----- */
+
+    @Test
+    public void testNoOldConfig() {
+        assertEquals(set("r0", "r1"),
+                     drbdXML(R0, R1).getChangedResources(null));
+        assertEquals(set(), drbdXML().getChangedResources(null));
+    }
+
+    @Test
+    public void testSameConfig() {
+        assertEquals(set(),
+                     drbdXML(COMMON, R0, R1).getChangedResources(
+                                                   drbdXML(COMMON, R0, R1)));
+    }
+
+    @Test
+    public void testAddedRemovedChanged() {
+        assertEquals(set("r1"),
+                     drbdXML(R0, R1).getChangedResources(drbdXML(R0)));
+        assertEquals(set("r1"),
+                     drbdXML(R0).getChangedResources(drbdXML(R0, R1)));
+        assertEquals(set("r0"),
+                     drbdXML(R0.replace("7788", "7790"), R1)
+                                       .getChangedResources(drbdXML(R0, R1)));
+    }
+
+    @Test
+    public void testCommonChanged() {
+        assertEquals(set("Section.Common", "r0", "r1"),
+                     drbdXML(COMMON, R0, R1).getChangedResources(
+                                                         drbdXML(R0, R1)));
+        assertEquals(set("Section.Common", "r0", "r1"),
+                     drbdXML(COMMON.replace("C", "B"), R0, R1)
+                               .getChangedResources(drbdXML(COMMON, R0, R1)));
+    }
+
+    @Test
+    public void testSchemaChanged() {
+        final Host host = new Host();
+        host.setHostname("h1");
+        final Map<Host, String> parameters = new HashMap<Host, String>();
+        parameters.put(host, "");
+        final DrbdXML newXML =
+                        drbdXML(new Host[]{host}, parameters, COMMON, R0, R1);
+        assertEquals(set(DrbdXML.GLOBAL_SECTION, "Section.Common", "r0", "r1"),
+                     newXML.getChangedResources(drbdXML(COMMON, R0, R1)));
+        assertEquals(set(DrbdXML.GLOBAL_SECTION),
+                     drbdXML(new Host[]{host}, parameters)
+                                          .getChangedResources(drbdXML()));
+        /* the schema is shared */
+        assertEquals(set(),
+                     newXML.getChangedResources(
+                      drbdXML(new Host[]{host}, parameters, COMMON, R0, R1)));
+    }
+}
@@ -0,0 +1,98 @@
+package lcmc.data;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+import org.junit.After;
+import org.junit.Before;
+import java.io.File;
+import java.io.IOException;
+import lcmc.utilities.TestSuite1;
+
+public final class ResourceAgentCacheTest1 extends TestCase {
+    private File cacheDir;
+    private ResourceAgentCache cache;
+
+    @Before
+    protected void setUp() throws IOException {
+        TestSuite1.initTest();
+        cacheDir = File.createTempFile("lcmc-ra-cache", "");
+        assertTrue(cacheDir.delete());
+        assertTrue(cacheDir.mkdir());
+        cache = new ResourceAgentCache(cacheDir.getPath());
+    }
+
+    @After
+    protected void tearDown() {
+        delete(cacheDir);
+        assertEquals("", TestSuite1.getStdout());
+    }
+
+    private static void delete(final File f) {
+        final File[] files = f.listFiles();
+        if (files != null) {
+            for (final File child : files) {
+                delete(child);
+            }
+        }
+        f.delete();
+    }
+
+    /* ---- tests ----- */
+
+    @Test
+    public void testGetPut() {
+        assertNull(cache.get("heartbeat", "Dummy", "abc123"));
+        cache.put("heartbeat", "Dummy", "abc123", "<meta/>\n");
+        assertEquals("<meta/>\n", cache.get("heartbeat", "Dummy", "abc123"));
+        assertNull(cache.get("heartbeat", "Dummy", "abc124"));
+        assertNull(cache.get("pacemaker", "Dummy", "abc123"));
+        assertNull(cache.get("heartbeat", "Stateful", "abc123"));
+    }
+
+    @Test
+    public void testMultiLine() {
+        final String metaData = "<resource-agent>\n"
+                                + "  <parameters/>\n"
+                                + "</resource-agent>\n";
+        cache.put("heartbeat", "IPaddr2", "0f", metaData);
+        assertEquals(metaData, cache.get("heartbeat", "IPaddr2", "0f"));
+    }
+
+    @Test
+    public void testInvalidNames() {
+        cache.put("../heartbeat", "Dummy", "abc", "x");
+        cache.put("heartbeat", "Dum/my", "abc", "x");
+        cache.put("heartbeat", "Dummy", "xyz", "x");
+        cache.put(null, "Dummy", "abc", "x");
+        assertNull(cache.get("../heartbeat", "Dummy", "abc"));
+        assertNull(cache.get("heartbeat", "Dum/my", "abc"));
+        assertNull(cache.get("heartbeat", "Dummy", "xyz"));
+        assertNull(cache.get(null, "Dummy", "abc"));
+        assertEquals(0, cacheDir.list().length);
+    }
+
+    @Test
+    public void testVersionsAreKept() {
+        cache.put("heartbeat", "Dummy", "a1", "one\n");
+        cache.put("heartbeat", "Dummy", "a2", "two\n");
+        assertEquals("one\n", cache.get("heartbeat", "Dummy", "a1"));
+        assertEquals("two\n", cache.get("heartbeat", "Dummy", "a2"));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedIsPruned() {
+        final int max = ResourceAgentCache.MAX_VERSIONS;
+        final File dir = new File(cacheDir, "heartbeat");
+        for (int i = 0; i < max; i++) {
+            cache.put("heartbeat", "Dummy", "a" + i, "v" + i + "\n");
+            new File(dir, "Dummy.a" + i).setLastModified(1000000L * (i + 1));
+        }
+        /* a0 is the oldest, but it was used recently */
+        assertEquals("v0\n", cache.get("heartbeat", "Dummy", "a0"));
+        cache.put("heartbeat", "Dummy", "b0", "new\n");
+        assertEquals(max, dir.list().length);
+        assertNull(cache.get("heartbeat", "Dummy", "a1"));
+        assertEquals("v0\n", cache.get("heartbeat", "Dummy", "a0"));
+        assertEquals("new\n", cache.get("heartbeat", "Dummy", "b0"));
+    }
+}
@@ -0,0 +1,119 @@
+package lcmc.data;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+import org.junit.After;
+import org.junit.Before;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import lcmc.utilities.TestSuite1;
+
+public final class VMSXMLTest1 extends TestCase {
+    private Host host;
+
+    @Before
+    protected void setUp() {
+        TestSuite1.initTest();
+        host = new Host();
+        host.setHostname("h1");
+    }
+
+    @After
+    protected void tearDown() {
+        assertEquals("", TestSuite1.getStdout());
+    }
+
+    /** Returns the vm part of the output. */
+    private static String vm(final String name,
+                             final String md5,
+                             final String state) {
+        return "<vm name=\"" + name + "\" md5=\"" + md5 + "\">"
+               + "<info>State: " + state + "</info>"
+               + "<config><domain type=\"kvm\"><name>" + name + "</name>"
+               + "<vcpu>1</vcpu><devices>"
+               + "<input type=\"tablet\" bus=\"usb\"/></devices>"
+               + "</domain></config></vm>";
+    }
+
+    /** Returns the output of the VMSXML.GetData command. */
+    private static String output(final String md5, final String... vms) {
+        final StringBuilder output = new StringBuilder(
+                                            "<vms md5=\"" + md5 + "\">");
+        for (final String vm : vms) {
+            output.append(vm);
+        }
+        output.append("</vms>");
+        return output.toString();
+    }
+
+    private static Set<String> set(final String... names) {
+        return new HashSet<String>(Arrays.asList(names));
+    }
+
+    /** Returns a new object updated from the output. */
+    private VMSXML update(final String output, final VMSXML old) {
+        final VMSXML vmsXML = new VMSXML(host);
+        assertTrue(vmsXML.update(output, old));
+        return vmsXML;
+    }
+
+    /* ---- tests ----- */
+
+    @Test
+    public void testNoOldObject() {
+        final VMSXML vmsXML = update(output("a",
+                                            vm("d1", "1", "running"),
+                                            vm("d2", "2", "shut off")),
+                                     null);
+        assertEquals(set("d1", "d2"), vmsXML.getChangedDomains());
+        assertEquals(Arrays.asList("d1", "d2"), vmsXML.getDomainNames());
+        assertTrue(vmsXML.isRunning("d1"));
+        assertFalse(vmsXML.isRunning("d2"));
+    }
+
+    @Test
+    public void testUnchangedOutput() {
+        final String output = output("a", vm("d1", "1", "running"));
+        final VMSXML old = update(output, null);
+        final VMSXML vmsXML = new VMSXML(host);
+        assertFalse(vmsXML.update(output, old));
+        assertTrue(vmsXML.getChangedDomains().isEmpty());
+    }
+
+    @Test
+    public void testChangedDomains() {
+        final VMSXML old = update(output("a",
+                                         vm("d1", "1", "running"),
+                                         vm("d2", "2", "shut off")),
+                                  null);
+        final VMSXML vmsXML = update(output("b",
+                                            vm("d1", "1", "running"),
+                                            vm("d2", "3", "paused"),
+                                            vm("d3", "4", "running")),
+                                     old);
+        assertEquals(set("d2", "d3"), vmsXML.getChangedDomains());
+        assertEquals(set("d1", "d2", "d3"),
+                     new HashSet<String>(vmsXML.getDomainNames()));
+        /* copied from the old object */
+        assertTrue(vmsXML.isRunning("d1"));
+        assertEquals("d1", vmsXML.getValue("d1", VMSXML.VM_PARAM_NAME));
+        assertEquals("1", vmsXML.getValue("d1", VMSXML.VM_PARAM_VCPU));
+        /* parsed again */
+        assertTrue(vmsXML.isRunning("d2"));
+        assertTrue(vmsXML.isSuspended("d2"));
+    }
+
+    @Test
+    public void testRemovedDomain() {
+        final VMSXML old = update(output("a",
+                                         vm("d1", "1", "running"),
+                                         vm("d2", "2", "running")),
+                                  null);
+        final VMSXML vmsXML = update(output("b", vm("d2", "2", "running")),
+                                     old);
+        assertEquals(set("d1"), vmsXML.getChangedDomains());
+        assertEquals(Arrays.asList("d2"), vmsXML.getDomainNames());
+        assertFalse(vmsXML.isRunning("d1"));
+    }
+}
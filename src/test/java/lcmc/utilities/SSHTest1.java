@@ -24,4 +24,21 @@ public final class SSHTest1 extends TestCase {
             host.getSSH().installTestFiles();
         }
     }
+
+    @Test
+    public void testEndsWithSudoPrompt() {
+        final String p = SSH.SUDO_PROMPT;
+        assertTrue(SSH.endsWithSudoPrompt(null, p));
+        assertTrue(SSH.endsWithSudoPrompt(null, "line\n" + p));
+        assertFalse(SSH.endsWithSudoPrompt(null, p + "\n"));
+        assertFalse(SSH.endsWithSudoPrompt(null, "output"));
+        assertFalse(SSH.endsWithSudoPrompt(null, p.substring(3)));
+        for (int i = 1; i < p.length(); i++) {
+            assertTrue(SSH.endsWithSudoPrompt("x" + p.substring(0, i),
+                                              p.substring(i)));
+            assertFalse(SSH.endsWithSudoPrompt(
+                                         p.substring(0, i - 1) + "#",
+                                         p.substring(i)));
+        }
+    }
 }
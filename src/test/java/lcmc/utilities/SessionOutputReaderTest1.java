@@ -0,0 +1,125 @@
+package lcmc.utilities;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+import org.junit.After;
+import org.junit.Before;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+public final class SessionOutputReaderTest1 extends TestCase {
+    @Before
+    protected void setUp() {
+        TestSuite1.initTest();
+    }
+
+    @After
+    protected void tearDown() {
+        assertEquals("", TestSuite1.getStdout());
+    }
+
+    /** Stream, where the data arrive in chunks, like from the session. */
+    private static final class ChunkStream extends InputStream {
+        private byte[] chunk = new byte[0];
+        private int pos = 0;
+
+        void add(final byte[] data) {
+            final byte[] rest = Arrays.copyOfRange(chunk, pos, chunk.length);
+            chunk = new byte[rest.length + data.length];
+            System.arraycopy(rest, 0, chunk, 0, rest.length);
+            System.arraycopy(data, 0, chunk, rest.length, data.length);
+            pos = 0;
+        }
+
+        @Override
+        public int available() {
+            return chunk.length - pos;
+        }
+
+        @Override
+        public int read() {
+            if (pos >= chunk.length) {
+                return -1;
+            }
+            return chunk[pos++] & 0xff;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) {
+            if (pos >= chunk.length) {
+                return -1;
+            }
+            final int n = Math.min(len, chunk.length - pos);
+            System.arraycopy(chunk, pos, b, off, n);
+            pos += n;
+            return n;
+        }
+    }
+
+    /* ---- tests ----- */
+
+    @Test
+    public void testReadAvailable() throws IOException {
+        final ChunkStream in = new ChunkStream();
+        final SessionOutputReader reader = new SessionOutputReader(in);
+        assertFalse(reader.isAvailable());
+        assertNull(reader.readAvailable());
+        in.add("hello\n".getBytes("UTF-8"));
+        assertTrue(reader.isAvailable());
+        assertEquals("hello\n", reader.readAvailable());
+        assertFalse(reader.isAvailable());
+        assertNull(reader.readAvailable());
+        assertNull(reader.finish());
+    }
+
+    @Test
+    public void testSplitCharacters() throws IOException {
+        final String text = "\u017e\u20ac\ud834\udd1e L\u00e4uft ok\n";
+        final byte[] bytes = text.getBytes("UTF-8");
+        /* split the bytes at every offset */
+        for (int split = 0; split <= bytes.length; split++) {
+            final ChunkStream in = new ChunkStream();
+            final SessionOutputReader reader = new SessionOutputReader(in);
+            final StringBuilder out = new StringBuilder();
+            in.add(Arrays.copyOfRange(bytes, 0, split));
+            final String first = reader.readAvailable();
+            if (first != null) {
+                out.append(first);
+            }
+            in.add(Arrays.copyOfRange(bytes, split, bytes.length));
+            final String second = reader.readAvailable();
+            if (second != null) {
+                out.append(second);
+            }
+            assertNull(reader.finish());
+            assertEquals("split " + split, text, out.toString());
+        }
+    }
+
+    @Test
+    public void testOutputLargerThanBuffer() throws IOException {
+        final StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            text.append("\u0159\u00e1dek ").append(i).append('\n');
+        }
+        final ChunkStream in = new ChunkStream();
+        final SessionOutputReader reader = new SessionOutputReader(in);
+        in.add(text.toString().getBytes("UTF-8"));
+        assertEquals(text.toString(), reader.readAvailable());
+    }
+
+    @Test
+    public void testFinishIncompleteCharacter() throws IOException {
+        final byte[] euro = "\u20ac".getBytes("UTF-8");
+        final ChunkStream in = new ChunkStream();
+        final SessionOutputReader reader = new SessionOutputReader(in);
+        in.add(new byte[]{'a', euro[0], euro[1]});
+        assertEquals("a", reader.readAvailable());
+        /* the stream ended in the middle of the character */
+        assertEquals("\ufffd", reader.finish());
+        assertNull(reader.finish());
+        in.add("b".getBytes("UTF-8"));
+        assertEquals("b", reader.readAvailable());
+    }
+}
@@ -0,0 +1,139 @@
+package lcmc.utilities;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+import org.junit.After;
+import org.junit.Before;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+import ch.ethz.ssh2.crypto.Base64;
+
+public final class StatusFrameReaderTest1 extends TestCase {
+    @Before
+    protected void setUp() {
+        TestSuite1.initTest();
+    }
+
+    @After
+    protected void tearDown() {
+        assertEquals("", TestSuite1.getStdout());
+    }
+
+    /** Returns a frame, like the helper sends it. */
+    private static String frame(final String type,
+                                final long sequence,
+                                final String payload,
+                                final boolean gzip) throws IOException {
+        byte[] data = payload.getBytes("UTF-8");
+        if (gzip) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final GZIPOutputStream gz = new GZIPOutputStream(out);
+            gz.write(data);
+            gz.close();
+            data = out.toByteArray();
+        }
+        final String encoded = new String(Base64.encode(data));
+        return "--frame-- " + type + " " + sequence + " 1370000000.5 "
+               + (gzip ? "gz" : "raw") + " " + encoded.length() + "\n"
+               + encoded + "\n";
+    }
+
+    /* ---- tests ----- */
+
+    @Test
+    public void testRawFrame() throws IOException {
+        final StatusFrameReader reader = new StatusFrameReader();
+        final List<StatusFrameReader.Frame> frames =
+                          reader.read(frame("hw", 1, "cpu 4\nmem 8\n", false));
+        assertEquals(1, frames.size());
+        final StatusFrameReader.Frame f = frames.get(0);
+        assertEquals("hw", f.getType());
+        assertEquals(1, f.getSequence());
+        assertEquals(Double.valueOf(1370000000.5), f.getTimestamp());
+        assertEquals("cpu 4\nmem 8\n", f.getPayload());
+        assertFalse(reader.isTextProtocol());
+    }
+
+    @Test
+    public void testGzipFrame() throws IOException {
+        final StringBuilder payload = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            payload.append("<domain name=\"vm").append(i).append("\"/>\n");
+        }
+        final StatusFrameReader reader = new StatusFrameReader();
+        final List<StatusFrameReader.Frame> frames =
+                     reader.read(frame("vm", 7, payload.toString(), true));
+        assertEquals(1, frames.size());
+        assertEquals("vm", frames.get(0).getType());
+        assertEquals(payload.toString(), frames.get(0).getPayload());
+    }
+
+    @Test
+    public void testMultipleFrames() throws IOException {
+        final StatusFrameReader reader = new StatusFrameReader();
+        final List<StatusFrameReader.Frame> frames =
+                    reader.read(frame("hw", 1, "a", false)
+                                + frame("vm", 2, "b", true)
+                                + frame("drbd", 3, "c", false));
+        assertEquals(3, frames.size());
+        assertEquals("a", frames.get(0).getPayload());
+        assertEquals("b", frames.get(1).getPayload());
+        assertEquals("drbd", frames.get(2).getType());
+        assertEquals("c", frames.get(2).getPayload());
+    }
+
+    @Test
+    public void testPartialFrames() throws IOException {
+        final String out = frame("hw", 1, "first frame", true)
+                           + frame("vm", 2, "second frame", false);
+        /* feed the output in every possible split */
+        for (int split = 0; split <= out.length(); split++) {
+            final StatusFrameReader reader = new StatusFrameReader();
+            final List<StatusFrameReader.Frame> frames =
+                                    reader.read(out.substring(0, split));
+            frames.addAll(reader.read(out.substring(split)));
+            assertEquals("split " + split, 2, frames.size());
+            assertEquals("first frame", frames.get(0).getPayload());
+            assertEquals("second frame", frames.get(1).getPayload());
+        }
+    }
+
+    @Test
+    public void testByteByByte() throws IOException {
+        final String out = frame("hw", 1, "x", false)
+                           + frame("hw", 2, "yy", true)
+                           + frame("hw", 3, "zzz", false);
+        final StatusFrameReader reader = new StatusFrameReader();
+        final StringBuilder payloads = new StringBuilder();
+        for (int i = 0; i < out.length(); i++) {
+            for (final StatusFrameReader.Frame f
+                              : reader.read(out.substring(i, i + 1))) {
+                payloads.append(f.getPayload()).append(',');
+            }
+        }
+        assertEquals("x,yy,zzz,", payloads.toString());
+    }
+
+    @Test
+    public void testGarbageBeforeFrame() throws IOException {
+        final StatusFrameReader reader = new StatusFrameReader();
+        final List<StatusFrameReader.Frame> frames =
+                 reader.read("some noise\n" + frame("hw", 1, "ok", false));
+        assertEquals(1, frames.size());
+        assertEquals("ok", frames.get(0).getPayload());
+    }
+
+    @Test
+    public void testTextProtocol() {
+        final StatusFrameReader reader = new StatusFrameReader();
+        final String out = "--hw-info-start--1370000000\ncpu 4\n"
+                           + "--hw-info-end--\n";
+        assertTrue(reader.read(out).isEmpty());
+        assertTrue(reader.isTextProtocol());
+        assertEquals(out, reader.getUnparsedOutput());
+        assertTrue(reader.read("more").isEmpty());
+        assertEquals("more", reader.getUnparsedOutput());
+    }
+}
@@ -132,12 +132,14 @@ public final class TestSuite1 {
 
     /** Clears stdout. Call it, if something writes to stdout. */
     public static void clearStdout() {
+        DebugAppender.flush();
         realPrint(stdout.toString());
         stdout.delete(0, stdout.length());
     }
 
     /** Returns stdout as string. */
     public static String getStdout() {
+        DebugAppender.flush();
         return stdout.toString();
     }
 
@@ -157,6 +159,8 @@ public final class TestSuite1 {
 
     public static void initTest() {
         initTestCluster();
+        /* the debug output must be there, when the test checks it */
+        DebugAppender.setSynchronous(true);
         System.setOut(new PrintStream(out, true));
         System.setErr(new PrintStream(out, true));
         Tools.waitForSwing();
@@ -64,6 +64,26 @@ public final class ToolsTest1 extends TestCase {
         Tools.setDefaults();
     }
 
+    @Test
+    public void testDebugAsynchronous() {
+        DebugAppender.setSynchronous(false);
+        try {
+            Tools.setDebugLevel(1);
+            for (int i = 0; i < 100; i++) {
+                Tools.debug(null, "test async " + i);
+            }
+            DebugAppender.flush();
+            final String out = TestSuite1.getStdout();
+            assertTrue(out.indexOf("test async 0\n") > 0);
+            assertTrue(out.indexOf("test async 99\n")
+                       > out.indexOf("test async 0\n"));
+            TestSuite1.clearStdout();
+            Tools.setDebugLevel(0);
+        } finally {
+            DebugAppender.setSynchronous(true);
+        }
+    }
+
     @Test
     public void testDebug() {
         Tools.setDebugLevel(1);